@@ -0,0 +1,30 @@
+// Phase 2 request: ask the Acceptors to accept a proposal in its instance
+public final class AcceptMessage extends Message{
+    private static final long serialVersionUID = 1L; 
+    private final Proposal proposal; // proposal to accept
+
+    // AcceptMessage constructor
+    // input: int (sender id), long (Correlation-Id), Proposal (proposal to accept)
+    // output: no
+    public AcceptMessage(int senderId, long correlationId, Proposal proposal){
+        super(senderId, correlationId); 
+        this.proposal = proposal; 
+    }
+
+    @Override
+    public byte getType(){
+        return ACCEPT; 
+    }
+
+    // proposal getter
+    // input: no
+    // output: Proposal
+    public Proposal getProposal(){
+        return this.proposal; 
+    }
+
+    @Override
+    public String toString(){
+        return "Accept(sender=" + this.getSenderId() + ", correlation=" + this.getCorrelationId() + ", " + describe(this.proposal) + ")"; 
+    }
+}
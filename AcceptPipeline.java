@@ -0,0 +1,443 @@
+import java.util.*; 
+import java.util.concurrent.*; 
+import java.util.concurrent.locks.*; 
+
+// proposer that keeps up to `window` log instances in the Accept phase at the same time
+// once this member holds a promised ballot (Phase 1), every value gets the next instance and its Accept is sent straight away, 
+// without waiting for the Accepts of the previous instances, so the round trips overlap
+// each instance counts its own acknowledgements (one RoundCollector per instance)
+// decisions are delivered in instance order: an instance accepted by the majority waits until every lower instance is decided
+// if an Accept is rejected the ballot is lost: the pipeline lets the other instances finish, runs Phase 1 again 
+// and re-proposes the values that were not accepted, lowest instance first, so they fill the gaps below the accepted instances 
+// (a value reported in Phase 1 takes its own instance, if it is one of the waiting values that value is done; 
+// a rejected value which another proposer decided in its old instance is delivered in that instance)
+// every value gets its own value id, carried in its proposals: a reported or decided proposal belongs to a waiting value 
+// only if it has the id of that value, two values with the same text are never mixed up
+// an instance is only given out while its configuration is known: less than Configuration.ALPHA instances above the first undecided one, 
+// and a membership change decided in the pipeline makes it run Phase 1 again before the instances of the new configuration
+// the member must not call propose() while the pipeline is open
+public class AcceptPipeline{
+    private CouncilMember member; 
+    private int window; 
+    private Semaphore windowPermits; // one permit per value between propose() and delivery
+    private ReentrantLock pipelineLock; 
+    private Condition pipelineChanged; 
+    private ReentrantLock deliveryLock; // taken before pipelineLock is released, so the instances are delivered in the order they were collected
+    private ArrayDeque<Entry> waiting; // values without an instance yet, in order
+    private TreeMap<Integer, Entry> inFlight; // instances sent in the Accept phase and not delivered yet
+    private int pendingRounds; // Accept rounds without an outcome yet
+    private int nextInstance; // instance of the next value, only valid while the ballot is held
+    private boolean ballotLost; // an Accept has been rejected, no new instance until Phase 1 has been run again
+    private boolean closed; 
+    // pipeline statistics
+    private volatile int mostInFlight; 
+
+    // a value on its way through the pipeline
+    private static class Entry{
+        private String value; 
+        private long valueId; // carried in the proposals of the value, also when another proposer re-proposes it
+        private CompletableFuture<Integer> delivered; // null for a value reported in Phase 1 (nobody waits for it)
+        private Proposal proposal; // set when the entry gets an instance
+        private boolean accepted; // the majority accepted it, waiting for the lower instances
+        private boolean failed; // the Accept was rejected, the value is proposed again after Phase 1
+        private boolean decidedElsewhere; // another proposer decided the value in its instance, no Decide to send
+
+        public Entry(String value, long valueId, CompletableFuture<Integer> delivered){
+            this.value = value; 
+            this.valueId = valueId; 
+            this.delivered = delivered; 
+        }
+    }
+
+    // create the pipeline of a member and start its thread
+    // input: CouncilMember, int (max instances in the Accept phase at once)
+    // output: no
+    public AcceptPipeline(CouncilMember member, int window){
+        if(window <= 0){
+            throw new IllegalArgumentException("Pipeline window must be positive"); 
+        }
+        this.member = member; 
+        this.window = window; 
+        this.windowPermits = new Semaphore(window); 
+        this.pipelineLock = new ReentrantLock(); 
+        this.pipelineChanged = this.pipelineLock.newCondition(); 
+        this.deliveryLock = new ReentrantLock(); 
+        this.waiting = new ArrayDeque<Entry>(); 
+        this.inFlight = new TreeMap<Integer, Entry>(); 
+        this.pendingRounds = 0; 
+        this.ballotLost = true; 
+        this.closed = false; 
+        Thread proposer = new Thread(new Runnable(){
+            @Override
+            public void run(){
+                proposeLoop(); 
+            }
+        }, "paxos-pipeline-" + member.getMemberId()); 
+        proposer.setDaemon(true); 
+        proposer.start(); 
+    }
+
+    // propose a value of a client, blocks while `window` values are in the pipeline
+    // throws IllegalArgumentException if the value starts with a reserved marker, see CouncilMember.checkClientValue
+    // input: String
+    // output: CompletableFuture<Integer> (completes with the log instance the value was decided in, in instance order)
+    public CompletableFuture<Integer> propose(String value){
+        CouncilMember.checkClientValue(value); 
+        return this.proposeInternal(value); 
+    }
+
+    // propose a value built by the member itself (a membership change or a batch), which may start with a reserved marker
+    // input: String
+    // output: CompletableFuture<Integer> (as propose)
+    public CompletableFuture<Integer> proposeInternal(String value){
+        CompletableFuture<Integer> delivered = new CompletableFuture<Integer>(); 
+        this.windowPermits.acquireUninterruptibly(); 
+        this.pipelineLock.lock(); 
+        try{
+            if(this.closed){
+                this.windowPermits.release(); 
+                delivered.completeExceptionally(new IllegalStateException("Pipeline closed")); 
+            }
+            else{
+                this.waiting.add(new Entry(value, this.member.nextValueId(), delivered)); 
+                this.pipelineChanged.signalAll(); 
+            }
+        }
+        finally{
+            this.pipelineLock.unlock(); 
+        }
+        return delivered; 
+    }
+
+    // the proposer thread: give the waiting values an instance and send their Accept, run Phase 1 when the ballot is lost
+    // input: no
+    // output: no
+    private void proposeLoop(){
+        while(true){
+            Entry entry; 
+            this.pipelineLock.lock(); 
+            try{
+                // wait for a value, or for the outcome of every round after the ballot was lost
+                // a value also waits while the next instance is Configuration.ALPHA instances above the first undecided one: 
+                // a change decided in the instances below may still change its configuration, every decision signals pipelineChanged
+                while(this.closed == false && (this.ballotLost ? this.pendingRounds > 0 || (this.waiting.isEmpty() && this.inFlight.isEmpty()) 
+                        : this.waiting.isEmpty() || this.nextInstance >= this.member.getFirstUndecidedInstance() + Configuration.ALPHA)){
+                    this.pipelineChanged.awaitUninterruptibly(); 
+                }
+                if(this.closed){
+                    this.failWaiting(new IllegalStateException("Pipeline closed")); 
+                    return; 
+                }
+                if(this.ballotLost == false){
+                    // skip the instances which are decided, or accepted and waiting for a lower instance
+                    while(this.member.getDecidedValue(this.nextInstance) != null || this.inFlight.containsKey(this.nextInstance)){
+                        this.nextInstance++; 
+                    }
+                    // the skipped instances may have moved the next instance out of the alpha window, wait for it again
+                    if(this.nextInstance >= this.member.getFirstUndecidedInstance() + Configuration.ALPHA){
+                        continue; 
+                    }
+                }
+                if(this.ballotLost == false && this.member.isPreparedFor(this.nextInstance) == false){
+                    // the next instance belongs to a configuration which has not promised the ballot yet
+                    this.ballotLost = true; 
+                    continue; 
+                }
+                if(this.ballotLost){
+                    entry = null; 
+                }
+                else{
+                    entry = this.assignInstance(); 
+                }
+            }
+            finally{
+                this.pipelineLock.unlock(); 
+            }
+            if(entry == null){
+                this.regainBallot(); 
+            }
+            else{
+                this.sendAccept(entry); 
+            }
+        }
+    }
+
+    // run Phase 1 again, the instances reported by the acceptors are proposed first
+    // input: no
+    // output: no
+    private void regainBallot(){
+        this.pipelineLock.lock(); 
+        try{
+            // the rejected values go back in front of the waiting values, lowest instance first
+            ArrayDeque<Entry> reordered = new ArrayDeque<Entry>(); 
+            for(Iterator<Entry> iterator = this.inFlight.values().iterator(); iterator.hasNext(); ){
+                Entry entry = iterator.next(); 
+                if(entry.failed){
+                    iterator.remove(); 
+                    reordered.add(entry); 
+                }
+            }
+            reordered.addAll(this.waiting); 
+            this.waiting = reordered; 
+        }
+        finally{
+            this.pipelineLock.unlock(); 
+        }
+        this.member.loseLeadership(); 
+        if(this.member.acquireLeadership() == false){
+            this.pipelineLock.lock(); 
+            try{
+                // the instances accepted above a gap can not be delivered in order either
+                this.waiting.addAll(this.inFlight.values()); 
+                this.inFlight.clear(); 
+                this.failWaiting(new IllegalStateException("Council Member " + this.member.getMemberId() + " gave up proposing")); 
+            }
+            finally{
+                this.pipelineLock.unlock(); 
+            }
+            return; 
+        }
+        // a rejected value which another proposer decided in the meantime has been taken out of waiting by decidedElsewhere
+        this.pipelineLock.lock(); 
+        try{
+            this.nextInstance = this.member.getFirstUndecidedInstance(); 
+            this.ballotLost = false; 
+        }
+        finally{
+            this.pipelineLock.unlock(); 
+        }
+        this.deliver(); 
+    }
+
+    // take the next instance and the value to propose in it, the caller holds pipelineLock and has skipped the taken instances
+    // a value reported in Phase 1 for the instance takes it, if it is the value of a waiting entry that entry is completed by it
+    // input: no
+    // output: Entry (with its proposal set)
+    private Entry assignInstance(){
+        int instance = this.nextInstance++; 
+        Proposal recoveredProposal = this.member.takeRecoveredProposal(instance); 
+        Entry entry = null; 
+        if(recoveredProposal != null){
+            // the value may be one of ours which reached some acceptors before the ballot was lost
+            entry = this.takeWaiting(recoveredProposal.getValueId()); 
+            if(entry == null){
+                entry = new Entry(recoveredProposal.getValue(), recoveredProposal.getValueId(), null); 
+            }
+        }
+        else{
+            entry = this.waiting.poll(); 
+        }
+        entry.accepted = false; 
+        entry.failed = false; 
+        entry.decidedElsewhere = false; 
+        entry.proposal = new Proposal(this.member.getMemberId(), entry.value, instance, this.member.getLeaderProposalId(), entry.valueId); 
+        this.inFlight.put(instance, entry); 
+        if(this.inFlight.size() > this.mostInFlight){
+            this.mostInFlight = this.inFlight.size(); 
+        }
+        return entry; 
+    }
+
+    // send the Accept of one instance, the outcome arrives on the thread of its round
+    // input: Entry
+    // output: no
+    private void sendAccept(final Entry entry){
+        AcceptMessage requestObject = new AcceptMessage(this.member.getMemberId(), this.member.nextCorrelationId(), entry.proposal); 
+        this.pipelineLock.lock(); 
+        this.pendingRounds++; 
+        this.pipelineLock.unlock(); 
+        this.member.startRound(requestObject, entry.proposal.getID()).getOutcome().thenAccept(new java.util.function.Consumer<Boolean>(){
+            @Override
+            public void accept(Boolean acceptedByMajority){
+                onOutcome(entry, acceptedByMajority); 
+            }
+        }); 
+    }
+
+    // handle the outcome of the Accept phase of one instance
+    // input: Entry, boolean (true if the majority accepted it)
+    // output: no
+    private void onOutcome(Entry entry, boolean acceptedByMajority){
+        this.pipelineLock.lock(); 
+        try{
+            this.pendingRounds--; 
+            // a value another proposer has already decided in the instance is done whatever the outcome
+            entry.accepted = acceptedByMajority || entry.decidedElsewhere; 
+            if(acceptedByMajority == false){
+                // the ballot is lost, the instance stays in place (blocking the higher instances) until Phase 1 has been run again
+                this.ballotLost = true; 
+                entry.failed = (entry.accepted == false); 
+            }
+            this.pipelineChanged.signalAll(); 
+        }
+        finally{
+            this.pipelineLock.unlock(); 
+        }
+        this.deliver(); 
+    }
+
+    // a Decide from another proposer arrived, if it decided one of our values in the instance that value had, the value is done
+    // the first undecided instance may have moved, so the alpha window is checked again
+    // input: Proposal (the decided proposal)
+    // output: no
+    public void decidedElsewhere(Proposal decided){
+        this.pipelineLock.lock(); 
+        try{
+            this.pipelineChanged.signalAll(); 
+            if(decided.getValueId() == Proposal.NO_VALUE_ID){
+                return; 
+            }
+            Entry entry = this.inFlight.get(decided.getInstance()); 
+            if(entry == null){
+                // a rejected value waiting for Phase 1 still has its old instance
+                for(Iterator<Entry> iterator = this.waiting.iterator(); iterator.hasNext() && entry == null; ){
+                    Entry candidate = iterator.next(); 
+                    if(candidate.valueId == decided.getValueId() && candidate.proposal != null && candidate.proposal.getInstance() == decided.getInstance()){
+                        entry = candidate; 
+                        iterator.remove(); 
+                        this.inFlight.put(decided.getInstance(), entry); 
+                    }
+                }
+            }
+            if(entry == null || entry.valueId != decided.getValueId() || entry.accepted){
+                return; 
+            }
+            entry.decidedElsewhere = true; 
+            // the outcome of a round which is still pending completes the entry in onOutcome
+            if(entry.failed){
+                entry.failed = false; 
+                entry.accepted = true; 
+            }
+        }
+        finally{
+            this.pipelineLock.unlock(); 
+        }
+        this.deliver(); 
+    }
+
+    // take the waiting value with a value id, the caller holds pipelineLock
+    // input: long (value id)
+    // output: Entry (null if no waiting value has the id)
+    private Entry takeWaiting(long valueId){
+        if(valueId == Proposal.NO_VALUE_ID){
+            return null; 
+        }
+        for(Iterator<Entry> iterator = this.waiting.iterator(); iterator.hasNext(); ){
+            Entry candidate = iterator.next(); 
+            if(candidate.valueId == valueId){
+                iterator.remove(); 
+                return candidate; 
+            }
+        }
+        return null; 
+    }
+
+    // deliver every accepted instance whose lower instances are all decided, in instance order
+    // an instance accepted while another thread was recording the instance below it is only deliverable once that is recorded, 
+    // so the thread which delivered something looks again
+    // input: no
+    // output: no
+    private void deliver(){
+        boolean delivered = true; 
+        while(delivered){
+            delivered = this.deliverReady(); 
+        }
+    }
+
+    // deliver the accepted instances which are deliverable now
+    // input: no
+    // output: boolean (true if an instance was delivered)
+    private boolean deliverReady(){
+        ArrayList<Entry> deliverable = new ArrayList<Entry>(); 
+        this.pipelineLock.lock(); 
+        try{
+            int firstUndecided = this.member.getFirstUndecidedInstance(); 
+            while(this.inFlight.isEmpty() == false && this.inFlight.firstEntry().getValue().accepted && this.inFlight.firstKey() <= firstUndecided){
+                int instance = this.inFlight.firstKey(); 
+                deliverable.add(this.inFlight.pollFirstEntry().getValue()); 
+                // the instance is decided once it is delivered, skip the instances other proposers decided
+                firstUndecided = Math.max(firstUndecided, instance + 1); 
+                while(this.member.getDecidedValue(firstUndecided) != null){
+                    firstUndecided++; 
+                }
+            }
+            this.deliveryLock.lock(); 
+        }
+        finally{
+            this.pipelineLock.unlock(); 
+        }
+        IllegalStateException offline = null; 
+        try{
+            for(int i = 0; i < deliverable.size(); i++){
+                Entry delivered = deliverable.get(i); 
+                try{
+                    if(delivered.decidedElsewhere == false){
+                        this.member.sendDecide(delivered.proposal); 
+                    }
+                }
+                catch(IllegalStateException e){
+                    // the member went offline, its decision can not be recorded: the value fails instead of waiting forever
+                    offline = e; 
+                    if(delivered.delivered != null){
+                        delivered.delivered.completeExceptionally(e); 
+                        this.windowPermits.release(); 
+                    }
+                    continue; 
+                }
+                if(delivered.delivered != null){
+                    delivered.delivered.complete(delivered.proposal.getInstance()); 
+                    this.windowPermits.release(); 
+                }
+            }
+        }
+        finally{
+            this.deliveryLock.unlock(); 
+        }
+        if(offline != null){
+            this.close(); 
+            return false; 
+        }
+        if(deliverable.isEmpty()){
+            return false; 
+        }
+        // the alpha window moves once the instances are decided
+        this.pipelineLock.lock(); 
+        this.pipelineChanged.signalAll(); 
+        this.pipelineLock.unlock(); 
+        return true; 
+    }
+
+    // complete every waiting value exceptionally, the caller holds pipelineLock
+    // input: Exception
+    // output: no
+    private void failWaiting(Exception error){
+        while(this.waiting.isEmpty() == false){
+            Entry entry = this.waiting.poll(); 
+            if(entry.delivered != null){
+                entry.delivered.completeExceptionally(error); 
+                this.windowPermits.release(); 
+            }
+        }
+    }
+
+    // stop the pipeline, the values which do not have an instance yet fail
+    // input: no
+    // output: no
+    public void close(){
+        this.pipelineLock.lock(); 
+        try{
+            this.closed = true; 
+            this.pipelineChanged.signalAll(); 
+        }
+        finally{
+            this.pipelineLock.unlock(); 
+        }
+    }
+
+    // highest number of instances in the Accept phase at once
+    // input: no
+    // output: int
+    public int getMostInFlight(){
+        return this.mostInFlight; 
+    }
+}
@@ -0,0 +1,35 @@
+// Phase 2 response: the Acceptor accepted the proposal
+public final class AcceptedMessage extends Message{
+    private static final long serialVersionUID = 1L; 
+    private final Proposal proposal; // accepted proposal
+
+    // AcceptedMessage constructor
+    // input: int (sender id), long (Correlation-Id), Proposal (accepted proposal)
+    // output: no
+    public AcceptedMessage(int senderId, long correlationId, Proposal proposal){
+        super(senderId, correlationId); 
+        this.proposal = proposal; 
+    }
+
+    @Override
+    public byte getType(){
+        return ACCEPTED; 
+    }
+
+    @Override
+    public boolean isOk(){
+        return true; 
+    }
+
+    // proposal getter
+    // input: no
+    // output: Proposal
+    public Proposal getProposal(){
+        return this.proposal; 
+    }
+
+    @Override
+    public String toString(){
+        return "Accepted(sender=" + this.getSenderId() + ", correlation=" + this.getCorrelationId() + ", " + describe(this.proposal) + ")"; 
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.*; 
+import java.net.*; 
+import java.io.*; 
+import java.nio.*; 
+import java.nio.channels.*; 
+import java.util.concurrent.*; 
+
+// this class holds the state of one long-lived connection from a Proposer to this member
+// it is driven by an I/O loop of RunMemberServer: bytes are collected until a whole frame has arrived, 
+// then the request is decoded and dispatched to the acceptor logic
+// responses are queued by the request threads and written by the I/O loop
+public class AcceptorConnection implements ResponseChannel{
+    private static final int READ_BUFFER_BYTES = 8192; 
+    private RunMemberServer server; 
+    private RunMemberServer.IoLoop loop; // the loop this connection is registered to
+    private SocketChannel channel; 
+    private SelectionKey key; 
+    private ByteBuffer readBuffer; // bytes received but not yet decoded
+    private ConcurrentLinkedQueue<ByteBuffer> writeQueue; // encoded responses waiting to be written
+
+    // AcceptorConnection constructor
+    // input: RunMemberServer, RunMemberServer.IoLoop (loop the connection is registered to), SocketChannel (channel of the Proposer)
+    // output: no
+    public AcceptorConnection(RunMemberServer server, RunMemberServer.IoLoop loop, SocketChannel channel){
+        this.server = server; 
+        this.loop = loop; 
+        this.channel = channel; 
+        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES); 
+        this.writeQueue = new ConcurrentLinkedQueue<ByteBuffer>(); 
+    }
+
+    // read what is available on the channel and dispatch every complete frame, called by the I/O loop
+    // input: no
+    // output: no
+    public void handleRead(){
+        try{
+            int read = this.channel.read(this.readBuffer); 
+            if(read < 0){
+                // the Proposer closed the connection
+                this.close(); 
+                return; 
+            }
+            this.readBuffer.flip(); 
+            while(this.readBuffer.remaining() >= 4){
+                int length = this.readBuffer.getInt(this.readBuffer.position()); 
+                if(length < 0 || length > MessageFrame.MAX_FRAME_BYTES){
+                    throw new IOException("Invalid frame length " + length); 
+                }
+                if(this.readBuffer.remaining() < 4 + length){
+                    break; 
+                }
+                this.readBuffer.getInt(); 
+                byte[] body = new byte[length]; 
+                this.readBuffer.get(body); 
+                this.server.dispatch(this, MessageFrame.decode(body)); 
+            }
+            this.readBuffer.compact(); 
+            // make room for a frame which is bigger than the buffer
+            if(this.readBuffer.position() >= 4){
+                int length = this.readBuffer.getInt(0); 
+                if(4 + length > this.readBuffer.capacity()){
+                    ByteBuffer biggerBuffer = ByteBuffer.allocate(4 + length); 
+                    this.readBuffer.flip(); 
+                    biggerBuffer.put(this.readBuffer); 
+                    this.readBuffer = biggerBuffer; 
+                }
+            }
+        }
+        catch(Exception e){
+            this.close(); 
+        }
+    }
+
+    // write the queued responses, called by the I/O loop
+    // input: no
+    // output: no
+    public void handleWrite(){
+        try{
+            ByteBuffer frame; 
+            while((frame = this.writeQueue.peek()) != null){
+                this.channel.write(frame); 
+                // the socket buffer is full, wait until the channel is writable again
+                if(frame.hasRemaining()){
+                    this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE); 
+                    return; 
+                }
+                this.writeQueue.poll(); 
+            }
+            this.key.interestOps(SelectionKey.OP_READ); 
+        }
+        catch(Exception e){
+            this.close(); 
+        }
+    }
+
+    // send a response back to the Proposer, called by the request threads once the record of the response is on disk
+    // input: Message (response), CompletableFuture<Void> (completed write-ahead log record, not used)
+    // output: no
+    @Override
+    public void sendResponse(Message responseObject, CompletableFuture<Void> durable) throws IOException{
+        if(this.channel.isOpen() == false){
+            throw new SocketException("Connection closed"); 
+        }
+        this.writeQueue.add(MessageFrame.toFrameBuffer(responseObject)); 
+        this.loop.execute(new Runnable(){
+            @Override
+            public void run(){
+                if(key != null && key.isValid()){
+                    handleWrite(); 
+                }
+            }
+        }); 
+    }
+
+    // responses wait for the write-ahead log on its flusher thread, the request thread is free straight away
+    // input: no
+    // output: boolean
+    @Override
+    public boolean answersInline(){
+        return false; 
+    }
+
+    // channel getter
+    // input: no
+    // output: SocketChannel
+    public SocketChannel getChannel(){
+        return this.channel; 
+    }
+
+    // selection key setter, set by the I/O loop when the channel is registered
+    // input: SelectionKey
+    // output: no
+    public void setKey(SelectionKey key){
+        this.key = key; 
+    }
+
+    // close this connection
+    // input: no
+    // output: no
+    public void close(){
+        try{
+            if(this.key != null){
+                this.key.cancel(); 
+            }
+            this.channel.close(); 
+        }
+        catch(IOException e){
+
+        }
+    }
+}
@@ -0,0 +1,303 @@
+import java.util.*; 
+import java.io.*; 
+import java.nio.*; 
+import java.nio.channels.*; 
+import java.nio.charset.StandardCharsets; 
+import java.nio.file.*; 
+import java.util.concurrent.*; 
+import java.util.concurrent.locks.*; 
+import java.util.zip.CRC32; 
+
+// write-ahead log of an Acceptor: every promise and every acceptance is written here 
+// and forced to disk before the response is sent, so a member that restarts keeps its promises
+// appends are group-committed: one flusher thread writes everything queued since the last flush and calls fsync once for all of them
+// record format: length (4 bytes) | CRC32 of the body (4 bytes) | body
+// body: type (1 byte) | proposal id (8 bytes, see Ballot) | instance (4 bytes) | member id (4 bytes) | value id (8 bytes) | value (UTF-8, up to the end of the record)
+public class AcceptorLog{
+    public static final String LOG_DIRECTORY = System.getProperty("paxos.logDirectory", "Log"); 
+    private static final byte PROMISE_RECORD = 1; 
+    private static final byte ACCEPT_RECORD = 2; 
+    private static final int RECORD_HEADER_BYTES = 8; 
+    private static final int BODY_HEADER_BYTES = 25; 
+    private FileChannel channel; 
+    private ReentrantLock queueLock; 
+    private Condition recordsQueued; 
+    private ArrayList<PendingRecord> queue; // records waiting for the next group commit
+    private CompletableFuture<Void> lastDurable; // future of the last record queued, guarded by queueLock
+    private boolean closed; 
+    // state read back from the log when it was opened
+    private long recoveredHighestProposalId; 
+    private TreeMap<Integer, Proposal> recoveredAcceptedProposals; 
+    // group commit statistics
+    private volatile long recordCount; 
+    private volatile long fsyncCount; 
+    private volatile long fsyncNanos; 
+    private volatile int largestBatch; 
+
+    // a record waiting to be written, the future completes when it is on disk
+    private static class PendingRecord{
+        private ByteBuffer bytes; 
+        private CompletableFuture<Void> durable; 
+
+        public PendingRecord(ByteBuffer bytes){
+            this.bytes = bytes; 
+            this.durable = new CompletableFuture<Void>(); 
+        }
+    }
+
+    // open (or create) the log of a member, read back its state and start the flusher thread
+    // input: String (directory of the logs), int (member id)
+    // output: no
+    public AcceptorLog(String directory, int memberId) throws IOException{
+        Path logFile = Paths.get(directory, "member-" + memberId + ".wal"); 
+        Files.createDirectories(logFile.getParent()); 
+        this.channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE); 
+        this.recoveredHighestProposalId = Ballot.NONE; 
+        this.recoveredAcceptedProposals = new TreeMap<Integer, Proposal>(); 
+        this.replay(); 
+        this.queueLock = new ReentrantLock(); 
+        this.recordsQueued = this.queueLock.newCondition(); 
+        this.queue = new ArrayList<PendingRecord>(); 
+        this.lastDurable = CompletableFuture.completedFuture(null); 
+        this.closed = false; 
+        Thread flusher = new Thread(new Runnable(){
+            @Override
+            public void run(){
+                flushLoop(); 
+            }
+        }, "member-" + memberId + "-wal"); 
+        flusher.setDaemon(true); 
+        flusher.start(); 
+    }
+
+    // delete the logs of all members, used when a test case starts a new cluster
+    // input: String (directory of the logs)
+    // output: no
+    public static void deleteLogs(String directory){
+        File[] logFiles = new File(directory).listFiles(); 
+        if(logFiles == null){
+            return; 
+        }
+        for(int i = 0; i < logFiles.length; i++){
+            if(logFiles[i].getName().endsWith(".wal")){
+                logFiles[i].delete(); 
+            }
+        }
+    }
+
+    // log a promise, the caller must send the Promise only after the returned future completes
+    // input: long (promised proposal id)
+    // output: CompletableFuture<Void> (completes when the record is on disk)
+    public CompletableFuture<Void> appendPromise(long proposalId){
+        return this.append(PROMISE_RECORD, proposalId, 0, 0, Proposal.NO_VALUE_ID, new byte[0]); 
+    }
+
+    // log an acceptance, the caller must send Accepted only after the returned future completes
+    // input: Proposal (accepted proposal)
+    // output: CompletableFuture<Void> (completes when the record is on disk)
+    public CompletableFuture<Void> appendAccept(Proposal proposal){
+        return this.append(ACCEPT_RECORD, proposal.getID(), proposal.getInstance(), proposal.getMemberID(), proposal.getValueId(), proposal.getValue().getBytes(StandardCharsets.UTF_8)); 
+    }
+
+    // wait for the records queued so far without queueing one, used when a request changes nothing that is logged
+    // the records are written in order, so the last one is on disk once every one is
+    // input: no
+    // output: CompletableFuture<Void> (completes when the records queued so far are on disk, null if they already are)
+    public CompletableFuture<Void> awaitQueued(){
+        this.queueLock.lock(); 
+        try{
+            if(this.lastDurable.isDone() && this.lastDurable.isCompletedExceptionally() == false){
+                return null; 
+            }
+            return this.lastDurable; 
+        }
+        finally{
+            this.queueLock.unlock(); 
+        }
+    }
+
+    // queue a record for the next group commit
+    // records are written in the order they are queued, so the caller can queue while holding its own lock
+    // input: byte (record type), long (proposal id), int (instance), int (member id), long (value id), byte[] (value)
+    // output: CompletableFuture<Void>
+    private CompletableFuture<Void> append(byte type, long proposalId, int instance, int memberId, long valueId, byte[] value){
+        ByteBuffer body = ByteBuffer.allocate(BODY_HEADER_BYTES + value.length); 
+        body.put(type); 
+        body.putLong(proposalId); 
+        body.putInt(instance); 
+        body.putInt(memberId); 
+        body.putLong(valueId); 
+        body.put(value); 
+        CRC32 crc = new CRC32(); 
+        crc.update(body.array()); 
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + body.capacity()); 
+        record.putInt(body.capacity()); 
+        record.putInt((int)crc.getValue()); 
+        record.put(body.array()); 
+        record.flip(); 
+        PendingRecord pending = new PendingRecord(record); 
+        this.queueLock.lock(); 
+        try{
+            if(this.closed){
+                pending.durable.completeExceptionally(new IOException("Write-ahead log closed")); 
+            }
+            else{
+                this.queue.add(pending); 
+                this.lastDurable = pending.durable; 
+                this.recordsQueued.signal(); 
+            }
+        }
+        finally{
+            this.queueLock.unlock(); 
+        }
+        return pending.durable; 
+    }
+
+    // the flusher thread: take every queued record, write them together and fsync once
+    // input: no
+    // output: no
+    private void flushLoop(){
+        while(true){
+            ArrayList<PendingRecord> batch; 
+            this.queueLock.lock(); 
+            try{
+                while(this.queue.isEmpty() && this.closed == false){
+                    this.recordsQueued.awaitUninterruptibly(); 
+                }
+                if(this.queue.isEmpty()){
+                    try{
+                        this.channel.close(); 
+                    }
+                    catch(IOException e){
+
+                    }
+                    return; 
+                }
+                batch = this.queue; 
+                this.queue = new ArrayList<PendingRecord>(); 
+            }
+            finally{
+                this.queueLock.unlock(); 
+            }
+            ByteBuffer[] buffers = new ByteBuffer[batch.size()]; 
+            for(int i = 0; i < batch.size(); i++){
+                buffers[i] = batch.get(i).bytes; 
+            }
+            try{
+                long start = System.nanoTime(); 
+                while(buffers[buffers.length - 1].hasRemaining()){
+                    this.channel.write(buffers); 
+                }
+                this.channel.force(false); 
+                this.fsyncNanos += System.nanoTime() - start; 
+                this.fsyncCount++; 
+                this.recordCount += batch.size(); 
+                if(batch.size() > this.largestBatch){
+                    this.largestBatch = batch.size(); 
+                }
+                for(int i = 0; i < batch.size(); i++){
+                    batch.get(i).durable.complete(null); 
+                }
+            }
+            catch(IOException e){
+                for(int i = 0; i < batch.size(); i++){
+                    batch.get(i).durable.completeExceptionally(e); 
+                }
+            }
+        }
+    }
+
+    // read the log from the start and rebuild the state of the Acceptor
+    // records may be in any order, the state keeps the highest promise and the highest accepted proposal of each instance
+    // a torn record at the end (crash during a write) is cut off
+    // input: no
+    // output: no
+    private void replay() throws IOException{
+        long size = this.channel.size(); 
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(this.channel.position(0)))); 
+        long validLength = 0; 
+        while(validLength + RECORD_HEADER_BYTES <= size){
+            int length = in.readInt(); 
+            int checksum = in.readInt(); 
+            if(length < BODY_HEADER_BYTES || validLength + RECORD_HEADER_BYTES + length > size){
+                break; 
+            }
+            byte[] body = new byte[length]; 
+            in.readFully(body); 
+            CRC32 crc = new CRC32(); 
+            crc.update(body); 
+            if((int)crc.getValue() != checksum){
+                break; 
+            }
+            ByteBuffer record = ByteBuffer.wrap(body); 
+            byte type = record.get(); 
+            long proposalId = record.getLong(); 
+            int instance = record.getInt(); 
+            int memberId = record.getInt(); 
+            long valueId = record.getLong(); 
+            this.recoveredHighestProposalId = Math.max(this.recoveredHighestProposalId, proposalId); 
+            if(type == ACCEPT_RECORD){
+                Proposal accepted = this.recoveredAcceptedProposals.get(instance); 
+                if(accepted == null || accepted.getID() < proposalId){
+                    String value = new String(body, BODY_HEADER_BYTES, length - BODY_HEADER_BYTES, StandardCharsets.UTF_8); 
+                    this.recoveredAcceptedProposals.put(instance, new Proposal(memberId, value, instance, proposalId, valueId)); 
+                }
+            }
+            validLength += RECORD_HEADER_BYTES + length; 
+        }
+        this.channel.truncate(validLength); 
+        this.channel.position(validLength); 
+    }
+
+    // highest promised/accepted proposal id found in the log
+    // input: no
+    // output: long (Ballot.NONE if the log was empty)
+    public long getRecoveredHighestProposalId(){
+        return this.recoveredHighestProposalId; 
+    }
+
+    // accepted proposals found in the log
+    // input: no
+    // output: TreeMap<Integer, Proposal> (by instance)
+    public TreeMap<Integer, Proposal> getRecoveredAcceptedProposals(){
+        return this.recoveredAcceptedProposals; 
+    }
+
+    // number of records written
+    // input: no
+    // output: long
+    public long getRecordCount(){
+        return this.recordCount; 
+    }
+
+    // number of fsync calls, each one covers a whole batch of records
+    // input: no
+    // output: long
+    public long getFsyncCount(){
+        return this.fsyncCount; 
+    }
+
+    // total time spent writing and forcing batches
+    // input: no
+    // output: long (nanoseconds)
+    public long getFsyncNanos(){
+        return this.fsyncNanos; 
+    }
+
+    // biggest number of records covered by one fsync
+    // input: no
+    // output: int
+    public int getLargestBatch(){
+        return this.largestBatch; 
+    }
+
+    // stop the flusher once the queued records are written and close the file
+    // input: no
+    // output: no
+    public void close(){
+        this.queueLock.lock(); 
+        this.closed = true; 
+        this.recordsQueued.signal(); 
+        this.queueLock.unlock(); 
+    }
+}
@@ -1,177 +1,245 @@
 import java.util.*; 
 import java.net.*; 
 import java.io.*; 
-import java.util.concurrent.locks.*; 
+import java.util.concurrent.*; 
+import java.util.function.*; 
 
 // this thread is responsible for responding to requests (Prepare/Accept/Decide) from the Proposer
+// requests are dispatched through a table indexed by message type
 public class AcceptorResponseToRequest implements Runnable{
-    private static int MEDIUM_LATENCY = 5000; // medium latency, respond after 5s
-    private static int LATE_LATENCY = 15000; // late latency, respond after 15s 
-    private Socket senderSocket;
-    private ObjectOutputStream out; 
-    private ObjectInputStream in; 
+    private static final RequestHandler[] REQUEST_HANDLERS = createRequestHandlers(); // REQUEST_HANDLERS[type] handles requests of that type
+    private ResponseChannel connection; // connection the request came from
+    private Message requestObject; 
     private CouncilMember member; 
+    private CompletableFuture<Void> durable; // set by the handlers, the response waits until the write-ahead log record is on disk
+
+    // handler of one type of request
+    // returns the response to send back, or null if the request does not get a response
+    private interface RequestHandler{
+        Message handle(AcceptorResponseToRequest acceptor, Message request); 
+    }
 
     // Thread constructor
-    // input: CouncilMember, Socket (socket of Proposer who send the request)
+    // input: CouncilMember, ResponseChannel (connection of Proposer who send the request), Message (the request)
     // output: no
-    public AcceptorResponseToRequest(CouncilMember member, Socket socket){
-        this.senderSocket = socket; 
+    public AcceptorResponseToRequest(CouncilMember member, ResponseChannel connection, Message requestObject){
+        this.connection = connection; 
         this.member = member; 
-        try{
-            this.out = new ObjectOutputStream(socket.getOutputStream()); 
-            this.in = new ObjectInputStream(socket.getInputStream()); 
-        }
-        catch(Exception e){ 
-            System.out.println("Error when Acceptor responding to request."); 
-            e.printStackTrace(); 
-        }
+        this.requestObject = requestObject; 
     }
 
-    // this function is responsible for responding to a request from the Proposer
+    // build the dispatch table
     // input: no
-    // output: no 
-    @Override 
-    public void run(){
-        try{
-            // check the request object 
-            HashMap<String, Object> requestObject = (HashMap<String, Object>)this.in.readObject(); 
-            String requestType = (String)requestObject.get("Request-Type"); 
-            HashMap<String, Object> responseObject = new HashMap<String, Object>(); 
-            // if the request is a Prepare request
-            if(requestType.equals("Prepare")){
+    // output: RequestHandler[] (indexed by message type, null for types which are not requests)
+    private static RequestHandler[] createRequestHandlers(){
+        RequestHandler[] handlers = new RequestHandler[Message.TYPE_COUNT]; 
+        // if the request is a Prepare request
+        handlers[Message.PREPARE] = new RequestHandler(){
+            @Override
+            public Message handle(AcceptorResponseToRequest acceptor, Message request){
                 // announce that this Acceptor has received the request
-                System.out.println("Council Member " + this.member.getMemberId() + " received Prepare request from Council Member " + (int)requestObject.get("Sender-Id") + "."); 
-                int proposalId = (int)requestObject.get("Current-Proposal-Id"); 
+                EventLog.requestReceived(acceptor.member.getMemberId(), Message.PREPARE, request.getSenderId()); 
                 // call sub-function to create a response object to send back
-                responseObject = handlePrepareRequest(proposalId, requestObject); 
+                return acceptor.handlePrepareRequest((PrepareMessage)request); 
             }
-            // if the request is a Accept request 
-            else if(requestType.equals("Accept")){
+        }; 
+        // if the request is a Accept request 
+        handlers[Message.ACCEPT] = new RequestHandler(){
+            @Override
+            public Message handle(AcceptorResponseToRequest acceptor, Message request){
                 // announce that the Acceptor has received the request 
-                System.out.println("Council Member " + this.member.getMemberId() + " received Accept request from Council Member " + (int)requestObject.get("Sender-Id") + "."); 
-                Proposal proposal = (Proposal)requestObject.get("Current-Proposal"); 
+                EventLog.requestReceived(acceptor.member.getMemberId(), Message.ACCEPT, request.getSenderId()); 
                 // call sub-function to create a response object to send back 
-                responseObject = handleAcceptRequest(proposal, requestObject); 
+                return acceptor.handleAcceptRequest((AcceptMessage)request); 
             }
-            // if the request is a Decide request 
-            else if(requestType.equals("Decide")){
-                Proposal proposal = (Proposal)requestObject.get("Current-Proposal"); 
+        }; 
+        // if the request is a Decide request 
+        handlers[Message.DECIDE] = new RequestHandler(){
+            @Override
+            public Message handle(AcceptorResponseToRequest acceptor, Message request){
                 // call sub-function to handle
-                handleDecideRequest(proposal); 
+                acceptor.handleDecideRequest(((DecideMessage)request).getProposal()); 
+                // Decide does not get a response
+                return null; 
             }
-            // if the Acceptor is a Medium member, send response back 5 seconds after received the request 
-            if(this.member.getLatencyType().equals("Medium")){
-                try{
-                    Thread.sleep(MEDIUM_LATENCY); 
-                }
-                catch(Exception e){
+        }; 
+        return handlers; 
+    }
 
-                }
+    // this function is responsible for responding to a request from the Proposer
+    // input: no
+    // output: no 
+    @Override 
+    public void run(){
+        MemberMetrics metrics = this.member.getMetrics(); 
+        long cpuNanosBefore = metrics.threadCpuNanos(); 
+        long allocatedBytesBefore = metrics.threadAllocatedBytes(); 
+        try{
+            RequestHandler handler = REQUEST_HANDLERS[this.requestObject.getType()]; 
+            if(handler == null){
+                EventLog.error(this.member.getMemberId(), "Council Member " + this.member.getMemberId() + " received an unexpected message " + this.requestObject + ".", null); 
+                return; 
             }
-            // delay 15 seconds if the profile is late
-            else if(this.member.getLatencyType().equals("Late")){
-                try{
-                    Thread.sleep(LATE_LATENCY); 
-                }
-                catch(Exception e){
-
-                }
+            Message responseObject = handler.handle(this, this.requestObject); 
+            metrics.countAcceptorRequest(this.requestObject.getType(), responseObject); 
+            if(responseObject == null){
+                return; 
+            }
+            // a Promise/Accepted may only leave once the promise/acceptance is on disk
+            // the write-ahead log completes the future from its flusher thread after the group commit
+            if(this.durable != null && this.connection.answersInline() == false){
+                final Message durableResponse = responseObject; 
+                this.durable.whenComplete(new BiConsumer<Void, Throwable>(){
+                    @Override
+                    public void accept(Void result, Throwable error){
+                        if(error == null){
+                            sendResponse(durableResponse); 
+                        }
+                        else{
+                            EventLog.error(member.getMemberId(), "Error when Acceptor writing to the write-ahead log.", error); 
+                        }
+                    }
+                }); 
             }
+            else{
+                this.sendResponse(responseObject); 
+            }
+        }
+        catch(Exception e){
+            EventLog.error(this.member.getMemberId(), "Error when Acceptor responding to request.", e); 
+        }
+        finally{
+            metrics.account(MemberMetrics.ACCEPTOR, this.requestObject.getType(), cpuNanosBefore, allocatedBytesBefore); 
+        }
+    }
+
+    // send the response following the latency profile of the member
+    // input: Message (the response)
+    // output: no
+    private void sendResponse(Message responseObject){
+        try{
+            LatencyProfile latencyProfile = this.member.getLatencyProfile(); 
             // only send the message back when the latency profile is not Never
-            if(!this.member.getLatencyType().equals("Never")){
+            if(latencyProfile.responds() == false){
+                return; 
+            }
+            Transport transport = this.member.getTransport(); 
+            long delayMillis = latencyProfile.nextDelayMillis(transport.getRandom()); 
+            if(delayMillis <= 0){
                 // send response back 
-                this.out.writeObject(responseObject); 
+                this.connection.sendResponse(responseObject, this.durable); 
+            }
+            // a slow member (e.g. Medium 5s, Late 15s) sends the response from the timer
+            // so this thread is free straight away
+            else{
+                final Message delayedResponse = responseObject; 
+                final CompletableFuture<Void> delayedDurable = this.durable; 
+                transport.schedule(new Runnable(){
+                    @Override
+                    public void run(){
+                        try{
+                            connection.sendResponse(delayedResponse, delayedDurable); 
+                        }
+                        // the connection has been closed while waiting, this is acceptable
+                        catch(IOException e){
+
+                        }
+                    }
+                }, delayMillis); 
             }
-            this.out.flush(); 
-            this.senderSocket.close(); 
         }
-        // if reply late, then the socket has been closed on the server-side
+        // if reply late, then the connection may have been closed
         // this is an acceptable
-        catch(SocketException se){
+        catch(IOException e){
 
         }
-        catch(Exception e){
-            System.out.println("Error when Acceptor responding to request."); 
-            e.printStackTrace(); 
-        }
     }
 
     // Phase 1: Acceptor responses to Prepare request
     // this function will create a response to a Prepare request from the Proposer. 
-    // input: Integer (proposalId that the Proposer sent), HashMap<String, Object> (the request object sent by the Proposer) 
-    // output:HashMap<String, Object> (the response object to send back to Proposer)
-    public HashMap<String, Object> handlePrepareRequest(int proposalId, HashMap<String, Object> requestObject){
-        // acquire the lock first 
-        this.member.getLastAcceptedProposalLock().lock(); 
-        this.member.getHighestProposalIdLock().lock(); 
-        // create a response object 
-        HashMap<String, Object> prepareResponse = new HashMap<String, Object>(); 
-        prepareResponse.put("Response-Type", "Prepare"); 
-        prepareResponse.put("Sender-Id", this.member.getMemberId()); 
-        // the id of the given proposal < the highest id so far
-        // so we send reject 
-        if(this.member.getHighestProposalId() > proposalId){
-            prepareResponse.put("Status", "Reject"); 
-        }
-        // if the proposalId is the highest so far
-        else{
-            this.member.setHighestProposalId(proposalId); 
-            // if the acceptor has not accepted any proposal
-            // send Promise for the this proposal id
-            if(this.member.getLastAcceptedProposal() == null){
-                prepareResponse.put("Status", "Promise-OK"); 
-                prepareResponse.put("Current-Proposal-Id", proposalId); 
-            }
-            // if the acceptor has accepted a proposal before
-            // send promise and send the lastAcceptedProposal to the proposer
-            // so that the proposer can use the value of the lastAcceptedProposal
-            else{
-                prepareResponse.put("Status", "Promise-OK"); 
-                prepareResponse.put("Current-Proposal-Id", proposalId); 
-                prepareResponse.put("Last-Accepted-Proposal", this.member.getLastAcceptedProposal()); 
+    // input: PrepareMessage (the request sent by the Proposer) 
+    // output: Message (Promise or Reject, the response to send back to Proposer)
+    public Message handlePrepareRequest(PrepareMessage request){
+        long proposalId = request.getProposalId(); 
+        // read the current snapshot, build the next one and install it with compareAndSet
+        // if another request changed the state in between, start again from the new snapshot
+        while(true){
+            AcceptorState currentState = this.member.getAcceptorState(); 
+            // the id of the given proposal < the highest id so far
+            // so we send reject 
+            if(currentState.getPromisedId() > proposalId){
+                // tell the proposer which ballot it has to beat
+                return new RejectMessage(this.member.getMemberId(), request.getCorrelationId(), Message.PREPARE, currentState.getPromisedId(), null); 
+            }
+            // another member holds a lease granted by this acceptor, it may be answering reads without asking anyone
+            // so nobody else may win Phase 1 until the lease runs out
+            long nowNanos = this.member.getTransport().nanoTime(); 
+            if(currentState.isLeasedToOther(proposalId, nowNanos)){
+                return new RejectMessage(this.member.getMemberId(), request.getCorrelationId(), Message.PREPARE, currentState.getPromisedId(), null); 
+            }
+            // if the proposalId is the highest so far
+            // the promise covers every instance from the first instance of the request onwards
+            // with leases on, the promise (also a repeated one, which is how the leader renews) grants a lease from now
+            LeaderLease lease = this.member.getLeaderLease(); 
+            AcceptorState newState = currentState.promise(proposalId); 
+            if(lease.isEnabled()){
+                newState = currentState.promise(proposalId, nowNanos + lease.getLeaseMillis() * 1000000L); 
+            }
+            if(this.member.compareAndSetAcceptorState(currentState, newState)){
+                if(proposalId == currentState.getPromisedId()){
+                    // a repeated Prepare (a lease renewal, a retry) only moves the lease, which is not logged: no record and no fsync, 
+                    // the Promise is answered straight away unless the record of the promise is still on its way to disk
+                    this.durable = this.member.getAcceptorLog().awaitQueued(); 
+                }
+                else{
+                    // the log replays by taking the maximum, so records of concurrent requests may reach it in any order
+                    this.durable = this.member.getAcceptorLog().appendPromise(proposalId); 
+                }
+                // if the acceptor has accepted proposals in those instances
+                // send them to the proposer so that the proposer can use their values
+                return new PromiseMessage(this.member.getMemberId(), request.getCorrelationId(), proposalId, newState.getAcceptedProposalsFrom(request.getFirstInstance())); 
             }
         }
-        this.member.getLastAcceptedProposalLock().unlock(); 
-        this.member.getHighestProposalIdLock().unlock(); 
-        return prepareResponse; 
     }
     
-    // this function is responsible for creating a response object to respond to Accept request from the Proposer
-    // input: Proposal(the proposal that Proposer sent), HasMap<String, Object> (the accept request object that the Proposer sent)
-    // output: HashMap<String, Object> (the Accept response object to send back to the Proposer) 
-    public HashMap<String, Object> handleAcceptRequest(Proposal newProposal, HashMap<String, Object> requestObject){
-        // acquire the lock first 
-        this.member.getLastAcceptedProposalLock().lock(); 
-        this.member.getHighestProposalIdLock().lock(); 
-        // create response object 
-        HashMap<String, Object> acceptResponse = new HashMap<String, Object>(); 
-        acceptResponse.put("Response-Type", "Accept"); 
-        acceptResponse.put("Sender-Id", this.member.getMemberId()); 
-        // accept the proposal if the proposal has the id = the highest id has seen so far
-        if(newProposal.getID() == this.member.getHighestProposalId()){
-            this.member.setLastAcceptedProposal(newProposal); 
-            acceptResponse.put("Status", "Accept-OK"); 
-            acceptResponse.put("Accepted-Proposal", this.member.getLastAcceptedProposal()); 
-        }
-        // otherwise, reject the Accept request 
-        else{
-            acceptResponse.put("Status", "Reject"); 
+    // this function is responsible for creating a response to an Accept request from the Proposer
+    // input: AcceptMessage (the accept request that the Proposer sent)
+    // output: Message (Accepted or Reject, the response to send back to the Proposer) 
+    public Message handleAcceptRequest(AcceptMessage request){
+        Proposal newProposal = request.getProposal(); 
+        while(true){
+            AcceptorState currentState = this.member.getAcceptorState(); 
+            // reject the Accept request if the proposal id < the highest id has seen so far
+            if(newProposal.getID() < currentState.getPromisedId()){
+                // tell the proposer which ballot it has to beat and what has been accepted in the instance
+                return new RejectMessage(this.member.getMemberId(), request.getCorrelationId(), Message.ACCEPT, currentState.getPromisedId(), currentState.getAcceptedProposal(newProposal.getInstance())); 
+            }
+            // accept the proposal if the proposal id >= the highest id has seen so far
+            // the leader skips Phase 1 for later instances, so an acceptor that missed its Prepare still accepts
+            if(this.member.compareAndSetAcceptorState(currentState, currentState.accept(newProposal))){
+                this.durable = this.member.getAcceptorLog().appendAccept(newProposal); 
+                return new AcceptedMessage(this.member.getMemberId(), request.getCorrelationId(), newProposal); 
+            }
         }
-        this.member.getLastAcceptedProposalLock().unlock(); 
-        this.member.getHighestProposalIdLock().unlock(); 
-        return acceptResponse; 
     }
 
     // if the Acceptor receive a Decide request from a Proposer
     // means that there is an agreement on a value 
     // the Acceptor will not send anything back 
-    // but the Acceptor will announce which propsoser is the current leader and also which value that the majority agreed on
+    // but the Acceptor will record the decided value of the instance and announce which propsoser is the current leader and also which value that the majority agreed on
     // input: Proposal (the proposal that the Proposer sent)
     // output: no
     public void handleDecideRequest(Proposal proposal){
         String value = proposal.getValue(); 
         int memberId = proposal.getMemberID(); 
-        System.out.println("Council Member " + memberId + " is the leader with value " + value); 
+        this.member.recordDecidedProposal(proposal); 
+        EventLog.leader(this.member.getMemberId(), memberId, proposal.getInstance(), value); 
+    }
+
+    // the write-ahead log record of the last request handled, the response of that request may only be sent once it completes
+    // input: no
+    // output: CompletableFuture<Void> (null if the last request did not change the state of the acceptor)
+    public CompletableFuture<Void> getDurable(){
+        return this.durable; 
     }
 }
@@ -0,0 +1,134 @@
+import java.util.*; 
+
+// immutable snapshot of everything an Acceptor has promised and accepted
+// the member holds the current snapshot in an AtomicReference, a Prepare/Accept builds the next snapshot
+// and installs it with compareAndSet, retrying with the new snapshot if another request won the race
+// the accepted proposals are a persistent list sorted by instance (highest first): a new snapshot shares
+// every entry below the instance it changes, and the leader only accepts at the top of the log, so an Accept copies nothing
+// with leader leases on, a promise also grants the member of the ballot a lease (see LeaderLease)
+public final class AcceptorState{
+    public static final AcceptorState EMPTY = new AcceptorState(Ballot.NONE, null, false, Ballot.NONE, 0); 
+    private final long promisedId; // highest proposal id the Acceptor has seen so far (a promise covers every instance)
+    private final AcceptedEntry accepted; // accepted proposals, highest instance first, null if none
+    private final boolean leased; // whether a lease has been granted (leaseExpiresNanos is only meaningful then)
+    private final long leaseBallot; // ballot holding the lease, Ballot.NONE blocks every member (after a restart)
+    private final long leaseExpiresNanos; // Transport.nanoTime of this member when the lease runs out
+
+    // one node of the persistent list of accepted proposals
+    private static final class AcceptedEntry{
+        private final Proposal proposal; 
+        private final AcceptedEntry next; // entry of a lower instance
+
+        private AcceptedEntry(Proposal proposal, AcceptedEntry next){
+            this.proposal = proposal; 
+            this.next = next; 
+        }
+    }
+
+    private AcceptorState(long promisedId, AcceptedEntry accepted, boolean leased, long leaseBallot, long leaseExpiresNanos){
+        this.promisedId = promisedId; 
+        this.accepted = accepted; 
+        this.leased = leased; 
+        this.leaseBallot = leaseBallot; 
+        this.leaseExpiresNanos = leaseExpiresNanos; 
+    }
+
+    // build the snapshot restored from the write-ahead log
+    // input: long (highest proposal id), Map<Integer, Proposal> (accepted proposal of each instance)
+    // output: AcceptorState
+    public static AcceptorState restore(long promisedId, Map<Integer, Proposal> acceptedProposals){
+        AcceptedEntry accepted = null; 
+        // insert in ascending order so the list ends up highest instance first
+        for(Proposal proposal : new TreeMap<Integer, Proposal>(acceptedProposals).values()){
+            accepted = new AcceptedEntry(proposal, accepted); 
+        }
+        return new AcceptorState(promisedId, accepted, false, Ballot.NONE, 0); 
+    }
+
+    // promised proposal id getter
+    // input: no
+    // output: long
+    public long getPromisedId(){
+        return this.promisedId; 
+    }
+
+    // snapshot after promising a proposal id
+    // input: long (proposal id, not lower than the current promise)
+    // output: AcceptorState (this snapshot if nothing changes)
+    public AcceptorState promise(long proposalId){
+        if(proposalId == this.promisedId){
+            return this; 
+        }
+        return new AcceptorState(proposalId, this.accepted, this.leased, this.leaseBallot, this.leaseExpiresNanos); 
+    }
+
+    // snapshot after promising a proposal id and granting its member a lease
+    // input: long (proposal id, not lower than the current promise), long (Transport.nanoTime when the lease runs out)
+    // output: AcceptorState
+    public AcceptorState promise(long proposalId, long leaseExpiresNanos){
+        return new AcceptorState(proposalId, this.accepted, true, proposalId, leaseExpiresNanos); 
+    }
+
+    // snapshot which refuses every Prepare until a time, used after a restart because the leases granted before it were not logged
+    // input: long (Transport.nanoTime when Prepares are answered again)
+    // output: AcceptorState
+    public AcceptorState blockPrepares(long untilNanos){
+        return new AcceptorState(this.promisedId, this.accepted, true, Ballot.NONE, untilNanos); 
+    }
+
+    // whether a lease granted to another member forbids promising a proposal id
+    // the member holding the lease may still move to a higher ballot of its own
+    // input: long (proposal id of the Prepare), long (Transport.nanoTime now)
+    // output: boolean (true if the Prepare must be rejected)
+    public boolean isLeasedToOther(long proposalId, long nowNanos){
+        if(this.leased == false || nowNanos - this.leaseExpiresNanos >= 0){
+            return false; 
+        }
+        return this.leaseBallot == Ballot.NONE || Ballot.memberId(this.leaseBallot) != Ballot.memberId(proposalId); 
+    }
+
+    // snapshot after accepting a proposal, the promise moves up to the proposal id
+    // input: Proposal (proposal id not lower than the current promise)
+    // output: AcceptorState
+    public AcceptorState accept(Proposal proposal){
+        return new AcceptorState(Math.max(this.promisedId, proposal.getID()), insert(this.accepted, proposal), this.leased, this.leaseBallot, this.leaseExpiresNanos); 
+    }
+
+    // get the proposal accepted for a log instance
+    // input: int (log instance)
+    // output: Proposal (null if nothing accepted)
+    public Proposal getAcceptedProposal(int instance){
+        for(AcceptedEntry entry = this.accepted; entry != null && entry.proposal.getInstance() >= instance; entry = entry.next){
+            if(entry.proposal.getInstance() == instance){
+                return entry.proposal; 
+            }
+        }
+        return null; 
+    }
+
+    // get the proposals accepted from a log instance onwards (what a Promise reports)
+    // input: int (first log instance)
+    // output: TreeMap<Integer, Proposal> (by instance)
+    public TreeMap<Integer, Proposal> getAcceptedProposalsFrom(int firstInstance){
+        TreeMap<Integer, Proposal> acceptedProposals = new TreeMap<Integer, Proposal>(); 
+        for(AcceptedEntry entry = this.accepted; entry != null && entry.proposal.getInstance() >= firstInstance; entry = entry.next){
+            acceptedProposals.put(entry.proposal.getInstance(), entry.proposal); 
+        }
+        return acceptedProposals; 
+    }
+
+    // insert/replace the proposal of an instance, only the entries above that instance are copied
+    // input: AcceptedEntry (list), Proposal
+    // output: AcceptedEntry (new list)
+    private static AcceptedEntry insert(AcceptedEntry list, Proposal proposal){
+        int instance = proposal.getInstance(); 
+        if(list == null || list.proposal.getInstance() < instance){
+            return new AcceptedEntry(proposal, list); 
+        }
+        if(list.proposal.getInstance() == instance){
+            return new AcceptedEntry(proposal, list.next); 
+        }
+        return new AcceptedEntry(list.proposal, insert(list.next, proposal)); 
+    }
+
+}
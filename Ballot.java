@@ -0,0 +1,61 @@
+// ballot numbers (proposal ids) packed into a long: round number in the high bits, member id in the low 16 bits
+// two members never build the same ballot, and ballots are ordered by round first, then by member id,
+// so every member agrees on the order without a shared counter
+// a proposer picks its next ballot from the highest ballot it has observed, so it jumps past it in one step
+public final class Ballot{
+    public static final int MEMBER_BITS = 16; 
+    public static final int MAX_MEMBER_ID = (1 << MEMBER_BITS) - 1; 
+    public static final long NONE = -1; // lower than every ballot, used when there is no ballot yet
+
+    private Ballot(){
+
+    }
+
+    // pack a round number and a member id
+    // input: long (round, >= 0), int (member id, 0..MAX_MEMBER_ID)
+    // output: long (ballot)
+    public static long of(long round, int memberId){
+        if(memberId < 0 || memberId > MAX_MEMBER_ID){
+            throw new IllegalArgumentException("Member id " + memberId + " does not fit in a ballot"); 
+        }
+        return (round << MEMBER_BITS) | memberId; 
+    }
+
+    // round number of a ballot
+    // input: long (ballot)
+    // output: long
+    public static long round(long ballot){
+        return ballot >> MEMBER_BITS; 
+    }
+
+    // member id of a ballot
+    // input: long (ballot)
+    // output: int
+    public static int memberId(long ballot){
+        return (int)(ballot & MAX_MEMBER_ID); 
+    }
+
+    // the lowest ballot of a member which is higher than a ballot it has observed
+    // input: long (highest ballot observed, NONE if none), int (member id)
+    // output: long (new ballot)
+    public static long next(long observed, int memberId){
+        if(observed == NONE){
+            return of(1, memberId); 
+        }
+        long ballot = of(round(observed), memberId); 
+        if(ballot > observed){
+            return ballot; 
+        }
+        return of(round(observed) + 1, memberId); 
+    }
+
+    // readable form of a ballot: round.memberId
+    // input: long (ballot)
+    // output: String
+    public static String toString(long ballot){
+        if(ballot == NONE){
+            return "none"; 
+        }
+        return round(ballot) + "." + memberId(ballot); 
+    }
+}
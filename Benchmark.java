@@ -0,0 +1,119 @@
+import java.util.*; 
+import java.util.concurrent.*; 
+
+// one benchmark of the suite in PaxosBenchmarks, measured by BenchmarkRunner the way JMH measures a benchmark method:
+// setUp once, then every benchmark thread calls operation in a loop through the warmup and measurement iterations, then tearDown
+// the mode says what is reported:
+// thrpt: operations per time unit over all threads (hot paths that take nanoseconds)
+// avgt: time of one operation
+// sample: time of one operation, every operation is timed on its own so the result has latency percentiles (whole rounds)
+public abstract class Benchmark{
+    public static final String THROUGHPUT = "thrpt"; 
+    public static final String AVERAGE_TIME = "avgt"; 
+    public static final String SAMPLE_TIME = "sample"; 
+    private final String name; 
+    private final String mode; 
+    private final TimeUnit timeUnit; // unit of the score: operations per unit (thrpt) or units per operation (avgt, sample)
+    private final LinkedHashMap<String, String> params; // parameters of this variant, e.g. members=9, written with the result
+
+    // Benchmark constructor
+    // input: String (name, e.g. acceptor.handlePrepareRequest), String (mode: THROUGHPUT/AVERAGE_TIME/SAMPLE_TIME), TimeUnit (unit of the score)
+    // output: no
+    public Benchmark(String name, String mode, TimeUnit timeUnit){
+        if(mode.equals(THROUGHPUT) == false && mode.equals(AVERAGE_TIME) == false && mode.equals(SAMPLE_TIME) == false){
+            throw new IllegalArgumentException("Unknown benchmark mode " + mode); 
+        }
+        this.name = name; 
+        this.mode = mode; 
+        this.timeUnit = timeUnit; 
+        this.params = new LinkedHashMap<String, String>(); 
+    }
+
+    // add a parameter of this variant
+    // input: String (parameter name), Object (value)
+    // output: Benchmark (this benchmark, so parameters can be chained)
+    public Benchmark param(String key, Object value){
+        this.params.put(key, String.valueOf(value)); 
+        return this; 
+    }
+
+    // prepare the state shared by the benchmark threads, nothing is measured here
+    // input: int (number of benchmark threads)
+    // output: no
+    public void setUp(int threadCount) throws Exception{
+
+    }
+
+    // one operation, called in a loop by every benchmark thread
+    // input: int (index of the benchmark thread, 0 to threadCount - 1)
+    // output: Object (result of the operation, the runner keeps it so that the JIT cannot drop the work)
+    public abstract Object operation(int threadIndex) throws Exception; 
+
+    // release what setUp created
+    // input: no
+    // output: no
+    public void tearDown() throws Exception{
+
+    }
+
+    // name getter
+    // input: no
+    // output: String
+    public String getName(){
+        return this.name; 
+    }
+
+    // mode getter
+    // input: no
+    // output: String
+    public String getMode(){
+        return this.mode; 
+    }
+
+    // time unit getter
+    // input: no
+    // output: TimeUnit
+    public TimeUnit getTimeUnit(){
+        return this.timeUnit; 
+    }
+
+    // unit of the score in the format of JMH, e.g. ops/s or us/op
+    // input: no
+    // output: String
+    public String getScoreUnit(){
+        if(this.mode.equals(THROUGHPUT)){
+            return "ops/" + unitSymbol(this.timeUnit); 
+        }
+        return unitSymbol(this.timeUnit) + "/op"; 
+    }
+
+    // parameters getter
+    // input: no
+    // output: LinkedHashMap<String, String>
+    public LinkedHashMap<String, String> getParams(){
+        return this.params; 
+    }
+
+    // input: TimeUnit
+    // output: String (ns, us, ms, s, min, hr or day)
+    private static String unitSymbol(TimeUnit timeUnit){
+        switch(timeUnit){
+            case NANOSECONDS: return "ns"; 
+            case MICROSECONDS: return "us"; 
+            case MILLISECONDS: return "ms"; 
+            case SECONDS: return "s"; 
+            case MINUTES: return "min"; 
+            case HOURS: return "hr"; 
+            default: return "day"; 
+        }
+    }
+
+    @Override
+    public String toString(){
+        if(this.params.isEmpty()){
+            return this.name; 
+        }
+        return this.name + this.params; 
+    }
+
+}
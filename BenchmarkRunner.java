@@ -0,0 +1,402 @@
+import java.util.*; 
+import java.util.concurrent.*; 
+import java.util.concurrent.atomic.*; 
+import java.io.*; 
+
+// runs benchmarks the way JMH does in one fork: warmup iterations that are thrown away, then measurement iterations of a fixed time
+// every thread counts its own operations and the time until its last operation of the iteration ended,
+// so an operation still running when the iteration ends (a whole round can take milliseconds) is counted and not cut off
+// the results are written in the JSON format of JMH (one object per benchmark and thread count, score with a 99.9% confidence interval,
+// percentiles and the raw score of every iteration) so they can be compared across runs with the tools made for JMH results
+public class BenchmarkRunner{
+    public static final int DEFAULT_WARMUP_ITERATIONS = 3; 
+    public static final int DEFAULT_MEASUREMENT_ITERATIONS = 5; 
+    public static final long DEFAULT_ITERATION_MILLIS = 1000; 
+    private static final int PADDING = 16; // the counters of two threads are this many longs apart, so they are not in the same cache line
+    private static final double[] PERCENTILES = {0.0, 50.0, 90.0, 95.0, 99.0, 99.9, 99.99, 99.999, 99.9999, 100.0}; 
+    // two-sided 99.9% quantiles of Student's t distribution for 1 to 30 degrees of freedom
+    private static final double[] T_QUANTILES = {636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+        4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850, 3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646}; 
+    private final int warmupIterations; 
+    private final int measurementIterations; 
+    private final long iterationMillis; 
+    private final ArrayList<Result> resultList; // results of every run so far, in the order they ran
+
+    // the result of one benchmark with one thread count
+    public static class Result{
+        private final Benchmark benchmark; 
+        private final int threadCount; 
+        private final double[] scores; // score of every measurement iteration
+        private final double[] samples; // time of every measured operation in the unit of the benchmark (sample mode only, else empty)
+
+        // Result constructor
+        // input: Benchmark, int (thread count), double[] (iteration scores), double[] (operation times, sample mode)
+        // output: no
+        public Result(Benchmark benchmark, int threadCount, double[] scores, double[] samples){
+            this.benchmark = benchmark; 
+            this.threadCount = threadCount; 
+            this.scores = scores; 
+            this.samples = samples; 
+        }
+
+        // the score: mean over the measurement iterations, mean over every operation in sample mode
+        // input: no
+        // output: double
+        public double getScore(){
+            return mean(this.samples.length > 0 ? this.samples : this.scores); 
+        }
+
+        // half width of the 99.9% confidence interval of the score, NaN with one iteration
+        // input: no
+        // output: double
+        public double getScoreError(){
+            double[] values = this.samples.length > 0 ? this.samples : this.scores; 
+            if(values.length < 2){
+                return Double.NaN; 
+            }
+            double mean = mean(values); 
+            double squares = 0; 
+            for(int i = 0; i < values.length; i++){
+                squares += (values[i] - mean) * (values[i] - mean); 
+            }
+            double standardDeviation = Math.sqrt(squares / (values.length - 1)); 
+            return tQuantile(values.length - 1) * standardDeviation / Math.sqrt(values.length); 
+        }
+
+        // value below which the given percentage of the iteration scores (operation times in sample mode) are
+        // input: double (percentage, 0 to 100)
+        // output: double
+        public double getPercentile(double percentage){
+            double[] values = (this.samples.length > 0 ? this.samples : this.scores).clone(); 
+            Arrays.sort(values); 
+            if(values.length == 0){
+                return Double.NaN; 
+            }
+            // linear interpolation between the closest ranks
+            double rank = percentage / 100.0 * (values.length - 1); 
+            int lower = (int)Math.floor(rank); 
+            int upper = Math.min(values.length - 1, lower + 1); 
+            return values[lower] + (rank - lower) * (values[upper] - values[lower]); 
+        }
+
+        // benchmark getter
+        // input: no
+        // output: Benchmark
+        public Benchmark getBenchmark(){
+            return this.benchmark; 
+        }
+
+        // thread count getter
+        // input: no
+        // output: int
+        public int getThreadCount(){
+            return this.threadCount; 
+        }
+
+        // number of measured operations (sample mode only)
+        // input: no
+        // output: int
+        public int getSampleCount(){
+            return this.samples.length; 
+        }
+
+        @Override
+        public String toString(){
+            String line = String.format("%-60s %3d threads %6s %14.3f +- %10.3f %s", this.benchmark, this.threadCount, this.benchmark.getMode(),
+                this.getScore(), this.getScoreError(), this.benchmark.getScoreUnit()); 
+            if(this.samples.length > 0){
+                line += String.format(", p50 %.3f, p99 %.3f, p99.9 %.3f over %d operations", this.getPercentile(50), this.getPercentile(99), this.getPercentile(99.9), this.samples.length); 
+            }
+            return line; 
+        }
+    }
+
+    // BenchmarkRunner constructor
+    // input: int (warmup iterations), int (measurement iterations), long (length of an iteration in milliseconds)
+    // output: no
+    public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis){
+        if(warmupIterations < 0 || measurementIterations < 1 || iterationMillis < 1){
+            throw new IllegalArgumentException("Invalid benchmark iterations " + warmupIterations + "/" + measurementIterations + " of " + iterationMillis + " ms"); 
+        }
+        this.warmupIterations = warmupIterations; 
+        this.measurementIterations = measurementIterations; 
+        this.iterationMillis = iterationMillis; 
+        this.resultList = new ArrayList<Result>(); 
+    }
+
+    // the runner configured with the paxos.benchmark.warmupIterations, paxos.benchmark.measurementIterations and paxos.benchmark.iterationMillis properties
+    // input: no
+    // output: BenchmarkRunner
+    public static BenchmarkRunner fromSystemProperty(){
+        return new BenchmarkRunner(Integer.getInteger("paxos.benchmark.warmupIterations", DEFAULT_WARMUP_ITERATIONS),
+            Integer.getInteger("paxos.benchmark.measurementIterations", DEFAULT_MEASUREMENT_ITERATIONS),
+            Long.getLong("paxos.benchmark.iterationMillis", DEFAULT_ITERATION_MILLIS)); 
+    }
+
+    // run a benchmark with a number of threads, the result is kept for writeJson
+    // input: Benchmark, int (number of benchmark threads)
+    // output: Result
+    public Result run(final Benchmark benchmark, final int threadCount) throws Exception{
+        final boolean sampling = benchmark.getMode().equals(Benchmark.SAMPLE_TIME); 
+        final long[] operationCounts = new long[threadCount * PADDING]; 
+        final long[] busyNanos = new long[threadCount * PADDING]; 
+        final Object[] sink = new Object[threadCount * PADDING]; // last result of every thread
+        final ArrayList<ArrayList<Long>> sampleLists = new ArrayList<ArrayList<Long>>(); 
+        final AtomicBoolean running = new AtomicBoolean(false); 
+        final AtomicBoolean measuring = new AtomicBoolean(false); 
+        final AtomicBoolean finished = new AtomicBoolean(false); 
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>(null); 
+        // every iteration starts when all threads and the runner reached the barrier, and ends the same way
+        final CyclicBarrier barrier = new CyclicBarrier(threadCount + 1); 
+        for(int t = 0; t < threadCount; t++){
+            sampleLists.add(new ArrayList<Long>()); 
+        }
+        benchmark.setUp(threadCount); 
+        ArrayList<Thread> threadList = new ArrayList<Thread>(); 
+        try{
+            for(int t = 0; t < threadCount; t++){
+                final int threadIndex = t; 
+                Thread thread = new Thread(new Runnable(){
+                    @Override
+                    public void run(){
+                        int slot = threadIndex * PADDING; 
+                        ArrayList<Long> sampleList = sampleLists.get(threadIndex); 
+                        try{
+                            while(true){
+                                barrier.await(); 
+                                if(finished.get()){
+                                    return; 
+                                }
+                                long operations = 0; 
+                                long start = System.nanoTime(); 
+                                long end = start; 
+                                while(running.get() && failure.get() == null){
+                                    // a failed operation ends the iteration of every thread, the threads still meet at the barrier
+                                    try{
+                                        sink[slot] = benchmark.operation(threadIndex); 
+                                    }
+                                    catch(Exception e){
+                                        failure.compareAndSet(null, e); 
+                                        break; 
+                                    }
+                                    operations++; 
+                                    if(sampling){
+                                        long now = System.nanoTime(); 
+                                        if(measuring.get()){
+                                            sampleList.add(now - end); 
+                                        }
+                                        end = now; 
+                                    }
+                                }
+                                if(sampling == false){
+                                    end = System.nanoTime(); 
+                                }
+                                operationCounts[slot] = operations; 
+                                busyNanos[slot] = end - start; 
+                                barrier.await(); 
+                            }
+                        }
+                        catch(InterruptedException | BrokenBarrierException e){
+                            failure.compareAndSet(null, e); 
+                        }
+                    }
+                }, "benchmark-" + threadIndex); 
+                thread.setDaemon(true); 
+                threadList.add(thread); 
+                thread.start(); 
+            }
+            double[] scores = new double[this.measurementIterations]; 
+            for(int i = 0; i < this.warmupIterations + this.measurementIterations; i++){
+                boolean measured = i >= this.warmupIterations; 
+                measuring.set(measured); 
+                running.set(true); 
+                barrier.await(); 
+                Thread.sleep(this.iterationMillis); 
+                running.set(false); 
+                barrier.await(); 
+                if(failure.get() != null){
+                    break; 
+                }
+                if(measured){
+                    scores[i - this.warmupIterations] = this.score(benchmark, threadCount, operationCounts, busyNanos); 
+                }
+            }
+            finished.set(true); 
+            barrier.await(); 
+            if(failure.get() != null){
+                throw failure.get(); 
+            }
+            double[] samples = new double[0]; 
+            if(sampling){
+                ArrayList<Long> allSamples = new ArrayList<Long>(); 
+                for(int t = 0; t < threadCount; t++){
+                    allSamples.addAll(sampleLists.get(t)); 
+                }
+                samples = new double[allSamples.size()]; 
+                double nanosPerUnit = benchmark.getTimeUnit().toNanos(1); 
+                for(int i = 0; i < samples.length; i++){
+                    samples[i] = allSamples.get(i) / nanosPerUnit; 
+                }
+            }
+            Result result = new Result(benchmark, threadCount, scores, samples); 
+            this.resultList.add(result); 
+            return result; 
+        }
+        finally{
+            finished.set(true); 
+            running.set(false); 
+            for(int t = 0; t < threadList.size(); t++){
+                threadList.get(t).join(10000); 
+            }
+            benchmark.tearDown(); 
+        }
+    }
+
+    // score of one iteration from the operations and busy time of every thread
+    // input: Benchmark, int (thread count), long[] (operations of every thread), long[] (busy nanoseconds of every thread)
+    // output: double
+    private double score(Benchmark benchmark, int threadCount, long[] operationCounts, long[] busyNanos){
+        double nanosPerUnit = benchmark.getTimeUnit().toNanos(1); 
+        double operations = 0; 
+        double totalNanos = 0; 
+        double throughput = 0; 
+        for(int t = 0; t < threadCount; t++){
+            int slot = t * PADDING; 
+            operations += operationCounts[slot]; 
+            totalNanos += busyNanos[slot]; 
+            if(busyNanos[slot] > 0){
+                throughput += operationCounts[slot] * nanosPerUnit / busyNanos[slot]; 
+            }
+        }
+        if(benchmark.getMode().equals(Benchmark.THROUGHPUT)){
+            return throughput; 
+        }
+        return operations == 0 ? Double.NaN : totalNanos / operations / nanosPerUnit; 
+    }
+
+    // results getter
+    // input: no
+    // output: ArrayList<Result>
+    public ArrayList<Result> getResultList(){
+        return this.resultList; 
+    }
+
+    // write every result so far in the JSON format of JMH
+    // input: String (file location)
+    // output: no
+    public void writeJson(String fileLocation) throws IOException{
+        StringBuilder json = new StringBuilder(); 
+        json.append("[\n"); 
+        for(int r = 0; r < this.resultList.size(); r++){
+            Result result = this.resultList.get(r); 
+            Benchmark benchmark = result.getBenchmark(); 
+            json.append("    {\n"); 
+            json.append("        \"benchmark\" : ").append(quote(benchmark.getName())).append(",\n"); 
+            json.append("        \"mode\" : ").append(quote(benchmark.getMode())).append(",\n"); 
+            json.append("        \"threads\" : ").append(result.getThreadCount()).append(",\n"); 
+            json.append("        \"forks\" : 0,\n"); 
+            json.append("        \"jvm\" : ").append(quote(System.getProperty("java.home"))).append(",\n"); 
+            json.append("        \"jdkVersion\" : ").append(quote(System.getProperty("java.version"))).append(",\n"); 
+            json.append("        \"vmName\" : ").append(quote(System.getProperty("java.vm.name"))).append(",\n"); 
+            json.append("        \"vmVersion\" : ").append(quote(System.getProperty("java.vm.version"))).append(",\n"); 
+            json.append("        \"warmupIterations\" : ").append(this.warmupIterations).append(",\n"); 
+            json.append("        \"warmupTime\" : ").append(quote(this.iterationMillis + " ms")).append(",\n"); 
+            json.append("        \"measurementIterations\" : ").append(this.measurementIterations).append(",\n"); 
+            json.append("        \"measurementTime\" : ").append(quote(this.iterationMillis + " ms")).append(",\n"); 
+            if(benchmark.getParams().isEmpty() == false){
+                json.append("        \"params\" : {\n"); 
+                Iterator<Map.Entry<String, String>> iterator = benchmark.getParams().entrySet().iterator(); 
+                while(iterator.hasNext()){
+                    Map.Entry<String, String> param = iterator.next(); 
+                    json.append("            ").append(quote(param.getKey())).append(" : ").append(quote(param.getValue())).append(iterator.hasNext() ? ",\n" : "\n"); 
+                }
+                json.append("        },\n"); 
+            }
+            double score = result.getScore(); 
+            double error = result.getScoreError(); 
+            json.append("        \"primaryMetric\" : {\n"); 
+            json.append("            \"score\" : ").append(number(score)).append(",\n"); 
+            json.append("            \"scoreError\" : ").append(number(error)).append(",\n"); 
+            json.append("            \"scoreConfidence\" : [").append(number(score - error)).append(", ").append(number(score + error)).append("],\n"); 
+            json.append("            \"scorePercentiles\" : {\n"); 
+            for(int p = 0; p < PERCENTILES.length; p++){
+                json.append("                ").append(quote(String.valueOf(PERCENTILES[p]))).append(" : ").append(number(result.getPercentile(PERCENTILES[p])))
+                    .append(p + 1 < PERCENTILES.length ? ",\n" : "\n"); 
+            }
+            json.append("            },\n"); 
+            json.append("            \"scoreUnit\" : ").append(quote(benchmark.getScoreUnit())).append(",\n"); 
+            if(result.getSampleCount() > 0){
+                json.append("            \"sampleCount\" : ").append(result.getSampleCount()).append(",\n"); 
+            }
+            json.append("            \"rawData\" : [["); 
+            for(int i = 0; i < result.scores.length; i++){
+                json.append(i > 0 ? ", " : "").append(number(result.scores[i])); 
+            }
+            json.append("]]\n"); 
+            json.append("        },\n"); 
+            json.append("        \"secondaryMetrics\" : {}\n"); 
+            json.append(r + 1 < this.resultList.size() ? "    },\n" : "    }\n"); 
+        }
+        json.append("]\n"); 
+        File file = new File(fileLocation); 
+        if(file.getParentFile() != null){
+            file.getParentFile().mkdirs(); 
+        }
+        PrintWriter printWriter = new PrintWriter(new FileWriter(file)); 
+        printWriter.print(json); 
+        printWriter.close(); 
+    }
+
+    // input: double[]
+    // output: double
+    private static double mean(double[] values){
+        double sum = 0; 
+        for(int i = 0; i < values.length; i++){
+            sum += values[i]; 
+        }
+        return values.length == 0 ? Double.NaN : sum / values.length; 
+    }
+
+    // two-sided 99.9% quantile of Student's t distribution
+    // beyond the table the first terms of the Cornish-Fisher expansion around the normal quantile are close enough
+    // input: int (degrees of freedom, at least 1)
+    // output: double
+    private static double tQuantile(int degreesOfFreedom){
+        if(degreesOfFreedom <= T_QUANTILES.length){
+            return T_QUANTILES[degreesOfFreedom - 1]; 
+        }
+        double z = 3.2905; 
+        return z + (z * z * z + z) / (4.0 * degreesOfFreedom) + (5 * Math.pow(z, 5) + 16 * z * z * z + 3 * z) / (96.0 * degreesOfFreedom * degreesOfFreedom); 
+    }
+
+    // JSON string
+    // input: String
+    // output: String
+    private static String quote(String value){
+        StringBuilder quoted = new StringBuilder("\""); 
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i); 
+            if(c == '"' || c == '\\'){
+                quoted.append('\\').append(c); 
+            }
+            else if(c < 0x20){
+                quoted.append(String.format("\\u%04x", (int)c)); 
+            }
+            else{
+                quoted.append(c); 
+            }
+        }
+        return quoted.append('"').toString(); 
+    }
+
+    // JSON number, JMH writes NaN as a string as JSON has no NaN
+    // input: double
+    // output: String
+    private static String number(double value){
+        if(Double.isNaN(value) || Double.isInfinite(value)){
+            return "\"NaN\""; 
+        }
+        return String.valueOf(value); 
+    }
+
+}
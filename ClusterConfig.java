@@ -0,0 +1,202 @@
+import java.io.*; 
+import java.nio.charset.*; 
+import java.nio.file.*; 
+import java.util.*; 
+
+// the members of a cluster, read once from a cluster file so that every member can run in its own process
+// one member per line, fields separated by spaces, '#' starts a comment:
+//   <member id> <hostname> <port> [weight] [latency profile]
+// e.g.
+//   1 localhost 2001
+//   2 10.0.0.2  2001 1 Medium
+// the order of the lines is the order of the connection pool of every member, so all members must use the same file
+// weight is reserved for weighted quorums: the quorum is still a majority of members, so only 1 is accepted for now
+// the latency profile is the one the member runs with (see LatencyProfile.parse), Immediate by default
+public class ClusterConfig{
+    public static final String DEFAULT_LATENCY = "Immediate"; 
+    private final ArrayList<Peer> peerList; // members in the order of the file
+
+    // one member of the cluster
+    public static class Peer{
+        private final int memberId; 
+        private final String hostname; 
+        private final int port; 
+        private final int weight; 
+        private final String latencyType; 
+
+        // Peer constructor
+        // input: int (member id), String (hostname), int (port), int (weight), String (latency profile)
+        // output: no
+        public Peer(int memberId, String hostname, int port, int weight, String latencyType){
+            this.memberId = memberId; 
+            this.hostname = hostname; 
+            this.port = port; 
+            this.weight = weight; 
+            this.latencyType = latencyType; 
+        }
+
+        // input: no
+        // output: int
+        public int getMemberId(){
+            return this.memberId; 
+        }
+
+        // input: no
+        // output: String
+        public String getHostname(){
+            return this.hostname; 
+        }
+
+        // input: no
+        // output: int
+        public int getPort(){
+            return this.port; 
+        }
+
+        // input: no
+        // output: int
+        public int getWeight(){
+            return this.weight; 
+        }
+
+        // input: no
+        // output: String
+        public String getLatencyType(){
+            return this.latencyType; 
+        }
+
+        // server socket info of the member
+        // input: no
+        // output: String ("hostname:port")
+        public String getAddress(){
+            return this.hostname + ":" + this.port; 
+        }
+
+        @Override
+        public String toString(){
+            return this.memberId + " " + this.hostname + " " + this.port + " " + this.weight + " " + this.latencyType; 
+        }
+    }
+
+    // ClusterConfig constructor
+    // input: List<Peer> (members of the cluster, ids and addresses must be unique)
+    // output: no
+    public ClusterConfig(List<Peer> peers){
+        if(peers.isEmpty()){
+            throw new IllegalArgumentException("A cluster needs at least one member"); 
+        }
+        HashSet<Integer> ids = new HashSet<Integer>(); 
+        HashSet<String> addresses = new HashSet<String>(); 
+        for(int i = 0; i < peers.size(); i++){
+            Peer peer = peers.get(i); 
+            if(peer.memberId <= 0 || ids.add(peer.memberId) == false){
+                throw new IllegalArgumentException("Member id " + peer.memberId + " is not positive or not unique"); 
+            }
+            if(addresses.add(peer.getAddress()) == false){
+                throw new IllegalArgumentException("Address " + peer.getAddress() + " is used by two members"); 
+            }
+            if(peer.weight != 1){
+                throw new IllegalArgumentException("Member " + peer.memberId + " has weight " + peer.weight + ", only weight 1 is supported"); 
+            }
+            LatencyProfile.parse(peer.latencyType); 
+        }
+        this.peerList = new ArrayList<Peer>(peers); 
+    }
+
+    // read a cluster file
+    // input: String (path of the file)
+    // output: ClusterConfig
+    public static ClusterConfig load(String path) throws IOException{
+        List<String> lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8); 
+        ArrayList<Peer> peers = new ArrayList<Peer>(); 
+        for(int i = 0; i < lines.size(); i++){
+            String line = lines.get(i); 
+            int comment = line.indexOf('#'); 
+            if(comment >= 0){
+                line = line.substring(0, comment); 
+            }
+            line = line.trim(); 
+            if(line.isEmpty()){
+                continue; 
+            }
+            String[] fields = line.split("\\s+"); 
+            if(fields.length < 3 || fields.length > 5){
+                throw new IOException(path + ":" + (i + 1) + ": expected <member id> <hostname> <port> [weight] [latency profile]"); 
+            }
+            try{
+                int weight = fields.length > 3 ? Integer.parseInt(fields[3]) : 1; 
+                String latencyType = fields.length > 4 ? fields[4] : DEFAULT_LATENCY; 
+                peers.add(new Peer(Integer.parseInt(fields[0]), fields[1], Integer.parseInt(fields[2]), weight, latencyType)); 
+            }
+            catch(NumberFormatException e){
+                throw new IOException(path + ":" + (i + 1) + ": " + e.getMessage()); 
+            }
+        }
+        try{
+            return new ClusterConfig(peers); 
+        }
+        catch(IllegalArgumentException e){
+            throw new IOException(path + ": " + e.getMessage()); 
+        }
+    }
+
+    // a cluster of members on this machine, member i listens on port firstPort + i - 1
+    // input: int (number of members), String (hostname), int (port of member 1), String (latency profile of every member)
+    // output: ClusterConfig
+    public static ClusterConfig local(int memberCount, String hostname, int firstPort, String latencyType){
+        ArrayList<Peer> peers = new ArrayList<Peer>(); 
+        for(int i = 1; i <= memberCount; i++){
+            peers.add(new Peer(i, hostname, firstPort + i - 1, 1, latencyType)); 
+        }
+        return new ClusterConfig(peers); 
+    }
+
+    // write the cluster file
+    // input: String (path of the file)
+    // output: no
+    public void save(String path) throws IOException{
+        StringBuilder text = new StringBuilder("# member id, hostname, port, weight, latency profile\n"); 
+        for(int i = 0; i < this.peerList.size(); i++){
+            text.append(this.peerList.get(i)).append('\n'); 
+        }
+        Files.write(Paths.get(path), text.toString().getBytes(StandardCharsets.UTF_8)); 
+    }
+
+    // the member with an id
+    // input: int (member id)
+    // output: Peer
+    public Peer getMember(int memberId){
+        for(int i = 0; i < this.peerList.size(); i++){
+            if(this.peerList.get(i).memberId == memberId){
+                return this.peerList.get(i); 
+            }
+        }
+        throw new IllegalArgumentException("Member " + memberId + " is not in the cluster"); 
+    }
+
+    // the members in the order of the file
+    // input: no
+    // output: List<Peer>
+    public List<Peer> getMembers(){
+        return Collections.unmodifiableList(this.peerList); 
+    }
+
+    // server socket info of every member, in the order of the file (the memberServerSocketList of CouncilMember)
+    // input: no
+    // output: ArrayList<String>
+    public ArrayList<String> getAddresses(){
+        ArrayList<String> addresses = new ArrayList<String>(); 
+        for(int i = 0; i < this.peerList.size(); i++){
+            addresses.add(this.peerList.get(i).getAddress()); 
+        }
+        return addresses; 
+    }
+
+    // number of members
+    // input: no
+    // output: int
+    public int size(){
+        return this.peerList.size(); 
+    }
+
+}
@@ -0,0 +1,168 @@
+import java.io.*; 
+import java.util.*; 
+import java.util.concurrent.*; 
+
+// starts a cluster of member processes on this machine:
+// java ClusterLauncher [members=5] [firstPort=2001] [latency=Immediate] [file=<cluster file>] [propose=0] [clean=true] [jvm="-Xmx256m -Xlog:gc"]
+// (or CouncilMember cluster ...)
+// without a file, Log/cluster.txt is written for members 1..n on localhost, firstPort onwards, with the given latency profile;
+// a given file is used as it is (its local members are started, the others are expected to be started elsewhere)
+// clean=true deletes the write-ahead logs and decided values of earlier runs first, so the members start empty
+// every member runs in its own JVM (MemberProcess) with the jvm options, its output goes to Log/member-<id>.out
+// with propose=<n> the first local member of the file proposes n values; the launcher waits for it, prints its report and stops the others,
+// otherwise the members run until the launcher is stopped
+public class ClusterLauncher{
+    public static final int DEFAULT_MEMBERS = 5; 
+    public static final String DEFAULT_FILE = AcceptorLog.LOG_DIRECTORY + "/cluster.txt"; 
+    public static final int DEFAULT_FIRST_PORT = 2001; 
+    private final ArrayList<Process> processList = new ArrayList<Process>(); 
+
+    public static void main(String args[]){
+        HashMap<String, String> options = new HashMap<String, String>(); 
+        for(int i = 0; i < args.length; i++){
+            int separator = args[i].indexOf('='); 
+            if(separator <= 0){
+                System.out.println("Invalid option " + args[i] + ", options are written as key=value."); 
+                System.exit(2); 
+            }
+            options.put(args[i].substring(0, separator), args[i].substring(separator + 1)); 
+        }
+        String file = options.getOrDefault("file", DEFAULT_FILE); 
+        boolean clean = Boolean.parseBoolean(options.getOrDefault("clean", "true")); 
+        int valueCount = Integer.parseInt(options.getOrDefault("propose", "0")); 
+        String jvmOptions = options.getOrDefault("jvm", "").trim(); 
+        ClusterConfig cluster; 
+        try{
+            if(options.containsKey("file") == false){
+                int memberCount = Integer.parseInt(options.getOrDefault("members", Integer.toString(DEFAULT_MEMBERS))); 
+                int firstPort = Integer.parseInt(options.getOrDefault("firstPort", Integer.toString(DEFAULT_FIRST_PORT))); 
+                cluster = ClusterConfig.local(memberCount, "localhost", firstPort, options.getOrDefault("latency", ClusterConfig.DEFAULT_LATENCY)); 
+                new File(file).getAbsoluteFile().getParentFile().mkdirs(); 
+                cluster.save(file); 
+            }
+            else{
+                cluster = ClusterConfig.load(file); 
+            }
+        }
+        catch(Exception e){
+            System.out.println("Cannot read the cluster file " + file + ": " + e.getMessage()); 
+            System.exit(2); 
+            return; 
+        }
+        final ClusterLauncher launcher = new ClusterLauncher(); 
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable(){
+            @Override
+            public void run(){
+                launcher.stopAll(); 
+            }
+        })); 
+        if(clean){
+            AcceptorLog.deleteLogs(AcceptorLog.LOG_DIRECTORY); 
+            DecidedValueStore.deleteStores(AcceptorLog.LOG_DIRECTORY); 
+        }
+        System.exit(launcher.run(cluster, file, jvmOptions, valueCount)); 
+    }
+
+    // start the local members of a cluster and wait for them
+    // input: ClusterConfig, String (path of its cluster file), String (options of every member JVM), int (values member 1 proposes, 0 for none)
+    // output: int (exit code: 0, or 1 if a member could not be started or the proposals failed)
+    public int run(ClusterConfig cluster, String file, String jvmOptions, int valueCount){
+        new File(AcceptorLog.LOG_DIRECTORY).mkdirs(); 
+        Process proposer = null; 
+        int proposerId = 0; 
+        List<ClusterConfig.Peer> peers = cluster.getMembers(); 
+        try{
+            for(int i = 0; i < peers.size(); i++){
+                ClusterConfig.Peer peer = peers.get(i); 
+                if(isLocal(peer.getHostname()) == false){
+                    continue; 
+                }
+                boolean proposes = valueCount > 0 && proposer == null; 
+                Process process = this.start(file, peer.getMemberId(), jvmOptions, proposes ? valueCount : 0); 
+                if(proposes){
+                    proposer = process; 
+                    proposerId = peer.getMemberId(); 
+                }
+            }
+            System.out.println("Started " + this.processList.size() + " member processes from " + file + ", output in " + AcceptorLog.LOG_DIRECTORY + "/member-<id>.out"); 
+            if(proposer == null){
+                // run until the launcher is stopped, or until every member has exited
+                for(int i = 0; i < this.processList.size(); i++){
+                    this.processList.get(i).waitFor(); 
+                }
+                return 0; 
+            }
+            int exitCode = proposer.waitFor(); 
+            this.stopAll(); 
+            // the report of the proposer is its line starting with "Member "
+            List<String> lines = java.nio.file.Files.readAllLines(new File(AcceptorLog.LOG_DIRECTORY, "member-" + proposerId + ".out").toPath()); 
+            for(int i = 0; i < lines.size(); i++){
+                if(lines.get(i).startsWith("Member ")){
+                    System.out.println(lines.get(i)); 
+                }
+            }
+            return exitCode == 0 ? 0 : 1; 
+        }
+        catch(Exception e){
+            System.out.println("Error when running the member processes: " + e); 
+            this.stopAll(); 
+            return 1; 
+        }
+    }
+
+    // start one member process
+    // input: String (cluster file), int (member id), String (JVM options), int (values to propose, 0 for none)
+    // output: Process
+    private Process start(String file, int memberId, String jvmOptions, int valueCount) throws IOException{
+        ArrayList<String> command = new ArrayList<String>(); 
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java"); 
+        if(jvmOptions.isEmpty() == false){
+            command.addAll(Arrays.asList(jvmOptions.split("\\s+"))); 
+        }
+        command.add("-cp"); 
+        command.add(System.getProperty("java.class.path")); 
+        command.add("MemberProcess"); 
+        command.add(file); 
+        command.add(Integer.toString(memberId)); 
+        if(valueCount > 0){
+            command.add("propose=" + valueCount); 
+        }
+        ProcessBuilder builder = new ProcessBuilder(command); 
+        builder.redirectErrorStream(true); 
+        builder.redirectOutput(new File(AcceptorLog.LOG_DIRECTORY, "member-" + memberId + ".out")); 
+        Process process = builder.start(); 
+        synchronized(this.processList){
+            this.processList.add(process); 
+        }
+        return process; 
+    }
+
+    // stop every member process this launcher started
+    // input: no
+    // output: no
+    public void stopAll(){
+        synchronized(this.processList){
+            for(int i = 0; i < this.processList.size(); i++){
+                this.processList.get(i).destroy(); 
+            }
+            for(int i = 0; i < this.processList.size(); i++){
+                try{
+                    if(this.processList.get(i).waitFor(5, TimeUnit.SECONDS) == false){
+                        this.processList.get(i).destroyForcibly(); 
+                    }
+                }
+                catch(InterruptedException e){
+                    Thread.currentThread().interrupt(); 
+                    return; 
+                }
+            }
+        }
+    }
+
+    // input: String (hostname of a member)
+    // output: boolean (true if the member runs on this machine)
+    private static boolean isLocal(String hostname){
+        return hostname.equals("localhost") || hostname.startsWith("127."); 
+    }
+
+}
@@ -0,0 +1,91 @@
+import java.util.*; 
+
+// the members whose majority decides the log instances from firstInstance onwards
+// membership changes are decided through the log itself: a value starting with CONFIG_MARKER lists the members of the next
+// configuration, and a change decided in instance c applies from instance c + ALPHA (the alpha window of Lamport's
+// reconfigurable state machine), so every member which knows the log up to an instance knows which quorum decides it,
+// and a proposer may keep up to ALPHA instances in flight while a change is being decided
+// ALPHA must be the same on every member (paxos.reconfig.alpha, 16 by default)
+// format of a change: CONFIG_MARKER | member server socket info joined by ','
+// a value from a client may not start with CONFIG_MARKER (CouncilMember.checkClientValue), only reconfigure proposes changes
+public class Configuration{
+    public static final char CONFIG_MARKER = '\u0002'; // a decided value starting with this is a membership change
+    public static final int ALPHA = Integer.getInteger("paxos.reconfig.alpha", 16); 
+    private final int firstInstance; // first log instance decided by this configuration
+    private final ArrayList<String> members; // server socket info ("hostname:port") of the members
+    private final int majority; 
+
+    // Configuration constructor
+    // input: int (first instance it applies to), List<String> (server socket info of the members)
+    // output: no
+    public Configuration(int firstInstance, List<String> members){
+        if(members.isEmpty() || new HashSet<String>(members).size() != members.size()){
+            throw new IllegalArgumentException("A configuration needs at least one member and no member twice: " + members); 
+        }
+        this.firstInstance = firstInstance; 
+        this.members = new ArrayList<String>(members); 
+        this.majority = this.members.size() / 2 + 1; 
+    }
+
+    // the value to propose to change the membership
+    // input: List<String> (server socket info of the members of the next configuration)
+    // output: String
+    public static String encode(List<String> members){
+        StringBuilder value = new StringBuilder().append(CONFIG_MARKER); 
+        for(int i = 0; i < members.size(); i++){
+            String member = members.get(i); 
+            if(member.indexOf(',') >= 0 || member.indexOf(':') <= 0){
+                throw new IllegalArgumentException("Invalid member server socket info " + member); 
+            }
+            if(i > 0){
+                value.append(','); 
+            }
+            value.append(member); 
+        }
+        return value.toString(); 
+    }
+
+    // check if a decided value is a membership change
+    // input: String (decided value)
+    // output: boolean
+    public static boolean isChange(String value){
+        return value != null && value.length() > 0 && value.charAt(0) == CONFIG_MARKER; 
+    }
+
+    // the configuration a membership change decided in an instance leads to
+    // input: int (instance the change was decided in), String (the change)
+    // output: Configuration (applies from instance + ALPHA)
+    public static Configuration decode(int decidedInstance, String value){
+        return new Configuration(decidedInstance + ALPHA, Arrays.asList(value.substring(1).split(","))); 
+    }
+
+    // input: no
+    // output: int
+    public int getFirstInstance(){
+        return this.firstInstance; 
+    }
+
+    // input: no
+    // output: ArrayList<String> (server socket info of the members, do not modify)
+    public ArrayList<String> getMembers(){
+        return this.members; 
+    }
+
+    // input: no
+    // output: int (number of members needed for a quorum)
+    public int getMajority(){
+        return this.majority; 
+    }
+
+    // input: no
+    // output: int
+    public int size(){
+        return this.members.size(); 
+    }
+
+    @Override
+    public String toString(){
+        return this.members.size() + " members from instance " + this.firstInstance + " " + this.members; 
+    }
+
+}
@@ -0,0 +1,119 @@
+import java.util.*; 
+import java.util.concurrent.*; 
+
+// decides how long a proposer waits before it tries again after it has been pre-empted
+// (no Promise from the majority, or its Accept was rejected because another proposer got a higher ballot)
+// without a wait, dueling proposers keep pre-empting each other and every attempt costs a full fan-out
+// managers can be written as a string (see parse), the default comes from the paxos.contention property: 
+//   None (retry straight away), Backoff (defaults below), Backoff:<base ms>:<max ms>:<retry cap>
+public abstract class ContentionManager{
+    public static final long DEFAULT_BASE_MILLIS = 50; 
+    public static final long DEFAULT_MAX_MILLIS = 2000; 
+    public static final int DEFAULT_RETRY_CAP = 1000; 
+    private final String name; 
+    private final int retryCap; // the proposer gives up a decision after this many retries
+
+    // ContentionManager constructor
+    // input: String (name of the manager, as written in parse), int (retry cap)
+    // output: no
+    protected ContentionManager(String name, int retryCap){
+        this.name = name; 
+        this.retryCap = retryCap; 
+    }
+
+    // how long to wait before the next attempt
+    // input: int (number of the retry for the current decision, starting at 1), Random (random numbers of the member's transport)
+    // output: long (milliseconds)
+    public abstract long backoffMillis(int retry, Random random); 
+
+    // how long to wait before the next attempt, with the random numbers of the current thread
+    // input: int (number of the retry for the current decision, starting at 1)
+    // output: long (milliseconds)
+    public long backoffMillis(int retry){
+        return this.backoffMillis(retry, ThreadLocalRandom.current()); 
+    }
+
+    // retry cap getter
+    // input: no
+    // output: int
+    public int getRetryCap(){
+        return this.retryCap; 
+    }
+
+    // name getter
+    // input: no
+    // output: String
+    public String getName(){
+        return this.name; 
+    }
+
+    @Override
+    public String toString(){
+        return this.name; 
+    }
+
+    // the manager configured with the paxos.contention property
+    // input: no
+    // output: ContentionManager
+    public static ContentionManager fromSystemProperty(){
+        return parse(System.getProperty("paxos.contention", "Backoff")); 
+    }
+
+    // create a manager from its string form
+    // input: String (e.g. "None", "Backoff", "Backoff:20:1000:50")
+    // output: ContentionManager
+    public static ContentionManager parse(String spec){
+        String[] parts = spec.trim().split(":"); 
+        String kind = parts[0]; 
+        if(kind.equals("None") && parts.length == 1){
+            return new NoBackoff(); 
+        }
+        if(kind.equals("Backoff") && parts.length == 1){
+            return new ExponentialBackoff(spec, DEFAULT_BASE_MILLIS, DEFAULT_MAX_MILLIS, DEFAULT_RETRY_CAP); 
+        }
+        if(kind.equals("Backoff") && parts.length == 4){
+            return new ExponentialBackoff(spec, Long.parseLong(parts[1]), Long.parseLong(parts[2]), Integer.parseInt(parts[3])); 
+        }
+        throw new IllegalArgumentException("Unknown contention manager " + spec); 
+    }
+
+    // retry straight away (the previous behaviour)
+    public static final class NoBackoff extends ContentionManager{
+        public NoBackoff(){
+            super("None", Integer.MAX_VALUE); 
+        }
+
+        @Override
+        public long backoffMillis(int retry, Random random){
+            return 0; 
+        }
+    }
+
+    // randomized exponential backoff: the window doubles on every retry up to max,
+    // the wait is half the window plus a random part of the other half,
+    // so it keeps growing while two proposers that collided draw different waits
+    public static final class ExponentialBackoff extends ContentionManager{
+        private final long baseMillis; 
+        private final long maxMillis; 
+
+        public ExponentialBackoff(String name, long baseMillis, long maxMillis, int retryCap){
+            super(name, retryCap); 
+            if(baseMillis <= 0 || maxMillis < baseMillis || retryCap <= 0){
+                throw new IllegalArgumentException("Backoff needs 0 < base <= max and a positive retry cap"); 
+            }
+            this.baseMillis = baseMillis; 
+            this.maxMillis = maxMillis; 
+        }
+
+        @Override
+        public long backoffMillis(int retry, Random random){
+            // the window stops growing once it reaches max, the shift is bounded so it cannot overflow
+            long window = this.baseMillis << Math.min(retry - 1, 30); 
+            if(window > this.maxMillis || window <= 0){
+                window = this.maxMillis; 
+            }
+            long half = window / 2; 
+            return half + (long)(random.nextDouble() * (window - half + 1)); 
+        }
+    }
+}
@@ -2,238 +2,585 @@ import java.util.*;
 import java.lang.Math; 
 import java.net.*; 
 import java.io.*; 
+import java.util.concurrent.atomic.*; 
 import java.util.concurrent.locks.*; 
+import java.util.function.*; 
+import java.util.concurrent.*; 
+import java.nio.*; 
+import java.nio.charset.*; 
 
 public class CouncilMember implements Runnable{
     private static int ID = 0; 
     private static final int STARTING_PORT = 2000; // member 1 listens on port 2001, member 2 listens on port 2002, etc.
+    public static final int FIRST_INSTANCE = 0; // the first slot of the replicated log, the scenarios elect the president in this slot
+    private static final long NO_BALLOT = Ballot.NONE; // leaderProposalId when this member has not won Phase 1
+    private static Transport defaultTransport; // transport of the members created without one, see getDefaultTransport
     private int memberId; 
+    private int port; // port the server of this member listens on
+    private Transport transport; // how this member reaches the others, and the clock and threads it runs on
     // listen on request from proposers
-    private ServerSocket memberServerSocket; 
+    private MemberServer memberServer; 
     // member acts as acceptor
-    private Proposal lastAcceptedProposal; // store the Proposal that the Acceptor has accepted. 
-    private int highestProposalId; // highest proposal id that the Acceptor has seen so far
+    private AtomicReference<AcceptorState> acceptorState; // promised proposal id and accepted proposal of each log instance, replaced with compareAndSet
+    private volatile DecidedValueStore decidedValueStore; // values that have been decided for each log instance, memory-mapped, closed while the server is down
+    private AcceptorLog acceptorLog; // write-ahead log of promises and acceptances, read back when the member starts
     // server socket of all members 
     private ArrayList<String> memberServerSocketList; 
     // store all the server socket info of all members in the protocol
     // size of this array is also the total number of members in the protocol
     // members' server socket info is a string in format: "hostname:port"
     // also including server socket of this member
-    private int majority; // majority can be extracted from size of memberServerSocketList
-    private ArrayList<HashMap<String, Object>> responseList; 
-    // after send a request to all the members, all the responses will be stored here
-    private ReentrantLock lastAcceptedProposalLock; 
-    private ReentrantLock highestProposalIdLock; 
-    private ReentrantLock responseListLock; 
-    private boolean responseListState; // indicate if the responseList is ready (all acceptors has responded) or not
-    private ReentrantLock responseListStateLock; 
-    private Condition responseListReady; 
+    // the configuration of each log instance: memberServerSocketList from FIRST_INSTANCE, then every membership change decided in the log
+    private ConcurrentSkipListMap<Integer, Configuration> configurations; // first instance of a configuration -> configuration
+    private volatile int preparedThrough; // the last Phase 1 got the majority of every configuration up to the one starting at this instance
+    private PeerConnectionPool connectionPool; // long-lived connection to every member, used when this member proposes
+    private AtomicLong correlationIdCounter; // Correlation-Id of the next fan-out, matches responses to their requests
+    // the responses of each Prepare/Accept fan-out are counted by the RoundCollector of that round
     private Proposal proposal; // the proposal used for proposing if this member propose 
     private String chosenValue; // update this variable when starting to propose then the Proposer will used this value in Accept phase
-    private String latencyType; // immediate, medium (respond after 5s), late(respond after 15s), never (doesn't respond) 
+    private volatile LatencyProfile latencyProfile; // immediate, medium (respond after 5s), late(respond after 15s), never (doesn't respond), or a distribution
+    // member acts as proposer (Multi-Paxos leader)
+    private volatile long leaderProposalId; // the proposal id promised by the majority in the last Phase 1, NO_BALLOT if not the leader
+    private LeaderLease leaderLease; // lease granted with the promises of the last Phase 1, lets this member read without a round
+    private AtomicLong localReadCount; // reads answered from this member's own log
+    private AtomicLong quorumReadCount; // reads which needed a Phase 1 because this member held no lease
+    private AtomicLong highestBallotSeen; // highest ballot this member has observed as proposer, the next Prepare jumps past it
+    private volatile ContentionManager contentionManager; // how long to wait after being pre-empted by another proposer
+    private int retriesThisDecision; // retries of the decision being proposed, only used by the proposing thread
+    private AtomicLong decisionCount; // decisions reached by this member as proposer
+    private AtomicLong retryCount; // retries over all decisions
+    private volatile int mostRetries; // highest number of retries of one decision
+    private AtomicLong messageCount; // requests sent and responses received by this member as proposer
+    private MemberMetrics metrics; // phase durations, per-peer response times and acceptor counts, exported by MetricsServer
+    private SubmissionQueue submissionQueue; // values submitted by clients, batched into one proposal per instance (created on first use)
+    private volatile AcceptPipeline acceptPipeline; // proposer with several instances in the Accept phase at once (created on first use)
+    private AtomicInteger valueSequence; // sequence part of the value ids of this member, starts at a random point so ids are not reused after a restart
+    private TreeMap<Integer, Proposal> recoveredProposals; // proposals reported in Phase 1 that must be re-proposed in their instance
 
 
-    // CouncilMember constructor
-    // input: String (latency type: Immediate/Medium/Late/Never), ArrayList<String> (server socket info of all members in the protocol)
+    // CouncilMember constructor, the member uses the default transport
+    // input: String (latency type: Immediate/Medium/Late/Never or a distribution, see LatencyProfile), ArrayList<String> (server socket info of all members in the protocol)
     // output: no 
     public CouncilMember(String latencyType, ArrayList<String> listOfAllMemberServerSocket){
+        this(latencyType, listOfAllMemberServerSocket, getDefaultTransport()); 
+    }
+
+    // CouncilMember constructor, the member gets the next id of this JVM
+    // input: String (latency type), ArrayList<String> (server socket info of all members in the protocol), Transport
+    // output: no 
+    public CouncilMember(String latencyType, ArrayList<String> listOfAllMemberServerSocket, Transport transport){
+        // server socket of member listen on port 2000 + memberID
+        this(++ID, STARTING_PORT + ID, latencyType, listOfAllMemberServerSocket, transport); 
+    }
+
+    // CouncilMember constructor for a member of a cluster file, e.g. one member per process
+    // input: ClusterConfig (members of the cluster), int (id of this member in the file), Transport
+    // output: no 
+    public CouncilMember(ClusterConfig cluster, int memberId, Transport transport){
+        this(memberId, cluster.getMember(memberId).getPort(), cluster.getMember(memberId).getLatencyType(), cluster.getAddresses(), transport); 
+    }
+
+    // CouncilMember constructor
+    // input: int (member id, unique in the cluster), int (port the server of the member listens on), String (latency type), 
+    //        ArrayList<String> (server socket info of all members in the protocol), Transport
+    // output: no 
+    public CouncilMember(int memberId, int port, String latencyType, ArrayList<String> listOfAllMemberServerSocket, Transport transport){
         try{
-            this.latencyType = latencyType; 
-            this.memberId = ++ID;  
-            // server socket of member listen on port 2000 + memberID
-            this.memberServerSocket = new ServerSocket(STARTING_PORT + this.memberId); 
-            this.lastAcceptedProposal = null; 
-            this.highestProposalId = -1; 
+            this.latencyProfile = LatencyProfile.parse(latencyType); 
+            this.memberId = memberId; 
+            this.port = port; 
+            this.transport = transport; 
+            this.memberServer = this.transport.bind(this, this.port); 
+            // restore the promises and acceptances this member made before it restarted
+            this.acceptorLog = new AcceptorLog(AcceptorLog.LOG_DIRECTORY, this.memberId); 
+            this.leaderLease = LeaderLease.fromSystemProperty(); 
+            AcceptorState restoredState = AcceptorState.restore(this.acceptorLog.getRecoveredHighestProposalId(), this.acceptorLog.getRecoveredAcceptedProposals()); 
+            // leases are not logged: a member which promised before it restarted may have granted a lease that is still running
+            // so it waits a whole lease before it promises anyone again
+            if(this.leaderLease.isEnabled() && restoredState.getPromisedId() != Ballot.NONE){
+                restoredState = restoredState.blockPrepares(this.transport.nanoTime() + this.leaderLease.getLeaseMillis() * 1000000L); 
+            }
+            this.acceptorState = new AtomicReference<AcceptorState>(restoredState); 
+            this.decidedValueStore = new DecidedValueStore(AcceptorLog.LOG_DIRECTORY, this.memberId); 
             this.memberServerSocketList = listOfAllMemberServerSocket; 
-            // calculate the majority from the size of member socket list
-            this.majority = (int)Math.floor(this.memberServerSocketList.size() / 2) + 1; 
-            this.lastAcceptedProposalLock = new ReentrantLock(); 
-            this.highestProposalIdLock = new ReentrantLock(); 
-            this.responseListLock = new ReentrantLock(); 
+            // the membership changes decided before this member restarted apply again
+            this.configurations = new ConcurrentSkipListMap<Integer, Configuration>(); 
+            this.configurations.put(FIRST_INSTANCE, new Configuration(FIRST_INSTANCE, this.memberServerSocketList)); 
+            final ConcurrentSkipListMap<Integer, Configuration> restoredConfigurations = this.configurations; 
+            this.decidedValueStore.scan(new DecidedValueStore.Visitor(){
+                @Override
+                public void visit(int instance, ByteBuffer value){
+                    if(value.remaining() > 0 && value.get(0) == Configuration.CONFIG_MARKER){
+                        Configuration configuration = Configuration.decode(instance, StandardCharsets.UTF_8.decode(value).toString()); 
+                        restoredConfigurations.putIfAbsent(configuration.getFirstInstance(), configuration); 
+                    }
+                }
+            }); 
+            this.preparedThrough = FIRST_INSTANCE; 
+            this.connectionPool = new PeerConnectionPool(this.transport, this.memberServerSocketList); 
+            this.metrics = new MemberMetrics(this.memberId); 
+            MetricsServer.register(this.metrics); 
+            this.correlationIdCounter = new AtomicLong(0); 
             this.proposal = null; 
             this.chosenValue = ""; 
-            this.responseList = new ArrayList<HashMap<String, Object>>(); 
+            this.leaderProposalId = NO_BALLOT; 
+            this.highestBallotSeen = new AtomicLong(NO_BALLOT); 
+            this.contentionManager = ContentionManager.fromSystemProperty(); 
+            this.retriesThisDecision = 0; 
+            this.decisionCount = new AtomicLong(0); 
+            this.retryCount = new AtomicLong(0); 
+            this.mostRetries = 0; 
+            this.messageCount = new AtomicLong(0); 
+            this.recoveredProposals = new TreeMap<Integer, Proposal>(); 
+            this.valueSequence = new AtomicInteger(this.transport.getRandom().nextInt()); 
+            this.localReadCount = new AtomicLong(0); 
+            this.quorumReadCount = new AtomicLong(0); 
 
-            this.responseListState = false; 
-            this.responseListStateLock = new ReentrantLock(); 
-            this.responseListReady = this.responseListStateLock.newCondition(); 
         
-            // run the thread to run server socket of this member
+            // run the threads of the server of this member
             // so that this member can receive requests and act as an Acceptor 
-            RunMemberServer runServer = new RunMemberServer(this); 
-            Thread server = new Thread(runServer); 
-            server.start(); 
-            System.out.println("Server of Council Member " + this.memberId + " started."); 
+            this.memberServer.start(); 
+            EventLog.serverStarted(this.memberId); 
 
         }
         catch(Exception e){
-            System.out.println("Error in starting Member's Server Socket."); 
-            e.printStackTrace(); 
+            EventLog.error(this.memberId, "Error in starting Member's Server Socket.", e); 
         }
     }
 
-    // proposer send prepare request to all the members in the protocol
+    // Phase 1: proposer send prepare request to all the members in the protocol
+    // a Promise covers every instance from the first undecided instance onwards, 
+    // so a member only needs to run this again after it loses its ballot
     // input: no
-    // output: Proposal(the new proposal with the id that is accepted by the majority)
-    public Proposal sendPrepare(){
-        boolean success = false; 
+    // output: long (the proposal id that is promised by the majority, NO_BALLOT if the retry cap has been reached)
+    public long sendPrepare(){
         // retry until success 
-        while(success == false){
-            this.responseListStateLock.lock(); 
-            // set the response list indicating that it's not ready before send requests. 
-            this.setResponseListState(false); 
-            // create a new proposal with empty value
-            Proposal newProposal = new Proposal(this.memberId, ""); 
-            HashMap<String, Object> requestObject = new HashMap<String, Object>(); 
-            // used the id of newProposal to send Prepare request 
-            requestObject.put("Request-Type", "Prepare"); 
-            requestObject.put("Current-Proposal-Id", newProposal.getID()); 
-            requestObject.put("Sender-Id", this.memberId); 
-            // create an intermediate thread to send requests to members
-            IntermediateThread sendRequest = new IntermediateThread(this, requestObject); 
-            Thread sendingRequest = new Thread(sendRequest); 
-            sendingRequest.start(); 
-            try{
-                // keep waiting until receive all the responses (or timeout exceeds)
-                while(this.responseListState == false){
-                    responseListReady.await(); 
-                }
-                // after the receiving all the responses
-                // keep track how many Promise received from Acceptors
-                int promiseCounter = 0; 
-                this.responseListLock.lock(); 
-                // check the number of promise if promise >= majority or not
-                for(int i = 0; i < responseList.size(); i++){
-                    String response = (String)responseList.get(i).get("Status"); 
-                    if(response.equals("Promise-OK")){
-                        promiseCounter++; 
-                    }
-                }
-                // if get the promise from the majority, check if any acceptor report value
-                // get the reported value from the highest id
-                if(promiseCounter >= this.majority){
-                    // stop looping because succeeded 
-                    success = true; 
-                    int highestId = -1; 
-                    for(int i = 0; i < responseList.size(); i++){
-                        String status = (String)responseList.get(i).get("Status"); 
-                        if(status.equals("Promise-OK") && responseList.get(i).containsKey("Last-Accepted-Proposal")){
-                            Proposal reportedLastAcceptedProposal = (Proposal)responseList.get(i).get("Last-Accepted-Proposal"); 
-                            int reportedId = (int)reportedLastAcceptedProposal.getID(); 
-                            String reportedValue = reportedLastAcceptedProposal.getValue(); 
-                            // get the reported value which has the highest id
-                            if(reportedId > highestId){
-                                highestId = reportedId; 
-                                newProposal.setValue(reportedValue); 
-                            }
+        while(true){
+            // pick a ballot above every ballot this member has observed, including the ones its own acceptor has promised
+            long ballot = Ballot.next(Math.max(this.highestBallotSeen.get(), this.getHighestProposalId()), this.memberId); 
+            this.observeBallot(ballot); 
+            int firstInstance = this.getFirstUndecidedInstance(); 
+            // every request of a fan-out uses the same Correlation-Id, it is unique per connection
+            PrepareMessage requestObject = new PrepareMessage(this.memberId, this.nextCorrelationId(), ballot, firstInstance); 
+            // the Promise covers the instances of every configuration known from firstInstance onwards, each needs its majority
+            List<Configuration> preparedConfigurations = this.configurationsFrom(firstInstance); 
+            // the lease counts from before the first acceptor could have received the Prepare
+            long sentNanos = this.transport.nanoTime(); 
+            // send the requests and wait for the outcome of the round (or timeout exceeds)
+            RoundCollector round = this.startRound(requestObject, ballot, preparedConfigurations); 
+            // if get the promise from the majority, check which instances the acceptors reported values for
+            // for each instance keep the reported value with the highest id
+            if(this.transport.await(round.getOutcome())){
+                this.recoveredProposals.clear(); 
+                ArrayList<Message> promiseList = round.getOkResponses(); 
+                for(int i = 0; i < promiseList.size(); i++){
+                    Map<Integer, Proposal> reportedProposals = ((PromiseMessage)promiseList.get(i)).getAcceptedProposals(); 
+                    for(Proposal reportedProposal : reportedProposals.values()){
+                        this.observeBallot(reportedProposal.getID()); 
+                        Proposal current = this.recoveredProposals.get(reportedProposal.getInstance()); 
+                        // get the reported value which has the highest id
+                        if(current == null || reportedProposal.getID() > current.getID()){
+                            this.recoveredProposals.put(reportedProposal.getInstance(), reportedProposal); 
                         }
                     }
-                    return newProposal; 
                 }
-                else{
-                    // retry again if couldn't get Promise from the majority
-                    success = false; 
+                this.preparedThrough = preparedConfigurations.get(preparedConfigurations.size() - 1).getFirstInstance(); 
+                if(this.leaderLease.isEnabled()){
+                    this.leaderLease.grant(ballot, sentNanos); 
+                    this.scheduleLeaseRenewal(ballot); 
                 }
+                return ballot; 
             }
-            catch(Exception e){
-                System.out.println("Error when Proposer send Prepare."); 
-                e.printStackTrace();
-            }
-            finally{
-                this.responseList.clear(); 
-                this.responseListLock.unlock(); 
-                this.responseListStateLock.unlock(); 
+            // pre-empted, wait before trying again so that dueling proposers do not keep pre-empting each other
+            this.metrics.countPrepareRetry(); 
+            if(this.backOff() == false){
+                return NO_BALLOT; 
             }
         }
-        return null; 
     }
 
     // Phase 2: send Accept request to all the members
-    // input: Proposal (the proposal to send in Accept request)
+    // input: Proposal (the proposal to send in Accept request, carrying its log instance and its value)
     // output: boolean (true if get Accept from the majority, false otherwise) 
     public boolean sendAccept(Proposal proposal){
-        boolean success = false; 
-        this.responseListStateLock.lock(); 
-        this.setResponseListState(false); 
-        // if there is no reported value in Prepare phase, 
-        // proposer can choose their own value
-        if(proposal.getValue().isEmpty()){
-            proposal.setValue(this.chosenValue); 
-        }
         // send Accept request to all acceptors 
-        HashMap<String, Object> requestObject = new HashMap<String, Object>(); 
-        requestObject.put("Request-Type", "Accept"); 
-        requestObject.put("Current-Proposal", proposal); 
-        requestObject.put("Sender-Id", this.memberId); 
-        // create a thread to send requests to all members 
-        IntermediateThread sendRequest = new IntermediateThread(this, requestObject); 
-        Thread sendingRequest = new Thread(sendRequest); 
-        sendingRequest.start(); 
-        try{
-            // keep waiting until get responses from members (or timeout exceeded)
-            while(this.responseListState == false){
-                responseListReady.await(); 
-            }
-            // after receiving all responses
-            // count how many Accept the Proposer receive
-            int acceptCounter = 0; 
-            this.responseListLock.lock(); 
-            // check if we get acceptance from the majority
-            for(int i = 0; i < responseList.size(); i++){
-                String response = (String)responseList.get(i).get("Status"); 
-                if(response.equals("Accept-OK")){
-                    acceptCounter++;  
-                }
-            }
-            // if got Accept from the majority
-            if(acceptCounter >= this.majority){
-                // indicate the Accept phase has been successful
-                success = true; 
-                this.proposal = proposal; 
-            }
-
+        AcceptMessage requestObject = new AcceptMessage(this.memberId, this.nextCorrelationId(), proposal); 
+        // wait until the round has an outcome (or timeout exceeded)
+        // if got Accept from the majority, the Accept phase has been successful
+        if(this.transport.await(this.startRound(requestObject, proposal.getID()).getOutcome())){
+            this.proposal = proposal; 
+            return true; 
         }
-        catch(Exception e){
-            System.out.println("Error happened when Proposer sending Accept request."); 
-            e.printStackTrace(); 
+        return false; 
+    }
+
+    // send a request of a round to the members of the configurations of its instances, the responses are counted by the collector of the round
+    // input: Message (Prepare or Accept), long (ballot of the request)
+    // output: RoundCollector (its outcome completes when the majority answered, the majority is impossible or the time is up)
+    public RoundCollector startRound(Message requestObject, long ballot){
+        List<Configuration> roundConfigurations; 
+        if(requestObject.getType() == Message.PREPARE){
+            roundConfigurations = this.configurationsFrom(((PrepareMessage)requestObject).getFirstInstance()); 
         }
-        finally{
-            this.responseList.clear(); 
-            this.responseListStateLock.unlock(); 
-            this.responseListLock.unlock(); 
-            return success; 
+        else{
+            roundConfigurations = Collections.singletonList(this.getConfiguration(((AcceptMessage)requestObject).getProposal().getInstance())); 
         }
+        return this.startRound(requestObject, ballot, roundConfigurations); 
+    }
+
+    // send a request of a round to the members of some configurations
+    // input: Message (Prepare or Accept), long (ballot of the request), List<Configuration> (the round needs the majority of each)
+    // output: RoundCollector
+    public RoundCollector startRound(final Message requestObject, long ballot, List<Configuration> roundConfigurations){
+        RoundCollector round = new RoundCollector(ballot, roundConfigurations); 
+        final long startNanos = this.transport.nanoTime(); 
+        // the duration of the phase is known when the round has an outcome, whoever waits for it
+        round.getOutcome().thenAccept(new Consumer<Boolean>(){
+            @Override
+            public void accept(Boolean succeeded){
+                metrics.recordRound(requestObject.getType(), transport.nanoTime() - startNanos, succeeded); 
+            }
+        }); 
+        this.transport.execute(new IntermediateThread(this, requestObject, round)); 
+        return round; 
     }
 
     // this function is responsible for sending Decide message to all the members
     // input: no
     // output: no 
     public void sendDecide(){
-        System.out.println("Council Member " + this.memberId + " is the leader with value " + this.proposal.getValue()); 
-        HashMap<String, Object> requestObject = new HashMap<String, Object>(); 
-        requestObject.put("Request-Type", "Decide"); 
-        requestObject.put("Current-Proposal", this.proposal); 
-        IntermediateThread sendRequest = new IntermediateThread(this, requestObject); 
-        Thread sendingRequest = new Thread(sendRequest); 
-        sendingRequest.start(); 
+        this.sendDecide(this.proposal); 
+    }
+
+    // send the Decide message of a proposal accepted by the majority to all the members
+    // throws IllegalStateException if the member is offline (its decided value store is closed), the Decide is not sent then
+    // input: Proposal
+    // output: no 
+    public void sendDecide(Proposal proposal){
+        this.recordDecidedValue(proposal.getInstance(), proposal.getValue()); 
+        EventLog.leader(this.memberId, this.memberId, proposal.getInstance(), proposal.getValue()); 
+        DecideMessage requestObject = new DecideMessage(this.memberId, this.nextCorrelationId(), proposal); 
+        IntermediateThread sendRequest = new IntermediateThread(this, requestObject, this.getConfiguration(proposal.getInstance()).getMembers()); 
+        this.transport.execute(sendRequest); 
         // dont need to wait for responses as Decide message doesn't require any response
     }
 
-    // start a Paxos round
+    // start proposing chosenValue into the replicated log
+    // Phase 1 is only run when this member does not hold a promised ballot, 
+    // after that each instance only needs the Accept phase
+    // values reported in Phase 1 are re-proposed in their own instance before chosenValue gets a free instance
     // input: no
-    // output: no 
-    public void propose(){
+    // output: boolean (true if chosenValue has been decided, false if the retry cap of the contention manager has been reached)
+    public boolean propose(){
         boolean complete = false; 
+        this.retriesThisDecision = 0; 
+        long chosenValueId = this.nextValueId(); 
         // retry if Accept phase fails
         while(complete == false){
-            Proposal newProposal = this.sendPrepare(); 
+            if(this.leaderProposalId == NO_BALLOT){
+                this.leaderProposalId = this.sendPrepare(); 
+                if(this.leaderProposalId == NO_BALLOT){
+                    EventLog.gaveUp(this.memberId, -1, this.retriesThisDecision); 
+                    return false; 
+                }
+            }
+            int instance = this.getFirstUndecidedInstance(); 
+            // a membership change made the ballot cover a configuration whose majority has not promised it
+            if(this.isPreparedFor(instance) == false){
+                this.leaderProposalId = NO_BALLOT; 
+                continue; 
+            }
+            Proposal recoveredProposal = this.recoveredProposals.remove(instance); 
+            // if there is no reported value in Prepare phase, proposer can choose their own value
+            // reuse the ballot which the majority has promised
+            Proposal newProposal = new Proposal(this.memberId, this.chosenValue, instance, this.leaderProposalId, chosenValueId); 
+            if(recoveredProposal != null){
+                newProposal = new Proposal(this.memberId, recoveredProposal.getValue(), instance, this.leaderProposalId, recoveredProposal.getValueId()); 
+            }
             boolean acceptPhaseCompleted = this.sendAccept(newProposal); 
             if(acceptPhaseCompleted == true){
                 // send Decide message if the Accept phase succeeded 
                 this.sendDecide(); 
-                complete = true; 
+                this.recordDecision(instance); 
+                // chosenValue is only committed when it was not a recovered value
+                complete = (recoveredProposal == null); 
+            }
+            else{
+                // another proposer got a higher ballot, run Phase 1 again
+                this.leaderProposalId = NO_BALLOT; 
+                if(recoveredProposal != null){
+                    this.recoveredProposals.put(instance, recoveredProposal); 
+                }
+                if(this.backOff() == false){
+                    EventLog.gaveUp(this.memberId, -1, this.retriesThisDecision); 
+                    return false; 
+                }
+            }
+        }
+        return true; 
+    }
+
+    // propose one value and wait until it is decided
+    // input: String (value)
+    // output: int (the log instance the value was decided in, -1 if the retry cap has been reached)
+    public int proposeValue(String value){
+        this.setChosenValue(value); 
+        if(this.propose() == false){
+            return -1; 
+        }
+        return this.proposal.getInstance(); 
+    }
+
+    // submit a value to this member, values submitted together are decided together in one instance
+    // input: String (value)
+    // output: CompletableFuture<Integer> (completes with the log instance the value was decided in)
+    public CompletableFuture<Integer> submit(String value){
+        return this.getSubmissionQueue().submit(value); 
+    }
+
+    // submission queue getter, the queue is created with the default batch limits on first use
+    // input: no
+    // output: SubmissionQueue
+    public synchronized SubmissionQueue getSubmissionQueue(){
+        if(this.submissionQueue == null){
+            this.submissionQueue = new SubmissionQueue(this, SubmissionQueue.DEFAULT_MAX_BATCH_VALUES, SubmissionQueue.DEFAULT_MAX_BATCH_BYTES, SubmissionQueue.DEFAULT_MAX_DELAY_MILLIS); 
+        }
+        return this.submissionQueue; 
+    }
+
+    // run Phase 1 if this member does not hold a promised ballot
+    // input: no
+    // output: boolean (false if the retry cap has been reached)
+    public boolean acquireLeadership(){
+        if(this.leaderProposalId == NO_BALLOT){
+            this.retriesThisDecision = 0; 
+            this.leaderProposalId = this.sendPrepare(); 
+        }
+        return this.leaderProposalId != NO_BALLOT; 
+    }
+
+    // forget the promised ballot after an Accept has been rejected, the next proposal runs Phase 1 again
+    // input: no
+    // output: no
+    public void loseLeadership(){
+        this.leaderProposalId = NO_BALLOT; 
+    }
+
+    // renew the lease of a ballot in the background while this member leads with it
+    // input: long (ballot)
+    // output: no
+    private void scheduleLeaseRenewal(final long ballot){
+        final CouncilMember member = this; 
+        // the timer only hands the renewal over, the renewal waits for its round on its own thread
+        this.transport.schedule(new Runnable(){
+            @Override
+            public void run(){
+                transport.startThread(new Runnable(){
+                    @Override
+                    public void run(){
+                        member.renewLease(ballot); 
+                    }
+                }); 
+            }
+        }, this.leaderLease.getRenewMillis()); 
+    }
+
+    // send the promised ballot again, the acceptors that promise it again restart their lease
+    // if the majority does not answer in time the lease is not extended and runs out, reads then take the quorum path
+    // input: long (ballot)
+    // output: no
+    private void renewLease(long ballot){
+        if(this.leaderProposalId != ballot){
+            // this member lost or gave up the ballot, stop renewing
+            return; 
+        }
+        long sentNanos = this.transport.nanoTime(); 
+        PrepareMessage requestObject = new PrepareMessage(this.memberId, this.nextCorrelationId(), ballot, this.getFirstUndecidedInstance()); 
+        if(this.transport.await(this.startRound(requestObject, ballot).getOutcome())){
+            this.leaderLease.grant(ballot, sentNanos); 
+        }
+        this.scheduleLeaseRenewal(ballot); 
+    }
+
+    // read the value of a log instance, linearizable: the answer includes every decision made before the read started
+    // a decided value never changes, so it is always answered from the local log
+    // "not decided yet" is answered locally only while this member holds the lease (no other member can decide anything then)
+    // and has re-proposed the values reported to it in Phase 1; otherwise the read takes the quorum path:
+    // Phase 1 with a new ballot, then the reported values up to the instance are decided before answering
+    // like propose(), it must be called from the proposing thread of this member
+    // input: int (log instance)
+    // output: String (decided value, null if nothing has been decided in the instance or the retry cap has been reached)
+    public String read(int instance){
+        this.retriesThisDecision = 0; 
+        boolean quorumRead = false; 
+        while(true){
+            String decidedValue = this.getDecidedValue(instance); 
+            if(decidedValue != null){
+                this.localReadCount.incrementAndGet(); 
+                return decidedValue; 
+            }
+            boolean pendingRecovered = this.recoveredProposals.isEmpty() == false && this.recoveredProposals.firstKey() <= instance; 
+            boolean leaseHeld = this.leaderLease.isHeld(this.leaderProposalId, this.transport.nanoTime()) && this.isPreparedFor(instance); 
+            if(leaseHeld && pendingRecovered == false){
+                this.localReadCount.incrementAndGet(); 
+                return null; 
+            }
+            if(quorumRead == false){
+                quorumRead = true; 
+                this.quorumReadCount.incrementAndGet(); 
+            }
+            // quorum path: without a lease the majority reports what it has accepted to a new ballot
+            if(leaseHeld == false){
+                // stop renewing the old ballot while the new one is prepared
+                this.leaderProposalId = NO_BALLOT; 
+                this.leaderProposalId = this.sendPrepare(); 
+                if(this.leaderProposalId == NO_BALLOT){
+                    EventLog.gaveUp(this.memberId, instance, this.retriesThisDecision); 
+                    return null; 
+                }
+            }
+            // a reported value may already have been chosen, get it decided before answering
+            boolean completed = true; 
+            while(completed && this.recoveredProposals.isEmpty() == false && this.recoveredProposals.firstKey() <= instance){
+                Proposal recoveredProposal = this.recoveredProposals.pollFirstEntry().getValue(); 
+                Proposal newProposal = new Proposal(this.memberId, recoveredProposal.getValue(), recoveredProposal.getInstance(), this.leaderProposalId, recoveredProposal.getValueId()); 
+                completed = this.sendAccept(newProposal); 
+                if(completed){
+                    this.sendDecide(newProposal); 
+                }
+                else{
+                    this.recoveredProposals.put(recoveredProposal.getInstance(), recoveredProposal); 
+                }
+            }
+            if(completed){
+                // this member holds the ballot promised by the majority, nothing else can be decided in the instance before the read
+                return this.getDecidedValue(instance); 
+            }
+            this.leaderProposalId = NO_BALLOT; 
+            if(this.backOff() == false){
+                EventLog.gaveUp(this.memberId, instance, this.retriesThisDecision); 
+                return null; 
+            }
+        }
+    }
+
+    // propose a membership change through the pipeline, like a submitted value
+    // the proposals in flight keep going: the change applies Configuration.ALPHA instances after the instance it is decided in, 
+    // the instances below keep the old configuration and the pipeline runs Phase 1 on the new members before it proposes above it
+    // the new members must be running, they learn the log from the Decides of the instances of their configuration
+    // input: List<String> (server socket info of the members of the next configuration)
+    // output: CompletableFuture<Integer> (completes with the first instance decided by the new configuration)
+    public CompletableFuture<Integer> reconfigure(List<String> members){
+        return this.getAcceptPipeline().proposeInternal(Configuration.encode(members)).thenApply(new Function<Integer, Integer>(){
+            @Override
+            public Integer apply(Integer instance){
+                return instance + Configuration.ALPHA; 
+            }
+        }); 
+    }
+
+    // the configuration which decides a log instance
+    // input: int (log instance)
+    // output: Configuration
+    public Configuration getConfiguration(int instance){
+        return this.configurations.floorEntry(instance).getValue(); 
+    }
+
+    // the configurations of the log instances from one instance onwards, as far as this member knows them
+    // input: int (log instance)
+    // output: List<Configuration> (the configuration of the instance, then the later ones in order)
+    private List<Configuration> configurationsFrom(int instance){
+        ArrayList<Configuration> list = new ArrayList<Configuration>(); 
+        list.add(this.getConfiguration(instance)); 
+        list.addAll(this.configurations.tailMap(instance, false).values()); 
+        return list; 
+    }
+
+    // check if the ballot of the last Phase 1 has been promised by the configuration of a log instance
+    // input: int (log instance)
+    // output: boolean (false if the instance belongs to a configuration decided after the last Phase 1)
+    public boolean isPreparedFor(int instance){
+        return this.configurations.floorKey(instance) <= this.preparedThrough; 
+    }
+
+    // leader lease getter
+    // input: no
+    // output: LeaderLease
+    public LeaderLease getLeaderLease(){
+        return this.leaderLease; 
+    }
+
+    // number of reads answered from this member's own log
+    // input: no
+    // output: long
+    public long getLocalReadCount(){
+        return this.localReadCount.get(); 
+    }
+
+    // number of reads which could not be answered locally and took the quorum path
+    // input: no
+    // output: long
+    public long getQuorumReadCount(){
+        return this.quorumReadCount.get(); 
+    }
+
+    // ballot promised by the majority in the last Phase 1
+    // input: no
+    // output: long (NO_BALLOT if this member does not hold a promised ballot)
+    public long getLeaderProposalId(){
+        return this.leaderProposalId; 
+    }
+
+    // take the value reported in Phase 1 for an instance, it must be proposed in that instance
+    // input: int (log instance)
+    // output: Proposal (null if no value was reported for the instance)
+    public Proposal takeRecoveredProposal(int instance){
+        return this.recoveredProposals.remove(instance); 
+    }
+
+    // pipeline getter, the pipeline is created on first use with the window of the paxos.pipelineWindow property (default 8)
+    // input: no
+    // output: AcceptPipeline
+    public synchronized AcceptPipeline getAcceptPipeline(){
+        if(this.acceptPipeline == null){
+            this.acceptPipeline = new AcceptPipeline(this, Integer.getInteger("paxos.pipelineWindow", 8)); 
+        }
+        return this.acceptPipeline; 
+    }
+
+    // wait before the next attempt after this member has been pre-empted, the contention manager decides how long
+    // input: no
+    // output: boolean (false if the retry cap of the current decision has been reached)
+    private boolean backOff(){
+        this.retriesThisDecision++; 
+        this.retryCount.incrementAndGet(); 
+        ContentionManager manager = this.contentionManager; 
+        if(this.retriesThisDecision > manager.getRetryCap()){
+            return false; 
+        }
+        long delayMillis = manager.backoffMillis(this.retriesThisDecision, this.transport.getRandom()); 
+        if(delayMillis > 0){
+            try{
+                this.transport.sleep(delayMillis); 
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt(); 
+                return false; 
             }
         }
+        return true; 
+    }
+
+    // count a decision reached by this member and report how many retries it needed
+    // input: int (log instance)
+    // output: no
+    private void recordDecision(int instance){
+        this.decisionCount.incrementAndGet(); 
+        if(this.retriesThisDecision > this.mostRetries){
+            this.mostRetries = this.retriesThisDecision; 
+        }
+        EventLog.decided(this.memberId, instance, this.retriesThisDecision); 
+        this.retriesThisDecision = 0; 
     }
 
     // making Council Member a thread does not really make sense 
@@ -259,30 +606,44 @@ public class CouncilMember implements Runnable{
     // output: no 
     public void reRunMemberServer(){
         try{
-            this.memberServerSocket = new ServerSocket(STARTING_PORT + this.memberId); 
-            RunMemberServer server = new RunMemberServer(this); 
-            Thread runMemberServer = new Thread(server); 
-            runMemberServer.start(); 
+            // map the decided values again, like a member that restarts
+            this.decidedValueStore.close(); 
+            this.decidedValueStore = new DecidedValueStore(AcceptorLog.LOG_DIRECTORY, this.memberId); 
+            this.memberServer = this.transport.bind(this, this.port); 
+            this.memberServer.start(); 
         }
         catch(Exception e){
-            System.out.println("Error when rerun Member Server."); 
-            e.printStackTrace(); 
+            EventLog.error(this.memberId, "Error when rerun Member Server.", e); 
         }
     }
 
     // latency type getter
     // input: no
-    // output: String (latency profile of this member): Immediate/Medium/Late/Never
+    // output: String (latency profile of this member): Immediate/Medium/Late/Never or a distribution
     public String getLatencyType(){
-        return this.latencyType; 
+        return this.latencyProfile.getName(); 
     }
 
     // latency type setter
     // set new latency type for this member
-    // input: String (new latency type): Immediate/Medium/Late/Never
+    // input: String (new latency type): Immediate/Medium/Late/Never or a distribution, see LatencyProfile
     // output: no 
     public void setLatencyType(String newLatency){
-        this.latencyType = newLatency; 
+        this.latencyProfile = LatencyProfile.parse(newLatency); 
+    }
+
+    // latency profile getter
+    // input: no
+    // output: LatencyProfile
+    public LatencyProfile getLatencyProfile(){
+        return this.latencyProfile; 
+    }
+
+    // latency profile setter
+    // input: LatencyProfile (new latency profile)
+    // output: no
+    public void setLatencyProfile(LatencyProfile newLatencyProfile){
+        this.latencyProfile = newLatencyProfile; 
     }
 
     // proposer chosen value for the proposal getter
@@ -294,66 +655,97 @@ public class CouncilMember implements Runnable{
 
     // proposer chosen value for the proposal setter
     // set new value to propose
-    // input: String (new chosen value)
+    // input: String (new chosen value, see checkClientValue)
     // output: no 
     public void setChosenValue(String newChosenValue){
+        checkClientValue(newChosenValue); 
         this.chosenValue = newChosenValue;  
     }
 
-    // response list getter
+    // refuse a value from a client which starts with a marker the log reserves for its own values
+    // (a membership change, see Configuration, or a batch, see SubmissionQueue), it would be taken for one once it is decided
+    // input: String (value)
+    // output: no
+    public static void checkClientValue(String value){
+        if(Configuration.isChange(value)){
+            throw new IllegalArgumentException("A value can not start with the reserved marker of a membership change"); 
+        }
+        if(SubmissionQueue.isBatch(value)){
+            throw new IllegalArgumentException("A value can not start with the reserved marker of a batch"); 
+        }
+    }
+
+    // majority getter
     // input: no
-    // output: ArrayList<String, Object> (list of response objects)
-    public ArrayList<HashMap<String, Object>> getResponseList(){
-        return this.responseList; 
+    // output: int (number of members needed for a quorum in the configuration of the first undecided instance)
+    public int getMajority(){
+        return this.getConfiguration(this.getFirstUndecidedInstance()).getMajority(); 
     }
 
-    // responseListReady getter
+    // remember a ballot this member has observed, the next ballot it picks will be higher
+    // input: long (ballot)
+    // output: no
+    public void observeBallot(long ballot){
+        long current = this.highestBallotSeen.get(); 
+        while(ballot > current && this.highestBallotSeen.compareAndSet(current, ballot) == false){
+            current = this.highestBallotSeen.get(); 
+        }
+    }
+
+    // contention manager getter
     // input: no
-    // output: Condition
-    public Condition getResponseListReady(){
-        return this.responseListReady; 
+    // output: ContentionManager
+    public ContentionManager getContentionManager(){
+        return this.contentionManager; 
     }
 
-    // get the lock for responseListState
+    // contention manager setter
+    // input: ContentionManager
+    // output: no
+    public void setContentionManager(ContentionManager contentionManager){
+        this.contentionManager = contentionManager; 
+    }
+
+    // number of decisions reached by this member as proposer
     // input: no
-    // output: ReentrantLock (lock of resposeListState)
-    public ReentrantLock getResponseListStateLock(){
-        return this.responseListStateLock; 
+    // output: long
+    public long getDecisionCount(){
+        return this.decisionCount.get(); 
     }
 
-    // get the responseListState
+    // number of retries over all decisions of this member
     // input: no
-    // output: boolean (true if the responseList is ready, false otherwise)
-    public boolean getResponseListState(){
-        return this.responseListState; 
+    // output: long
+    public long getRetryCount(){
+        return this.retryCount.get(); 
     }
 
-    // set the responseListState
-    // input: boolean (true if the responseList is ready, false otherwise) 
-    // output: no 
-    public void setResponseListState(boolean newState){
-        this.responseListState = newState; 
+    // highest number of retries of one decision
+    // input: no
+    // output: int
+    public int getMostRetries(){
+        return this.mostRetries; 
     }
 
-    // lastAcceptedProposalLock getter
+    // count a request sent or a response received by this member as proposer
     // input: no
-    // output: ReentrantLock, the lock of member field lastAcceptedProposal
-    public ReentrantLock getLastAcceptedProposalLock(){
-        return this.lastAcceptedProposalLock; 
+    // output: no
+    public void countMessage(){
+        this.messageCount.incrementAndGet(); 
     }
 
-    // highestProposalLock getter
+    // number of requests sent and responses received by this member as proposer
     // input: no
-    // output: ReentrantLock, the lock of member field highestProposalId
-    public ReentrantLock getHighestProposalIdLock(){
-        return this.highestProposalIdLock; 
+    // output: long
+    public long getMessageCount(){
+        return this.messageCount.get(); 
     }
 
-    // responseListLock getter
+    // metrics of this member
     // input: no
-    // output: ReentrantLock, the lock of member field responseList
-    public ReentrantLock getResponseListLock(){
-        return this.responseListLock; 
+    // output: MemberMetrics
+    public MemberMetrics getMetrics(){
+        return this.metrics; 
     }
 
     // member id getter
@@ -363,39 +755,91 @@ public class CouncilMember implements Runnable{
         return this.memberId; 
     }
 
-    // member server socket getter
+    // get the proposal this member/acceptor has accepted for a log instance
+    // input: int (log instance)
+    // output: Proposal, the accepted proposal of that instance (null if nothing accepted)
+    public Proposal getAcceptedProposal(int instance){
+        return this.acceptorState.get().getAcceptedProposal(instance); 
+    }
+
+    // current acceptor snapshot getter
     // input: no
-    // output: ServerSocket, the server socket of this member
-    public ServerSocket getMemberServerSocket(){
-        return this.memberServerSocket; 
+    // output: AcceptorState (immutable)
+    public AcceptorState getAcceptorState(){
+        return this.acceptorState.get(); 
     }
 
-    // lastAcceptedProposal getter
-    // input: no 
-    // output: Proposal, the last accepted proposal of this member/acceptor
-    public Proposal getLastAcceptedProposal(){
-        return this.lastAcceptedProposal; 
+    // install a new acceptor snapshot if no other request has changed the state since expectedState was read
+    // input: AcceptorState (snapshot the change was built from), AcceptorState (new snapshot)
+    // output: boolean (false if the caller must read the state again and retry)
+    public boolean compareAndSetAcceptorState(AcceptorState expectedState, AcceptorState newState){
+        return this.acceptorState.compareAndSet(expectedState, newState); 
     }
-    
-    // lastAcceptedProposal setter
-    // input: Proposal, new accepted proposal
+
+    // record the value decided for a log instance
+    // throws IllegalStateException if the member is offline (its decided value store is closed)
+    // input: int (log instance), String (decided value)
     // output: no
-    public void setLastAcceptedProposal(Proposal newAcceptedProposal){
-        this.lastAcceptedProposal = newAcceptedProposal; 
+    public void recordDecidedValue(int instance, String value){
+        this.decidedValueStore.append(instance, value); 
+        // a membership change applies Configuration.ALPHA instances later
+        if(Configuration.isChange(value)){
+            Configuration configuration = Configuration.decode(instance, value); 
+            this.configurations.putIfAbsent(configuration.getFirstInstance(), configuration); 
+        }
     }
 
-    // highestProposalId getter
+    // record a proposal decided by another proposer, the pipeline completes its own value when another proposer decided it
+    // input: Proposal (decided proposal, from a Decide)
+    // output: no
+    public void recordDecidedProposal(Proposal proposal){
+        try{
+            this.recordDecidedValue(proposal.getInstance(), proposal.getValue()); 
+        }
+        catch(IllegalStateException e){
+            // the member went offline while the Decide was handled, it learns the decision again like a member that missed the Decide
+            EventLog.error(this.memberId, "Decide of instance " + proposal.getInstance() + " not recorded, the member is offline", null); 
+            return; 
+        }
+        AcceptPipeline pipeline = this.acceptPipeline; 
+        if(pipeline != null){
+            pipeline.decidedElsewhere(proposal); 
+        }
+    }
+
+    // a new value id: the member id and the next number of this member, unique in the cluster
     // input: no
-    // output: int, the highest proposal this member/acceptor has seen so far
-    public int getHighestProposalId(){
-        return this.highestProposalId; 
+    // output: long (never Proposal.NO_VALUE_ID)
+    public long nextValueId(){
+        return ((long)this.memberId << 32) | (this.valueSequence.getAndIncrement() & 0xFFFFFFFFL); 
     }
 
-    // highestProposalId setter
-    // input: int, the new highest proposal id
-    // output: no 
-    public void setHighestProposalId(int newHighestProposalId){
-        this.highestProposalId = newHighestProposalId; 
+    // get the value decided for a log instance
+    // input: int (log instance)
+    // output: String (decided value, null if the instance has not been decided yet)
+    public String getDecidedValue(int instance){
+        return this.decidedValueStore.readValue(instance); 
+    }
+
+    // decided value store getter
+    // input: no
+    // output: DecidedValueStore
+    public DecidedValueStore getDecidedValueStore(){
+        return this.decidedValueStore; 
+    }
+
+    // get the first log instance that this member does not know to be decided
+    // input: no
+    // output: int (first undecided instance)
+    public int getFirstUndecidedInstance(){
+        return this.decidedValueStore.getFirstMissingInstance(); 
+    }
+
+    // highestProposalId getter
+    // input: no
+    // output: long, the highest proposal this member/acceptor has seen so far
+    public long getHighestProposalId(){
+        return this.acceptorState.get().getPromisedId(); 
     }
 
     // memberServerSocketList getter
@@ -405,16 +849,155 @@ public class CouncilMember implements Runnable{
         return this.memberServerSocketList; 
     }
 
+    // write-ahead log getter
+    // input: no
+    // output: AcceptorLog
+    public AcceptorLog getAcceptorLog(){
+        return this.acceptorLog; 
+    }
+
+    // connection pool getter
+    // input: no
+    // output: PeerConnectionPool, the connections from this member to all members
+    public PeerConnectionPool getConnectionPool(){
+        return this.connectionPool; 
+    }
+
+    // transport getter
+    // input: no
+    // output: Transport
+    public Transport getTransport(){
+        return this.transport; 
+    }
+
+    // the transport of the members created without one
+    // chosen with the paxos.transport property: "socket" (default), "simulated" or "simulated:<seed>" (seed 1 by default)
+    // the simulated transport must be created by the thread that runs the scenario, it becomes the first simulated thread
+    // input: no
+    // output: Transport
+    public static synchronized Transport getDefaultTransport(){
+        if(defaultTransport == null){
+            String spec = System.getProperty("paxos.transport", "socket"); 
+            if(spec.equals("socket")){
+                defaultTransport = new SocketTransport(); 
+            }
+            else if(spec.equals("simulated")){
+                defaultTransport = new SimulatedTransport(1); 
+            }
+            else if(spec.startsWith("simulated:")){
+                defaultTransport = new SimulatedTransport(Long.parseLong(spec.substring("simulated:".length()))); 
+            }
+            else{
+                throw new IllegalArgumentException("Unknown transport " + spec); 
+            }
+        }
+        return defaultTransport; 
+    }
+
+    // set the transport of the members created without one
+    // input: Transport
+    // output: no
+    public static synchronized void setDefaultTransport(Transport transport){
+        defaultTransport = transport; 
+    }
+
+    // start a proposer (or any task that waits on the protocol) on the default transport, used by the scenarios
+    // input: Runnable
+    // output: Thread (pass it to joinThread)
+    public static Thread startThread(Runnable task){
+        return getDefaultTransport().startThread(task); 
+    }
+
+    // wait until a thread started with startThread has finished
+    // input: Thread
+    // output: no
+    public static void joinThread(Thread thread){
+        try{
+            getDefaultTransport().join(thread); 
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt(); 
+        }
+    }
+
+    // sleep on the clock of the default transport, used by the scenarios
+    // input: long (milliseconds)
+    // output: no
+    public static void sleepMillis(long millis){
+        try{
+            getDefaultTransport().sleep(millis); 
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt(); 
+        }
+    }
+
+    // start a new cluster on this machine with the default transport, member ids (and ports) start again from 1
+    // the logs of an earlier cluster are deleted first, so the members start empty
+    // input: int (number of members), String (latency type of every member)
+    // output: ArrayList<CouncilMember> (member 1 first)
+    public static ArrayList<CouncilMember> startCluster(int memberCount, String latencyType){
+        AcceptorLog.deleteLogs(AcceptorLog.LOG_DIRECTORY); 
+        DecidedValueStore.deleteStores(AcceptorLog.LOG_DIRECTORY); 
+        ID = 0; 
+        ArrayList<String> serverSocketInfo = new ArrayList<String>(); 
+        ArrayList<CouncilMember> memberList = new ArrayList<CouncilMember>(); 
+        for(int i = 1; i <= memberCount; i++){
+            serverSocketInfo.add("localhost:" + (STARTING_PORT + i)); 
+        }
+        for(int i = 1; i <= memberCount; i++){
+            memberList.add(new CouncilMember(latencyType, serverSocketInfo)); 
+        }
+        return memberList; 
+    }
+
+    // stop a cluster started with startCluster: close the submission queues and pipelines of the members, 
+    // shut down their servers and connections and close their logs, so the next cluster can use the same ports and log directories
+    // input: List<CouncilMember>
+    // output: no
+    public static void stopCluster(List<CouncilMember> memberList){
+        for(int i = 0; i < memberList.size(); i++){
+            CouncilMember member = memberList.get(i); 
+            member.shutDownServer(); 
+            member.connectionPool.closeAll(); 
+            member.acceptorLog.close(); 
+            member.decidedValueStore.close(); 
+            MetricsServer.unregister(member.metrics); 
+        }
+    }
+
+    // get a new Correlation-Id for a fan-out
+    // input: no
+    // output: long
+    public long nextCorrelationId(){
+        return this.correlationIdCounter.incrementAndGet(); 
+    }
+
     // shut down this member server 
     // so that this member will not get any request from Proposers. 
+    // the connections Proposers have already opened are closed as well
     // input: no
     // output: no
     public void shutDownServer(){
-        try{
-            this.memberServerSocket.close(); 
+        this.memberServer.shutDown(); 
+        this.stopProposing(); 
+        // the decided values are on disk when the member goes offline
+        this.decidedValueStore.close(); 
+    }
+
+    // close the submission queue and the pipeline of this member, the values without an instance fail
+    // a value already in the Accept phase fails when its decision can not be recorded, see AcceptPipeline
+    // the next submit or getAcceptPipeline creates new ones (a member that comes back online)
+    // input: no
+    // output: no
+    private synchronized void stopProposing(){
+        if(this.submissionQueue != null){
+            this.submissionQueue.close(); 
+            this.submissionQueue = null; 
         }
-        catch(Exception e){
-            e.printStackTrace(); 
+        if(this.acceptPipeline != null){
+            this.acceptPipeline.close(); 
+            this.acceptPipeline = null; 
         }
     }
 
@@ -422,19 +1005,23 @@ public class CouncilMember implements Runnable{
     // input: ArrayList<CouncilMember> (the list of members in the test case), String (the file location to write output to) 
     // output: no 
     // after a test case, go through all the members in the protocol
-    // check their accepted value
-    // the value which the majority agreed on is the final output of the test case 
+    // the value decided in the first log instance (the instance the council president is elected in) is the final output of the test case 
+    // if no member knows the decision, check their accepted value in the first instance: the value which the majority agreed on is the output
     public static void writeOutputToTestFile(ArrayList<CouncilMember> memberList, String outputFileLocation){
+        String decidedValue = null; 
+        for(int i = 0; i < memberList.size() && decidedValue == null; i++){
+            decidedValue = memberList.get(i).getDecidedValue(FIRST_INSTANCE); 
+        }
         HashMap<String, Integer> acceptedValueCounterTable = new HashMap<String, Integer>(); 
         // collect the accepted values from all the members in the test case
         for(int i = 0; i < memberList.size(); i++){
-            Object acceptedProposal = memberList.get(i).getLastAcceptedProposal(); 
+            Proposal acceptedProposal = memberList.get(i).getAcceptedProposal(FIRST_INSTANCE); 
             String acceptedValue = ""; 
             // some Acceptor get killed before Accept any Proposal
-            // so their lastAcceptedProposal will be null
+            // so their accepted proposal will be null
             // need to check null
             if(acceptedProposal != null){
-                acceptedValue = memberList.get(i).getLastAcceptedProposal().getValue(); 
+                acceptedValue = acceptedProposal.getValue(); 
             }
             if(acceptedValueCounterTable.containsKey(acceptedValue)){
                 int currentCounter = acceptedValueCounterTable.get(acceptedValue); 
@@ -456,6 +1043,9 @@ public class CouncilMember implements Runnable{
                 valueWithHighestCounter = value; 
             }
         }
+        if(decidedValue != null){
+            valueWithHighestCounter = decidedValue; 
+        }
         // write the output to output file
         try{
             FileWriter fileWriter = new FileWriter(outputFileLocation); 
@@ -466,9 +1056,58 @@ public class CouncilMember implements Runnable{
         catch(Exception e){
 
         }
+        // show how well the write-ahead logs batched their fsyncs
+        long records = 0; 
+        long fsyncs = 0; 
+        long fsyncNanos = 0; 
+        int largestBatch = 0; 
+        for(int i = 0; i < memberList.size(); i++){
+            AcceptorLog log = memberList.get(i).getAcceptorLog(); 
+            records += log.getRecordCount(); 
+            fsyncs += log.getFsyncCount(); 
+            fsyncNanos += log.getFsyncNanos(); 
+            largestBatch = Math.max(largestBatch, log.getLargestBatch()); 
+        }
+        long decisions = 0; 
+        long retries = 0; 
+        int mostRetries = 0; 
+        for(int i = 0; i < memberList.size(); i++){
+            decisions += memberList.get(i).getDecisionCount(); 
+            retries += memberList.get(i).getRetryCount(); 
+            mostRetries = Math.max(mostRetries, memberList.get(i).getMostRetries()); 
+        }
+        // the events of the run are written before its summary
+        EventLog.flush(); 
+        if(decisions > 0){
+            System.out.println("Contention (" + memberList.get(0).getContentionManager() + "): " + decisions + " decisions, " + retries + " retries (" 
+                + String.format("%.2f", (double)retries / decisions) + " per decision, most " + mostRetries + ")"); 
+        }
+        if(fsyncs > 0){
+            System.out.println("Write-ahead logs: " + records + " records in " + fsyncs + " fsyncs (" + String.format("%.2f", (double)records / fsyncs) + " records per fsync, largest batch " + largestBatch 
+                + ", " + (fsyncNanos / fsyncs / 1000) + " us per fsync)"); 
+        }
     }
-    
+
     public static void main(String args[]){
+        // member mode: this process is one member of a cluster file, see MemberProcess
+        // (before the logs are deleted: the member recovers its own log, and the other members' logs belong to other processes)
+        if(args[0].equals("member")){
+            MemberProcess.main(Arrays.copyOfRange(args, 1, args.length)); 
+            return; 
+        }
+        // cluster mode: start one process per member of a cluster file, see ClusterLauncher
+        if(args[0].equals("cluster")){
+            ClusterLauncher.main(Arrays.copyOfRange(args, 1, args.length)); 
+            return; 
+        }
+        // every test case starts a new cluster, so the logs of a previous run must not be read back
+        AcceptorLog.deleteLogs(AcceptorLog.LOG_DIRECTORY); 
+        DecidedValueStore.deleteStores(AcceptorLog.LOG_DIRECTORY); 
+        // load mode: open-loop load on clusters of several sizes and latency mixes, see LoadGenerator for the options
+        if(args[0].equals("load")){
+            LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length)); 
+            return; 
+        }
         // normal mode
         if(args[0].equals("normal")){
             ArrayList<String> serverSocketInfo = new ArrayList<String>(); 
@@ -533,7 +1172,7 @@ public class CouncilMember implements Runnable{
             writeOutputToTestFile(memberList, "Testing/TestCase1Output.txt"); 
             // sleep 2s to make sure all the printings are completed
             try{
-                Thread.sleep(2000); 
+                sleepMillis(2000); 
             }
             catch(Exception e){
 
@@ -578,7 +1217,7 @@ public class CouncilMember implements Runnable{
             writeOutputToTestFile(memberList, "Testing/TestCase2Output.txt");
             // sleep 2s to make sure all the printings are completed
             try{
-                Thread.sleep(2000); 
+                sleepMillis(2000); 
             }
             catch(Exception e){
 
@@ -630,7 +1269,7 @@ public class CouncilMember implements Runnable{
             writeOutputToTestFile(memberList, "Testing/TestCase3Output.txt"); 
             // sleep 2s to make sure all the printings are completed
             try{
-                Thread.sleep(2000); 
+                sleepMillis(2000); 
             }
             catch(Exception e){
 
@@ -673,7 +1312,7 @@ public class CouncilMember implements Runnable{
             writeOutputToTestFile(memberList, "Testing/TestCase4Output.txt"); 
             // sleep 2s to make sure all the printings are completed
             try{
-                Thread.sleep(2000); 
+                sleepMillis(2000); 
             }
             catch(Exception e){
 
@@ -721,7 +1360,7 @@ public class CouncilMember implements Runnable{
             writeOutputToTestFile(memberList, "Testing/TestCase5Output.txt"); 
             // sleep 2s to make sure all the printings are completed
             try{
-                Thread.sleep(2000); 
+                sleepMillis(2000); 
             }
             catch(Exception e){
 
@@ -784,7 +1423,7 @@ public class CouncilMember implements Runnable{
             writeOutputToTestFile(memberList, "Testing/TestCase6Output.txt"); 
             // sleep 2s to make sure all the printings are completed
             try{
-                Thread.sleep(2000); 
+                sleepMillis(2000); 
             }
             catch(Exception e){
 
@@ -826,13 +1465,11 @@ public class CouncilMember implements Runnable{
             // member one and member two propose at the same time
             memberOne.setChosenValue("2001"); 
             memberTwo.setChosenValue("1980"); 
-            Thread memberOnePropose = new Thread(memberOne); 
-            Thread memberTwoPropose = new Thread(memberTwo); 
-            memberOnePropose.start(); 
-            memberTwoPropose.start(); 
+            Thread memberOnePropose = startThread(memberOne); 
+            Thread memberTwoPropose = startThread(memberTwo); 
             try{
-                memberOnePropose.join(); 
-                memberTwoPropose.join(); 
+                joinThread(memberOnePropose); 
+                joinThread(memberTwoPropose); 
             }
             catch(Exception e){
 
@@ -840,7 +1477,7 @@ public class CouncilMember implements Runnable{
             writeOutputToTestFile(memberList, "Testing/TestCase7Output.txt"); 
             // sleep 2s to make sure all the printings are completed
             try{
-                Thread.sleep(2000); 
+                sleepMillis(2000); 
             }
             catch(Exception e){
 
@@ -891,16 +1528,13 @@ public class CouncilMember implements Runnable{
             memberOne.setChosenValue("1999"); 
             memberTwo.setChosenValue("1980"); 
             memberThree.setChosenValue("1979"); 
-            Thread memberOnePropose = new Thread(memberOne); 
-            Thread memberTwoPropose = new Thread(memberTwo); 
-            Thread memberThreePropose = new Thread(memberThree); 
-            memberOnePropose.start(); 
-            memberTwoPropose.start(); 
-            memberThreePropose.start(); 
+            Thread memberOnePropose = startThread(memberOne); 
+            Thread memberTwoPropose = startThread(memberTwo); 
+            Thread memberThreePropose = startThread(memberThree); 
             try{
-                memberOnePropose.join(); 
-                memberTwoPropose.join(); 
-                memberThreePropose.join(); 
+                joinThread(memberOnePropose); 
+                joinThread(memberTwoPropose); 
+                joinThread(memberThreePropose); 
             }
             catch(Exception e){
 
@@ -908,7 +1542,7 @@ public class CouncilMember implements Runnable{
             writeOutputToTestFile(memberList, "Testing/TestCase8Output.txt"); 
             // sleep 2s to make sure all the printings are completed
             try{
-                Thread.sleep(2000); 
+                sleepMillis(2000); 
             }
             catch(Exception e){
 
@@ -963,7 +1597,7 @@ public class CouncilMember implements Runnable{
             
             // sleep 2s to make sure all the printings are completed
             try{
-                Thread.sleep(2000); 
+                sleepMillis(2000); 
             }
             catch(Exception e){
 
@@ -1020,13 +1654,11 @@ public class CouncilMember implements Runnable{
             memberOne.shutDownServer(); 
             memberTwo.setChosenValue("1999"); 
             memberThree.setChosenValue("1980"); 
-            Thread memberTwoPropose = new Thread(memberTwo); 
-            Thread memberThreePropose = new Thread(memberThree); 
-            memberTwoPropose.start(); 
-            memberThreePropose.start(); 
+            Thread memberTwoPropose = startThread(memberTwo); 
+            Thread memberThreePropose = startThread(memberThree); 
             try{
-                memberTwoPropose.join(); 
-                memberThreePropose.join(); 
+                joinThread(memberTwoPropose); 
+                joinThread(memberThreePropose); 
             }
             catch(Exception e){
 
@@ -1034,7 +1666,7 @@ public class CouncilMember implements Runnable{
             writeOutputToTestFile(memberList, "Testing/TestCase10Output.txt"); 
             // sleep 2s to make sure all the printings are completed
             try{
-                Thread.sleep(2000); 
+                sleepMillis(2000); 
             }
             catch(Exception e){
 
@@ -1090,24 +1722,23 @@ public class CouncilMember implements Runnable{
             memberList.add(memberFifteen); 
             memberOne.setChosenValue("2001"); 
             memberTwo.setChosenValue("2003"); 
-            Thread memberOnePropose = new Thread(memberOne); 
-            Thread memberTwoPropose = new Thread(memberTwo); 
-            memberOnePropose.start(); 
-            memberTwoPropose.start(); 
+            Thread memberOnePropose = startThread(memberOne); 
+            Thread memberTwoPropose = startThread(memberTwo); 
             // kill some Acceptors in the middle of the Paxos
             try{
-                Thread.sleep(2000); // delay 2s for the Paxos run
+                sleepMillis(2000); // delay 2s for the Paxos run
             }
             catch(Exception e){
 
             }
             memberNine.shutDownServer(); 
             memberTen.shutDownServer(); 
+            EventLog.flush(); 
             System.out.println("Kill Member 9 and Member 10."); 
             // wait for the first 2 Proposers complete
             try{
-                memberOnePropose.join(); 
-                memberTwoPropose.join(); 
+                joinThread(memberOnePropose); 
+                joinThread(memberTwoPropose); 
             }
             catch(Exception e){
 
@@ -1118,7 +1749,7 @@ public class CouncilMember implements Runnable{
             writeOutputToTestFile(memberList, "Testing/TestCase11Output.txt"); 
             // sleep 2s to make sure all the printings are completed
             try{
-                Thread.sleep(2000); 
+                sleepMillis(2000); 
             }
             catch(Exception e){
 
@@ -1190,15 +1821,12 @@ public class CouncilMember implements Runnable{
             memberFour.setChosenValue("1980"); 
             memberFive.setChosenValue("1999"); 
             memberSix.setChosenValue("2001"); 
-            Thread memberFourPropose = new Thread(memberFour); 
-            Thread memberFivePropose = new Thread(memberFive); 
-            Thread memberSixPropose = new Thread(memberSix); 
-            memberFourPropose.start(); 
-            memberFivePropose.start(); 
-            memberSixPropose.start(); 
+            Thread memberFourPropose = startThread(memberFour); 
+            Thread memberFivePropose = startThread(memberFive); 
+            Thread memberSixPropose = startThread(memberSix); 
             // some Acceptors go offline in the middle of the Paxos round
             try{
-                Thread.sleep(3000); 
+                sleepMillis(3000); 
             }
             catch(Exception e){
 
@@ -1206,10 +1834,11 @@ public class CouncilMember implements Runnable{
             memberSixteen.shutDownServer(); 
             memberOne.shutDownServer(); 
             memberNine.shutDownServer(); 
+            EventLog.flush(); 
             System.out.println("Kill Member 16, Member 1 and Member 9."); 
             // go back online in the middle of the Paxos round
             try{
-                Thread.sleep(4000); 
+                sleepMillis(4000); 
             }
             catch(Exception e){
 
@@ -1217,11 +1846,12 @@ public class CouncilMember implements Runnable{
             memberSixteen.reRunMemberServer(); 
             memberOne.reRunMemberServer(); 
             memberNine.reRunMemberServer(); 
+            EventLog.flush(); 
             System.out.println("Member 16, Member 1, Member 9 go back online."); 
             try{
-                memberFourPropose.join(); 
-                memberFivePropose.join(); 
-                memberSixPropose.join(); 
+                joinThread(memberFourPropose); 
+                joinThread(memberFivePropose); 
+                joinThread(memberSixPropose); 
             }
             catch(Exception e){
 
@@ -1229,7 +1859,7 @@ public class CouncilMember implements Runnable{
             writeOutputToTestFile(memberList, "Testing/TestCase12Output.txt"); 
             // wait for 2 seconds to make sure all the printing information has been completed 
             try{
-                Thread.sleep(2000); 
+                sleepMillis(2000); 
             }
             catch(Exception e){
 
@@ -1297,15 +1927,12 @@ public class CouncilMember implements Runnable{
             memberFour.setChosenValue("1980"); 
             memberFive.setChosenValue("1999"); 
             memberSix.setChosenValue("2001"); 
-            Thread memberFourPropose = new Thread(memberFour); 
-            Thread memberFivePropose = new Thread(memberFive); 
-            Thread memberSixPropose = new Thread(memberSix); 
-            memberFourPropose.start(); 
-            memberFivePropose.start(); 
-            memberSixPropose.start(); 
+            Thread memberFourPropose = startThread(memberFour); 
+            Thread memberFivePropose = startThread(memberFive); 
+            Thread memberSixPropose = startThread(memberSix); 
             // all Acceptors go offline in the middle of the Paxos round
             try{
-                Thread.sleep(4000); 
+                sleepMillis(4000); 
             }
             catch(Exception e){
 
@@ -1313,10 +1940,11 @@ public class CouncilMember implements Runnable{
             for(int i = 0; i < memberList.size(); i++){
                 memberList.get(i).shutDownServer(); 
             }
+            EventLog.flush(); 
             System.out.println("Kill all members in the protocol."); 
             // go back online after 7 seconds
             try{
-                Thread.sleep(7000); 
+                sleepMillis(7000); 
             }
             catch(Exception e){
 
@@ -1324,11 +1952,12 @@ public class CouncilMember implements Runnable{
             for(int i = 0; i < memberList.size(); i++){
                 memberList.get(i).reRunMemberServer(); 
             }
+            EventLog.flush(); 
             System.out.println("All the members in the protocol go back online."); 
             try{
-                memberFourPropose.join(); 
-                memberFivePropose.join(); 
-                memberSixPropose.join(); 
+                joinThread(memberFourPropose); 
+                joinThread(memberFivePropose); 
+                joinThread(memberSixPropose); 
             }
             catch(Exception e){
 
@@ -1336,7 +1965,7 @@ public class CouncilMember implements Runnable{
             writeOutputToTestFile(memberList, "Testing/TestCase13Output.txt"); 
             // wait for 2 seconds to make sure all the printing information has been completed 
             try{
-                Thread.sleep(2000); 
+                sleepMillis(2000); 
             }
             catch(Exception e){
 
@@ -1347,5 +1976,749 @@ public class CouncilMember implements Runnable{
                  memberList.get(i).shutDownServer(); 
             }
         }
+        // codec test: every message type must survive a round trip through MessageCodec
+        // then compare the size and encode/decode cost with the previous ObjectOutputStream format
+        if(args[0].equals("testing") && args[1].equals("codec")){
+            ArrayList<Message> messageList = new ArrayList<Message>(); 
+            HashMap<Integer, Proposal> acceptedProposals = new HashMap<Integer, Proposal>(); 
+            acceptedProposals.put(3, new Proposal(1, "1999", 3, Ballot.of(1, 1), (1L << 32) | 7)); 
+            acceptedProposals.put(4, new Proposal(4, "Pr\u00e9sident", 4, Ballot.of(1, 4))); 
+            messageList.add(new PrepareMessage(2, 41L, Ballot.of(2, 2), 3)); 
+            messageList.add(new PromiseMessage(4, 41L, Ballot.of(2, 2), new HashMap<Integer, Proposal>())); 
+            messageList.add(new PromiseMessage(5, 41L, Ballot.of(2, 2), acceptedProposals)); 
+            messageList.add(new AcceptMessage(2, 42L, new Proposal(2, "2001", 3, Ballot.of(2, 2), (2L << 32) | 8))); 
+            messageList.add(new AcceptedMessage(5, 42L, new Proposal(2, "2001", 3, Ballot.of(2, 2), (2L << 32) | 8))); 
+            messageList.add(new RejectMessage(6, 42L, Message.PREPARE, Ballot.of(3, 4), null)); 
+            messageList.add(new RejectMessage(6, 42L, Message.ACCEPT, Ballot.of(3, 4), new Proposal(4, "Pr\u00e9sident", 3, Ballot.of(3, 4), (4L << 32) | 9))); 
+            messageList.add(new DecideMessage(2, 43L, new Proposal(2, "", 3, Ballot.of(2, 2)))); 
+            boolean allPassed = true; 
+            int iterations = 100000; 
+            try{
+                for(int i = 0; i < messageList.size(); i++){
+                    Message message = messageList.get(i); 
+                    String name = message.getClass().getSimpleName(); 
+                    byte[] binary = MessageCodec.encode(message); 
+                    byte[] serialized = MessageCodec.encodeWithJavaSerialization(message); 
+                    // messages describe every field in toString, so equal descriptions mean an exact round trip
+                    boolean passed = message.toString().equals(MessageCodec.decode(binary).toString()); 
+                    allPassed = allPassed && passed; 
+                    // warm up both paths, then time them
+                    for(int j = 0; j < iterations; j++){
+                        MessageCodec.decode(MessageCodec.encode(message)); 
+                        MessageCodec.decodeWithJavaSerialization(MessageCodec.encodeWithJavaSerialization(message)); 
+                    }
+                    long start = System.nanoTime(); 
+                    for(int j = 0; j < iterations; j++){
+                        MessageCodec.decode(MessageCodec.encode(message)); 
+                    }
+                    long binaryNanos = (System.nanoTime() - start) / iterations; 
+                    start = System.nanoTime(); 
+                    for(int j = 0; j < iterations; j++){
+                        MessageCodec.decodeWithJavaSerialization(MessageCodec.encodeWithJavaSerialization(message)); 
+                    }
+                    long serializedNanos = (System.nanoTime() - start) / iterations; 
+                    EventLog.flush(); 
+                    System.out.println(name + ": round trip " + (passed ? "passed" : "FAILED") + ", " + binary.length + " bytes vs " + serialized.length + " bytes, " 
+                        + binaryNanos + " ns vs " + serializedNanos + " ns per encode+decode"); 
+                }
+                // a truncated frame either decodes (a cut in a value which runs to the end of the frame) or is refused with an IOException, 
+                // any other exception fails the test
+                int truncatedCount = 0; 
+                for(int i = 0; i < messageList.size(); i++){
+                    byte[] binary = MessageCodec.encode(messageList.get(i)); 
+                    for(int length = 0; length < binary.length; length++){
+                        try{
+                            MessageCodec.decode(Arrays.copyOf(binary, length)); 
+                        }
+                        catch(IOException e){
+                            truncatedCount++; 
+                        }
+                    }
+                }
+                // a Promise with a negative or oversized count or value length is refused before anything is allocated
+                int countPosition = MessageCodec.HEADER_BYTES; 
+                int lengthPosition = countPosition + 4 + 24; // count, then instance, ballot, member id and value id of the first proposal
+                int[][] corruptionList = {{countPosition, -1}, {countPosition, Integer.MAX_VALUE}, {lengthPosition, -1}, {lengthPosition, Integer.MAX_VALUE}}; 
+                int refusedCount = 0; 
+                for(int i = 0; i < corruptionList.length; i++){
+                    byte[] promise = MessageCodec.encode(messageList.get(2)); 
+                    ByteBuffer.wrap(promise).putInt(corruptionList[i][0], corruptionList[i][1]); 
+                    try{
+                        MessageCodec.decode(promise); 
+                    }
+                    catch(IOException e){
+                        refusedCount++; 
+                    }
+                }
+                allPassed = allPassed && refusedCount == corruptionList.length; 
+                System.out.println("Corrupt frames: " + truncatedCount + " truncated frames refused, " + refusedCount + " of " + corruptionList.length + " corrupt lengths refused"); 
+            }
+            catch(Exception e){
+                allPassed = false; 
+                e.printStackTrace(); 
+            }
+            try{
+                PrintWriter printWriter = new PrintWriter(new FileWriter("Testing/TestCaseCodecOutput.txt")); 
+                printWriter.print(allPassed ? "passed" : "failed"); 
+                printWriter.close(); 
+            }
+            catch(Exception e){
+
+            }
+        }
+        // stress test: many threads send Prepare/Accept requests straight to one Acceptor
+        // then check that the snapshots installed with compareAndSet kept the safety invariants of Paxos
+        if(args[0].equals("testing") && args[1].equals("stress")){
+            ArrayList<String> serverSocketInfo = new ArrayList<String>(); 
+            serverSocketInfo.add("localhost:" + (STARTING_PORT + 1)); 
+            final CouncilMember acceptor = new CouncilMember("Immediate", serverSocketInfo); 
+            final int threadCount = Math.max(4, Runtime.getRuntime().availableProcessors()); 
+            final int requestsPerThread = 20000; 
+            final int instanceCount = 16; 
+            final AtomicInteger highestPromiseSent = new AtomicInteger(-1); // highest id of a Promise that has been sent back
+            final AtomicInteger highestBallotSent = new AtomicInteger(-1); // highest id of a Promise or Accepted that has been sent back
+            final IntBinaryOperator max = new IntBinaryOperator(){
+                @Override
+                public int applyAsInt(int a, int b){
+                    return Math.max(a, b); 
+                }
+            }; 
+            final AtomicIntegerArray highestAccepted = new AtomicIntegerArray(instanceCount); // highest id of an Accepted in each instance
+            final AtomicInteger violationCounter = new AtomicInteger(0); 
+            for(int i = 0; i < instanceCount; i++){
+                highestAccepted.set(i, -1); 
+            }
+            ArrayList<Thread> threadList = new ArrayList<Thread>(); 
+            for(int t = 0; t < threadCount; t++){
+                final int seed = t; 
+                threadList.add(new Thread(new Runnable(){
+                    @Override
+                    public void run(){
+                        Random random = new Random(seed); 
+                        AcceptorResponseToRequest handler = new AcceptorResponseToRequest(acceptor, null, null); 
+                        for(int i = 0; i < requestsPerThread; i++){
+                            // ballots grow over time but overlap between threads, so both Promises and Rejects happen
+                            int proposalId = i * 4 + random.nextInt(64); 
+                            int instance = random.nextInt(instanceCount); 
+                            long promiseBefore = acceptor.getHighestProposalId(); 
+                            int promiseSentBefore = highestPromiseSent.get(); 
+                            if(random.nextBoolean()){
+                                Message response = handler.handlePrepareRequest(new PrepareMessage(seed, i, proposalId, instance)); 
+                                if(response.getType() == Message.PROMISE){
+                                    // an acceptor never promises below a promise it already made
+                                    if(proposalId < promiseBefore){
+                                        violationCounter.incrementAndGet(); 
+                                    }
+                                    // a Promise never reports a proposal accepted with a higher id
+                                    for(Proposal reported : ((PromiseMessage)response).getAcceptedProposals().values()){
+                                        if(reported.getID() > proposalId){
+                                            violationCounter.incrementAndGet(); 
+                                        }
+                                    }
+                                    highestPromiseSent.accumulateAndGet(proposalId, max); 
+                                    highestBallotSent.accumulateAndGet(proposalId, max); 
+                                }
+                                // a Reject is only sent when a higher id has been promised
+                                else if(proposalId >= acceptor.getHighestProposalId()){
+                                    violationCounter.incrementAndGet(); 
+                                }
+                            }
+                            else{
+                                Message response = handler.handleAcceptRequest(new AcceptMessage(seed, i, new Proposal(seed, "v" + proposalId, instance, proposalId))); 
+                                if(response.getType() == Message.ACCEPTED){
+                                    // an acceptor never accepts below a promise that has been sent back
+                                    if(proposalId < promiseSentBefore){
+                                        violationCounter.incrementAndGet(); 
+                                    }
+                                    highestAccepted.accumulateAndGet(instance, proposalId, max); 
+                                    highestBallotSent.accumulateAndGet(proposalId, max); 
+                                }
+                                // a Reject is only sent when a higher id has been promised
+                                else if(proposalId >= acceptor.getHighestProposalId()){
+                                    violationCounter.incrementAndGet(); 
+                                }
+                            }
+                            // the promise never goes down
+                            if(acceptor.getHighestProposalId() < promiseBefore){
+                                violationCounter.incrementAndGet(); 
+                            }
+                        }
+                    }
+                })); 
+            }
+            long start = System.nanoTime(); 
+            for(int t = 0; t < threadCount; t++){
+                threadList.get(t).start(); 
+            }
+            try{
+                for(int t = 0; t < threadCount; t++){
+                    threadList.get(t).join(); 
+                }
+            }
+            catch(InterruptedException e){
+                violationCounter.incrementAndGet(); 
+            }
+            long elapsedNanos = System.nanoTime() - start; 
+            // the final snapshot keeps the highest accepted proposal of each instance and its own value
+            AcceptorState finalState = acceptor.getAcceptorState(); 
+            for(int i = 0; i < instanceCount; i++){
+                Proposal accepted = finalState.getAcceptedProposal(i); 
+                int expectedId = highestAccepted.get(i); 
+                if((accepted == null && expectedId != -1) || (accepted != null && (accepted.getID() != expectedId || accepted.getValue().equals("v" + expectedId) == false))){
+                    violationCounter.incrementAndGet(); 
+                }
+            }
+            if(finalState.getPromisedId() != highestBallotSent.get()){
+                violationCounter.incrementAndGet(); 
+            }
+            long requestCount = (long)threadCount * requestsPerThread; 
+            EventLog.flush(); 
+            System.out.println(threadCount + " threads, " + requestCount + " requests in " + (elapsedNanos / 1000000) + " ms (" + (requestCount * 1000000000L / elapsedNanos) + " requests/s), " 
+                + violationCounter.get() + " violations, final " + finalState.getPromisedId()); 
+            try{
+                PrintWriter printWriter = new PrintWriter(new FileWriter("Testing/TestCaseStressOutput.txt")); 
+                printWriter.print(violationCounter.get() == 0 ? "passed" : "failed"); 
+                printWriter.close(); 
+            }
+            catch(Exception e){
+
+            }
+            acceptor.shutDownServer(); 
+            acceptor.getAcceptorLog().close(); 
+        }
+        // batching test: compare one Paxos round per value with values submitted through the submission queue
+        // then check that every submitted value is in the batch decided in the instance its future reported
+        if(args[0].equals("testing") && args[1].equals("batch")){
+            ArrayList<String> serverSocketInfo = new ArrayList<String>(); 
+            ArrayList<CouncilMember> memberList = new ArrayList<CouncilMember>(); 
+            for(int i = 1; i <= 5; i++){
+                serverSocketInfo.add("localhost:" + (STARTING_PORT + i)); 
+            }
+            for(int i = 1; i <= 5; i++){
+                memberList.add(new CouncilMember("Immediate", serverSocketInfo)); 
+            }
+            final CouncilMember leader = memberList.get(0); 
+            boolean passed = true; 
+            // one round per value
+            int unbatchedValues = 50; 
+            long start = System.nanoTime(); 
+            for(int i = 0; i < unbatchedValues; i++){
+                passed = passed && leader.proposeValue("single-" + i) >= 0; 
+            }
+            long unbatchedNanos = System.nanoTime() - start; 
+            // many submitters, values batched by the queue
+            final int submitterCount = 8; 
+            final int valuesPerSubmitter = 5000; 
+            final ConcurrentHashMap<String, CompletableFuture<Integer>> submitted = new ConcurrentHashMap<String, CompletableFuture<Integer>>(); 
+            ArrayList<Thread> submitterList = new ArrayList<Thread>(); 
+            for(int t = 0; t < submitterCount; t++){
+                final int submitter = t; 
+                submitterList.add(new Thread(new Runnable(){
+                    @Override
+                    public void run(){
+                        for(int i = 0; i < valuesPerSubmitter; i++){
+                            String value = "vote-" + submitter + "-" + i; 
+                            submitted.put(value, leader.submit(value)); 
+                        }
+                    }
+                })); 
+            }
+            start = System.nanoTime(); 
+            for(int t = 0; t < submitterCount; t++){
+                submitterList.get(t).start(); 
+            }
+            long batchedNanos = 0; 
+            HashMap<Integer, HashSet<String>> batchTable = new HashMap<Integer, HashSet<String>>(); // decided batch of each instance
+            try{
+                for(int t = 0; t < submitterCount; t++){
+                    submitterList.get(t).join(); 
+                }
+                CompletableFuture.allOf(submitted.values().toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS); 
+                batchedNanos = System.nanoTime() - start; 
+                for(Map.Entry<String, CompletableFuture<Integer>> entry : submitted.entrySet()){
+                    int instance = entry.getValue().get(); 
+                    if(batchTable.containsKey(instance) == false){
+                        batchTable.put(instance, new HashSet<String>(SubmissionQueue.decodeBatch(leader.getDecidedValue(instance)))); 
+                    }
+                    if(batchTable.get(instance).contains(entry.getKey()) == false){
+                        passed = false; 
+                    }
+                }
+            }
+            catch(Exception e){
+                passed = false; 
+                batchedNanos = System.nanoTime() - start; 
+                e.printStackTrace(); 
+            }
+            // every value is decided exactly once
+            int decidedValueCount = 0; 
+            for(HashSet<String> batch : batchTable.values()){
+                decidedValueCount += batch.size(); 
+            }
+            int batchedValues = submitterCount * valuesPerSubmitter; 
+            passed = passed && decidedValueCount == batchedValues && submitted.size() == batchedValues; 
+            // a value which looks like a batch is refused, a malformed batch is reported as such
+            try{
+                leader.submit(SubmissionQueue.BATCH_MARKER + "4:vote"); 
+                passed = false; 
+            }
+            catch(IllegalArgumentException e){
+
+            }
+            try{
+                SubmissionQueue.decodeBatch(SubmissionQueue.BATCH_MARKER + "9:vote"); 
+                passed = false; 
+            }
+            catch(IllegalArgumentException e){
+
+            }
+            EventLog.flush(); 
+            System.out.println("One round per value: " + unbatchedValues + " values in " + (unbatchedNanos / 1000000) + " ms (" + (unbatchedValues * 1000000000L / unbatchedNanos) + " values/s)"); 
+            System.out.println("Submission queue: " + batchedValues + " values in " + (batchedNanos / 1000000) + " ms (" + (batchedValues * 1000000000L / batchedNanos) + " values/s), " 
+                + leader.getSubmissionQueue().getBatchCount() + " batches, largest " + leader.getSubmissionQueue().getLargestBatch()); 
+            try{
+                PrintWriter printWriter = new PrintWriter(new FileWriter("Testing/TestCaseBatchOutput.txt")); 
+                printWriter.print(passed ? "passed" : "failed"); 
+                printWriter.close(); 
+            }
+            catch(Exception e){
+
+            }
+            leader.getSubmissionQueue().close(); 
+            for(int i = 0; i < memberList.size(); i++){
+                memberList.get(i).shutDownServer(); 
+            }
+        }
+        // pipeline test: the majority needs a member with Medium latency (5s), compare one instance at a time with a window of 8
+        // then check that the decisions were delivered in instance order and hold the proposed values
+        if(args[0].equals("testing") && args[1].equals("pipeline")){
+            ArrayList<String> serverSocketInfo = new ArrayList<String>(); 
+            ArrayList<CouncilMember> memberList = new ArrayList<CouncilMember>(); 
+            for(int i = 1; i <= 3; i++){
+                serverSocketInfo.add("localhost:" + (STARTING_PORT + i)); 
+            }
+            memberList.add(new CouncilMember("Immediate", serverSocketInfo)); 
+            memberList.add(new CouncilMember("Medium", serverSocketInfo)); 
+            memberList.add(new CouncilMember("Medium", serverSocketInfo)); 
+            CouncilMember leader = memberList.get(0); 
+            boolean passed = true; 
+            int[] windowList = {1, 8}; 
+            int valueCount = 8; 
+            for(int w = 0; w < windowList.length; w++){
+                AcceptPipeline pipeline = new AcceptPipeline(leader, windowList[w]); 
+                ArrayList<CompletableFuture<Integer>> deliveredList = new ArrayList<CompletableFuture<Integer>>(); 
+                ArrayList<Integer> deliveryOrder = new ArrayList<Integer>(); 
+                long start = System.nanoTime(); 
+                for(int i = 0; i < valueCount; i++){
+                    CompletableFuture<Integer> delivered = pipeline.propose("window-" + windowList[w] + "-value-" + i); 
+                    final ArrayList<Integer> order = deliveryOrder; 
+                    delivered.thenAccept(new Consumer<Integer>(){
+                        @Override
+                        public void accept(Integer instance){
+                            synchronized(order){
+                                order.add(instance); 
+                            }
+                        }
+                    }); 
+                    deliveredList.add(delivered); 
+                }
+                try{
+                    int previousInstance = -1; 
+                    for(int i = 0; i < valueCount; i++){
+                        int instance = deliveredList.get(i).get(120, TimeUnit.SECONDS); 
+                        // values are decided in the order they were proposed
+                        passed = passed && instance > previousInstance && ("window-" + windowList[w] + "-value-" + i).equals(leader.getDecidedValue(instance)); 
+                        previousInstance = instance; 
+                    }
+                    synchronized(deliveryOrder){
+                        for(int i = 1; i < deliveryOrder.size(); i++){
+                            passed = passed && deliveryOrder.get(i) > deliveryOrder.get(i - 1); 
+                        }
+                    }
+                }
+                catch(Exception e){
+                    passed = false; 
+                    e.printStackTrace(); 
+                }
+                long elapsedMillis = (System.nanoTime() - start) / 1000000; 
+                EventLog.flush(); 
+                System.out.println("Window " + windowList[w] + ": " + valueCount + " values in " + elapsedMillis + " ms (Phase 1 included), at most " + pipeline.getMostInFlight() + " instances in flight"); 
+                pipeline.close(); 
+            }
+            try{
+                PrintWriter printWriter = new PrintWriter(new FileWriter("Testing/TestCasePipelineOutput.txt")); 
+                printWriter.print(passed ? "passed" : "failed"); 
+                printWriter.close(); 
+            }
+            catch(Exception e){
+
+            }
+            for(int i = 0; i < memberList.size(); i++){
+                memberList.get(i).shutDownServer(); 
+            }
+        }
+        // lease test: a member reads the first instance through the quorum path once, then from its lease without any round
+        // another member cannot get a value decided while the lease is renewed, once the leader lets it run out it can
+        if(args[0].equals("testing") && args[1].equals("lease")){
+            System.setProperty("paxos.leaseMillis", "1000"); 
+            ArrayList<String> serverSocketInfo = new ArrayList<String>(); 
+            ArrayList<CouncilMember> memberList = new ArrayList<CouncilMember>(); 
+            for(int i = 1; i <= 3; i++){
+                serverSocketInfo.add("localhost:" + (STARTING_PORT + i)); 
+            }
+            for(int i = 1; i <= 3; i++){
+                memberList.add(new CouncilMember("Immediate", serverSocketInfo)); 
+            }
+            CouncilMember reader = memberList.get(0); 
+            CouncilMember proposer = memberList.get(1); 
+            boolean passed = true; 
+            // nothing decided yet, the first read runs Phase 1 and gets the lease
+            long start = System.nanoTime(); 
+            passed = passed && reader.read(FIRST_INSTANCE) == null && reader.getQuorumReadCount() == 1; 
+            long quorumReadNanos = System.nanoTime() - start; 
+            int leaseReads = 100000; 
+            start = System.nanoTime(); 
+            for(int i = 0; i < leaseReads; i++){
+                passed = passed && reader.read(FIRST_INSTANCE) == null; 
+            }
+            long leaseReadNanos = System.nanoTime() - start; 
+            passed = passed && reader.getQuorumReadCount() == 1; 
+            // the other member keeps being rejected while the reader renews its lease
+            proposer.setChosenValue("1999"); 
+            Thread proposerThread = new Thread(proposer); 
+            proposerThread.start(); 
+            try{
+                Thread.sleep(3 * reader.getLeaderLease().getLeaseMillis()); 
+                passed = passed && proposer.getDecidedValue(FIRST_INSTANCE) == null && reader.read(FIRST_INSTANCE) == null && reader.getQuorumReadCount() == 1; 
+                // the reader gives up its ballot, its lease runs out and the other member gets its value decided
+                reader.loseLeadership(); 
+                proposerThread.join(60000); 
+                passed = passed && "1999".equals(proposer.getDecidedValue(FIRST_INSTANCE)); 
+                long deadline = System.currentTimeMillis() + 10000; 
+                while(reader.getDecidedValue(FIRST_INSTANCE) == null && System.currentTimeMillis() < deadline){
+                    Thread.sleep(10); 
+                }
+                passed = passed && "1999".equals(reader.read(FIRST_INSTANCE)) && "1999".equals(proposer.read(FIRST_INSTANCE)); 
+                // the new leader answers reads of the next instance from its own lease
+                passed = passed && proposer.read(FIRST_INSTANCE + 1) == null && proposer.getQuorumReadCount() == 0; 
+            }
+            catch(Exception e){
+                passed = false; 
+                e.printStackTrace(); 
+            }
+            EventLog.flush(); 
+            System.out.println("Leader lease (" + reader.getLeaderLease() + "): quorum read " + (quorumReadNanos / 1000) + " us, lease read " 
+                + (leaseReadNanos / leaseReads) + " ns on average over " + leaseReads + " reads, " + reader.getLeaderLease().getGrantCount() + " grants/renewals"); 
+            try{
+                PrintWriter printWriter = new PrintWriter(new FileWriter("Testing/TestCaseLeaseOutput.txt")); 
+                printWriter.print(passed ? "passed" : "failed"); 
+                printWriter.close(); 
+            }
+            catch(Exception e){
+
+            }
+            proposer.loseLeadership(); 
+            for(int i = 0; i < memberList.size(); i++){
+                memberList.get(i).shutDownServer(); 
+            }
+        }
+        // simulation test: a large cluster on the simulated transport, three proposers competing for several instances
+        // the run is repeated with the same seed (it must give the same messages, virtual time and decisions) and with another seed
+        if(args[0].equals("testing") && args[1].equals("simulation")){
+            int memberCount = args.length > 2 ? Integer.parseInt(args[2]) : 1001; 
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : 42; 
+            int valuesPerProposer = 5; 
+            // small decided value stores, there is one per member
+            System.setProperty("paxos.segmentBytes", Integer.toString(64 * 1024)); 
+            long[] seedList = {seed, seed, seed + 1}; 
+            String[] signatureList = new String[seedList.length]; 
+            boolean passed = true; 
+            for(int r = 0; r < seedList.length; r++){
+                AcceptorLog.deleteLogs(AcceptorLog.LOG_DIRECTORY); 
+                DecidedValueStore.deleteStores(AcceptorLog.LOG_DIRECTORY); 
+                ID = 0; 
+                long start = System.nanoTime(); 
+                SimulatedTransport transport = new SimulatedTransport(seedList[r]); 
+                ArrayList<String> serverSocketInfo = new ArrayList<String>(); 
+                ArrayList<CouncilMember> memberList = new ArrayList<CouncilMember>(); 
+                for(int i = 1; i <= memberCount; i++){
+                    serverSocketInfo.add("localhost:" + (STARTING_PORT + i)); 
+                }
+                for(int i = 1; i <= memberCount; i++){
+                    memberList.add(new CouncilMember("Uniform:0:50", serverSocketInfo, transport)); 
+                }
+                long createdNanos = System.nanoTime() - start; 
+                start = System.nanoTime(); 
+                ArrayList<Thread> proposerList = new ArrayList<Thread>(); 
+                for(int p = 0; p < 3; p++){
+                    final CouncilMember proposer = memberList.get(p); 
+                    final int proposerIndex = p; 
+                    final int valueCount = valuesPerProposer; 
+                    proposerList.add(transport.startThread(new Runnable(){
+                        @Override
+                        public void run(){
+                            for(int i = 0; i < valueCount; i++){
+                                proposer.proposeValue("proposer-" + proposerIndex + "-value-" + i); 
+                            }
+                        }
+                    })); 
+                }
+                try{
+                    for(int p = 0; p < proposerList.size(); p++){
+                        transport.join(proposerList.get(p)); 
+                    }
+                    // let the last Decide messages arrive
+                    transport.sleep(1000); 
+                }
+                catch(InterruptedException e){
+                    passed = false; 
+                }
+                // every member which knows an instance knows the same value
+                StringBuilder signature = new StringBuilder(); 
+                int decidedInstances = memberList.get(0).getFirstUndecidedInstance(); 
+                for(int instance = 0; instance < decidedInstances; instance++){
+                    String value = memberList.get(0).getDecidedValue(instance); 
+                    for(int i = 1; i < memberList.size(); i++){
+                        String otherValue = memberList.get(i).getDecidedValue(instance); 
+                        passed = passed && (otherValue == null || otherValue.equals(value)); 
+                    }
+                    signature.append(value).append(';'); 
+                }
+                passed = passed && decidedInstances >= 3 * valuesPerProposer; 
+                signature.append(transport.getMessageCount()).append(" messages, ").append(transport.nanoTime()).append(" ns"); 
+                signatureList[r] = signature.toString(); 
+                long elapsedNanos = System.nanoTime() - start; 
+                EventLog.flush(); 
+                System.out.println("Simulation " + transport + ": " + memberCount + " members, " + decidedInstances + " instances decided, " 
+                    + transport.getMessageCount() + " messages, " + transport.getEventCount() + " events, " + (transport.nanoTime() / 1000000) + " ms of virtual time in " 
+                    + (elapsedNanos / 1000000) + " ms (" + (transport.getMessageCount() * 1000000000L / elapsedNanos) + " messages/s), members created in " + (createdNanos / 1000000) + " ms"); 
+                for(int i = 0; i < memberList.size(); i++){
+                    memberList.get(i).shutDownServer(); 
+                    memberList.get(i).getAcceptorLog().close(); 
+                }
+            }
+            // the same seed gives the same run, another seed gives another interleaving
+            passed = passed && signatureList[0].equals(signatureList[1]) && signatureList[0].equals(signatureList[2]) == false; 
+            try{
+                PrintWriter printWriter = new PrintWriter(new FileWriter("Testing/TestCaseSimulationOutput.txt")); 
+                printWriter.print(passed ? "passed" : "failed"); 
+                printWriter.close(); 
+            }
+            catch(Exception e){
+
+            }
+        }
+        // metrics test: a few values are decided, then the counters are read over JMX and scraped from the HTTP endpoint
+        if(args[0].equals("testing") && args[1].equals("metrics")){
+            System.setProperty("paxos.metricsPort", "0"); 
+            System.setProperty("paxos.metrics.cpu", "true"); 
+            ArrayList<CouncilMember> memberList = startCluster(5, "Immediate"); 
+            CouncilMember proposer = memberList.get(0); 
+            int valueCount = 3; 
+            boolean passed = true; 
+            for(int i = 0; i < valueCount; i++){
+                passed = passed && proposer.proposeValue("metrics-" + i) == FIRST_INSTANCE + i; 
+            }
+            try{
+                // the Decide fan-outs and the acceptors finish after proposeValue returns
+                long deadline = System.currentTimeMillis() + 10000; 
+                while((proposer.getMetrics().getDecideFanOuts() < valueCount || memberList.get(4).getMetrics().getAcceptorRequests() < 1 + 2 * valueCount) 
+                    && System.currentTimeMillis() < deadline){
+                    Thread.sleep(10); 
+                }
+                MemberMetrics metrics = proposer.getMetrics(); 
+                passed = passed && metrics.getPrepareRounds() == 1 && metrics.getAcceptRounds() == valueCount && metrics.getDecideFanOuts() == valueCount; 
+                passed = passed && metrics.getFailedRounds() == 0 && metrics.getRejectsReceived() == 0 && metrics.getAcceptP99Millis() > 0; 
+                passed = passed && memberList.get(4).getMetrics().getAcceptorRequests() == 1 + 2 * valueCount && memberList.get(4).getMetrics().getRejectsSent() == 0; 
+                // the same counters over JMX
+                javax.management.MBeanServer mbeanServer = java.lang.management.ManagementFactory.getPlatformMBeanServer(); 
+                javax.management.ObjectName name = new javax.management.ObjectName("paxos:type=CouncilMember,member=" + proposer.getMemberId()); 
+                passed = passed && ((Long)mbeanServer.getAttribute(name, "AcceptRounds")).longValue() == valueCount; 
+                passed = passed && ((String[])mbeanServer.getAttribute(name, "PeerSummary")).length == memberList.size(); 
+                // and from the endpoint, every family is announced once
+                URL url = new URL("http://localhost:" + MetricsServer.getHttpPort() + "/metrics"); 
+                BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8")); 
+                StringBuilder scrape = new StringBuilder(); 
+                String line; 
+                while((line = reader.readLine()) != null){
+                    scrape.append(line).append('\n'); 
+                }
+                reader.close(); 
+                String text = scrape.toString(); 
+                passed = passed && text.contains("paxos_phase_duration_seconds_count{member=\"1\",phase=\"accept\"} " + valueCount + "\n"); 
+                passed = passed && text.contains("paxos_acceptor_requests_total{member=\"5\",phase=\"prepare\"} 1\n"); 
+                passed = passed && text.contains("paxos_phase_cpu_seconds_total{member=\"1\",phase=\"accept\",side=\"proposer\"}"); 
+                passed = passed && text.contains("paxos_jvm_threads{state=\"live\"}"); 
+                passed = passed && text.indexOf("# TYPE paxos_phase_duration_seconds summary") == text.lastIndexOf("# TYPE paxos_phase_duration_seconds summary"); 
+                EventLog.flush(); 
+                System.out.println("Metrics of Council Member " + proposer.getMemberId() + ": " + metrics.getPrepareRounds() + " Prepare rounds, " + metrics.getAcceptRounds() 
+                    + " Accept rounds (p50 " + metrics.getAcceptP50Millis() + " ms), " + metrics.getDecideFanOuts() + " Decide fan-outs, scrape of " + text.length() + " bytes"); 
+            }
+            catch(Exception e){
+                passed = false; 
+                e.printStackTrace(); 
+            }
+            stopCluster(memberList); 
+            try{
+                PrintWriter printWriter = new PrintWriter(new FileWriter("Testing/TestCaseMetricsOutput.txt")); 
+                printWriter.print(passed ? "passed" : "failed"); 
+                printWriter.close(); 
+            }
+            catch(Exception e){
+
+            }
+        }
+        // processes test: three members, each in its own JVM started from a cluster file, the first one proposes 20 values
+        if(args[0].equals("testing") && args[1].equals("processes")){
+            ClusterConfig cluster = ClusterConfig.local(3, "localhost", STARTING_PORT + 1, ClusterConfig.DEFAULT_LATENCY); 
+            String file = AcceptorLog.LOG_DIRECTORY + "/cluster.txt"; 
+            boolean passed = true; 
+            try{
+                new File(AcceptorLog.LOG_DIRECTORY).mkdirs(); 
+                cluster.save(file); 
+                passed = ClusterConfig.load(file).getAddresses().equals(cluster.getAddresses()); 
+                passed = passed && new ClusterLauncher().run(cluster, file, "-Xmx128m", 20) == 0; 
+                // every member logged the decided values in its own process
+                for(int id = 2; id <= cluster.size(); id++){
+                    String output = new String(java.nio.file.Files.readAllBytes(new File(AcceptorLog.LOG_DIRECTORY, "member-" + id + ".out").toPath()), "UTF-8"); 
+                    passed = passed && output.contains("Council Member 1 is the leader with value member-1-value-19 in instance 19"); 
+                }
+            }
+            catch(Exception e){
+                passed = false; 
+                e.printStackTrace(); 
+            }
+            try{
+                PrintWriter printWriter = new PrintWriter(new FileWriter("Testing/TestCaseProcessesOutput.txt")); 
+                printWriter.print(passed ? "passed" : "failed"); 
+                printWriter.close(); 
+            }
+            catch(Exception e){
+
+            }
+        }
+        // reconfiguration test: members 4 and 5 never respond, member 1 swaps them for the new members 6 and 7 while its pipeline keeps proposing
+        // once the new configuration applies, members 2 and 3 go offline: only the new members can make the majority of it
+        if(args[0].equals("testing") && args[1].equals("reconfiguration")){
+            ArrayList<String> serverSocketInfo = new ArrayList<String>(); 
+            ArrayList<CouncilMember> memberList = new ArrayList<CouncilMember>(); 
+            for(int i = 1; i <= 5; i++){
+                serverSocketInfo.add("localhost:" + (STARTING_PORT + i)); 
+            }
+            memberList.add(new CouncilMember("Immediate", serverSocketInfo)); 
+            memberList.add(new CouncilMember("Immediate", serverSocketInfo)); 
+            memberList.add(new CouncilMember("Immediate", serverSocketInfo)); 
+            memberList.add(new CouncilMember("Never", serverSocketInfo)); 
+            memberList.add(new CouncilMember("Never", serverSocketInfo)); 
+            ArrayList<String> newServerSocketInfo = new ArrayList<String>(serverSocketInfo.subList(0, 3)); 
+            newServerSocketInfo.add("localhost:" + (STARTING_PORT + 6)); 
+            newServerSocketInfo.add("localhost:" + (STARTING_PORT + 7)); 
+            memberList.add(new CouncilMember(6, STARTING_PORT + 6, "Immediate", newServerSocketInfo, getDefaultTransport())); 
+            memberList.add(new CouncilMember(7, STARTING_PORT + 7, "Immediate", newServerSocketInfo, getDefaultTransport())); 
+            CouncilMember leader = memberList.get(0); 
+            AcceptPipeline pipeline = leader.getAcceptPipeline(); 
+            boolean passed = true; 
+            int valueCount = 40; 
+            long start = System.nanoTime(); 
+            try{
+                ArrayList<CompletableFuture<Integer>> deliveredList = new ArrayList<CompletableFuture<Integer>>(); 
+                CompletableFuture<Integer> activation = null; 
+                // a client value can not pass for a membership change
+                try{
+                    pipeline.propose(Configuration.encode(newServerSocketInfo)); 
+                    passed = false; 
+                }
+                catch(IllegalArgumentException e){
+
+                }
+                for(int i = 0; i < valueCount; i++){
+                    if(i == 10){
+                        activation = leader.reconfigure(newServerSocketInfo); 
+                    }
+                    deliveredList.add(pipeline.propose("reconfiguration-value-" + i)); 
+                }
+                int firstNewInstance = activation.get(60, TimeUnit.SECONDS); 
+                int previousInstance = -1; 
+                for(int i = 0; i < valueCount; i++){
+                    int instance = deliveredList.get(i).get(60, TimeUnit.SECONDS); 
+                    passed = passed && instance > previousInstance && ("reconfiguration-value-" + i).equals(leader.getDecidedValue(instance)); 
+                    previousInstance = instance; 
+                }
+                // the proposals kept going through the change, and the instances above it were decided by the new members
+                passed = passed && previousInstance >= firstNewInstance; 
+                passed = passed && leader.getConfiguration(firstNewInstance - 1).getMembers().equals(serverSocketInfo); 
+                passed = passed && leader.getConfiguration(firstNewInstance).getMembers().equals(newServerSocketInfo); 
+                // the old majority is gone, the new one is 1, 6 and 7
+                memberList.get(1).shutDownServer(); 
+                memberList.get(2).shutDownServer(); 
+                long offlineStart = System.nanoTime(); 
+                int lastInstance = -1; 
+                for(int i = 0; i < 10; i++){
+                    lastInstance = pipeline.propose("after-value-" + i).get(60, TimeUnit.SECONDS); 
+                }
+                long offlineMillis = (System.nanoTime() - offlineStart) / 1000000; 
+                // no round waited for its deadline (13 s)
+                passed = passed && offlineMillis < 13000; 
+                long deadline = System.currentTimeMillis() + 5000; 
+                while((memberList.get(5).getDecidedValue(lastInstance) == null || memberList.get(6).getDecidedValue(lastInstance) == null) && System.currentTimeMillis() < deadline){
+                    Thread.sleep(10); 
+                }
+                passed = passed && "after-value-9".equals(memberList.get(5).getDecidedValue(lastInstance)) && "after-value-9".equals(memberList.get(6).getDecidedValue(lastInstance)); 
+                EventLog.flush(); 
+                System.out.println("Reconfiguration: " + (valueCount + 10) + " values in " + (System.nanoTime() - start) / 1000000 + " ms, new members decide from instance " 
+                    + firstNewInstance + ", 10 values with the old majority offline in " + offlineMillis + " ms"); 
+            }
+            catch(Exception e){
+                passed = false; 
+                e.printStackTrace(); 
+            }
+            pipeline.close(); 
+            try{
+                PrintWriter printWriter = new PrintWriter(new FileWriter("Testing/TestCaseReconfigurationOutput.txt")); 
+                printWriter.print(passed ? "passed" : "failed"); 
+                printWriter.close(); 
+            }
+            catch(Exception e){
+
+            }
+            for(int i = 0; i < memberList.size(); i++){
+                if(i != 1 && i != 2){
+                    memberList.get(i).shutDownServer(); 
+                }
+            }
+        }
+        // connection test: the socket of a connection breaks right before a request is written
+        // the write is retried on a new socket and the request must still get its response
+        if(args[0].equals("testing") && args[1].equals("connection")){
+            ArrayList<String> serverSocketInfo = new ArrayList<String>(); 
+            serverSocketInfo.add("localhost:" + (STARTING_PORT + 1)); 
+            CouncilMember acceptor = new CouncilMember("Immediate", serverSocketInfo); 
+            PeerConnection connection = new PeerConnection(new InetSocketAddress("localhost", STARTING_PORT + 1)); 
+            boolean passed = true; 
+            try{
+                Message response = connection.sendRequest(new PrepareMessage(2, 1L, Ballot.of(1, 2), FIRST_INSTANCE)).get(10, TimeUnit.SECONDS); 
+                passed = passed && response.getType() == Message.PROMISE; 
+                connection.breakSocket(); 
+                response = connection.sendRequest(new PrepareMessage(2, 2L, Ballot.of(2, 2), FIRST_INSTANCE)).get(10, TimeUnit.SECONDS); 
+                passed = passed && response.getType() == Message.PROMISE && response.getCorrelationId() == 2L; 
+                // the new socket keeps working
+                response = connection.sendRequest(new PrepareMessage(2, 3L, Ballot.of(3, 2), FIRST_INSTANCE)).get(10, TimeUnit.SECONDS); 
+                passed = passed && response.getType() == Message.PROMISE && response.getCorrelationId() == 3L; 
+            }
+            catch(Exception e){
+                passed = false; 
+                e.printStackTrace(); 
+            }
+            connection.close(); 
+            try{
+                PrintWriter printWriter = new PrintWriter(new FileWriter("Testing/TestCaseConnectionOutput.txt")); 
+                printWriter.print(passed ? "passed" : "failed"); 
+                printWriter.close(); 
+            }
+            catch(Exception e){
+
+            }
+            acceptor.shutDownServer(); 
+        }
     }
 }
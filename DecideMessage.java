@@ -0,0 +1,30 @@
+// tell every member that a proposal has been decided in its instance, there is no response
+public final class DecideMessage extends Message{
+    private static final long serialVersionUID = 1L; 
+    private final Proposal proposal; // decided proposal
+
+    // DecideMessage constructor
+    // input: int (sender id), long (Correlation-Id), Proposal (decided proposal)
+    // output: no
+    public DecideMessage(int senderId, long correlationId, Proposal proposal){
+        super(senderId, correlationId); 
+        this.proposal = proposal; 
+    }
+
+    @Override
+    public byte getType(){
+        return DECIDE; 
+    }
+
+    // proposal getter
+    // input: no
+    // output: Proposal
+    public Proposal getProposal(){
+        return this.proposal; 
+    }
+
+    @Override
+    public String toString(){
+        return "Decide(sender=" + this.getSenderId() + ", correlation=" + this.getCorrelationId() + ", " + describe(this.proposal) + ")"; 
+    }
+}
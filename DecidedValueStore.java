@@ -0,0 +1,361 @@
+import java.util.*; 
+import java.io.*; 
+import java.nio.*; 
+import java.nio.channels.*; 
+import java.nio.charset.StandardCharsets; 
+import java.nio.file.*; 
+import java.util.concurrent.*; 
+import java.util.concurrent.locks.*; 
+
+// store of the values decided for each log instance, kept in fixed-size memory-mapped segment files
+// segment-<n>.dat: records appended one after another, a record never crosses the end of a segment
+//   record: instance + 1 (4 bytes, 0 marks the unused end of a segment) | value length (4 bytes) | value (UTF-8)
+//   a value which does not fit in a segment is written to its own file large-<instance>.dat, its record has LARGE_RECORD as length and no value
+// index-<n>.dat: one 8 byte slot per instance holding the offset of its record + 1 (0 if the instance is not decided)
+// head.dat: offset of the next record (8 bytes) | segment size (4 bytes), the records below the head are complete
+// reads return read-only views of the mapped segments, nothing is copied into the heap
+// a restart maps the files again, the records are not replayed
+//   an index slot is checked against the head and its record, a crash between the slot and the head leaves a stale slot which is cleared
+// close forces the mapped pages to disk, after that the store takes no more values (reads still see the mapped pages)
+public class DecidedValueStore{
+    public static final int DEFAULT_SEGMENT_BYTES = 1 << 20; // 1 MB per segment
+    private static final int INDEX_SLOTS_PER_FILE = 1 << 17; // 1 MB per index file
+    private static final int RECORD_HEADER_BYTES = 8; 
+    private static final int HEAD_BYTES = 12; 
+    private static final int LARGE_RECORD = -1; // value length of a record whose value is in large-<instance>.dat
+    private Path directory; 
+    private int segmentBytes; 
+    private CopyOnWriteArrayList<MappedByteBuffer> segmentList; // segmentList[n] is segment-<n>.dat
+    private CopyOnWriteArrayList<MappedByteBuffer> indexList; // indexList[n] is index-<n>.dat
+    private ConcurrentHashMap<Integer, MappedByteBuffer> largeValues; // instance -> large-<instance>.dat, mapped on first use
+    private MappedByteBuffer headBuffer; 
+    private volatile long head; // offset of the next record, written after the record and its index slot
+    private volatile int firstMissingInstance; // every instance below it is decided
+    private ReentrantLock appendLock; 
+    private boolean closed; // guarded by appendLock
+
+    // visitor of a sequential scan
+    public interface Visitor{
+        // input: int (instance), ByteBuffer (read-only view of the value bytes)
+        // output: no
+        void visit(int instance, ByteBuffer value); 
+    }
+
+    // open (or create) the store of a member by mapping its files
+    // input: String (directory of the logs), int (member id)
+    // output: no
+    public DecidedValueStore(String logDirectory, int memberId) throws IOException{
+        this.directory = Paths.get(logDirectory, "member-" + memberId + "-decided"); 
+        Files.createDirectories(this.directory); 
+        this.segmentList = new CopyOnWriteArrayList<MappedByteBuffer>(); 
+        this.indexList = new CopyOnWriteArrayList<MappedByteBuffer>(); 
+        this.largeValues = new ConcurrentHashMap<Integer, MappedByteBuffer>(); 
+        this.appendLock = new ReentrantLock(); 
+        Path headFile = this.directory.resolve("head.dat"); 
+        boolean existed = Files.exists(headFile); 
+        this.headBuffer = map(headFile, HEAD_BYTES); 
+        if(existed){
+            this.head = this.headBuffer.getLong(0); 
+            this.segmentBytes = this.headBuffer.getInt(8); 
+        }
+        else{
+            this.head = 0; 
+            this.segmentBytes = Integer.getInteger("paxos.segmentBytes", DEFAULT_SEGMENT_BYTES); 
+            this.headBuffer.putLong(0, 0); 
+            this.headBuffer.putInt(8, this.segmentBytes); 
+        }
+        // map every segment up to the head and every index file
+        for(int n = 0; (long)n * this.segmentBytes < this.head || n == 0; n++){
+            this.segmentList.add(map(this.directory.resolve("segment-" + n + ".dat"), this.segmentBytes)); 
+        }
+        for(int n = 0; Files.exists(this.directory.resolve("index-" + n + ".dat")) || n == 0; n++){
+            this.indexList.add(map(this.directory.resolve("index-" + n + ".dat"), INDEX_SLOTS_PER_FILE * 8)); 
+        }
+        this.clearStaleSlots(); 
+        this.firstMissingInstance = 0; 
+        this.advanceFirstMissingInstance(); 
+    }
+
+    // delete the stores of all members, used when a test case starts a new cluster
+    // input: String (directory of the logs)
+    // output: no
+    public static void deleteStores(String logDirectory){
+        File[] storeDirectories = new File(logDirectory).listFiles(); 
+        if(storeDirectories == null){
+            return; 
+        }
+        for(int i = 0; i < storeDirectories.length; i++){
+            if(storeDirectories[i].isDirectory() && storeDirectories[i].getName().endsWith("-decided")){
+                File[] files = storeDirectories[i].listFiles(); 
+                for(int j = 0; files != null && j < files.length; j++){
+                    files[j].delete(); 
+                }
+                storeDirectories[i].delete(); 
+            }
+        }
+    }
+
+    // store the decided value of an instance
+    // input: int (instance, >= 0), String (decided value)
+    // output: boolean (false if the instance was already stored)
+    public boolean append(int instance, String value){
+        if(instance < 0){
+            throw new IllegalArgumentException("Invalid instance " + instance); 
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8); 
+        // a value which does not fit in a segment gets its own file, the segment only holds its record header
+        boolean large = RECORD_HEADER_BYTES + bytes.length > this.segmentBytes; 
+        int recordBytes = large ? RECORD_HEADER_BYTES : RECORD_HEADER_BYTES + bytes.length; 
+        this.appendLock.lock(); 
+        try{
+            if(this.closed){
+                throw new IllegalStateException("Decided value store closed"); 
+            }
+            if(this.indexSlot(instance) != 0){
+                return false; 
+            }
+            if(large){
+                MappedByteBuffer largeValue = map(this.directory.resolve("large-" + instance + ".dat"), bytes.length); 
+                largeValue.duplicate().put(bytes); 
+                this.largeValues.put(instance, largeValue); 
+            }
+            int segment = (int)(this.head / this.segmentBytes); 
+            int position = (int)(this.head % this.segmentBytes); 
+            // the record does not fit in the rest of the segment, start the next one
+            if(position + recordBytes > this.segmentBytes){
+                segment++; 
+                position = 0; 
+            }
+            while(this.segmentList.size() <= segment){
+                this.segmentList.add(map(this.directory.resolve("segment-" + this.segmentList.size() + ".dat"), this.segmentBytes)); 
+            }
+            ByteBuffer segmentBuffer = this.segmentList.get(segment).duplicate(); 
+            segmentBuffer.position(position); 
+            segmentBuffer.putInt(instance + 1); 
+            if(large){
+                segmentBuffer.putInt(LARGE_RECORD); 
+            }
+            else{
+                segmentBuffer.putInt(bytes.length); 
+                segmentBuffer.put(bytes); 
+            }
+            long offset = (long)segment * this.segmentBytes + position; 
+            while(this.indexList.size() <= instance / INDEX_SLOTS_PER_FILE){
+                this.indexList.add(map(this.directory.resolve("index-" + this.indexList.size() + ".dat"), INDEX_SLOTS_PER_FILE * 8)); 
+            }
+            this.indexList.get(instance / INDEX_SLOTS_PER_FILE).putLong((instance % INDEX_SLOTS_PER_FILE) * 8, offset + 1); 
+            // publish the record: readers check the head first
+            long newHead = offset + recordBytes; 
+            this.headBuffer.putLong(0, newHead); 
+            this.head = newHead; 
+            this.advanceFirstMissingInstance(); 
+            return true; 
+        }
+        catch(IOException e){
+            throw new UncheckedIOException(e); 
+        }
+        finally{
+            this.appendLock.unlock(); 
+        }
+    }
+
+    // get the decided value of an instance without copying it
+    // input: int (instance)
+    // output: ByteBuffer (read-only view of the value bytes, null if the instance is not decided)
+    public ByteBuffer read(int instance){
+        long currentHead = this.head; 
+        long slot = this.indexSlot(instance); 
+        if(slot == 0 || slot - 1 >= currentHead){
+            return null; 
+        }
+        long offset = slot - 1; 
+        ByteBuffer segmentBuffer = this.segmentList.get((int)(offset / this.segmentBytes)).duplicate(); 
+        int position = (int)(offset % this.segmentBytes); 
+        int length = segmentBuffer.getInt(position + 4); 
+        if(length == LARGE_RECORD){
+            return this.readLarge(instance); 
+        }
+        segmentBuffer.limit(position + RECORD_HEADER_BYTES + length); 
+        segmentBuffer.position(position + RECORD_HEADER_BYTES); 
+        return segmentBuffer.slice().asReadOnlyBuffer(); 
+    }
+
+    // get the decided value of an instance as a String
+    // input: int (instance)
+    // output: String (null if the instance is not decided)
+    public String readValue(int instance){
+        ByteBuffer value = this.read(instance); 
+        if(value == null){
+            return null; 
+        }
+        return StandardCharsets.UTF_8.decode(value).toString(); 
+    }
+
+    // visit every decided value in the order they were stored
+    // input: Visitor
+    // output: no
+    public void scan(Visitor visitor){
+        long currentHead = this.head; 
+        long offset = 0; 
+        while(offset < currentHead){
+            int segment = (int)(offset / this.segmentBytes); 
+            int position = (int)(offset % this.segmentBytes); 
+            ByteBuffer segmentBuffer = this.segmentList.get(segment).duplicate(); 
+            // the unused end of a segment, continue with the next segment
+            if(position + RECORD_HEADER_BYTES > this.segmentBytes || segmentBuffer.getInt(position) == 0){
+                offset = (long)(segment + 1) * this.segmentBytes; 
+                continue; 
+            }
+            int instance = segmentBuffer.getInt(position) - 1; 
+            int length = segmentBuffer.getInt(position + 4); 
+            if(length == LARGE_RECORD){
+                visitor.visit(instance, this.readLarge(instance)); 
+                offset += RECORD_HEADER_BYTES; 
+                continue; 
+            }
+            segmentBuffer.limit(position + RECORD_HEADER_BYTES + length); 
+            segmentBuffer.position(position + RECORD_HEADER_BYTES); 
+            visitor.visit(instance, segmentBuffer.slice().asReadOnlyBuffer()); 
+            offset += RECORD_HEADER_BYTES + length; 
+        }
+    }
+
+    // first instance which is not decided yet
+    // input: no
+    // output: int
+    public int getFirstMissingInstance(){
+        return this.firstMissingInstance; 
+    }
+
+    // write the mapped pages to disk
+    // input: no
+    // output: no
+    public void force(){
+        this.appendLock.lock(); 
+        try{
+            for(MappedByteBuffer segment : this.segmentList){
+                segment.force(); 
+            }
+            for(MappedByteBuffer index : this.indexList){
+                index.force(); 
+            }
+            for(MappedByteBuffer largeValue : this.largeValues.values()){
+                largeValue.force(); 
+            }
+            this.headBuffer.force(); 
+        }
+        finally{
+            this.appendLock.unlock(); 
+        }
+    }
+
+    // get the value of an instance stored in its own file
+    // input: int (instance)
+    // output: ByteBuffer (read-only view of the value bytes)
+    private ByteBuffer readLarge(int instance){
+        MappedByteBuffer largeValue = this.largeValues.get(instance); 
+        if(largeValue == null){
+            try{
+                Path file = this.directory.resolve("large-" + instance + ".dat"); 
+                largeValue = map(file, (int)Files.size(file)); 
+            }
+            catch(IOException e){
+                throw new UncheckedIOException(e); 
+            }
+            MappedByteBuffer mapped = this.largeValues.putIfAbsent(instance, largeValue); 
+            if(mapped != null){
+                largeValue = mapped; 
+            }
+        }
+        return largeValue.asReadOnlyBuffer(); 
+    }
+
+    // write the mapped pages to disk and stop taking values, closing a closed store does nothing
+    // input: no
+    // output: no
+    public void close(){
+        this.appendLock.lock(); 
+        try{
+            if(this.closed == false){
+                this.force(); 
+                this.closed = true; 
+            }
+        }
+        finally{
+            this.appendLock.unlock(); 
+        }
+    }
+
+    // read the index slot of an instance
+    // input: int (instance)
+    // output: long (offset of the record + 1, 0 if the instance is not stored)
+    private long indexSlot(int instance){
+        int file = instance / INDEX_SLOTS_PER_FILE; 
+        if(instance < 0 || file >= this.indexList.size()){
+            return 0; 
+        }
+        return this.indexList.get(file).getLong((instance % INDEX_SLOTS_PER_FILE) * 8); 
+    }
+
+    // clear every index slot which does not point to a complete record of its instance below the head
+    // input: no
+    // output: no
+    private void clearStaleSlots(){
+        for(int file = 0; file < this.indexList.size(); file++){
+            MappedByteBuffer index = this.indexList.get(file); 
+            for(int i = 0; i < INDEX_SLOTS_PER_FILE; i++){
+                long slot = index.getLong(i * 8); 
+                if(slot != 0 && this.isValidRecord(file * INDEX_SLOTS_PER_FILE + i, slot - 1) == false){
+                    index.putLong(i * 8, 0); 
+                }
+            }
+        }
+    }
+
+    // check that a complete record of an instance is stored at an offset below the head
+    // input: int (instance), long (offset of the record)
+    // output: boolean
+    private boolean isValidRecord(int instance, long offset){
+        if(offset < 0 || offset + RECORD_HEADER_BYTES > this.head){
+            return false; 
+        }
+        int position = (int)(offset % this.segmentBytes); 
+        if(position + RECORD_HEADER_BYTES > this.segmentBytes){
+            return false; 
+        }
+        ByteBuffer segmentBuffer = this.segmentList.get((int)(offset / this.segmentBytes)); 
+        if(segmentBuffer.getInt(position) != instance + 1){
+            return false; 
+        }
+        int length = segmentBuffer.getInt(position + 4); 
+        if(length == LARGE_RECORD){
+            return Files.exists(this.directory.resolve("large-" + instance + ".dat")); 
+        }
+        return length >= 0 && position + RECORD_HEADER_BYTES + length <= this.segmentBytes && offset + RECORD_HEADER_BYTES + length <= this.head; 
+    }
+
+    // move firstMissingInstance past the instances which are stored
+    // input: no
+    // output: no
+    private void advanceFirstMissingInstance(){
+        int instance = this.firstMissingInstance; 
+        while(this.indexSlot(instance) != 0){
+            instance++; 
+        }
+        this.firstMissingInstance = instance; 
+    }
+
+    // map a file of a fixed size, the file is created (sparse) if needed
+    // input: Path, int (size in bytes)
+    // output: MappedByteBuffer
+    private static MappedByteBuffer map(Path file, int size) throws IOException{
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE); 
+        try{
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size); 
+        }
+        finally{
+            // the mapping stays valid after the channel is closed
+            channel.close(); 
+        }
+    }
+}
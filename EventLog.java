@@ -0,0 +1,400 @@
+import java.io.*; 
+import java.util.concurrent.atomic.*; 
+import java.util.concurrent.locks.*; 
+
+// asynchronous log of the protocol events (requests received, responses, decisions, errors)
+// the threads of the protocol do not format or print anything: they claim a slot of a ring buffer with one CAS,
+// copy the fields of the event into it (member, peer, phase, ballot, instance, ...) and publish it,
+// a background thread formats the published events and writes them to the console or to a file in batches
+// when the ring is full the event is dropped and counted instead of making the protocol wait, the writer reports the drops
+// properties:
+//   paxos.log.level   DEBUG, INFO (default), WARN, ERROR or OFF, events below the level are not even buffered
+//   paxos.log.file    write to this file instead of the console
+//   paxos.log.format  text (default, the sentences the scenarios have always printed) or structured (key=value per event)
+//   paxos.log.buffer  slots of the ring, rounded up to a power of two (default 65536)
+public class EventLog{
+    public static final int DEBUG = 0; 
+    public static final int INFO = 1; 
+    public static final int WARN = 2; 
+    public static final int ERROR = 3; 
+    public static final int OFF = 4; 
+    private static final String[] LEVEL_NAMES = {"DEBUG", "INFO", "WARN", "ERROR", "OFF"}; 
+    // kinds of event
+    public static final int SERVER_STARTED = 0; 
+    public static final int REQUEST_RECEIVED = 1; // an acceptor received a Prepare/Accept
+    public static final int RESPONSE_RECEIVED = 2; // a proposer received a Promise/Accepted/Reject
+    public static final int LEADER = 3; // a member learnt the value decided in an instance
+    public static final int DECIDED = 4; // a proposer got its value decided
+    public static final int GAVE_UP = 5; // a proposer/reader reached the retry cap
+    public static final int ERROR_EVENT = 6; // an error, with a description and possibly an exception
+    private static final String[] KIND_NAMES = {"server_started", "request_received", "response_received", "leader", "decided", "gave_up", "error"}; 
+    private static final int DEFAULT_BUFFER = 65536; 
+    private static final int BATCH_LINES = 256; // lines written to the output at once
+    private static final int level = parseLevel(System.getProperty("paxos.log.level", "INFO")); 
+    private static final boolean structured = "structured".equals(System.getProperty("paxos.log.format", "text")); 
+    private static final Slot[] ring = createRing(Integer.getInteger("paxos.log.buffer", DEFAULT_BUFFER)); 
+    private static final int mask = ring.length - 1; 
+    private static final AtomicLongArray published = createPublished(ring.length); // published[i] = sequence of the event in slot i once it can be read
+    private static final AtomicLong claimed = new AtomicLong(0); // next sequence to hand out
+    private static volatile long drained = 0; // every sequence below this has been written, only changed by the writer thread
+    private static final AtomicLong dropped = new AtomicLong(0); 
+    private static long reportedDrops = 0; // drops the writer has reported, only used by the writer thread
+    private static final ReentrantLock flushLock = new ReentrantLock(); // flush waits on it for the writer
+    private static final Condition drainedCondition = flushLock.newCondition(); 
+    private static final PrintStream output = openOutput(System.getProperty("paxos.log.file")); 
+    private static final Thread writer = startWriter(); 
+
+    // one event, the slots are allocated once and reused
+    private static class Slot{
+        private int level; 
+        private int kind; 
+        private int member; // member which logs the event
+        private int peer; // the other member of the event, -1 if none
+        private byte phase; // message type involved, 0 if none
+        private long ballot; 
+        private int instance; 
+        private long count; // retries for DECIDED/GAVE_UP
+        private String text; // value or description
+        private Throwable error; 
+    }
+
+    // an acceptor received a request
+    // input: int (acceptor id), byte (request type), int (proposer id)
+    // output: no
+    public static void requestReceived(int member, byte type, int proposer){
+        append(INFO, REQUEST_RECEIVED, member, proposer, type, Ballot.NONE, -1, 0, null, null); 
+    }
+
+    // a proposer received a response
+    // input: int (proposer id), Message (the response)
+    // output: no
+    public static void responseReceived(int member, Message responseObject){
+        if(INFO < level){
+            return; 
+        }
+        long ballot = Ballot.NONE; 
+        String value = null; 
+        switch(responseObject.getType()){
+            case Message.PROMISE:
+                ballot = ((PromiseMessage)responseObject).getProposalId(); 
+                break; 
+            case Message.ACCEPTED:
+                Proposal accepted = ((AcceptedMessage)responseObject).getProposal(); 
+                ballot = accepted.getID(); 
+                value = accepted.getValue(); 
+                break; 
+            case Message.REJECT:
+                ballot = ((RejectMessage)responseObject).getPromisedBallot(); 
+                break; 
+            default:
+                break; 
+        }
+        append(INFO, RESPONSE_RECEIVED, member, responseObject.getSenderId(), responseObject.getType(), ballot, -1, 0, value, null); 
+    }
+
+    // a member learnt the value decided in an instance
+    // input: int (member id), int (id of the leader which got it decided), int (instance), String (value)
+    // output: no
+    public static void leader(int member, int leader, int instance, String value){
+        append(INFO, LEADER, member, leader, Message.DECIDE, Ballot.NONE, instance, 0, value, null); 
+    }
+
+    // a proposer got its value decided
+    // input: int (member id), int (instance), int (retries it needed)
+    // output: no
+    public static void decided(int member, int instance, int retries){
+        append(INFO, DECIDED, member, -1, Message.ACCEPT, Ballot.NONE, instance, retries, null, null); 
+    }
+
+    // a proposer (instance -1) or a reader gave up after the retry cap of the contention manager
+    // input: int (member id), int (instance being read, -1 when proposing), int (retries)
+    // output: no
+    public static void gaveUp(int member, int instance, int retries){
+        append(WARN, GAVE_UP, member, -1, Message.PREPARE, Ballot.NONE, instance, retries, null, null); 
+    }
+
+    // the server of a member started
+    // input: int (member id)
+    // output: no
+    public static void serverStarted(int member){
+        append(INFO, SERVER_STARTED, member, -1, (byte)0, Ballot.NONE, -1, 0, null, null); 
+    }
+
+    // an error
+    // input: int (member id, 0 if unknown), String (description), Throwable (null if none)
+    // output: no
+    public static void error(int member, String description, Throwable error){
+        append(ERROR, ERROR_EVENT, member, -1, (byte)0, Ballot.NONE, -1, 0, description, error); 
+    }
+
+    // whether events of a level are logged, to skip building a description nobody reads
+    // input: int (level)
+    // output: boolean
+    public static boolean isEnabled(int eventLevel){
+        return eventLevel >= level; 
+    }
+
+    // number of events dropped because the ring was full
+    // input: no
+    // output: long
+    public static long getDroppedCount(){
+        return dropped.get(); 
+    }
+
+    // wait until every event logged before this call has been written
+    // input: no
+    // output: no
+    public static void flush(){
+        long target = claimed.get(); 
+        LockSupport.unpark(writer); 
+        flushLock.lock(); 
+        try{
+            while(drained < target){
+                // the writer signals after every batch, give up if it makes no progress for a while
+                // (a thread which claimed a slot may have died before publishing it)
+                long before = drained; 
+                if(drainedCondition.awaitNanos(100000000L) <= 0 && drained == before){
+                    break; 
+                }
+            }
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt(); 
+        }
+        finally{
+            flushLock.unlock(); 
+        }
+    }
+
+    // claim a slot and publish an event, or count it as dropped if the ring is full
+    // input: the fields of the event
+    // output: no
+    private static void append(int eventLevel, int kind, int member, int peer, byte phase, long ballot, int instance, long count, String text, Throwable error){
+        if(eventLevel < level){
+            return; 
+        }
+        long sequence; 
+        while(true){
+            sequence = claimed.get(); 
+            if(sequence - drained >= ring.length){
+                dropped.incrementAndGet(); 
+                return; 
+            }
+            if(claimed.compareAndSet(sequence, sequence + 1)){
+                break; 
+            }
+        }
+        Slot slot = ring[(int)sequence & mask]; 
+        slot.level = eventLevel; 
+        slot.kind = kind; 
+        slot.member = member; 
+        slot.peer = peer; 
+        slot.phase = phase; 
+        slot.ballot = ballot; 
+        slot.instance = instance; 
+        slot.count = count; 
+        slot.text = text; 
+        slot.error = error; 
+        // the fields above are visible to the writer once it reads the sequence
+        published.set((int)sequence & mask, sequence); 
+    }
+
+    // the writer thread: write the published events in order, in batches
+    // input: no
+    // output: no
+    private static void drain(){
+        StringBuilder batch = new StringBuilder(); 
+        while(true){
+            long next = drained; 
+            int lines = 0; 
+            while(lines < BATCH_LINES && published.get((int)next & mask) == next){
+                Slot slot = ring[(int)next & mask]; 
+                format(slot, batch); 
+                slot.text = null; 
+                slot.error = null; 
+                next++; 
+                lines++; 
+            }
+            long drops = dropped.get(); 
+            if(drops > reportedDrops){
+                batch.append(structured ? "level=WARN event=dropped count=" : "Event log: ").append(drops - reportedDrops)
+                    .append(structured ? "\n" : " events dropped because the buffer was full.\n"); 
+                reportedDrops = drops; 
+            }
+            if(batch.length() > 0){
+                output.print(batch); 
+                output.flush(); 
+                batch.setLength(0); 
+            }
+            if(next != drained){
+                drained = next; 
+                flushLock.lock(); 
+                try{
+                    drainedCondition.signalAll(); 
+                }
+                finally{
+                    flushLock.unlock(); 
+                }
+            }
+            else{
+                LockSupport.parkNanos(1000000L); 
+            }
+        }
+    }
+
+    // input: Slot (a published event), StringBuilder (the line is appended to it)
+    // output: no
+    private static void format(Slot slot, StringBuilder line){
+        if(structured){
+            line.append("level=").append(LEVEL_NAMES[slot.level]).append(" event=").append(KIND_NAMES[slot.kind]).append(" member=").append(slot.member); 
+            if(slot.peer >= 0){
+                line.append(" peer=").append(slot.peer); 
+            }
+            if(slot.phase != 0){
+                line.append(" phase=").append(phaseName(slot.phase)); 
+            }
+            if(slot.ballot != Ballot.NONE){
+                line.append(" ballot=").append(Ballot.toString(slot.ballot)); 
+            }
+            if(slot.instance >= 0){
+                line.append(" instance=").append(slot.instance); 
+            }
+            if(slot.kind == DECIDED || slot.kind == GAVE_UP){
+                line.append(" retries=").append(slot.count); 
+            }
+            if(slot.text != null){
+                line.append(slot.kind == ERROR_EVENT ? " message=\"" : " value=\"").append(slot.text).append('"'); 
+            }
+            if(slot.error != null){
+                line.append(" exception=\"").append(slot.error).append('"'); 
+            }
+            line.append('\n'); 
+            return; 
+        }
+        switch(slot.kind){
+            case SERVER_STARTED:
+                line.append("Server of Council Member ").append(slot.member).append(" started."); 
+                break; 
+            case REQUEST_RECEIVED:
+                line.append("Council Member ").append(slot.member).append(" received ").append(slot.phase == Message.PREPARE ? "Prepare" : "Accept")
+                    .append(" request from Council Member ").append(slot.peer).append('.'); 
+                break; 
+            case RESPONSE_RECEIVED:
+                if(slot.phase == Message.PROMISE){
+                    line.append("Council Member ").append(slot.peer).append(" Promised on proposal id ").append(Ballot.toString(slot.ballot))
+                        .append(" to Council Member ").append(slot.member).append('.'); 
+                }
+                else if(slot.phase == Message.ACCEPTED){
+                    line.append("Council Member ").append(slot.peer).append(" Accepted proposal from Council Member ").append(slot.member)
+                        .append(" on value ").append(slot.text).append('.'); 
+                }
+                else{
+                    line.append("Council Member ").append(slot.peer).append(" Rejected the request of Council Member ").append(slot.member)
+                        .append(", it has promised proposal id ").append(Ballot.toString(slot.ballot)).append('.'); 
+                }
+                break; 
+            case LEADER:
+                line.append("Council Member ").append(slot.peer).append(" is the leader with value ").append(slot.text).append(" in instance ").append(slot.instance); 
+                break; 
+            case DECIDED:
+                line.append("Council Member ").append(slot.member).append(" decided instance ").append(slot.instance).append(" after ").append(slot.count).append(" retries."); 
+                break; 
+            case GAVE_UP:
+                line.append("Council Member ").append(slot.member).append(slot.instance >= 0 ? " gave up reading instance " + slot.instance : " gave up proposing")
+                    .append(" after ").append(slot.count).append(" retries."); 
+                break; 
+            default:
+                line.append(slot.text); 
+                break; 
+        }
+        line.append('\n'); 
+        if(slot.error != null){
+            StringWriter trace = new StringWriter(); 
+            slot.error.printStackTrace(new PrintWriter(trace)); 
+            line.append(trace); 
+        }
+    }
+
+    // input: byte (message type)
+    // output: String
+    private static String phaseName(byte type){
+        switch(type){
+            case Message.PREPARE: return "prepare"; 
+            case Message.PROMISE: return "promise"; 
+            case Message.ACCEPT: return "accept"; 
+            case Message.ACCEPTED: return "accepted"; 
+            case Message.REJECT: return "reject"; 
+            case Message.DECIDE: return "decide"; 
+            default: return Byte.toString(type); 
+        }
+    }
+
+    // input: String (level name)
+    // output: int (level, INFO if the name is unknown)
+    private static int parseLevel(String name){
+        for(int i = 0; i < LEVEL_NAMES.length; i++){
+            if(LEVEL_NAMES[i].equalsIgnoreCase(name)){
+                return i; 
+            }
+        }
+        return INFO; 
+    }
+
+    // input: int (requested number of slots)
+    // output: Slot[] (power of two slots)
+    private static Slot[] createRing(int size){
+        int capacity = Integer.highestOneBit(Math.max(2, size - 1)) << 1; 
+        Slot[] slots = new Slot[capacity]; 
+        for(int i = 0; i < capacity; i++){
+            slots[i] = new Slot(); 
+        }
+        return slots; 
+    }
+
+    // input: int (number of slots)
+    // output: AtomicLongArray (no slot published yet)
+    private static AtomicLongArray createPublished(int size){
+        AtomicLongArray sequences = new AtomicLongArray(size); 
+        for(int i = 0; i < size; i++){
+            sequences.set(i, -1); 
+        }
+        return sequences; 
+    }
+
+    // input: String (file name, null for the console)
+    // output: PrintStream
+    private static PrintStream openOutput(String fileName){
+        if(fileName != null){
+            try{
+                return new PrintStream(new BufferedOutputStream(new FileOutputStream(fileName, true), 1 << 16), false, "UTF-8"); 
+            }
+            catch(IOException e){
+                System.out.println("Cannot open the event log " + fileName + ", logging to the console: " + e); 
+            }
+        }
+        return System.out; 
+    }
+
+    // start the writer thread, and write what is left in the ring when the JVM exits
+    // input: no
+    // output: Thread
+    private static Thread startWriter(){
+        Thread thread = new Thread(new Runnable(){
+            @Override
+            public void run(){
+                drain(); 
+            }
+        }, "paxos-event-log"); 
+        thread.setDaemon(true); 
+        thread.start(); 
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable(){
+            @Override
+            public void run(){
+                flush(); 
+                output.flush(); 
+            }
+        })); 
+        return thread; 
+    }
+
+}
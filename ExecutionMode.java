@@ -0,0 +1,115 @@
+import java.util.concurrent.*; 
+import java.util.concurrent.atomic.*; 
+import java.lang.reflect.*; 
+
+// this class decides which threads run the short-lived tasks of the protocol: 
+// the IntermediateThread of every phase, the ProposerSendRequest of every peer, the response readers of PeerConnection 
+// and the acceptor logic of RunMemberServer
+// "platform" (default) uses pooled platform threads
+// "virtual" uses one virtual thread per task, so thousands of rounds can be in flight without a thread stack each
+// choose the mode with -Dpaxos.executionMode=virtual (or call configure before creating members)
+// virtual threads need Java 21+, on an older runtime the platform mode is used instead
+// the tasks only block on ReentrantLock/Condition, CompletableFuture and socket I/O, none of which pins a virtual thread; 
+// the code must not use synchronized blocks around blocking calls for the same reason
+public class ExecutionMode{
+    public static final String PLATFORM = "platform"; 
+    public static final String VIRTUAL = "virtual"; 
+    private static final String MODE_PROPERTY = "paxos.executionMode"; 
+    private static volatile String mode; 
+    private static volatile ExecutorService taskExecutor; 
+    // one timer thread for the whole JVM, it only hands delayed responses to the Selector loops
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, daemonThreadFactory("paxos-timer-")); 
+
+    static{
+        // a cancelled task (the deadline of a round which completed early) leaves the queue straight away
+        TIMER.setRemoveOnCancelPolicy(true); 
+        configure(System.getProperty(MODE_PROPERTY, PLATFORM)); 
+    }
+
+    // choose the execution mode
+    // input: String ("platform" or "virtual")
+    // output: no
+    public static void configure(String newMode){
+        ExecutorService newExecutor = null; 
+        if(VIRTUAL.equals(newMode)){
+            newExecutor = newVirtualThreadExecutor(); 
+            if(newExecutor == null){
+                System.out.println("Virtual threads are not available on this Java runtime, using platform threads."); 
+                newMode = PLATFORM; 
+            }
+        }
+        if(newExecutor == null){
+            newExecutor = Executors.newCachedThreadPool(daemonThreadFactory("paxos-task-")); 
+        }
+        ExecutorService oldExecutor = taskExecutor; 
+        mode = newMode; 
+        taskExecutor = newExecutor; 
+        if(oldExecutor != null){
+            oldExecutor.shutdown(); 
+        }
+    }
+
+    // get the current execution mode
+    // input: no
+    // output: String ("platform" or "virtual")
+    public static String getMode(){
+        return mode; 
+    }
+
+    // run a task on a new (virtual or pooled platform) thread
+    // input: Runnable
+    // output: no
+    public static void execute(Runnable task){
+        taskExecutor.execute(task); 
+    }
+
+    // run a task after a delay on the shared timer, used for the latency profiles and the deadlines of the rounds
+    // the task must be short, it runs on the timer thread
+    // input: Runnable, long (delay in milliseconds)
+    // output: Future<?> (cancel it to drop the task)
+    public static Future<?> schedule(Runnable task, long delayMillis){
+        return TIMER.schedule(task, delayMillis, TimeUnit.MILLISECONDS); 
+    }
+
+    // create the executor running the acceptor logic of a member server
+    // input: int (number of threads in platform mode)
+    // output: ExecutorService (fixed pool in platform mode, one virtual thread per task in virtual mode)
+    public static ExecutorService newRequestExecutor(int platformThreads){
+        if(VIRTUAL.equals(mode)){
+            ExecutorService executor = newVirtualThreadExecutor(); 
+            if(executor != null){
+                return executor; 
+            }
+        }
+        return Executors.newFixedThreadPool(platformThreads, daemonThreadFactory("paxos-request-")); 
+    }
+
+    // create Executors.newVirtualThreadPerTaskExecutor() if the runtime has it
+    // it is looked up by reflection so that the project still compiles on Java 17
+    // input: no
+    // output: ExecutorService (null if virtual threads are not available)
+    private static ExecutorService newVirtualThreadExecutor(){
+        try{
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor"); 
+            return (ExecutorService)factory.invoke(null); 
+        }
+        catch(Exception e){
+            return null; 
+        }
+    }
+
+    // thread factory for platform threads which do not keep the JVM alive after a test case
+    // input: String (thread name prefix)
+    // output: ThreadFactory
+    private static ThreadFactory daemonThreadFactory(final String prefix){
+        final AtomicInteger counter = new AtomicInteger(0); 
+        return new ThreadFactory(){
+            @Override
+            public Thread newThread(Runnable task){
+                Thread thread = new Thread(task, prefix + counter.incrementAndGet()); 
+                thread.setDaemon(true); 
+                return thread; 
+            }
+        }; 
+    }
+}
@@ -1,22 +1,43 @@
 import java.util.*; 
 import java.net.*; 
 import java.io.*; 
+import java.util.concurrent.*; 
 import java.util.concurrent.locks.*; 
 
-// this thread is responsible for creating threads to send request to each member
-// and notify the CouncilMember when the response list is ready
+// this task is responsible for sending a request to each member
+// the responses are counted by the RoundCollector of the round as they arrive, 
+// the vote that decides the round closes it, otherwise the round is closed when the time is up; 
+// the requests which have not been answered by then are cancelled
+// nothing here waits, so a round does not hold a thread while the members answer
 public class IntermediateThread implements Runnable{
     private CouncilMember member; 
-    private HashMap<String, Object> requestObject; 
-    private static final int STARTING_PORT = 2000; 
+    private Message requestObject; 
     private static final long MAX_WAITING_MILLIS = 13000; // all the messages should be completed within 13 seconds
+    private RoundCollector round; // null for Decide, which does not get responses
+    private List<String> targets; // server socket info of the members to send the request to
+    private long startNanos; // transport time the fan-out was created, the duration of a Decide fan-out counts from here
+
+    // IntermediateThread constructor for a request without responses (Decide)
+    // input: CouncilMember (the member/proposer which send the request), Message (request to send to other members), 
+    //        List<String> (server socket info of the members of the configuration of the decided instance)
+    // output: no 
+    public IntermediateThread(CouncilMember member, Message requestObject, List<String> targets){
+        this.member = member; 
+        this.requestObject = requestObject; 
+        this.round = null; 
+        this.targets = targets; 
+        this.startNanos = member.getTransport().nanoTime(); 
+    }
 
     // IntermediateThread constructor
-    // input: CouncilMember (the member/proposer which send the request), HashMap<String, Object> (request object to send to other members)
+    // input: CouncilMember, Message (request to send to other members), RoundCollector (collector of the responses, the request goes to its targets)
     // output: no 
-    public IntermediateThread(CouncilMember member, HashMap<String, Object> requestObject){
+    public IntermediateThread(CouncilMember member, Message requestObject, RoundCollector round){
         this.member = member; 
         this.requestObject = requestObject; 
+        this.round = round; 
+        this.targets = round.getTargets(); 
+        this.startNanos = member.getTransport().nanoTime(); 
     }
 
     // send requests to all members in the protocol
@@ -24,37 +45,58 @@ public class IntermediateThread implements Runnable{
     // output: no
     @Override
     public void run(){
-        ArrayList<Thread> childThreadList = new ArrayList<Thread>(); 
+        final ArrayList<ProposerSendRequest> childList = new ArrayList<ProposerSendRequest>(); 
+        final Transport transport = this.member.getTransport(); 
+        final MemberMetrics metrics = this.member.getMetrics(); 
         // for each member in the protocol
-        // create a thread to send request 
-        for(int i = 0; i < this.member.getMemberServerSocketList().size(); i++){
-            String serverSocketInfo = this.member.getMemberServerSocketList().get(i); 
-            // hostname is from the start of the string to the ':' character
-            String hostname = serverSocketInfo.substring(0, serverSocketInfo.indexOf(':')); 
-            // port is from character ':' + 1 to the end of the string
-            int port = Integer.parseInt(serverSocketInfo.substring(serverSocketInfo.indexOf(':') + 1));
-            ProposerSendRequest sendRequest = new ProposerSendRequest(this.member, hostname, port, this.requestObject); 
-            Thread sendingRequest = new Thread(sendRequest); 
-            childThreadList.add(sendingRequest); 
-            sendingRequest.start(); 
+        // send the request on its own task, opening a connection may take a while
+        PeerConnectionPool connectionPool = this.member.getConnectionPool(); 
+        for(int i = 0; i < this.targets.size(); i++){
+            String target = this.targets.get(i); 
+            ProposerSendRequest sendRequest = new ProposerSendRequest(this.member, this.round, connectionPool.getConnection(target), this.requestObject, i, target); 
+            childList.add(sendRequest); 
+            transport.execute(sendRequest); 
         }
-        String requestType = (String)this.requestObject.get("Request-Type"); 
-        if(requestType.equals("Decide") == false){
-            for(int i = 0; i < childThreadList.size(); i++){
-                try{
-                    // wait for all the sending thread complete 
-                    childThreadList.get(i).join(MAX_WAITING_MILLIS); 
+        // a Decide fan-out is over once the Decide is on every connection
+        if(this.round == null){
+            CompletableFuture<?>[] sentList = new CompletableFuture<?>[childList.size()]; 
+            for(int i = 0; i < childList.size(); i++){
+                sentList[i] = childList.get(i).getSent(); 
+            }
+            final long decideStartNanos = this.startNanos; 
+            CompletableFuture.allOf(sentList).thenRun(new Runnable(){
+                @Override
+                public void run(){
+                    metrics.recordDecide(transport.nanoTime() - decideStartNanos); 
+                }
+            }); 
+        }
+        if(this.round != null){
+            final RoundCollector closingRound = this.round; 
+            // close the round when the time is up, this does nothing if a vote has already decided it
+            // the members which have not answered by then have timed out
+            final Future<?> deadline = transport.schedule(new Runnable(){
+                @Override
+                public void run(){
+                    if(closingRound.getOutcome().isDone() == false){
+                        for(int i = 0; i < childList.size(); i++){
+                            childList.get(i).countTimeout(); 
+                        }
+                    }
+                    closingRound.close(); 
                 }
-                catch(Exception e){
-                    System.out.println("Error in Intermediate Thread"); 
-                    e.printStackTrace(); 
+            }, MAX_WAITING_MILLIS); 
+            // once the round has an outcome, cancel the requests which have not been answered yet
+            // and the deadline, so the timer does not keep the round and its requests until the time is up
+            this.round.getOutcome().thenRun(new Runnable(){
+                @Override
+                public void run(){
+                    deadline.cancel(false); 
+                    for(int i = 0; i < childList.size(); i++){
+                        childList.get(i).cancel(); 
+                    }
                 }
-            }
-            this.member.getResponseListStateLock().lock(); 
-            this.member.setResponseListState(true); 
-            // notify CouncilMember when the response list is ready
-            this.member.getResponseListReady().signal(); 
-            this.member.getResponseListStateLock().unlock(); 
+            }); 
         }
     }
 }
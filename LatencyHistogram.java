@@ -0,0 +1,136 @@
+import java.util.*; 
+import java.util.concurrent.atomic.*; 
+
+// histogram of latencies in nanoseconds, any number of threads can record into it without a lock
+// values below 64 have a bucket each, above that every power of two is split into 64 buckets,
+// so a percentile read from the histogram is within 1/64 (1.6%) of the recorded value whatever its size
+// (the same layout as HdrHistogram with two significant digits, in a fixed array of 3712 counters)
+public class LatencyHistogram{
+    private static final int SUB_BUCKET_BITS = 6; 
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; 
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS; 
+    private final AtomicLongArray counts; 
+    private final AtomicLong totalCount; 
+    private final AtomicLong totalNanos; 
+    private final AtomicLong maxNanos; 
+
+    // LatencyHistogram constructor, the histogram is empty
+    // input: no
+    // output: no
+    public LatencyHistogram(){
+        this.counts = new AtomicLongArray(BUCKET_COUNT); 
+        this.totalCount = new AtomicLong(0); 
+        this.totalNanos = new AtomicLong(0); 
+        this.maxNanos = new AtomicLong(0); 
+    }
+
+    // record one latency
+    // input: long (nanoseconds, a negative value is recorded as 0)
+    // output: no
+    public void record(long nanos){
+        long value = Math.max(0, nanos); 
+        this.counts.incrementAndGet(bucketOf(value)); 
+        this.totalCount.incrementAndGet(); 
+        this.totalNanos.addAndGet(value); 
+        long max = this.maxNanos.get(); 
+        while(value > max && this.maxNanos.compareAndSet(max, value) == false){
+            max = this.maxNanos.get(); 
+        }
+    }
+
+    // number of latencies recorded
+    // input: no
+    // output: long
+    public long getCount(){
+        return this.totalCount.get(); 
+    }
+
+    // mean of the recorded latencies
+    // input: no
+    // output: double (nanoseconds, 0 if nothing was recorded)
+    public double getMeanNanos(){
+        long count = this.totalCount.get(); 
+        return count == 0 ? 0 : (double)this.totalNanos.get() / count; 
+    }
+
+    // sum of the recorded latencies
+    // input: no
+    // output: long (nanoseconds)
+    public long getTotalNanos(){
+        return this.totalNanos.get(); 
+    }
+
+    // largest recorded latency
+    // input: no
+    // output: long (nanoseconds)
+    public long getMaxNanos(){
+        return this.maxNanos.get(); 
+    }
+
+    // latency below which the given percentage of the recorded latencies are
+    // input: double (percentage, 0 to 100)
+    // output: long (nanoseconds, the highest value of the bucket the percentile falls in, at most the largest recorded value)
+    public long getPercentileNanos(double percentage){
+        long count = this.totalCount.get(); 
+        if(count == 0){
+            return 0; 
+        }
+        long rank = Math.max(1, (long)Math.ceil(percentage / 100.0 * count)); 
+        long seen = 0; 
+        for(int i = 0; i < BUCKET_COUNT; i++){
+            seen += this.counts.get(i); 
+            if(seen >= rank){
+                return Math.min(highestValueOf(i), this.maxNanos.get()); 
+            }
+        }
+        return this.maxNanos.get(); 
+    }
+
+    // add every latency recorded in another histogram to this one
+    // input: LatencyHistogram
+    // output: no
+    public void add(LatencyHistogram other){
+        for(int i = 0; i < BUCKET_COUNT; i++){
+            long count = other.counts.get(i); 
+            if(count > 0){
+                this.counts.addAndGet(i, count); 
+            }
+        }
+        this.totalCount.addAndGet(other.totalCount.get()); 
+        this.totalNanos.addAndGet(other.totalNanos.get()); 
+        long otherMax = other.maxNanos.get(); 
+        long max = this.maxNanos.get(); 
+        while(otherMax > max && this.maxNanos.compareAndSet(max, otherMax) == false){
+            max = this.maxNanos.get(); 
+        }
+    }
+
+    // input: long (value, at least 0)
+    // output: int (index of the bucket of the value)
+    private static int bucketOf(long value){
+        if(value < SUB_BUCKETS){
+            return (int)value; 
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); 
+        int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1); 
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket; 
+    }
+
+    // input: int (index of a bucket)
+    // output: long (highest value which falls in the bucket)
+    private static long highestValueOf(int bucket){
+        if(bucket < SUB_BUCKETS){
+            return bucket; 
+        }
+        int shift = bucket / SUB_BUCKETS - 1; 
+        long lowest = (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << shift; 
+        return lowest + (1L << shift) - 1; 
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%d values, p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms", this.getCount(), this.getPercentileNanos(50) / 1e6,
+            this.getPercentileNanos(99) / 1e6, this.getPercentileNanos(99.9) / 1e6, this.getMaxNanos() / 1e6); 
+    }
+
+}
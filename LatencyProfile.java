@@ -0,0 +1,199 @@
+import java.util.*; 
+import java.util.concurrent.*; 
+
+// the latency profile of a member: how long the member waits before it sends a response
+// the delay is drawn from a distribution for every response, the response is then scheduled on a timer (Transport.schedule)
+// so a slow member does not hold a thread while it waits
+// profiles can be written as a string (see parse): 
+//   Immediate, Medium (5 s), Late (15 s), Never (does not respond)
+//   Fixed:<ms>, Uniform:<min ms>:<max ms>, LogNormal:<median ms>:<sigma>, Percentile:<p>=<ms>,<p>=<ms>,...
+public abstract class LatencyProfile{
+    public static final long MEDIUM_LATENCY = 5000; // medium latency, respond after 5s
+    public static final long LATE_LATENCY = 15000; // late latency, respond after 15s 
+    private final String name; 
+
+    // LatencyProfile constructor
+    // input: String (name of the profile, as written in parse)
+    // output: no
+    protected LatencyProfile(String name){
+        this.name = name; 
+    }
+
+    // draw the delay of the next response
+    // input: Random (random numbers of the member's transport, seeded in a simulation)
+    // output: long (milliseconds to wait before responding, 0 to respond straight away)
+    public abstract long nextDelayMillis(Random random); 
+
+    // draw the delay of the next response with the random numbers of the current thread
+    // input: no
+    // output: long (milliseconds)
+    public long nextDelayMillis(){
+        return this.nextDelayMillis(ThreadLocalRandom.current()); 
+    }
+
+    // check if the member responds at all
+    // input: no
+    // output: boolean (false for the Never profile)
+    public boolean responds(){
+        return true; 
+    }
+
+    // name getter
+    // input: no
+    // output: String
+    public String getName(){
+        return this.name; 
+    }
+
+    @Override
+    public String toString(){
+        return this.name; 
+    }
+
+    // create a profile from its string form
+    // input: String (e.g. "Medium", "Uniform:100:500", "Percentile:50=20,99=800,100=5000")
+    // output: LatencyProfile
+    public static LatencyProfile parse(String spec){
+        String[] parts = spec.trim().split(":"); 
+        String kind = parts[0]; 
+        if(kind.equals("Immediate")){
+            return new Fixed("Immediate", 0); 
+        }
+        if(kind.equals("Medium")){
+            return new Fixed("Medium", MEDIUM_LATENCY); 
+        }
+        if(kind.equals("Late")){
+            return new Fixed("Late", LATE_LATENCY); 
+        }
+        if(kind.equals("Never")){
+            return new Never(); 
+        }
+        if(kind.equals("Fixed") && parts.length == 2){
+            return new Fixed(spec, Long.parseLong(parts[1])); 
+        }
+        if(kind.equals("Uniform") && parts.length == 3){
+            return new Uniform(spec, Long.parseLong(parts[1]), Long.parseLong(parts[2])); 
+        }
+        if(kind.equals("LogNormal") && parts.length == 3){
+            return new LogNormal(spec, Double.parseDouble(parts[1]), Double.parseDouble(parts[2])); 
+        }
+        if(kind.equals("Percentile") && parts.length == 2){
+            String[] points = parts[1].split(","); 
+            double[] percentiles = new double[points.length]; 
+            long[] delays = new long[points.length]; 
+            for(int i = 0; i < points.length; i++){
+                String[] point = points[i].split("="); 
+                percentiles[i] = Double.parseDouble(point[0]); 
+                delays[i] = Long.parseLong(point[1]); 
+            }
+            return new Percentile(spec, percentiles, delays); 
+        }
+        throw new IllegalArgumentException("Unknown latency profile " + spec); 
+    }
+
+    // always the same delay (Immediate, Medium, Late)
+    public static final class Fixed extends LatencyProfile{
+        private final long delayMillis; 
+
+        public Fixed(String name, long delayMillis){
+            super(name); 
+            this.delayMillis = delayMillis; 
+        }
+
+        @Override
+        public long nextDelayMillis(Random random){
+            return this.delayMillis; 
+        }
+    }
+
+    // never sends a response
+    public static final class Never extends LatencyProfile{
+        public Never(){
+            super("Never"); 
+        }
+
+        @Override
+        public long nextDelayMillis(Random random){
+            return 0; 
+        }
+
+        @Override
+        public boolean responds(){
+            return false; 
+        }
+    }
+
+    // delay drawn uniformly between min and max
+    public static final class Uniform extends LatencyProfile{
+        private final long minMillis; 
+        private final long maxMillis; 
+
+        public Uniform(String name, long minMillis, long maxMillis){
+            super(name); 
+            if(maxMillis < minMillis){
+                throw new IllegalArgumentException("Uniform latency needs min <= max"); 
+            }
+            this.minMillis = minMillis; 
+            this.maxMillis = maxMillis; 
+        }
+
+        @Override
+        public long nextDelayMillis(Random random){
+            return this.minMillis + (long)(random.nextDouble() * (this.maxMillis - this.minMillis)); 
+        }
+    }
+
+    // delay drawn from a log-normal distribution, a long tail like real networks
+    public static final class LogNormal extends LatencyProfile{
+        private final double mu; // log of the median
+        private final double sigma; 
+
+        public LogNormal(String name, double medianMillis, double sigma){
+            super(name); 
+            this.mu = Math.log(medianMillis); 
+            this.sigma = sigma; 
+        }
+
+        @Override
+        public long nextDelayMillis(Random random){
+            return (long)Math.exp(this.mu + this.sigma * random.nextGaussian()); 
+        }
+    }
+
+    // delay following measured percentiles, linear between the given points
+    // e.g. 50=20,99=800,100=5000: half the responses within 20 ms, 1% slower than 800 ms, none above 5 s
+    public static final class Percentile extends LatencyProfile{
+        private final double[] percentiles; // increasing, in 0..100
+        private final long[] delays; // delays[i] is the delay at percentiles[i]
+
+        public Percentile(String name, double[] percentiles, long[] delays){
+            super(name); 
+            if(percentiles.length == 0 || percentiles.length != delays.length){
+                throw new IllegalArgumentException("Percentile latency needs one delay per percentile"); 
+            }
+            for(int i = 1; i < percentiles.length; i++){
+                if(percentiles[i] <= percentiles[i - 1] || delays[i] < delays[i - 1]){
+                    throw new IllegalArgumentException("Percentile latency points must be increasing"); 
+                }
+            }
+            this.percentiles = percentiles.clone(); 
+            this.delays = delays.clone(); 
+        }
+
+        @Override
+        public long nextDelayMillis(Random random){
+            double p = random.nextDouble() * 100; 
+            if(p <= this.percentiles[0]){
+                // from 0 at the 0th percentile up to the first point
+                return (long)(this.delays[0] * p / this.percentiles[0]); 
+            }
+            for(int i = 1; i < this.percentiles.length; i++){
+                if(p <= this.percentiles[i]){
+                    double fraction = (p - this.percentiles[i - 1]) / (this.percentiles[i] - this.percentiles[i - 1]); 
+                    return this.delays[i - 1] + (long)(fraction * (this.delays[i] - this.delays[i - 1])); 
+                }
+            }
+            return this.delays[this.delays.length - 1]; 
+        }
+    }
+}
@@ -0,0 +1,108 @@
+// time-bounded lease a leader holds after the majority promised its ballot
+// every acceptor that promises starts its own lease of leaseMillis on its own clock when the Prepare arrives,
+// and refuses to promise any other member until that lease has run out
+// so while the majority's leases last no other member can win Phase 1 or get a value decided,
+// and the leader can answer reads from its own log without a round
+// the leader measures its lease from the time it sent the Prepare (before any acceptor started its lease),
+// and shortens it by the clock drift bound on both sides: a clock may run up to clockDrift faster or slower than real time
+// the lease is configured with the paxos.leaseMillis property (0, the default, turns leases off) and paxos.clockDrift (default 0.01)
+public class LeaderLease{
+    public static final long DEFAULT_LEASE_MILLIS = 0; 
+    public static final double DEFAULT_CLOCK_DRIFT = 0.01; 
+    private final long leaseMillis; // lease an acceptor grants with a promise
+    private final double clockDrift; // largest rate difference between a member clock and real time (0.01 = 1%)
+    private long ballot; // ballot the lease was granted to, Ballot.NONE if never granted
+    private long expiresNanos; // time of this member (Transport.nanoTime) when the lease stops being safe to use
+    private long grantCount; // number of times the majority granted/renewed the lease
+
+    // LeaderLease constructor
+    // input: long (lease in milliseconds, 0 turns leases off), double (clock drift bound, 0.01 = 1%)
+    // output: no
+    public LeaderLease(long leaseMillis, double clockDrift){
+        if(leaseMillis < 0 || clockDrift < 0 || clockDrift >= 0.5){
+            throw new IllegalArgumentException("Invalid lease " + leaseMillis + " ms with clock drift " + clockDrift); 
+        }
+        this.leaseMillis = leaseMillis; 
+        this.clockDrift = clockDrift; 
+        this.ballot = Ballot.NONE; 
+        this.expiresNanos = 0; 
+        this.grantCount = 0; 
+    }
+
+    // the lease configured with the paxos.leaseMillis and paxos.clockDrift properties
+    // input: no
+    // output: LeaderLease
+    public static LeaderLease fromSystemProperty(){
+        return new LeaderLease(Long.getLong("paxos.leaseMillis", DEFAULT_LEASE_MILLIS),
+            Double.parseDouble(System.getProperty("paxos.clockDrift", String.valueOf(DEFAULT_CLOCK_DRIFT)))); 
+    }
+
+    // whether acceptors grant leases at all
+    // input: no
+    // output: boolean
+    public boolean isEnabled(){
+        return this.leaseMillis > 0; 
+    }
+
+    // lease length getter, what an acceptor grants with a promise
+    // input: no
+    // output: long (milliseconds)
+    public long getLeaseMillis(){
+        return this.leaseMillis; 
+    }
+
+    // how long the leader may use a lease after sending the Prepare
+    // an acceptor clock running fast ends its lease after leaseMillis / (1 + drift) of real time,
+    // and the leader clock running slow measures less than the real time that passed
+    // input: no
+    // output: long (nanoseconds on the leader clock)
+    public long getUsableNanos(){
+        return (long)(this.leaseMillis * 1000000L * (1 - this.clockDrift) / (1 + this.clockDrift)); 
+    }
+
+    // how often the leader renews its lease, three attempts before it runs out
+    // input: no
+    // output: long (milliseconds)
+    public long getRenewMillis(){
+        return Math.max(1, this.getUsableNanos() / 3000000L); 
+    }
+
+    // the majority promised a ballot, the lease counts from the time the Prepare was sent
+    // input: long (ballot), long (Transport.nanoTime before the Prepare was sent)
+    // output: no
+    public synchronized void grant(long ballot, long sentNanos){
+        if(this.isEnabled() == false){
+            return; 
+        }
+        // a renewal which took longer than an earlier one must not shorten the lease
+        long expiresNanos = sentNanos + this.getUsableNanos(); 
+        if(ballot != this.ballot || expiresNanos - this.expiresNanos > 0){
+            this.expiresNanos = expiresNanos; 
+        }
+        this.ballot = ballot; 
+        this.grantCount++; 
+    }
+
+    // whether the lease of a ballot can still be used
+    // input: long (ballot this member currently leads with), long (time now, nanoseconds of the member's transport)
+    // output: boolean
+    public synchronized boolean isHeld(long ballot, long nowNanos){
+        return this.isEnabled() && ballot != Ballot.NONE && ballot == this.ballot && nowNanos - this.expiresNanos < 0; 
+    }
+
+    // grant count getter
+    // input: no
+    // output: long
+    public synchronized long getGrantCount(){
+        return this.grantCount; 
+    }
+
+    @Override
+    public String toString(){
+        if(this.isEnabled() == false){
+            return "no lease"; 
+        }
+        return this.leaseMillis + " ms lease, clock drift " + this.clockDrift; 
+    }
+
+}
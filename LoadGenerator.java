@@ -0,0 +1,345 @@
+import java.util.*; 
+import java.util.concurrent.*; 
+import java.util.concurrent.atomic.*; 
+import java.util.concurrent.locks.*; 
+import java.util.function.*; 
+import java.io.*; 
+
+// open-loop load generator for capacity planning:
+// java LoadGenerator [sizes=5,9,13] [mix=Immediate] [mix=Immediate+Uniform:5:50 ...] [proposers=1] [rate=500]
+//                    [warmupSeconds=2] [seconds=10] [drainSeconds=15] [csv=Testing/LoadResults.csv] [json=Testing/LoadResults.json]
+// (or CouncilMember load ...)
+// for every cluster size and latency mix a new cluster is started, the mix is a list of latency profiles (see LatencyProfile)
+// joined with '+' and given to the members round robin; members 1 to proposers take the submitted values in turn
+// values are submitted at fixed times (rate per second over all proposers) whether or not earlier values have been decided,
+// and the commit latency of a value is measured from the time it should have been submitted,
+// so a stalled cluster shows up in the latencies instead of slowing the load down (no coordinated omission);
+// a value still not decided when the drain time is over is counted as incomplete and recorded with the latency it had by then
+// one row per run is written as CSV and JSON: throughput, p50/p99/p999 commit latency, retries and messages per decision
+public class LoadGenerator{
+    public static final String DEFAULT_SIZES = "5,9,13"; 
+    public static final String DEFAULT_MIX = "Immediate"; 
+    public static final int DEFAULT_PROPOSERS = 1; 
+    public static final double DEFAULT_RATE = 500; 
+    public static final double DEFAULT_WARMUP_SECONDS = 2; 
+    public static final double DEFAULT_SECONDS = 10; 
+    public static final double DEFAULT_DRAIN_SECONDS = 15; 
+    private static final String[] COLUMNS = {"members", "mix", "proposers", "target_rate", "achieved_rate", "submitted", "committed", "failed", "incomplete",
+        "p50_ms", "p99_ms", "p999_ms", "max_ms", "mean_ms", "decisions", "values_per_decision", "retries_per_decision", "messages_per_decision"}; 
+    private final int proposerCount; 
+    private final double rate; // values per second over all proposers
+    private final long warmupNanos; 
+    private final long measureNanos; 
+    private final long drainNanos; 
+
+    // the outcome of one run, the values submitted during the warmup are not counted
+    public static class Result{
+        private final int memberCount; 
+        private final String mix; 
+        private final int proposerCount; 
+        private final double targetRate; 
+        private final double measureSeconds; 
+        private final LatencyHistogram histogram; // commit latency of every measured value (incomplete values included)
+        private final long submitted; // values submitted during the measurement
+        private final long committedInWindow; // values decided during the measurement, whenever they were submitted
+        private final long failed; // measured values whose proposer gave up
+        private final long incomplete; // measured values not decided when the drain time was over
+        private final long decisions; // instances decided by the proposers during the measurement
+        private final long retries; // retries of the proposers during the measurement
+        private final long messages; // requests and responses of the proposers during the measurement
+
+        // Result constructor
+        // input: see the fields
+        // output: no
+        public Result(int memberCount, String mix, int proposerCount, double targetRate, double measureSeconds, LatencyHistogram histogram,
+            long submitted, long committedInWindow, long failed, long incomplete, long decisions, long retries, long messages){
+            this.memberCount = memberCount; 
+            this.mix = mix; 
+            this.proposerCount = proposerCount; 
+            this.targetRate = targetRate; 
+            this.measureSeconds = measureSeconds; 
+            this.histogram = histogram; 
+            this.submitted = submitted; 
+            this.committedInWindow = committedInWindow; 
+            this.failed = failed; 
+            this.incomplete = incomplete; 
+            this.decisions = decisions; 
+            this.retries = retries; 
+            this.messages = messages; 
+        }
+
+        // values of the row, in the order of COLUMNS
+        // input: no
+        // output: Object[] (numbers are Long or Double, the mix is a String)
+        public Object[] getRow(){
+            long committed = this.histogram.getCount() - this.incomplete; 
+            return new Object[]{(long)this.memberCount, this.mix, (long)this.proposerCount, this.targetRate, this.committedInWindow / this.measureSeconds,
+                this.submitted, committed, this.failed, this.incomplete,
+                this.histogram.getPercentileNanos(50) / 1e6, this.histogram.getPercentileNanos(99) / 1e6, this.histogram.getPercentileNanos(99.9) / 1e6,
+                this.histogram.getMaxNanos() / 1e6, this.histogram.getMeanNanos() / 1e6, this.decisions,
+                perDecision(this.committedInWindow), perDecision(this.retries), perDecision(this.messages)}; 
+        }
+
+        // input: long (count during the measurement)
+        // output: double (count per decision, NaN without decisions)
+        private double perDecision(long count){
+            return this.decisions == 0 ? Double.NaN : (double)count / this.decisions; 
+        }
+
+        @Override
+        public String toString(){
+            Object[] row = this.getRow(); 
+            return String.format("%d members, mix %s, %d proposers: %.1f values/s of %.1f, p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms, "
+                + "%d failed, %d incomplete, %.2f values, %.2f retries and %.1f messages per decision",
+                this.memberCount, this.mix, this.proposerCount, row[4], this.targetRate, row[9], row[10], row[11], row[12], this.failed, this.incomplete, row[15], row[16], row[17]); 
+        }
+    }
+
+    // LoadGenerator constructor
+    // input: int (proposers), double (values per second), double (warmup seconds), double (measured seconds), double (longest wait for the last values, seconds)
+    // output: no
+    public LoadGenerator(int proposerCount, double rate, double warmupSeconds, double seconds, double drainSeconds){
+        if(proposerCount < 1 || rate <= 0 || warmupSeconds < 0 || seconds <= 0 || drainSeconds < 0){
+            throw new IllegalArgumentException("Invalid load: " + proposerCount + " proposers, " + rate + " values/s for " + seconds + " s"); 
+        }
+        this.proposerCount = proposerCount; 
+        this.rate = rate; 
+        this.warmupNanos = (long)(warmupSeconds * 1e9); 
+        this.measureNanos = (long)(seconds * 1e9); 
+        this.drainNanos = (long)(drainSeconds * 1e9); 
+    }
+
+    public static void main(String args[]){
+        HashMap<String, String> options = new HashMap<String, String>(); 
+        ArrayList<String> mixList = new ArrayList<String>(); 
+        for(int i = 0; i < args.length; i++){
+            int separator = args[i].indexOf('='); 
+            if(separator <= 0){
+                System.out.println("Invalid option " + args[i] + ", options are written as key=value."); 
+                return; 
+            }
+            String key = args[i].substring(0, separator); 
+            String value = args[i].substring(separator + 1); 
+            // mix can be given several times, one run per mix and cluster size
+            if(key.equals("mix")){
+                mixList.add(value); 
+            }
+            else{
+                options.put(key, value); 
+            }
+        }
+        if(mixList.isEmpty()){
+            mixList.add(DEFAULT_MIX); 
+        }
+        LoadGenerator generator = new LoadGenerator(Integer.parseInt(option(options, "proposers", String.valueOf(DEFAULT_PROPOSERS))),
+            Double.parseDouble(option(options, "rate", String.valueOf(DEFAULT_RATE))),
+            Double.parseDouble(option(options, "warmupSeconds", String.valueOf(DEFAULT_WARMUP_SECONDS))),
+            Double.parseDouble(option(options, "seconds", String.valueOf(DEFAULT_SECONDS))),
+            Double.parseDouble(option(options, "drainSeconds", String.valueOf(DEFAULT_DRAIN_SECONDS)))); 
+        String[] sizeList = option(options, "sizes", DEFAULT_SIZES).split(","); 
+        String csvFileLocation = option(options, "csv", "Testing/LoadResults.csv"); 
+        String jsonFileLocation = option(options, "json", "Testing/LoadResults.json"); 
+        ArrayList<Result> resultList = new ArrayList<Result>(); 
+        for(int s = 0; s < sizeList.length; s++){
+            for(int m = 0; m < mixList.size(); m++){
+                Result result = generator.run(Integer.parseInt(sizeList[s].trim()), mixList.get(m)); 
+                System.out.println("Load " + result); 
+                resultList.add(result); 
+            }
+        }
+        try{
+            writeCsv(resultList, csvFileLocation); 
+            writeJson(resultList, jsonFileLocation); 
+            System.out.println("Load results written to " + csvFileLocation + " and " + jsonFileLocation); 
+        }
+        catch(IOException e){
+            System.out.println("Error in writing the load results."); 
+            e.printStackTrace(); 
+        }
+        // the members of the last cluster have non-daemon threads left, e.g. the timers of their latency profiles
+        System.exit(0); 
+    }
+
+    // run the load on a new cluster
+    // input: int (cluster size), String (latency mix, profiles joined with '+')
+    // output: Result
+    public Result run(int memberCount, String mix){
+        String[] profileList = mix.split("\\+"); 
+        ArrayList<CouncilMember> memberList = CouncilMember.startCluster(memberCount, profileList[0].trim()); 
+        for(int i = 0; i < memberList.size(); i++){
+            memberList.get(i).setLatencyProfile(LatencyProfile.parse(profileList[i % profileList.length].trim())); 
+        }
+        ArrayList<CouncilMember> proposerList = new ArrayList<CouncilMember>(memberList.subList(0, Math.min(this.proposerCount, memberCount))); 
+        for(int p = 0; p < proposerList.size(); p++){
+            proposerList.get(p).getSubmissionQueue(); 
+        }
+        final LatencyHistogram histogram = new LatencyHistogram(); 
+        final ConcurrentHashMap<Long, Long> pendingValues = new ConcurrentHashMap<Long, Long>(); // measured values not decided yet: number -> intended submit time
+        final AtomicLong committedInWindow = new AtomicLong(0); 
+        final AtomicLong failed = new AtomicLong(0); 
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10); 
+        final long measureStart = start + this.warmupNanos; 
+        final long measureEnd = measureStart + this.measureNanos; 
+        long[] countersAtStart = null; 
+        long submitted = 0; 
+        for(long i = 0; ; i++){
+            final long intendedNanos = start + (long)(i * 1e9 / this.rate); 
+            if(intendedNanos - measureEnd >= 0){
+                break; 
+            }
+            // wait for the submit time of the value, a late wake-up submits the overdue values straight away
+            long now = System.nanoTime(); 
+            while(intendedNanos - now > 0){
+                LockSupport.parkNanos(intendedNanos - now); 
+                now = System.nanoTime(); 
+            }
+            final boolean measured = intendedNanos - measureStart >= 0; 
+            if(measured && countersAtStart == null){
+                countersAtStart = counters(proposerList); 
+            }
+            final long valueNumber = i; 
+            if(measured){
+                pendingValues.put(valueNumber, intendedNanos); 
+                submitted++; 
+            }
+            CouncilMember proposer = proposerList.get((int)(i % proposerList.size())); 
+            proposer.submit("load-" + i).whenComplete(new BiConsumer<Integer, Throwable>(){
+                @Override
+                public void accept(Integer instance, Throwable error){
+                    long decidedNanos = System.nanoTime(); 
+                    if(error == null && decidedNanos - measureStart >= 0 && decidedNanos - measureEnd < 0){
+                        committedInWindow.incrementAndGet(); 
+                    }
+                    // the drain may have given up on this value already
+                    if(measured && pendingValues.remove(valueNumber) != null){
+                        if(error != null){
+                            failed.incrementAndGet(); 
+                        }
+                        else{
+                            histogram.record(decidedNanos - intendedNanos); 
+                        }
+                    }
+                }
+            }); 
+        }
+        long now = System.nanoTime(); 
+        while(measureEnd - now > 0){
+            LockSupport.parkNanos(measureEnd - now); 
+            now = System.nanoTime(); 
+        }
+        if(countersAtStart == null){
+            countersAtStart = counters(proposerList); 
+        }
+        long[] countersAtEnd = counters(proposerList); 
+        // wait for the values submitted during the measurement
+        long drainEnd = System.nanoTime() + this.drainNanos; 
+        while(pendingValues.isEmpty() == false && drainEnd - System.nanoTime() > 0){
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10)); 
+        }
+        long incomplete = 0; 
+        long censoredNanos = System.nanoTime(); 
+        for(Long valueNumber : new ArrayList<Long>(pendingValues.keySet())){
+            Long intendedNanos = pendingValues.remove(valueNumber); 
+            if(intendedNanos != null){
+                histogram.record(censoredNanos - intendedNanos); 
+                incomplete++; 
+            }
+        }
+        CouncilMember.stopCluster(memberList); 
+        return new Result(memberCount, mix, proposerList.size(), this.rate, this.measureNanos / 1e9, histogram, submitted, committedInWindow.get(),
+            failed.get(), incomplete, countersAtEnd[0] - countersAtStart[0], countersAtEnd[1] - countersAtStart[1], countersAtEnd[2] - countersAtStart[2]); 
+    }
+
+    // decisions, retries and messages of the proposers so far
+    // input: ArrayList<CouncilMember> (proposers)
+    // output: long[] (decided batches, retries, messages)
+    private static long[] counters(ArrayList<CouncilMember> proposerList){
+        long[] counters = new long[3]; 
+        for(int p = 0; p < proposerList.size(); p++){
+            CouncilMember proposer = proposerList.get(p); 
+            counters[0] += proposer.getSubmissionQueue().getBatchCount(); 
+            counters[1] += proposer.getRetryCount(); 
+            counters[2] += proposer.getMessageCount(); 
+        }
+        return counters; 
+    }
+
+    // input: HashMap<String, String> (options), String (key), String (default value)
+    // output: String
+    private static String option(HashMap<String, String> options, String key, String defaultValue){
+        return options.containsKey(key) ? options.get(key) : defaultValue; 
+    }
+
+    // write the results as CSV, one row per run
+    // input: ArrayList<Result>, String (file location)
+    // output: no
+    public static void writeCsv(ArrayList<Result> resultList, String fileLocation) throws IOException{
+        PrintWriter printWriter = new PrintWriter(new FileWriter(createParent(fileLocation))); 
+        printWriter.println(String.join(",", COLUMNS)); 
+        for(int r = 0; r < resultList.size(); r++){
+            Object[] row = resultList.get(r).getRow(); 
+            StringBuilder line = new StringBuilder(); 
+            for(int c = 0; c < row.length; c++){
+                if(c > 0){
+                    line.append(','); 
+                }
+                if(row[c] instanceof String){
+                    // a mix can contain commas (Percentile profiles)
+                    line.append('"').append(((String)row[c]).replace("\"", "\"\"")).append('"'); 
+                }
+                else{
+                    line.append(format(row[c])); 
+                }
+            }
+            printWriter.println(line); 
+        }
+        printWriter.close(); 
+    }
+
+    // write the results as a JSON array, one object per run with the CSV columns as keys
+    // input: ArrayList<Result>, String (file location)
+    // output: no
+    public static void writeJson(ArrayList<Result> resultList, String fileLocation) throws IOException{
+        PrintWriter printWriter = new PrintWriter(new FileWriter(createParent(fileLocation))); 
+        printWriter.println("["); 
+        for(int r = 0; r < resultList.size(); r++){
+            Object[] row = resultList.get(r).getRow(); 
+            StringBuilder line = new StringBuilder("    {"); 
+            for(int c = 0; c < row.length; c++){
+                line.append(c > 0 ? ", " : "").append('"').append(COLUMNS[c]).append("\": "); 
+                if(row[c] instanceof String){
+                    line.append('"').append(((String)row[c]).replace("\\", "\\\\").replace("\"", "\\\"")).append('"'); 
+                }
+                else if(row[c] instanceof Double && Double.isNaN((Double)row[c])){
+                    line.append("null"); 
+                }
+                else{
+                    line.append(format(row[c])); 
+                }
+            }
+            printWriter.println(line.append(r + 1 < resultList.size() ? "}," : "}")); 
+        }
+        printWriter.println("]"); 
+        printWriter.close(); 
+    }
+
+    // input: Object (Long or Double)
+    // output: String (doubles with 3 decimals)
+    private static String format(Object value){
+        if(value instanceof Double){
+            return Double.isNaN((Double)value) ? "" : String.format(Locale.ROOT, "%.3f", (Double)value); 
+        }
+        return String.valueOf(value); 
+    }
+
+    // input: String (file location)
+    // output: File (its directory has been created)
+    private static File createParent(String fileLocation){
+        File file = new File(fileLocation); 
+        if(file.getParentFile() != null){
+            file.getParentFile().mkdirs(); 
+        }
+        return file; 
+    }
+
+}
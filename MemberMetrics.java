@@ -0,0 +1,358 @@
+import java.lang.management.*; 
+import java.util.*; 
+import java.util.concurrent.*; 
+import java.util.concurrent.atomic.*; 
+
+// instrumentation of one member: how long its rounds took, how every peer answered, and what the acceptor handled
+// read over JMX (MemberMetricsMBean) and from the HTTP endpoint of MetricsServer
+// recording never takes a lock: histograms are arrays of atomic counters and counts are LongAdders,
+// so the acceptor hot path only pays an uncontended increment per request
+// CPU time and allocated bytes per phase are measured on the threads which do the work of the phase (sending, handling responses,
+// handling requests as acceptor); reading the clocks of a thread costs about a microsecond, so it is only done
+// when the paxos.metrics.cpu property is true
+public class MemberMetrics implements MemberMetricsMBean{
+    public static final int PROPOSER = 0; // side of the protocol a thread works for, index of the CPU/allocation counters
+    public static final int ACCEPTOR = 1; 
+    private static final String[] SIDE_NAMES = {"proposer", "acceptor"}; 
+    private static final byte[] PHASES = {Message.PREPARE, Message.ACCEPT, Message.DECIDE}; 
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean(); 
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = (THREADS instanceof com.sun.management.ThreadMXBean) ? (com.sun.management.ThreadMXBean)THREADS : null; 
+    private final int memberId; 
+    private final boolean accounting; // measure CPU time and allocations per phase
+    private final LatencyHistogram[] phaseHistograms; // [request type]: duration of Prepare/Accept rounds and Decide fan-outs
+    private final LongAdder[] failedRounds; // [request type]
+    private final LongAdder prepareRetries; 
+    private final CopyOnWriteArrayList<PeerMetrics> peerList; // peers in the order they were first contacted
+    private final ConcurrentHashMap<String, PeerMetrics> peerMap; // server socket info -> metrics of the peer
+    private final LongAdder[] acceptorRequests; // [request type]: requests handled as acceptor
+    private final LongAdder[] acceptorRejects; // [request type]: Rejects sent as acceptor
+    private final LongAdder[] cpuNanos; // [side * TYPE_COUNT + request type]
+    private final LongAdder[] allocatedBytes; // [side * TYPE_COUNT + request type]
+
+    // how one peer answered the requests of this member
+    public static class PeerMetrics{
+        private final String address; 
+        private final LatencyHistogram responseNanos; // from sending a request until its response arrived
+        private final LongAdder rejects; 
+        private final LongAdder timeouts; // requests not answered when their round was closed by its deadline
+        private final LongAdder errors; // requests which could not be sent or whose connection broke
+
+        // PeerMetrics constructor
+        // input: String (server socket info of the peer)
+        // output: no
+        public PeerMetrics(String address){
+            this.address = address; 
+            this.responseNanos = new LatencyHistogram(); 
+            this.rejects = new LongAdder(); 
+            this.timeouts = new LongAdder(); 
+            this.errors = new LongAdder(); 
+        }
+
+        // a response arrived
+        // input: long (nanoseconds since the request was sent), boolean (true if it is a Reject)
+        // output: no
+        public void recordResponse(long nanos, boolean rejected){
+            this.responseNanos.record(nanos); 
+            if(rejected){
+                this.rejects.increment(); 
+            }
+        }
+
+        // a request was not answered before the deadline of its round
+        // input: no
+        // output: no
+        public void countTimeout(){
+            this.timeouts.increment(); 
+        }
+
+        // a request could not be sent or its connection broke
+        // input: no
+        // output: no
+        public void countError(){
+            this.errors.increment(); 
+        }
+
+        @Override
+        public String toString(){
+            return this.address + ": " + this.responseNanos.getCount() + " responses, p50 " + this.responseNanos.getPercentileNanos(50) / 1e6 + " ms, p99 "
+                + this.responseNanos.getPercentileNanos(99) / 1e6 + " ms, " + this.rejects.sum() + " rejects, " + this.timeouts.sum() + " timeouts, " + this.errors.sum() + " errors"; 
+        }
+    }
+
+    // MemberMetrics constructor
+    // input: int (member id)
+    // output: no
+    public MemberMetrics(int memberId){
+        this.memberId = memberId; 
+        this.accounting = Boolean.getBoolean("paxos.metrics.cpu") && THREADS.isCurrentThreadCpuTimeSupported(); 
+        if(this.accounting){
+            THREADS.setThreadCpuTimeEnabled(true); 
+            if(ALLOCATIONS != null && ALLOCATIONS.isThreadAllocatedMemorySupported()){
+                ALLOCATIONS.setThreadAllocatedMemoryEnabled(true); 
+            }
+        }
+        this.phaseHistograms = new LatencyHistogram[Message.TYPE_COUNT]; 
+        this.failedRounds = new LongAdder[Message.TYPE_COUNT]; 
+        this.acceptorRequests = new LongAdder[Message.TYPE_COUNT]; 
+        this.acceptorRejects = new LongAdder[Message.TYPE_COUNT]; 
+        this.cpuNanos = new LongAdder[2 * Message.TYPE_COUNT]; 
+        this.allocatedBytes = new LongAdder[2 * Message.TYPE_COUNT]; 
+        for(int type = 0; type < Message.TYPE_COUNT; type++){
+            this.phaseHistograms[type] = new LatencyHistogram(); 
+            this.failedRounds[type] = new LongAdder(); 
+            this.acceptorRequests[type] = new LongAdder(); 
+            this.acceptorRejects[type] = new LongAdder(); 
+        }
+        for(int i = 0; i < this.cpuNanos.length; i++){
+            this.cpuNanos[i] = new LongAdder(); 
+            this.allocatedBytes[i] = new LongAdder(); 
+        }
+        this.prepareRetries = new LongAdder(); 
+        // a peer gets its metrics when this member first sends it a request, a member which only acts as acceptor keeps none
+        this.peerList = new CopyOnWriteArrayList<PeerMetrics>(); 
+        this.peerMap = new ConcurrentHashMap<String, PeerMetrics>(); 
+    }
+
+    // a Prepare/Accept round has an outcome
+    // input: byte (request type of the round), long (nanoseconds since the round started), boolean (true if the majority answered OK)
+    // output: no
+    public void recordRound(byte type, long nanos, boolean succeeded){
+        this.phaseHistograms[type].record(nanos); 
+        if(succeeded == false){
+            this.failedRounds[type].increment(); 
+        }
+    }
+
+    // a Decide is on every connection
+    // input: long (nanoseconds since sendDecide)
+    // output: no
+    public void recordDecide(long nanos){
+        this.phaseHistograms[Message.DECIDE].record(nanos); 
+    }
+
+    // sendPrepare was pre-empted and starts another round
+    // input: no
+    // output: no
+    public void countPrepareRetry(){
+        this.prepareRetries.increment(); 
+    }
+
+    // a request has been handled as acceptor
+    // input: byte (request type), Message (response, null if the request gets none)
+    // output: no
+    public void countAcceptorRequest(byte type, Message responseObject){
+        this.acceptorRequests[type].increment(); 
+        if(responseObject != null && responseObject.getType() == Message.REJECT){
+            this.acceptorRejects[type].increment(); 
+        }
+    }
+
+    // metrics of a peer, created on first use
+    // input: String (server socket info of the peer)
+    // output: PeerMetrics
+    public PeerMetrics getPeer(String address){
+        PeerMetrics peer = this.peerMap.get(address); 
+        if(peer != null){
+            return peer; 
+        }
+        synchronized(this.peerMap){
+            peer = this.peerMap.get(address); 
+            if(peer == null){
+                peer = new PeerMetrics(address); 
+                this.peerList.add(peer); 
+                this.peerMap.put(address, peer); 
+            }
+            return peer; 
+        }
+    }
+
+    // CPU time of the calling thread, read before the work of a phase
+    // input: no
+    // output: long (nanoseconds, 0 if CPU accounting is off)
+    public long threadCpuNanos(){
+        return this.accounting ? THREADS.getCurrentThreadCpuTime() : 0; 
+    }
+
+    // bytes allocated by the calling thread, read before the work of a phase
+    // input: no
+    // output: long (bytes, 0 if CPU accounting is off)
+    public long threadAllocatedBytes(){
+        if(this.accounting == false || ALLOCATIONS == null || ALLOCATIONS.isThreadAllocatedMemoryEnabled() == false){
+            return 0; 
+        }
+        return ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId()); 
+    }
+
+    // add the CPU time and allocations of the calling thread since the given readings to a phase
+    // input: int (PROPOSER or ACCEPTOR), byte (request type of the phase), long (threadCpuNanos before), long (threadAllocatedBytes before)
+    // output: no
+    public void account(int side, byte type, long cpuNanosBefore, long allocatedBytesBefore){
+        if(this.accounting == false){
+            return; 
+        }
+        this.cpuNanos[side * Message.TYPE_COUNT + type].add(this.threadCpuNanos() - cpuNanosBefore); 
+        this.allocatedBytes[side * Message.TYPE_COUNT + type].add(this.threadAllocatedBytes() - allocatedBytesBefore); 
+    }
+
+    // whether CPU time and allocations are measured
+    // input: no
+    // output: boolean
+    public boolean isAccounting(){
+        return this.accounting; 
+    }
+
+    // add every metric of this member to a scrape
+    // input: MetricsServer.PrometheusText
+    // output: no
+    public void collect(MetricsServer.PrometheusText text){
+        String member = "member=\"" + this.memberId + "\""; 
+        for(int p = 0; p < PHASES.length; p++){
+            byte type = PHASES[p]; 
+            String labels = member + ",phase=\"" + phaseName(type) + "\""; 
+            text.summary("paxos_phase_duration_seconds", "Duration of the Prepare/Accept rounds and Decide fan-outs started as proposer", labels, this.phaseHistograms[type]); 
+            if(type != Message.DECIDE){
+                text.sample("paxos_failed_rounds_total", "counter", "Rounds which did not get the majority", labels, this.failedRounds[type].sum()); 
+            }
+            text.sample("paxos_acceptor_requests_total", "counter", "Requests handled as acceptor", labels, this.acceptorRequests[type].sum()); 
+            if(type != Message.DECIDE){
+                text.sample("paxos_acceptor_rejects_total", "counter", "Rejects sent as acceptor", labels, this.acceptorRejects[type].sum()); 
+            }
+            if(this.accounting){
+                for(int side = 0; side < SIDE_NAMES.length; side++){
+                    String sideLabels = labels + ",side=\"" + SIDE_NAMES[side] + "\""; 
+                    text.sample("paxos_phase_cpu_seconds_total", "counter", "CPU time of the threads working on a phase", sideLabels,
+                        this.cpuNanos[side * Message.TYPE_COUNT + type].sum() / 1e9); 
+                    text.sample("paxos_phase_allocated_bytes_total", "counter", "Bytes allocated by the threads working on a phase", sideLabels,
+                        this.allocatedBytes[side * Message.TYPE_COUNT + type].sum()); 
+                }
+            }
+        }
+        text.sample("paxos_prepare_retries_total", "counter", "Prepare rounds started again after sendPrepare was pre-empted", member, this.prepareRetries.sum()); 
+        for(int i = 0; i < this.peerList.size(); i++){
+            PeerMetrics peer = this.peerList.get(i); 
+            String labels = member + ",peer=\"" + peer.address + "\""; 
+            text.summary("paxos_peer_response_seconds", "Time from sending a request to a peer until its response arrived", labels, peer.responseNanos); 
+            text.sample("paxos_peer_rejects_total", "counter", "Rejects received from a peer", labels, peer.rejects.sum()); 
+            text.sample("paxos_peer_timeouts_total", "counter", "Requests a peer did not answer before the deadline of their round", labels, peer.timeouts.sum()); 
+            text.sample("paxos_peer_errors_total", "counter", "Requests which could not be sent to a peer or lost their connection", labels, peer.errors.sum()); 
+        }
+    }
+
+    // input: byte (request type)
+    // output: String
+    private static String phaseName(byte type){
+        switch(type){
+            case Message.PREPARE: return "prepare"; 
+            case Message.ACCEPT: return "accept"; 
+            default: return "decide"; 
+        }
+    }
+
+    @Override
+    public int getMemberId(){
+        return this.memberId; 
+    }
+
+    @Override
+    public long getPrepareRounds(){
+        return this.phaseHistograms[Message.PREPARE].getCount(); 
+    }
+
+    @Override
+    public long getAcceptRounds(){
+        return this.phaseHistograms[Message.ACCEPT].getCount(); 
+    }
+
+    @Override
+    public long getDecideFanOuts(){
+        return this.phaseHistograms[Message.DECIDE].getCount(); 
+    }
+
+    @Override
+    public long getFailedRounds(){
+        return this.failedRounds[Message.PREPARE].sum() + this.failedRounds[Message.ACCEPT].sum(); 
+    }
+
+    @Override
+    public long getPrepareRetries(){
+        return this.prepareRetries.sum(); 
+    }
+
+    @Override
+    public double getPrepareP50Millis(){
+        return this.phaseHistograms[Message.PREPARE].getPercentileNanos(50) / 1e6; 
+    }
+
+    @Override
+    public double getPrepareP99Millis(){
+        return this.phaseHistograms[Message.PREPARE].getPercentileNanos(99) / 1e6; 
+    }
+
+    @Override
+    public double getAcceptP50Millis(){
+        return this.phaseHistograms[Message.ACCEPT].getPercentileNanos(50) / 1e6; 
+    }
+
+    @Override
+    public double getAcceptP99Millis(){
+        return this.phaseHistograms[Message.ACCEPT].getPercentileNanos(99) / 1e6; 
+    }
+
+    @Override
+    public double getDecideP99Millis(){
+        return this.phaseHistograms[Message.DECIDE].getPercentileNanos(99) / 1e6; 
+    }
+
+    @Override
+    public long getRejectsReceived(){
+        long rejects = 0; 
+        for(int i = 0; i < this.peerList.size(); i++){
+            rejects += this.peerList.get(i).rejects.sum(); 
+        }
+        return rejects; 
+    }
+
+    @Override
+    public long getTimeouts(){
+        long timeouts = 0; 
+        for(int i = 0; i < this.peerList.size(); i++){
+            timeouts += this.peerList.get(i).timeouts.sum(); 
+        }
+        return timeouts; 
+    }
+
+    @Override
+    public long getAcceptorRequests(){
+        long requests = 0; 
+        for(int type = 0; type < Message.TYPE_COUNT; type++){
+            requests += this.acceptorRequests[type].sum(); 
+        }
+        return requests; 
+    }
+
+    @Override
+    public long getRejectsSent(){
+        long rejects = 0; 
+        for(int type = 0; type < Message.TYPE_COUNT; type++){
+            rejects += this.acceptorRejects[type].sum(); 
+        }
+        return rejects; 
+    }
+
+    @Override
+    public String[] getPeerSummary(){
+        String[] summary = new String[this.peerList.size()]; 
+        for(int i = 0; i < this.peerList.size(); i++){
+            summary[i] = this.peerList.get(i).toString(); 
+        }
+        return summary; 
+    }
+
+    @Override
+    public String getPrometheusText(){
+        MetricsServer.PrometheusText text = new MetricsServer.PrometheusText(); 
+        this.collect(text); 
+        return text.toString(); 
+    }
+
+}
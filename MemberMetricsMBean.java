@@ -0,0 +1,38 @@
+// the attributes of MemberMetrics exported over JMX, one MBean per member named paxos:type=CouncilMember,member=<id>
+// counts are since the member was created, durations are in milliseconds
+public interface MemberMetricsMBean{
+    // id of the member
+    int getMemberId(); 
+
+    // Prepare rounds, Accept rounds and Decide fan-outs this member started as proposer
+    long getPrepareRounds(); 
+    long getAcceptRounds(); 
+    long getDecideFanOuts(); 
+
+    // Prepare/Accept rounds which did not get the majority
+    long getFailedRounds(); 
+
+    // Prepare rounds started again after sendPrepare was pre-empted
+    long getPrepareRetries(); 
+
+    // phase durations: from the start of a round until its outcome, from sendDecide until the Decide is on every connection
+    double getPrepareP50Millis(); 
+    double getPrepareP99Millis(); 
+    double getAcceptP50Millis(); 
+    double getAcceptP99Millis(); 
+    double getDecideP99Millis(); 
+
+    // Rejects received and requests not answered before the end of their round, over every peer
+    long getRejectsReceived(); 
+    long getTimeouts(); 
+
+    // requests handled and Rejects sent as acceptor
+    long getAcceptorRequests(); 
+    long getRejectsSent(); 
+
+    // one line per peer: address, responses, p50/p99 response time, Rejects, timeouts, errors
+    String[] getPeerSummary(); 
+
+    // every metric of this member in the text format served by MetricsServer
+    String getPrometheusText(); 
+}
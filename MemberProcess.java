@@ -0,0 +1,124 @@
+import java.io.*; 
+import java.net.*; 
+import java.util.*; 
+
+// one member of a cluster file running in its own JVM:
+// java MemberProcess <cluster file> <member id> [propose=<values>] [startupSeconds=30]
+// (or CouncilMember member ...)
+// the member serves as acceptor until the process is stopped; its write-ahead log and decided values are kept in
+// Log/member-<id>.* as usual, so a restarted process recovers its promises
+// with propose=<n> the member waits until every member of the file accepts connections, proposes n values one after
+// the other, prints their commit latency and exits, so a launcher can measure a cluster of processes
+// (every member has its own heap, so a GC pause only stalls the member it happens in)
+public class MemberProcess{
+    public static final int DEFAULT_STARTUP_SECONDS = 30; 
+
+    public static void main(String args[]){
+        if(args.length < 2){
+            System.out.println("Usage: java MemberProcess <cluster file> <member id> [propose=<values>] [startupSeconds=30]"); 
+            System.exit(2); 
+        }
+        HashMap<String, String> options = new HashMap<String, String>(); 
+        for(int i = 2; i < args.length; i++){
+            int separator = args[i].indexOf('='); 
+            if(separator <= 0){
+                System.out.println("Invalid option " + args[i] + ", options are written as key=value."); 
+                System.exit(2); 
+            }
+            options.put(args[i].substring(0, separator), args[i].substring(separator + 1)); 
+        }
+        ClusterConfig cluster; 
+        int memberId; 
+        try{
+            cluster = ClusterConfig.load(args[0]); 
+            memberId = Integer.parseInt(args[1]); 
+            cluster.getMember(memberId); 
+        }
+        catch(Exception e){
+            System.out.println("Cannot start member " + args[1] + ": " + e.getMessage()); 
+            System.exit(2); 
+            return; 
+        }
+        final CouncilMember member = new CouncilMember(cluster, memberId, CouncilMember.getDefaultTransport()); 
+        // close the log and the connections when the process is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable(){
+            @Override
+            public void run(){
+                CouncilMember.stopCluster(Collections.singletonList(member)); 
+                EventLog.flush(); 
+            }
+        })); 
+        int valueCount = Integer.parseInt(options.getOrDefault("propose", "0")); 
+        if(valueCount <= 0){
+            // serve as acceptor until the process is stopped
+            while(true){
+                try{
+                    Thread.sleep(Long.MAX_VALUE); 
+                }
+                catch(InterruptedException e){
+                    return; 
+                }
+            }
+        }
+        int startupSeconds = Integer.parseInt(options.getOrDefault("startupSeconds", Integer.toString(DEFAULT_STARTUP_SECONDS))); 
+        if(waitForCluster(cluster, startupSeconds * 1000L) == false){
+            System.out.println("Member " + memberId + ": the cluster did not start within " + startupSeconds + " s."); 
+            System.exit(1); 
+        }
+        LatencyHistogram histogram = new LatencyHistogram(); 
+        int failed = 0; 
+        long start = System.nanoTime(); 
+        for(int i = 0; i < valueCount; i++){
+            long valueStart = System.nanoTime(); 
+            if(member.proposeValue("member-" + memberId + "-value-" + i) < 0){
+                failed++; 
+            }
+            histogram.record(System.nanoTime() - valueStart); 
+        }
+        long elapsedNanos = System.nanoTime() - start; 
+        EventLog.flush(); 
+        System.out.println("Member " + memberId + " of " + cluster.size() + " processes: " + (valueCount - failed) + " values decided, " + failed + " failed in "
+            + (elapsedNanos / 1000000) + " ms (" + String.format("%.1f", valueCount * 1e9 / elapsedNanos) + " values/s), commit latency " + histogram); 
+        System.exit(failed == 0 ? 0 : 1); 
+    }
+
+    // wait until every member of the cluster accepts connections
+    // input: ClusterConfig, long (longest wait in milliseconds)
+    // output: boolean (false if a member still cannot be reached when the time is up)
+    public static boolean waitForCluster(ClusterConfig cluster, long timeoutMillis){
+        long deadline = System.currentTimeMillis() + timeoutMillis; 
+        List<ClusterConfig.Peer> peers = cluster.getMembers(); 
+        for(int i = 0; i < peers.size(); i++){
+            ClusterConfig.Peer peer = peers.get(i); 
+            while(true){
+                Socket probe = new Socket(); 
+                try{
+                    probe.connect(new InetSocketAddress(peer.getHostname(), peer.getPort()), 1000); 
+                    break; 
+                }
+                catch(IOException e){
+                    if(System.currentTimeMillis() >= deadline){
+                        return false; 
+                    }
+                    try{
+                        Thread.sleep(100); 
+                    }
+                    catch(InterruptedException ie){
+                        Thread.currentThread().interrupt(); 
+                        return false; 
+                    }
+                }
+                finally{
+                    try{
+                        probe.close(); 
+                    }
+                    catch(IOException e){
+
+                    }
+                }
+            }
+        }
+        return true; 
+    }
+
+}
@@ -0,0 +1,13 @@
+// the receiving side of a member, see Transport
+// requests are handed to AcceptorResponseToRequest, which answers through a ResponseChannel
+public interface MemberServer{
+    // start receiving requests
+    // input: no
+    // output: no
+    void start(); 
+
+    // stop receiving requests and close the connections Proposers have opened, the member goes offline
+    // input: no
+    // output: no
+    void shutDown(); 
+}
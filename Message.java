@@ -0,0 +1,58 @@
+import java.io.*; 
+
+// base class of every message exchanged between members
+// messages are immutable, their type is a small number so that it can index dispatch tables
+public abstract class Message implements Serializable{
+    private static final long serialVersionUID = 1L; // messages are only Java-serialized by MessageCodec.encodeWithJavaSerialization, the comparison path
+    // message types, also written on the wire by MessageCodec
+    public static final byte PREPARE = 1; 
+    public static final byte PROMISE = 2; 
+    public static final byte ACCEPT = 3; 
+    public static final byte ACCEPTED = 4; 
+    public static final byte REJECT = 5; 
+    public static final byte DECIDE = 6; 
+    public static final int TYPE_COUNT = 7; // size of a dispatch table indexed by type
+    private final int senderId; // id of the member who sends this message
+    private final long correlationId; // matches a response to its request, a response copies it from the request
+
+    // Message constructor
+    // input: int (sender id), long (Correlation-Id)
+    // output: no
+    protected Message(int senderId, long correlationId){
+        this.senderId = senderId; 
+        this.correlationId = correlationId; 
+    }
+
+    // get the type of this message
+    // input: no
+    // output: byte (one of the type constants above)
+    public abstract byte getType(); 
+
+    // sender id getter
+    // input: no
+    // output: int
+    public int getSenderId(){
+        return this.senderId; 
+    }
+
+    // Correlation-Id getter
+    // input: no
+    // output: long
+    public long getCorrelationId(){
+        return this.correlationId; 
+    }
+
+    // check if this message is a positive answer (Promise or Accepted)
+    // input: no
+    // output: boolean
+    public boolean isOk(){
+        return false; 
+    }
+
+    // describe a proposal, used by toString of the messages
+    // input: Proposal
+    // output: String
+    protected static String describe(Proposal proposal){
+        return "Proposal(id=" + Ballot.toString(proposal.getID()) + ", member=" + proposal.getMemberID() + ", instance=" + proposal.getInstance() + ", valueId=" + proposal.getValueId() + ", value=" + proposal.getValue() + ")"; 
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.*; 
+import java.io.*; 
+import java.nio.*; 
+import java.nio.charset.StandardCharsets; 
+
+// this class converts messages to and from the compact binary form used on the wire
+// every message starts with a fixed-width header followed by a payload:
+//   version (1 byte) | type (1 byte) | flags (1 byte) | sender id (4 bytes) | ballot (8 bytes) | instance (4 bytes) | Correlation-Id (8 bytes)
+// the ballot is the proposal id (see Ballot), the instance is the log instance (first instance for Prepare)
+// Accept/Accepted/Decide carry the proposal as: member id of the proposal creator (4 bytes) | value id (8 bytes) | value (UTF-8, up to the end of the frame)
+// Promise carries the accepted proposals as: count (4 bytes) | count x [instance (4) | ballot (8) | member id (4) | value id (8) | value length (4) | value]
+// Reject keeps the type of the rejected request in flags and the promised ballot of the Acceptor in the ballot field, 
+// if REJECT_HAS_ACCEPTED is set in flags it carries the accepted proposal of the instance (instance field) as: 
+//   ballot (8 bytes) | member id (4 bytes) | value id (8 bytes) | value (UTF-8, up to the end of the frame)
+public class MessageCodec{
+    public static final byte WIRE_VERSION = 4; // version 2: 8 byte ballots, version 3: informative Rejects, version 4: value ids
+    private static final byte REJECT_HAS_ACCEPTED = 0x40; 
+    private static final byte REJECT_TYPE_MASK = 0x0F; 
+    public static final int HEADER_BYTES = 27; 
+    private static final int PROMISE_ENTRY_BYTES = 28; // an accepted proposal of a Promise with an empty value
+
+    // convert a message to bytes
+    // input: Message
+    // output: byte[]
+    public static byte[] encode(Message message) throws IOException{
+        byte type = message.getType(); 
+        byte flags = 0; 
+        long ballot = 0; 
+        int instance = 0; 
+        Proposal proposal = null; 
+        Proposal rejectAccepted = null; 
+        Map<Integer, Proposal> acceptedProposals = null; 
+        switch(type){
+            case Message.PREPARE: 
+                ballot = ((PrepareMessage)message).getProposalId(); 
+                instance = ((PrepareMessage)message).getFirstInstance(); 
+                break; 
+            case Message.PROMISE: 
+                ballot = ((PromiseMessage)message).getProposalId(); 
+                acceptedProposals = ((PromiseMessage)message).getAcceptedProposals(); 
+                break; 
+            case Message.ACCEPT: 
+                proposal = ((AcceptMessage)message).getProposal(); 
+                break; 
+            case Message.ACCEPTED: 
+                proposal = ((AcceptedMessage)message).getProposal(); 
+                break; 
+            case Message.DECIDE: 
+                proposal = ((DecideMessage)message).getProposal(); 
+                break; 
+            case Message.REJECT: 
+                flags = ((RejectMessage)message).getRequestType(); 
+                ballot = ((RejectMessage)message).getPromisedBallot(); 
+                rejectAccepted = ((RejectMessage)message).getAcceptedProposal(); 
+                if(rejectAccepted != null){
+                    flags |= REJECT_HAS_ACCEPTED; 
+                }
+                break; 
+            default: 
+                throw new IOException("Unknown message type " + type); 
+        }
+        byte[] value = null; 
+        int payloadBytes = 0; 
+        if(proposal != null){
+            ballot = proposal.getID(); 
+            instance = proposal.getInstance(); 
+            value = proposal.getValue().getBytes(StandardCharsets.UTF_8); 
+            payloadBytes = 12 + value.length; 
+        }
+        if(rejectAccepted != null){
+            instance = rejectAccepted.getInstance(); 
+            value = rejectAccepted.getValue().getBytes(StandardCharsets.UTF_8); 
+            payloadBytes = 20 + value.length; 
+        }
+        ArrayList<byte[]> acceptedValues = new ArrayList<byte[]>(); 
+        if(acceptedProposals != null){
+            payloadBytes = 4; 
+            for(Proposal acceptedProposal : acceptedProposals.values()){
+                byte[] acceptedValue = acceptedProposal.getValue().getBytes(StandardCharsets.UTF_8); 
+                acceptedValues.add(acceptedValue); 
+                payloadBytes += 28 + acceptedValue.length; 
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payloadBytes); 
+        buffer.put(WIRE_VERSION); 
+        buffer.put(type); 
+        buffer.put(flags); 
+        buffer.putInt(message.getSenderId()); 
+        buffer.putLong(ballot); 
+        buffer.putInt(instance); 
+        buffer.putLong(message.getCorrelationId()); 
+        if(proposal != null){
+            buffer.putInt(proposal.getMemberID()); 
+            buffer.putLong(proposal.getValueId()); 
+            buffer.put(value); 
+        }
+        if(rejectAccepted != null){
+            buffer.putLong(rejectAccepted.getID()); 
+            buffer.putInt(rejectAccepted.getMemberID()); 
+            buffer.putLong(rejectAccepted.getValueId()); 
+            buffer.put(value); 
+        }
+        if(acceptedProposals != null){
+            buffer.putInt(acceptedProposals.size()); 
+            int i = 0; 
+            for(Proposal acceptedProposal : acceptedProposals.values()){
+                buffer.putInt(acceptedProposal.getInstance()); 
+                buffer.putLong(acceptedProposal.getID()); 
+                buffer.putInt(acceptedProposal.getMemberID()); 
+                buffer.putLong(acceptedProposal.getValueId()); 
+                buffer.putInt(acceptedValues.get(i).length); 
+                buffer.put(acceptedValues.get(i)); 
+                i++; 
+            }
+        }
+        return buffer.array(); 
+    }
+
+    // convert bytes back to a message
+    // input: byte[]
+    // output: Message
+    public static Message decode(byte[] bytes) throws IOException{
+        try{
+            ByteBuffer buffer = ByteBuffer.wrap(bytes); 
+            byte version = buffer.get(); 
+            if(version != WIRE_VERSION){
+                throw new IOException("Unsupported wire version " + version); 
+            }
+            byte type = buffer.get(); 
+            byte flags = buffer.get(); 
+            int senderId = buffer.getInt(); 
+            long ballot = buffer.getLong(); 
+            int instance = buffer.getInt(); 
+            long correlationId = buffer.getLong(); 
+            switch(type){
+                case Message.PREPARE: 
+                    return new PrepareMessage(senderId, correlationId, ballot, instance); 
+                case Message.PROMISE: 
+                    int count = buffer.getInt(); 
+                    // a corrupt count or value length must not allocate more than the frame holds
+                    if(count < 0 || count > buffer.remaining() / PROMISE_ENTRY_BYTES){
+                        throw new IOException("Invalid accepted proposal count " + count); 
+                    }
+                    HashMap<Integer, Proposal> acceptedProposals = new HashMap<Integer, Proposal>(); 
+                    for(int i = 0; i < count; i++){
+                        int acceptedInstance = buffer.getInt(); 
+                        long acceptedBallot = buffer.getLong(); 
+                        int memberId = buffer.getInt(); 
+                        long valueId = buffer.getLong(); 
+                        int length = buffer.getInt(); 
+                        if(length < 0 || length > buffer.remaining()){
+                            throw new IOException("Invalid value length " + length); 
+                        }
+                        byte[] value = new byte[length]; 
+                        buffer.get(value); 
+                        acceptedProposals.put(acceptedInstance, new Proposal(memberId, new String(value, StandardCharsets.UTF_8), acceptedInstance, acceptedBallot, valueId)); 
+                    }
+                    return new PromiseMessage(senderId, correlationId, ballot, acceptedProposals); 
+                case Message.ACCEPT: 
+                    return new AcceptMessage(senderId, correlationId, readProposal(buffer, instance, ballot)); 
+                case Message.ACCEPTED: 
+                    return new AcceptedMessage(senderId, correlationId, readProposal(buffer, instance, ballot)); 
+                case Message.DECIDE: 
+                    return new DecideMessage(senderId, correlationId, readProposal(buffer, instance, ballot)); 
+                case Message.REJECT: 
+                    Proposal rejectAccepted = null; 
+                    if((flags & REJECT_HAS_ACCEPTED) != 0){
+                        long acceptedBallot = buffer.getLong(); 
+                        rejectAccepted = readProposal(buffer, instance, acceptedBallot); 
+                    }
+                    return new RejectMessage(senderId, correlationId, (byte)(flags & REJECT_TYPE_MASK), ballot, rejectAccepted); 
+                default: 
+                    throw new IOException("Unknown message type " + type); 
+            }
+        }
+        catch(BufferUnderflowException e){
+            throw new IOException("Truncated message", e); 
+        }
+    }
+
+    // read the proposal payload of Accept/Accepted/Decide, the value runs to the end of the frame
+    // the proposal is rebuilt with its received id, it does not draw a new proposal id
+    // input: ByteBuffer (positioned after the header), int (log instance), long (proposal id)
+    // output: Proposal
+    private static Proposal readProposal(ByteBuffer buffer, int instance, long ballot){
+        int memberId = buffer.getInt(); 
+        long valueId = buffer.getLong(); 
+        String value = new String(buffer.array(), buffer.position(), buffer.remaining(), StandardCharsets.UTF_8); 
+        return new Proposal(memberId, value, instance, ballot, valueId); 
+    }
+
+    // the previous wire format, the message written with ObjectOutputStream, kept for comparison
+    // input: Message
+    // output: byte[]
+    public static byte[] encodeWithJavaSerialization(Message message) throws IOException{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(); 
+        ObjectOutputStream out = new ObjectOutputStream(bytes); 
+        out.writeObject(message); 
+        out.close(); 
+        return bytes.toByteArray(); 
+    }
+
+    // decode the previous wire format
+    // input: byte[]
+    // output: Message
+    public static Message decodeWithJavaSerialization(byte[] bytes) throws IOException, ClassNotFoundException{
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes)); 
+        return (Message)in.readObject(); 
+    }
+}
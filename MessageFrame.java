@@ -0,0 +1,58 @@
+import java.io.*; 
+import java.nio.*; 
+
+// this class is responsible for reading and writing messages on a long-lived connection
+// every message is sent as a frame: the length of the message (4 bytes) followed by the message encoded by MessageCodec
+// so that many requests and responses can share one socket
+public class MessageFrame{
+    public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024; // refuse frames above 16 MB, the stream is broken
+
+    // write a message as one frame
+    // input: DataOutputStream (stream of the connection), Message (message to send)
+    // output: no
+    public static void writeFrame(DataOutputStream out, Message message) throws IOException{
+        byte[] body = encode(message); 
+        out.writeInt(body.length); 
+        out.write(body); 
+        out.flush(); 
+    }
+
+    // read one frame and convert it back to a message
+    // input: DataInputStream (stream of the connection)
+    // output: Message (the message in the frame)
+    public static Message readFrame(DataInputStream in) throws IOException{
+        int length = in.readInt(); 
+        if(length < 0 || length > MAX_FRAME_BYTES){
+            throw new IOException("Invalid frame length " + length); 
+        }
+        byte[] body = new byte[length]; 
+        in.readFully(body); 
+        return decode(body); 
+    }
+
+    // convert a message to a whole frame (length and body) ready to be written to a channel
+    // input: Message
+    // output: ByteBuffer (flipped, ready to be written)
+    public static ByteBuffer toFrameBuffer(Message message) throws IOException{
+        byte[] body = encode(message); 
+        ByteBuffer frame = ByteBuffer.allocate(4 + body.length); 
+        frame.putInt(body.length); 
+        frame.put(body); 
+        frame.flip(); 
+        return frame; 
+    }
+
+    // convert a message to the bytes of a frame body
+    // input: Message
+    // output: byte[]
+    public static byte[] encode(Message message) throws IOException{
+        return MessageCodec.encode(message); 
+    }
+
+    // convert the bytes of a frame body back to a message
+    // input: byte[]
+    // output: Message
+    public static Message decode(byte[] body) throws IOException{
+        return MessageCodec.decode(body); 
+    }
+}
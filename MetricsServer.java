@@ -0,0 +1,192 @@
+import java.io.*; 
+import java.lang.management.*; 
+import java.net.*; 
+import java.nio.charset.*; 
+import java.util.*; 
+import java.util.concurrent.*; 
+import javax.management.*; 
+import com.sun.net.httpserver.*; 
+
+// exports the MemberMetrics of every member running in this JVM
+// each member is an MBean named paxos:type=CouncilMember,member=<id> on the platform MBean server,
+// and if the paxos.metricsPort property is set, GET /metrics on that port returns the metrics of all members
+// in the Prometheus text format (one sample per line, # HELP and # TYPE once per metric family)
+public class MetricsServer{
+    private static final ConcurrentHashMap<Integer, MemberMetrics> registry = new ConcurrentHashMap<Integer, MemberMetrics>(); 
+    private static HttpServer httpServer = null; 
+
+    // builds one scrape in the Prometheus text format, samples of the same family are written together under one # TYPE line
+    public static class PrometheusText{
+        private final LinkedHashMap<String, StringBuilder> familyList = new LinkedHashMap<String, StringBuilder>(); 
+
+        // add one sample
+        // input: String (metric name), String (counter or gauge), String (help line), String (labels without braces, may be empty), double (value)
+        // output: no
+        public void sample(String name, String type, String help, String labels, double value){
+            this.family(name, type, help).append(name).append(braces(labels)).append(' ').append(format(value)).append('\n'); 
+        }
+
+        // add the quantiles, sum and count of a latency histogram, in seconds
+        // input: String (metric name), String (help line), String (labels without braces), LatencyHistogram
+        // output: no
+        public void summary(String name, String help, String labels, LatencyHistogram histogram){
+            StringBuilder family = this.family(name, "summary", help); 
+            String separator = labels.isEmpty() ? "" : ","; 
+            double[] quantileList = {0.5, 0.9, 0.99, 0.999}; 
+            for(int i = 0; i < quantileList.length; i++){
+                family.append(name).append('{').append(labels).append(separator).append("quantile=\"").append(quantileList[i]).append("\"} ")
+                    .append(format(histogram.getPercentileNanos(quantileList[i] * 100) / 1e9)).append('\n'); 
+            }
+            family.append(name).append("_sum").append(braces(labels)).append(' ').append(format(histogram.getTotalNanos() / 1e9)).append('\n'); 
+            family.append(name).append("_count").append(braces(labels)).append(' ').append(histogram.getCount()).append('\n'); 
+        }
+
+        // input: String (metric name), String (type), String (help line)
+        // output: StringBuilder (samples of the family)
+        private StringBuilder family(String name, String type, String help){
+            StringBuilder family = this.familyList.get(name); 
+            if(family == null){
+                family = new StringBuilder(); 
+                family.append("# HELP ").append(name).append(' ').append(help).append('\n'); 
+                family.append("# TYPE ").append(name).append(' ').append(type).append('\n'); 
+                this.familyList.put(name, family); 
+            }
+            return family; 
+        }
+
+        // input: String (labels)
+        // output: String (labels in braces, empty if there are none)
+        private static String braces(String labels){
+            return labels.isEmpty() ? "" : "{" + labels + "}"; 
+        }
+
+        // input: double
+        // output: String (integers without a fraction)
+        private static String format(double value){
+            if(value == Math.rint(value) && Math.abs(value) < 1e15){
+                return Long.toString((long)value); 
+            }
+            return Double.toString(value); 
+        }
+
+        @Override
+        public String toString(){
+            StringBuilder text = new StringBuilder(); 
+            for(StringBuilder family : this.familyList.values()){
+                text.append(family); 
+            }
+            return text.toString(); 
+        }
+    }
+
+    // export the metrics of a member, replacing the metrics of an earlier member with the same id
+    // input: MemberMetrics
+    // output: no
+    public static void register(MemberMetrics metrics){
+        registry.put(metrics.getMemberId(), metrics); 
+        try{
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer(); 
+            ObjectName name = objectName(metrics.getMemberId()); 
+            if(server.isRegistered(name)){
+                server.unregisterMBean(name); 
+            }
+            server.registerMBean(metrics, name); 
+        }
+        catch(Exception e){
+            System.out.println("Cannot register the MBean of member " + metrics.getMemberId() + ": " + e); 
+        }
+        startHttpServer(); 
+    }
+
+    // stop exporting the metrics of a member
+    // input: MemberMetrics
+    // output: no
+    public static void unregister(MemberMetrics metrics){
+        if(registry.remove(metrics.getMemberId(), metrics) == false){
+            return; 
+        }
+        try{
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer(); 
+            ObjectName name = objectName(metrics.getMemberId()); 
+            if(server.isRegistered(name)){
+                server.unregisterMBean(name); 
+            }
+        }
+        catch(Exception e){
+            System.out.println("Cannot unregister the MBean of member " + metrics.getMemberId() + ": " + e); 
+        }
+    }
+
+    // every metric of the members in this JVM and the thread counts of the JVM
+    // input: no
+    // output: String (Prometheus text format)
+    public static String scrape(){
+        PrometheusText text = new PrometheusText(); 
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean(); 
+        text.sample("paxos_jvm_threads", "gauge", "Live threads of the JVM", "state=\"live\"", threads.getThreadCount()); 
+        text.sample("paxos_jvm_threads", "gauge", "Live threads of the JVM", "state=\"daemon\"", threads.getDaemonThreadCount()); 
+        text.sample("paxos_jvm_threads", "gauge", "Live threads of the JVM", "state=\"peak\"", threads.getPeakThreadCount()); 
+        TreeMap<Integer, MemberMetrics> sorted = new TreeMap<Integer, MemberMetrics>(registry); 
+        for(MemberMetrics metrics : sorted.values()){
+            metrics.collect(text); 
+        }
+        return text.toString(); 
+    }
+
+    // input: int (member id)
+    // output: ObjectName
+    private static ObjectName objectName(int memberId) throws MalformedObjectNameException{
+        return new ObjectName("paxos:type=CouncilMember,member=" + memberId); 
+    }
+
+    // start the HTTP endpoint once if paxos.metricsPort is set
+    // the server is started from a daemon thread so its dispatcher thread is a daemon too and does not keep the JVM alive
+    // input: no
+    // output: no
+    private static synchronized void startHttpServer(){
+        final int port = Integer.getInteger("paxos.metricsPort", -1); 
+        if(httpServer != null || port < 0){
+            return; 
+        }
+        try{
+            httpServer = HttpServer.create(new InetSocketAddress("localhost", port), 0); 
+        }
+        catch(IOException e){
+            System.out.println("Cannot open the metrics endpoint on port " + port + ": " + e); 
+            return; 
+        }
+        httpServer.createContext("/metrics", new HttpHandler(){
+            @Override
+            public void handle(HttpExchange exchange) throws IOException{
+                byte[] body = scrape().getBytes(StandardCharsets.UTF_8); 
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8"); 
+                exchange.sendResponseHeaders(200, body.length); 
+                OutputStream output = exchange.getResponseBody(); 
+                output.write(body); 
+                output.close(); 
+            }
+        }); 
+        Thread starter = new Thread(new Runnable(){
+            @Override
+            public void run(){
+                httpServer.start(); 
+            }
+        }); 
+        starter.setDaemon(true); 
+        starter.start(); 
+        try{
+            starter.join(); 
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt(); 
+        }
+    }
+
+    // port the HTTP endpoint listens on
+    // input: no
+    // output: int (-1 if it is not running)
+    public static synchronized int getHttpPort(){
+        return httpServer == null ? -1 : httpServer.getAddress().getPort(); 
+    }
+
+}
@@ -0,0 +1,266 @@
+import java.util.*; 
+import java.util.concurrent.*; 
+import java.util.regex.*; 
+
+// benchmarks of the hot paths, run apart from the scenarios of CouncilMember:
+// java PaxosBenchmarks [regular expression of the benchmarks to run] [JSON file, Testing/BenchmarkResults.json by default]
+// acceptor.*: Prepare/Accept handling of one acceptor under 1 to N threads racing on the same state, with and without waiting for the write-ahead log
+// codec.roundTrip: encode+decode of every message type in the binary format and with Java serialization
+// quorum.*: counting the votes of one Prepare/Accept round in a RoundCollector
+// round.*: one value proposed by the leader of a 9, 13 or 15 member cluster over loopback sockets, with or without Phase 1
+// iterations are set with the paxos.benchmark.* properties, see BenchmarkRunner
+public class PaxosBenchmarks{
+    private static final int[] CLUSTER_SIZES = {9, 13, 15}; // the sizes of the clusters in the scenarios
+
+    public static void main(String args[]){
+        Pattern filter = Pattern.compile(args.length > 0 ? args[0] : ".*"); 
+        String outputFileLocation = args.length > 1 ? args[1] : "Testing/BenchmarkResults.json"; 
+        ArrayList<Benchmark> benchmarkList = new ArrayList<Benchmark>(); 
+        ArrayList<int[]> threadCountList = new ArrayList<int[]>(); 
+        // 1, 2, 4, ... threads up to at least 4, so there is contention even on a small machine
+        int processors = Math.max(4, Runtime.getRuntime().availableProcessors()); 
+        ArrayList<Integer> contendedList = new ArrayList<Integer>(); 
+        for(int threadCount = 1; threadCount < processors; threadCount *= 2){
+            contendedList.add(threadCount); 
+        }
+        contendedList.add(processors); 
+        int[] contended = new int[contendedList.size()]; 
+        for(int i = 0; i < contended.length; i++){
+            contended[i] = contendedList.get(i); 
+        }
+        int[] single = {1}; 
+        boolean[] durableList = {false, true}; 
+        for(int d = 0; d < durableList.length; d++){
+            benchmarkList.add(prepareBenchmark(durableList[d])); 
+            threadCountList.add(contended); 
+            benchmarkList.add(acceptBenchmark(durableList[d])); 
+            threadCountList.add(contended); 
+        }
+        ArrayList<Message> messageList = sampleMessages(); 
+        for(int i = 0; i < messageList.size(); i++){
+            benchmarkList.add(codecBenchmark(messageList.get(i), true)); 
+            threadCountList.add(single); 
+            benchmarkList.add(codecBenchmark(messageList.get(i), false)); 
+            threadCountList.add(single); 
+        }
+        for(int i = 0; i < CLUSTER_SIZES.length; i++){
+            benchmarkList.add(quorumBenchmark(CLUSTER_SIZES[i], true)); 
+            threadCountList.add(single); 
+            benchmarkList.add(quorumBenchmark(CLUSTER_SIZES[i], false)); 
+            threadCountList.add(single); 
+        }
+        for(int i = 0; i < CLUSTER_SIZES.length; i++){
+            benchmarkList.add(roundBenchmark(CLUSTER_SIZES[i], false)); 
+            threadCountList.add(single); 
+            benchmarkList.add(roundBenchmark(CLUSTER_SIZES[i], true)); 
+            threadCountList.add(single); 
+        }
+        BenchmarkRunner runner = BenchmarkRunner.fromSystemProperty(); 
+        boolean failed = false; 
+        for(int b = 0; b < benchmarkList.size(); b++){
+            Benchmark benchmark = benchmarkList.get(b); 
+            if(filter.matcher(benchmark.getName()).find() == false){
+                continue; 
+            }
+            int[] threadCounts = threadCountList.get(b); 
+            for(int t = 0; t < threadCounts.length; t++){
+                try{
+                    System.out.println("# Benchmark " + benchmark + ", " + threadCounts[t] + " threads"); 
+                    System.out.println(runner.run(benchmark, threadCounts[t])); 
+                }
+                catch(Exception e){
+                    failed = true; 
+                    System.out.println("Benchmark " + benchmark + " failed."); 
+                    e.printStackTrace(); 
+                }
+            }
+        }
+        System.out.println(); 
+        System.out.println("# Results"); 
+        for(int i = 0; i < runner.getResultList().size(); i++){
+            System.out.println(runner.getResultList().get(i)); 
+        }
+        try{
+            runner.writeJson(outputFileLocation); 
+            System.out.println("Results written to " + outputFileLocation); 
+        }
+        catch(Exception e){
+            failed = true; 
+            System.out.println("Error in writing the benchmark results."); 
+            e.printStackTrace(); 
+        }
+        System.exit(failed ? 1 : 0); 
+    }
+
+    // Prepare handling: every thread sends Prepares with its own growing ballot, so the threads overtake each other
+    // and the acceptor answers with both Promises and Rejects while its compareAndSet races with the other threads
+    // input: boolean (true: wait until the promise is on disk before the next Prepare, as the acceptor does before it answers)
+    // output: Benchmark
+    private static Benchmark prepareBenchmark(final boolean durable){
+        return new AcceptorBenchmark("acceptor.handlePrepareRequest", durable){
+            @Override
+            public Object operation(int threadIndex) throws Exception{
+                long round = ++this.rounds[threadIndex * 16]; 
+                AcceptorResponseToRequest handler = new AcceptorResponseToRequest(this.acceptor, null, null); 
+                Message response = handler.handlePrepareRequest(new PrepareMessage(threadIndex + 1, round, Ballot.of(round, threadIndex + 1), CouncilMember.FIRST_INSTANCE)); 
+                this.awaitDurable(handler); 
+                return response; 
+            }
+        }.param("durable", durable); 
+    }
+
+    // Accept handling: like prepareBenchmark, every thread sends Accepts for 64 instances with its own growing ballot
+    // input: boolean (true: wait until the acceptance is on disk before the next Accept)
+    // output: Benchmark
+    private static Benchmark acceptBenchmark(final boolean durable){
+        return new AcceptorBenchmark("acceptor.handleAcceptRequest", durable){
+            @Override
+            public Object operation(int threadIndex) throws Exception{
+                long round = ++this.rounds[threadIndex * 16]; 
+                AcceptorResponseToRequest handler = new AcceptorResponseToRequest(this.acceptor, null, null); 
+                Proposal proposal = new Proposal(threadIndex + 1, "value", (int)(round % 64), Ballot.of(round, threadIndex + 1)); 
+                Message response = handler.handleAcceptRequest(new AcceptMessage(threadIndex + 1, round, proposal)); 
+                this.awaitDurable(handler); 
+                return response; 
+            }
+        }.param("durable", durable); 
+    }
+
+    // one acceptor shared by the benchmark threads, a new one (with an empty log) for every run
+    private static abstract class AcceptorBenchmark extends Benchmark{
+        private final boolean durable; 
+        protected CouncilMember acceptor; 
+        protected long[] rounds; // rounds[threadIndex * 16] is the round of the last ballot of that thread, apart so that the threads do not share a cache line
+
+        // AcceptorBenchmark constructor
+        // input: String (name), boolean (wait for the write-ahead log)
+        // output: no
+        public AcceptorBenchmark(String name, boolean durable){
+            super(name, Benchmark.THROUGHPUT, TimeUnit.SECONDS); 
+            this.durable = durable; 
+        }
+
+        @Override
+        public void setUp(int threadCount) throws Exception{
+            this.acceptor = CouncilMember.startCluster(1, "Immediate").get(0); 
+            this.rounds = new long[threadCount * 16]; 
+        }
+
+        // input: AcceptorResponseToRequest (the handler of the last request)
+        // output: no
+        protected void awaitDurable(AcceptorResponseToRequest handler){
+            if(this.durable && handler.getDurable() != null){
+                handler.getDurable().join(); 
+            }
+        }
+
+        @Override
+        public void tearDown() throws Exception{
+            CouncilMember.stopCluster(Collections.singletonList(this.acceptor)); 
+        }
+    }
+
+    // encode+decode of one message
+    // input: Message, boolean (true: the binary format of MessageCodec, false: Java serialization of the message object)
+    // output: Benchmark
+    private static Benchmark codecBenchmark(final Message message, final boolean binary){
+        int bytes = 0; 
+        try{
+            bytes = binary ? MessageCodec.encode(message).length : MessageCodec.encodeWithJavaSerialization(message).length; 
+        }
+        catch(Exception e){
+            e.printStackTrace(); 
+        }
+        return new Benchmark("codec.roundTrip", Benchmark.AVERAGE_TIME, TimeUnit.NANOSECONDS){
+            @Override
+            public Object operation(int threadIndex) throws Exception{
+                if(binary){
+                    return MessageCodec.decode(MessageCodec.encode(message)); 
+                }
+                return MessageCodec.decodeWithJavaSerialization(MessageCodec.encodeWithJavaSerialization(message)); 
+            }
+        }.param("message", message.getClass().getSimpleName()).param("format", binary ? "binary" : "serialization").param("bytes", bytes); 
+    }
+
+    // the messages of one election, the same kinds the codec scenario checks
+    // input: no
+    // output: ArrayList<Message>
+    private static ArrayList<Message> sampleMessages(){
+        HashMap<Integer, Proposal> acceptedProposals = new HashMap<Integer, Proposal>(); 
+        acceptedProposals.put(3, new Proposal(1, "1999", 3, Ballot.of(1, 1))); 
+        acceptedProposals.put(4, new Proposal(4, "2001", 4, Ballot.of(1, 4))); 
+        ArrayList<Message> messageList = new ArrayList<Message>(); 
+        messageList.add(new PrepareMessage(2, 41L, Ballot.of(2, 2), 3)); 
+        messageList.add(new PromiseMessage(5, 41L, Ballot.of(2, 2), acceptedProposals)); 
+        messageList.add(new AcceptMessage(2, 42L, new Proposal(2, "2001", 3, Ballot.of(2, 2)))); 
+        messageList.add(new AcceptedMessage(5, 42L, new Proposal(2, "2001", 3, Ballot.of(2, 2)))); 
+        messageList.add(new RejectMessage(6, 42L, Message.ACCEPT, Ballot.of(3, 4), new Proposal(4, "2003", 3, Ballot.of(3, 4)))); 
+        messageList.add(new DecideMessage(2, 43L, new Proposal(2, "2001", 3, Ballot.of(2, 2)))); 
+        return messageList; 
+    }
+
+    // counting the votes of one round: every member answers OK, the round is decided by the vote of the majority
+    // input: int (cluster size), boolean (true: Promises of a Prepare round, false: Accepted of an Accept round)
+    // output: Benchmark
+    private static Benchmark quorumBenchmark(final int memberCount, final boolean prepare){
+        final long ballot = Ballot.of(7, 1); 
+        final int majority = memberCount / 2 + 1; 
+        final Message[] responses = new Message[memberCount]; 
+        for(int i = 0; i < memberCount; i++){
+            if(prepare){
+                responses[i] = new PromiseMessage(i + 1, 1L, ballot, new HashMap<Integer, Proposal>()); 
+            }
+            else{
+                responses[i] = new AcceptedMessage(i + 1, 1L, new Proposal(1, "2001", 0, ballot)); 
+            }
+        }
+        return new Benchmark(prepare ? "quorum.prepareRound" : "quorum.acceptRound", Benchmark.AVERAGE_TIME, TimeUnit.NANOSECONDS){
+            @Override
+            public Object operation(int threadIndex) throws Exception{
+                RoundCollector round = new RoundCollector(ballot, memberCount, majority); 
+                for(int i = 0; i < memberCount; i++){
+                    round.addResponse(i, responses[i]); 
+                }
+                if(round.isSucceeded() == false){
+                    throw new IllegalStateException("The round of " + memberCount + " OK votes did not succeed"); 
+                }
+                return round; 
+            }
+        }.param("members", memberCount); 
+    }
+
+    // one value proposed and decided by member 1 of a cluster on this machine, every operation is timed
+    // input: int (cluster size), boolean (true: the leader gives up its ballot first, so every value also runs Phase 1)
+    // output: Benchmark
+    private static Benchmark roundBenchmark(final int memberCount, final boolean phaseOne){
+        return new Benchmark("round.proposeValue", Benchmark.SAMPLE_TIME, TimeUnit.MICROSECONDS){
+            private ArrayList<CouncilMember> memberList; 
+            private long valueCount; 
+
+            @Override
+            public void setUp(int threadCount) throws Exception{
+                this.memberList = CouncilMember.startCluster(memberCount, "Immediate"); 
+                this.valueCount = 0; 
+            }
+
+            @Override
+            public Object operation(int threadIndex) throws Exception{
+                CouncilMember leader = this.memberList.get(0); 
+                if(phaseOne){
+                    leader.loseLeadership(); 
+                }
+                int instance = leader.proposeValue("value-" + (++this.valueCount)); 
+                if(instance < 0){
+                    throw new IllegalStateException("Member 1 gave up proposing"); 
+                }
+                return instance; 
+            }
+
+            @Override
+            public void tearDown() throws Exception{
+                CouncilMember.stopCluster(this.memberList); 
+            }
+        }.param("members", memberCount).param("phase1", phaseOne); 
+    }
+
+}
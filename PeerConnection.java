@@ -0,0 +1,229 @@
+import java.util.*; 
+import java.net.*; 
+import java.io.*; 
+import java.util.concurrent.*; 
+import java.util.concurrent.locks.*; 
+
+// a long-lived connection from this member (as a Proposer) to one member of the protocol
+// requests carry a Correlation-Id which the Acceptor copies into its response, 
+// a reader thread matches every response to the request waiting for it
+// so many requests can be in flight on the same socket
+// if the connection breaks, the requests written on it fail and the next request reconnects
+public class PeerConnection implements PeerLink{
+    private static final int CONNECT_TIMEOUT_MILLIS = 12000; // below the 13 s a round waits for its responses (IntermediateThread)
+    private InetSocketAddress address; // resolved once when the pool is created
+    private Socket socket; 
+    private DataOutputStream out; 
+    private ReentrantLock writeLock; // guard socket/out, one frame is written at a time
+    private ConcurrentHashMap<Long, PendingRequest> pendingRequests; // requests waiting for a response, by Correlation-Id
+
+    // PeerConnection constructor
+    // input: InetSocketAddress (resolved address of the member server)
+    // output: no
+    public PeerConnection(InetSocketAddress address){
+        this.address = address; 
+        this.socket = null; 
+        this.out = null; 
+        this.writeLock = new ReentrantLock(); 
+        this.pendingRequests = new ConcurrentHashMap<Long, PendingRequest>(); 
+    }
+
+    // send a request and get a future which completes with the response
+    // input: Message (request)
+    // output: CompletableFuture<Message> (completed with the response, or exceptionally if the connection fails)
+    @Override
+    public CompletableFuture<Message> sendRequest(Message requestObject){
+        long correlationId = requestObject.getCorrelationId(); 
+        PendingRequest pending = new PendingRequest(); 
+        // registered before the write, the response can arrive before write returns
+        this.pendingRequests.put(correlationId, pending); 
+        try{
+            this.write(requestObject, pending); 
+        }
+        catch(IOException e){
+            this.pendingRequests.remove(correlationId); 
+            pending.response.completeExceptionally(e); 
+        }
+        return pending.response; 
+    }
+
+    // send a message which does not get a response (Decide)
+    // input: Message
+    // output: no
+    @Override
+    public void sendOneWay(Message message) throws IOException{
+        this.write(message, null); 
+    }
+
+    // stop waiting for the response of a request
+    // input: long (Correlation-Id of the request)
+    // output: no
+    @Override
+    public void cancelRequest(long correlationId){
+        PendingRequest pending = this.pendingRequests.remove(correlationId); 
+        if(pending != null){
+            pending.response.cancel(false); 
+        }
+    }
+
+    // write one frame, connecting first if needed
+    // a write on a connection that the peer has already closed is retried once on a new connection
+    // the request being written is only tied to a socket once it is on it, so the failed attempt does not fail it
+    // input: Message, PendingRequest (the request waiting for the response, null for a one-way message)
+    // output: no
+    private void write(Message message, PendingRequest pending) throws IOException{
+        this.writeLock.lock(); 
+        try{
+            for(int attempt = 0; ; attempt++){
+                try{
+                    if(this.socket == null){
+                        this.connect(); 
+                    }
+                    MessageFrame.writeFrame(this.out, message); 
+                    if(pending != null){
+                        pending.socket = this.socket; 
+                    }
+                    return; 
+                }
+                catch(IOException e){
+                    this.closeSocket(this.socket, e); 
+                    if(attempt > 0){
+                        throw e; 
+                    }
+                }
+            }
+        }
+        finally{
+            this.writeLock.unlock(); 
+        }
+    }
+
+    // open the socket and start the thread reading responses, the caller must hold writeLock
+    // input: no
+    // output: no
+    private void connect() throws IOException{
+        Socket newSocket = new Socket(); 
+        try{
+            newSocket.connect(this.address, CONNECT_TIMEOUT_MILLIS); 
+            newSocket.setTcpNoDelay(true); 
+            this.out = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream())); 
+            this.socket = newSocket; 
+        }
+        catch(IOException e){
+            newSocket.close(); 
+            throw e; 
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(newSocket.getInputStream())); 
+        ExecutionMode.execute(new ResponseReader(newSocket, in)); 
+    }
+
+    // close a socket of this connection and fail every request written on it
+    // input: Socket (the socket that failed), Exception (the reason)
+    // output: no
+    private void closeSocket(Socket failedSocket, Exception reason){
+        this.writeLock.lock(); 
+        try{
+            // a reader of an old socket must not close the new one
+            if(failedSocket != null && failedSocket == this.socket){
+                this.socket = null; 
+                this.out = null; 
+            }
+        }
+        finally{
+            this.writeLock.unlock(); 
+        }
+        try{
+            if(failedSocket != null){
+                failedSocket.close(); 
+            }
+        }
+        catch(IOException e){
+
+        }
+        if(failedSocket != null){
+            this.failRequests(failedSocket, reason); 
+        }
+    }
+
+    // fail the requests written on a socket
+    // input: Socket (the socket, null for every request), Exception (the reason)
+    // output: no
+    private void failRequests(Socket failedSocket, Exception reason){
+        for(Map.Entry<Long, PendingRequest> entry : this.pendingRequests.entrySet()){
+            PendingRequest pending = entry.getValue(); 
+            if((failedSocket == null || pending.socket == failedSocket) && this.pendingRequests.remove(entry.getKey(), pending)){
+                pending.response.completeExceptionally(reason); 
+            }
+        }
+    }
+
+    // make the next write on the current socket fail, as if the peer had closed the connection (testing)
+    // input: no
+    // output: no
+    public void breakSocket(){
+        this.writeLock.lock(); 
+        try{
+            if(this.socket != null){
+                this.out = new DataOutputStream(new OutputStream(){
+                    @Override
+                    public void write(int b) throws IOException{
+                        throw new IOException("Broken pipe"); 
+                    }
+                }); 
+            }
+        }
+        finally{
+            this.writeLock.unlock(); 
+        }
+    }
+
+    // close this connection
+    // input: no
+    // output: no
+    @Override
+    public void close(){
+        IOException reason = new IOException("Connection closed"); 
+        this.closeSocket(this.socket, reason); 
+        this.failRequests(null, reason); 
+    }
+
+    // a request waiting for its response
+    private static class PendingRequest{
+        private final CompletableFuture<Message> response = new CompletableFuture<Message>(); 
+        private volatile Socket socket; // the socket the request was written on, null until the write succeeds
+    }
+
+    // this thread reads the responses of one socket and completes the matching requests
+    private class ResponseReader implements Runnable{
+        private Socket readerSocket; 
+        private DataInputStream in; 
+
+        // ResponseReader constructor
+        // input: Socket (socket to read from), DataInputStream (input stream of the socket)
+        // output: no
+        public ResponseReader(Socket readerSocket, DataInputStream in){
+            this.readerSocket = readerSocket; 
+            this.in = in; 
+        }
+
+        // read responses until the socket is closed
+        // input: no
+        // output: no
+        @Override
+        public void run(){
+            try{
+                while(true){
+                    Message responseObject = MessageFrame.readFrame(this.in); 
+                    PendingRequest pending = pendingRequests.remove(responseObject.getCorrelationId()); 
+                    // the request may have been cancelled already
+                    if(pending != null){
+                        pending.response.complete(responseObject); 
+                    }
+                }
+            }
+            catch(Exception e){
+                closeSocket(this.readerSocket, e); 
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+import java.util.*; 
+import java.util.concurrent.*; 
+
+// this class keeps one connection (PeerLink) for every member in the protocol
+// the connections to the initial members are created by the transport of the member when the member is created, 
+// a member which joins through a membership change is connected the first time a request is sent to it
+public class PeerConnectionPool{
+    private final Transport transport; 
+    private final CopyOnWriteArrayList<PeerLink> connectionList; // connections in the order they were created
+    private final ConcurrentHashMap<String, PeerLink> connectionMap; // server socket info -> connection
+
+    // PeerConnectionPool constructor
+    // input: Transport, ArrayList<String> (server socket info of all members, format "hostname:port")
+    // output: no
+    public PeerConnectionPool(Transport transport, ArrayList<String> memberServerSocketList){
+        this.transport = transport; 
+        this.connectionList = new CopyOnWriteArrayList<PeerLink>(); 
+        this.connectionMap = new ConcurrentHashMap<String, PeerLink>(); 
+        for(int i = 0; i < memberServerSocketList.size(); i++){
+            this.getConnection(memberServerSocketList.get(i)); 
+        }
+    }
+
+    // get the connection to a member, connecting to it if there is none yet
+    // input: String (server socket info of the member)
+    // output: PeerLink
+    public PeerLink getConnection(String memberServerSocket){
+        PeerLink connection = this.connectionMap.get(memberServerSocket); 
+        if(connection != null){
+            return connection; 
+        }
+        synchronized(this.connectionMap){
+            connection = this.connectionMap.get(memberServerSocket); 
+            if(connection == null){
+                connection = this.transport.connect(memberServerSocket); 
+                this.connectionList.add(connection); 
+                this.connectionMap.put(memberServerSocket, connection); 
+            }
+            return connection; 
+        }
+    }
+
+    // number of members in the pool
+    // input: no
+    // output: int
+    public int size(){
+        return this.connectionList.size(); 
+    }
+
+    // close the connections to all members
+    // input: no
+    // output: no
+    public void closeAll(){
+        for(int i = 0; i < this.connectionList.size(); i++){
+            this.connectionList.get(i).close(); 
+        }
+    }
+}
@@ -0,0 +1,26 @@
+import java.io.*; 
+import java.util.concurrent.*; 
+
+// the sending side of the connection from this member (as a Proposer) to one member, see Transport
+// requests carry a Correlation-Id which the Acceptor copies into its response, so many requests can be in flight at once
+public interface PeerLink{
+    // send a request and get a future which completes with the response
+    // input: Message (request)
+    // output: CompletableFuture<Message> (completed with the response, or exceptionally if the member cannot be reached)
+    CompletableFuture<Message> sendRequest(Message requestObject); 
+
+    // send a message which does not get a response (Decide)
+    // input: Message
+    // output: no
+    void sendOneWay(Message message) throws IOException; 
+
+    // stop waiting for the response of a request
+    // input: long (Correlation-Id of the request)
+    // output: no
+    void cancelRequest(long correlationId); 
+
+    // close this connection, the requests waiting on it fail
+    // input: no
+    // output: no
+    void close(); 
+}
@@ -0,0 +1,39 @@
+// Phase 1 request: ask the Acceptors to promise a proposal id for every instance from firstInstance onwards
+public final class PrepareMessage extends Message{
+    private static final long serialVersionUID = 1L; 
+    private final long proposalId; 
+    private final int firstInstance; 
+
+    // PrepareMessage constructor
+    // input: int (sender id), long (Correlation-Id), long (proposal id), int (first instance the promise covers)
+    // output: no
+    public PrepareMessage(int senderId, long correlationId, long proposalId, int firstInstance){
+        super(senderId, correlationId); 
+        this.proposalId = proposalId; 
+        this.firstInstance = firstInstance; 
+    }
+
+    @Override
+    public byte getType(){
+        return PREPARE; 
+    }
+
+    // proposal id getter
+    // input: no
+    // output: long
+    public long getProposalId(){
+        return this.proposalId; 
+    }
+
+    // first instance getter
+    // input: no
+    // output: int
+    public int getFirstInstance(){
+        return this.firstInstance; 
+    }
+
+    @Override
+    public String toString(){
+        return "Prepare(sender=" + this.getSenderId() + ", correlation=" + this.getCorrelationId() + ", proposalId=" + Ballot.toString(this.proposalId) + ", firstInstance=" + this.firstInstance + ")"; 
+    }
+}
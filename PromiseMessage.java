@@ -0,0 +1,51 @@
+import java.util.*; 
+
+// Phase 1 response: the Acceptor promised the proposal id
+// and reports the proposals it has accepted from the requested first instance onwards
+public final class PromiseMessage extends Message{
+    private static final long serialVersionUID = 1L; 
+    private final long proposalId; 
+    private final Map<Integer, Proposal> acceptedProposals; // accepted proposal of each instance, empty if none
+
+    // PromiseMessage constructor
+    // input: int (sender id), long (Correlation-Id), long (promised proposal id), Map<Integer, Proposal> (accepted proposals by instance)
+    // output: no
+    public PromiseMessage(int senderId, long correlationId, long proposalId, Map<Integer, Proposal> acceptedProposals){
+        super(senderId, correlationId); 
+        this.proposalId = proposalId; 
+        this.acceptedProposals = Collections.unmodifiableMap(new TreeMap<Integer, Proposal>(acceptedProposals)); 
+    }
+
+    @Override
+    public byte getType(){
+        return PROMISE; 
+    }
+
+    @Override
+    public boolean isOk(){
+        return true; 
+    }
+
+    // proposal id getter
+    // input: no
+    // output: long
+    public long getProposalId(){
+        return this.proposalId; 
+    }
+
+    // accepted proposals getter
+    // input: no
+    // output: Map<Integer, Proposal> (read-only, by instance)
+    public Map<Integer, Proposal> getAcceptedProposals(){
+        return this.acceptedProposals; 
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder accepted = new StringBuilder(); 
+        for(Proposal proposal : this.acceptedProposals.values()){
+            accepted.append(describe(proposal)); 
+        }
+        return "Promise(sender=" + this.getSenderId() + ", correlation=" + this.getCorrelationId() + ", proposalId=" + Ballot.toString(this.proposalId) + ", accepted=[" + accepted + "])"; 
+    }
+}
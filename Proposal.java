@@ -1,17 +1,49 @@
 import java.io.*; 
-public class Proposal implements java.io.Serializable{
-    private static int proposalID = 0; 
-    private int memberID; // the id of the Proposer who creates this Proposal
-    private String value; // value of the Proposal
-    private int id; // id of the proposal
+
+// a value proposed for a log instance with a ballot, immutable: a proposer builds a new proposal for every instance and ballot
+public final class Proposal implements java.io.Serializable{
+    private static final long serialVersionUID = 1L; 
+    public static final long NO_VALUE_ID = 0; // valueId of a proposal whose proposer does not track its value
+    private final int memberID; // the id of the Proposer who creates this Proposal
+    private final String value; // value of the Proposal
+    private final long id; // id of the proposal, a ballot (see Ballot), Ballot.NONE if the proposal has none
+    private final int instance; // the log instance (slot) this proposal is for
+    private final long valueId; // unique id of the value (see CouncilMember.nextValueId), kept when another proposer re-proposes the value
 
     // Proposal constructor
     // input: int (id of proposer who creates this proposal), String (value of this proposal)
     // output: no
     public Proposal(int memberID, String value){
+        this(memberID, value, 0); 
+    }
+
+    // Proposal constructor for a specific log instance
+    // input: int (id of proposer who creates this proposal), String (value of this proposal), int (log instance)
+    // output: no
+    public Proposal(int memberID, String value, int instance){
+        this.memberID = memberID; 
+        this.value = value; 
+        this.instance = instance; 
+        this.id = Ballot.NONE; 
+        this.valueId = NO_VALUE_ID; 
+    }
+
+    // Proposal constructor for a proposal which already has an id (e.g. received from another member)
+    // input: int (id of proposer who creates this proposal), String (value of this proposal), int (log instance), long (proposal id)
+    // output: no
+    public Proposal(int memberID, String value, int instance, long id){
+        this(memberID, value, instance, id, NO_VALUE_ID); 
+    }
+
+    // Proposal constructor for a proposal which already has an id and a value id
+    // input: int (id of proposer who creates this proposal), String (value of this proposal), int (log instance), long (proposal id), long (value id)
+    // output: no
+    public Proposal(int memberID, String value, int instance, long id, long valueId){
         this.memberID = memberID; 
         this.value = value; 
-        this.id = ++proposalID; 
+        this.instance = instance; 
+        this.id = id; 
+        this.valueId = valueId; 
     }
     
     // memberId getter
@@ -30,22 +62,23 @@ public class Proposal implements java.io.Serializable{
 
     // get the id of this proposal
     // input: no
-    // output: int
-    public int getID(){
+    // output: long
+    public long getID(){
         return this.id; 
     }
 
-    // set the value of this proposal
-    // input: String (new value for this proposal)
-    // output: no
-    public void setValue(String value){
-        this.value = value; 
+
+    // get the log instance of this proposal
+    // input: no
+    // output: int
+    public int getInstance(){
+        return this.instance; 
     }
 
-    // set the id of this proposal
-    // input: int (new id for this proposal)
-    // output: no
-    public void setID(int id){
-        this.id = id; 
+    // get the id of the value of this proposal
+    // input: no
+    // output: long (NO_VALUE_ID if the value has none)
+    public long getValueId(){
+        return this.valueId; 
     }
 }
@@ -1,24 +1,39 @@
 import java.util.*;
 import java.net.*; 
 import java.io.*; 
+import java.util.concurrent.*; 
 import java.util.concurrent.locks.*; 
+import java.util.function.*; 
 
-// this thread is responsible to send a request to a specific member
+// this task is responsible to send a request to a specific member
+// the request is written on the long-lived connection to that member, the response is handled when it arrives
+// a member which does not answer before the round is closed (13 seconds, > than medium (5s) but < late (15s)) is cancelled
 public class ProposerSendRequest implements Runnable{ 
-    private static final int TIMEOUT_MILLIS = 12000; // timeout = 12 seconds, > than medium (5s) but < late (15s)
     private CouncilMember member; // sender
-    private String hostname; // hostname of the receiver
-    private int port; // port of the receiver
-    private HashMap<String, Object> requestObject; // the object to send 
+    private RoundCollector round; // collector of the round this request belongs to (null for Decide)
+    private PeerLink connection; // connection to the receiver
+    private int target; // index of the receiver in the targets of the round
+    private Message requestObject; // the request to send 
+    private volatile boolean cancelled; // true if the round completed before this request got a response
+    private volatile boolean answered; // true once the response arrived or the request failed
+    private MemberMetrics.PeerMetrics peerMetrics; // response times, Rejects, timeouts and errors of the receiver
+    private long sentNanos; // transport time the request was written
+    private final CompletableFuture<Void> sent; // completed once this task has written the request (or failed to)
 
     // Thread constructor
-    // input: CouncilMember (the sender who sending this request), String (hostname of targeted member) 
-    //        int (port of the targeted member), HashMap<String, Object> (request to send) 
+    // input: CouncilMember (the sender who sending this request), RoundCollector (the round to report to), 
+    //        PeerLink (connection to the targeted member), Message (request to send), 
+    //        int (index of the targeted member in the targets of the round), String (server socket info of the targeted member)
     // output: no
-    public ProposerSendRequest(CouncilMember member, String hostname, int port, HashMap<String, Object> requestObject){
+    public ProposerSendRequest(CouncilMember member, RoundCollector round, PeerLink connection, Message requestObject, int target, String address){
         this.member = member; 
-        this.hostname = hostname; 
-        this.port = port; 
+        this.round = round; 
+        this.cancelled = false; 
+        this.answered = false; 
+        this.sent = new CompletableFuture<Void>(); 
+        this.peerMetrics = member.getMetrics().getPeer(address); 
+        this.connection = connection; 
+        this.target = target; 
         this.requestObject = requestObject; 
     }
 
@@ -27,42 +42,107 @@ public class ProposerSendRequest implements Runnable{
     // output: no 
     @Override
     public void run(){
+        MemberMetrics metrics = this.member.getMetrics(); 
+        long cpuNanosBefore = metrics.threadCpuNanos(); 
+        long allocatedBytesBefore = metrics.threadAllocatedBytes(); 
         try{
-            Socket socket = new Socket(); 
-            InetAddress address = InetAddress.getByName(this.hostname); 
-            SocketAddress serverAddress = new InetSocketAddress(address, this.port); 
-            socket.connect(serverAddress, TIMEOUT_MILLIS);
-            socket.setSoTimeout(TIMEOUT_MILLIS);
-            ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream()); 
-            ObjectInputStream in = new ObjectInputStream(socket.getInputStream()); 
-            // send request
-            out.writeObject(this.requestObject); 
-            // read response 
-            HashMap<String, Object> responseObject = (HashMap<String, Object>)in.readObject(); 
-            if(responseObject.containsKey("Status") && ((String)responseObject.get("Status")).equals("Promise-OK")){
-                int responserId = (int)responseObject.get("Sender-Id"); 
-                int proposalId = (int)responseObject.get("Current-Proposal-Id"); 
-                int requesterId = (int)this.requestObject.get("Sender-Id"); 
-                // indicate that response has been received
-                System.out.println("Council Member " + responserId + " Promised on proposal id " + proposalId + " to Council Member " + requesterId + "."); 
+            // the round may have completed while this task was starting
+            if(this.cancelled){
+                return; 
             }
-            else if(responseObject.containsKey("Status") && ((String)responseObject.get("Status")).equals("Accept-OK")){
-                int responserId = (int)responseObject.get("Sender-Id"); 
-                Proposal proposal= (Proposal)responseObject.get("Accepted-Proposal"); 
-                String proposalValue = proposal.getValue(); 
-                int requesterId = (int)this.requestObject.get("Sender-Id"); 
-                // indicate that the response has been received
-                System.out.println("Council Member " + responserId + " Accepted proposal from Council Member " + requesterId + " on value " + proposalValue + "."); 
+            // Decide does not get a response
+            if(this.requestObject.getType() == Message.DECIDE){
+                this.connection.sendOneWay(this.requestObject); 
+                this.member.countMessage(); 
+                this.answered = true; 
+                return; 
             }
-            this.member.getResponseListLock().lock(); 
-            // add the response to response list
-            this.member.getResponseList().add(responseObject); 
-            this.member.getResponseListLock().unlock(); 
-            out.flush(); 
-            socket.close(); 
+            // send request, the response is handled by the thread that receives it
+            this.member.countMessage(); 
+            this.sentNanos = this.member.getTransport().nanoTime(); 
+            this.connection.sendRequest(this.requestObject).whenComplete(new BiConsumer<Message, Throwable>(){
+                @Override
+                public void accept(Message responseObject, Throwable error){
+                    if(error != null){
+                        failed(); 
+                    }
+                    else{
+                        handleResponse(responseObject); 
+                    }
+                }
+            }); 
         }
         catch(Exception e){
+            this.failed(); 
+        }
+        finally{
+            metrics.account(MemberMetrics.PROPOSER, this.requestObject.getType(), cpuNanosBefore, allocatedBytesBefore); 
+            this.sent.complete(null); 
+        }
+    }
+
+    // announce a response and count it in its round
+    // input: Message (the response)
+    // output: no
+    private void handleResponse(Message responseObject){
+        MemberMetrics metrics = this.member.getMetrics(); 
+        long cpuNanosBefore = metrics.threadCpuNanos(); 
+        long allocatedBytesBefore = metrics.threadAllocatedBytes(); 
+        this.answered = true; 
+        this.peerMetrics.recordResponse(this.member.getTransport().nanoTime() - this.sentNanos, responseObject.getType() == Message.REJECT); 
+        this.member.countMessage(); 
+        // indicate that the response has been received
+        EventLog.responseReceived(this.requestObject.getSenderId(), responseObject); 
+        if(responseObject.getType() == Message.REJECT){
+            // jump past the ballot the acceptor has promised in the next Prepare
+            RejectMessage reject = (RejectMessage)responseObject; 
+            this.member.observeBallot(reject.getPromisedBallot()); 
+            if(reject.getAcceptedProposal() != null){
+                this.member.observeBallot(reject.getAcceptedProposal().getID()); 
+            }
+        }
+        // count the response in its round
+        this.round.addResponse(this.target, responseObject); 
+        metrics.account(MemberMetrics.PROPOSER, this.requestObject.getType(), cpuNanosBefore, allocatedBytesBefore); 
+    }
 
+    // the member is offline, did not respond before the round was closed, or the request has been cancelled
+    // stop waiting for the response so that a late response is dropped by the connection
+    // input: no
+    // output: no
+    private void failed(){
+        // a request cancelled because its round has an outcome is not an error of the member
+        if(this.cancelled == false && this.answered == false){
+            this.peerMetrics.countError(); 
+        }
+        this.answered = true; 
+        this.connection.cancelRequest(this.requestObject.getCorrelationId()); 
+        if(this.round != null){
+            this.round.addFailure(this.target); 
         }
     }
+
+    // cancel this request if it is still waiting for a response
+    // input: no
+    // output: no
+    public void cancel(){
+        this.cancelled = true; 
+        this.connection.cancelRequest(this.requestObject.getCorrelationId()); 
+    }
+
+    // count this request as timed out if it is still waiting for a response, called when the deadline closes its round
+    // input: no
+    // output: no
+    public void countTimeout(){
+        if(this.answered == false){
+            this.peerMetrics.countTimeout(); 
+        }
+    }
+
+    // completed once this task has written the request or failed to
+    // input: no
+    // output: CompletableFuture<Void>
+    public CompletableFuture<Void> getSent(){
+        return this.sent; 
+    }
 }
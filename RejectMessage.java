@@ -0,0 +1,52 @@
+// response of an Acceptor which refuses a Prepare or an Accept request
+// it tells the proposer which ballot the Acceptor has promised, so the proposer can jump past it in one retry, 
+// and for a rejected Accept the proposal the Acceptor has accepted in that instance (if any)
+public final class RejectMessage extends Message{
+    private static final long serialVersionUID = 1L; 
+    private final byte requestType; // type of the rejected request: PREPARE or ACCEPT
+    private final long promisedBallot; // highest ballot the Acceptor has promised
+    private final Proposal acceptedProposal; // proposal accepted in the instance of a rejected Accept, null if none
+
+    // RejectMessage constructor
+    // input: int (sender id), long (Correlation-Id), byte (type of the rejected request), long (promised ballot), 
+    //        Proposal (accepted proposal of the instance, null if none)
+    // output: no
+    public RejectMessage(int senderId, long correlationId, byte requestType, long promisedBallot, Proposal acceptedProposal){
+        super(senderId, correlationId); 
+        this.requestType = requestType; 
+        this.promisedBallot = promisedBallot; 
+        this.acceptedProposal = acceptedProposal; 
+    }
+
+    @Override
+    public byte getType(){
+        return REJECT; 
+    }
+
+    // rejected request type getter
+    // input: no
+    // output: byte (PREPARE or ACCEPT)
+    public byte getRequestType(){
+        return this.requestType; 
+    }
+
+    // promised ballot getter
+    // input: no
+    // output: long
+    public long getPromisedBallot(){
+        return this.promisedBallot; 
+    }
+
+    // accepted proposal getter
+    // input: no
+    // output: Proposal (null if none)
+    public Proposal getAcceptedProposal(){
+        return this.acceptedProposal; 
+    }
+
+    @Override
+    public String toString(){
+        return "Reject(sender=" + this.getSenderId() + ", correlation=" + this.getCorrelationId() + ", requestType=" + this.requestType 
+            + ", promisedBallot=" + Ballot.toString(this.promisedBallot) + ", accepted=" + (this.acceptedProposal == null ? "none" : describe(this.acceptedProposal)) + ")"; 
+    }
+}
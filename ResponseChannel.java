@@ -0,0 +1,17 @@
+import java.io.*; 
+import java.util.concurrent.*; 
+
+// the way back from an Acceptor to the Proposer that sent a request, see Transport
+public interface ResponseChannel{
+    // send a response back to the Proposer
+    // input: Message (response), CompletableFuture<Void> (write-ahead log record the response depends on, null if none)
+    // output: no
+    void sendResponse(Message responseObject, CompletableFuture<Void> durable) throws IOException; 
+
+    // whether the response is handed over before its write-ahead log record is on disk, 
+    // the channel then holds the response back until the record is (the simulation, whose scheduler must not wait while it handles a request)
+    // otherwise the Acceptor only sends the response once the record is on disk
+    // input: no
+    // output: boolean
+    boolean answersInline(); 
+}
@@ -0,0 +1,245 @@
+import java.util.*; 
+import java.util.concurrent.*; 
+import java.util.concurrent.locks.*; 
+
+// collects the responses of one round (one Prepare or Accept fan-out) and counts the votes as they arrive
+// every round has its own collector, so a member can run several rounds at once (e.g. AcceptPipeline)
+// and a late response can only reach the round it belongs to
+// a response for another ballot is stale and dropped, so are responses that arrive after the round has an outcome
+// the outcome is known as soon as the majority answered OK, or as soon as enough members rejected (or failed)
+// that the majority can no longer be reached; the vote that decides the round completes the outcome, 
+// if no vote does before the deadline of the round, IntermediateThread closes it
+// while the membership changes a round may need the majority of several configurations (a Prepare covering instances 
+// of the old and of the new configuration): the request goes to every member of any of them, 
+// and the round succeeds once each configuration has its majority, it fails as soon as one of them can no longer get it
+public class RoundCollector{
+    private final long ballot; // proposal id of the request of this round
+    private final ArrayList<String> targets; // members the request is sent to, in the order of the fan-out (null if the caller sends it)
+    private final boolean[][] inQuorum; // inQuorum[q][t]: target t is a member of configuration q (null for one configuration of every target)
+    private final int[] memberCounts; // [configuration]
+    private final int[] majorities; // [configuration]
+    private final ReentrantLock roundLock; // guard the counters below
+    private final ArrayList<Message> okResponses; // Promise/Accepted responses of this round
+    private final int[] okCounters; // [configuration]
+    private final int[] failedCounters; // [configuration]: Reject responses and members that could not be reached
+    private boolean completed; // true once the round has an outcome, later responses are dropped
+    private final CompletableFuture<Boolean> outcome; // completed with true if the majority answered OK
+
+    // RoundCollector constructor
+    // input: long (ballot of the round), int (number of members the request is sent to), int (majority)
+    // output: no
+    public RoundCollector(long ballot, int memberCount, int majority){
+        this.ballot = ballot; 
+        this.targets = null; 
+        this.inQuorum = null; 
+        this.memberCounts = new int[]{memberCount}; 
+        this.majorities = new int[]{majority}; 
+        this.roundLock = new ReentrantLock(); 
+        this.okResponses = new ArrayList<Message>(); 
+        this.okCounters = new int[1]; 
+        this.failedCounters = new int[1]; 
+        this.completed = false; 
+        this.outcome = new CompletableFuture<Boolean>(); 
+    }
+
+    // RoundCollector constructor for a round which needs the majority of every given configuration
+    // input: long (ballot of the round), List<Configuration> (at least one)
+    // output: no
+    public RoundCollector(long ballot, List<Configuration> configurations){
+        this.ballot = ballot; 
+        this.targets = new ArrayList<String>(); 
+        for(int q = 0; q < configurations.size(); q++){
+            ArrayList<String> members = configurations.get(q).getMembers(); 
+            for(int i = 0; i < members.size(); i++){
+                if(this.targets.contains(members.get(i)) == false){
+                    this.targets.add(members.get(i)); 
+                }
+            }
+        }
+        this.inQuorum = new boolean[configurations.size()][this.targets.size()]; 
+        this.memberCounts = new int[configurations.size()]; 
+        this.majorities = new int[configurations.size()]; 
+        for(int q = 0; q < configurations.size(); q++){
+            ArrayList<String> members = configurations.get(q).getMembers(); 
+            for(int i = 0; i < members.size(); i++){
+                this.inQuorum[q][this.targets.indexOf(members.get(i))] = true; 
+            }
+            this.memberCounts[q] = members.size(); 
+            this.majorities[q] = configurations.get(q).getMajority(); 
+        }
+        this.roundLock = new ReentrantLock(); 
+        this.okResponses = new ArrayList<Message>(); 
+        this.okCounters = new int[configurations.size()]; 
+        this.failedCounters = new int[configurations.size()]; 
+        this.completed = false; 
+        this.outcome = new CompletableFuture<Boolean>(); 
+    }
+
+    // count a response
+    // input: int (index of the sender in getTargets), Message (the response)
+    // output: no
+    public void addResponse(int target, Message responseObject){
+        boolean decided = false; 
+        this.roundLock.lock(); 
+        try{
+            if(this.completed){
+                return; 
+            }
+            if(responseObject.isOk() && ballotOf(responseObject) != this.ballot){
+                return; 
+            }
+            if(responseObject.isOk()){
+                this.okResponses.add(responseObject); 
+            }
+            this.count(target, responseObject.isOk()); 
+            decided = this.isDecided(); 
+        }
+        finally{
+            this.roundLock.unlock(); 
+        }
+        if(decided){
+            this.close(); 
+        }
+    }
+
+    // count a member that could not be reached or did not respond
+    // input: int (index of the member in getTargets)
+    // output: no
+    public void addFailure(int target){
+        boolean decided = false; 
+        this.roundLock.lock(); 
+        try{
+            if(this.completed == false){
+                this.count(target, false); 
+                decided = this.isDecided(); 
+            }
+        }
+        finally{
+            this.roundLock.unlock(); 
+        }
+        if(decided){
+            this.close(); 
+        }
+    }
+
+    // count a vote in every configuration its sender belongs to, the caller must hold roundLock
+    // input: int (index of the sender in targets), boolean (true if OK)
+    // output: no
+    private void count(int target, boolean ok){
+        for(int q = 0; q < this.okCounters.length; q++){
+            if(this.inQuorum == null || this.inQuorum[q][target]){
+                if(ok){
+                    this.okCounters[q]++; 
+                }
+                else{
+                    this.failedCounters[q]++; 
+                }
+            }
+        }
+    }
+
+    // check if the votes so far decide the round, the caller must hold roundLock
+    // input: no
+    // output: boolean (true if every configuration has its majority, or one of them can no longer reach it)
+    private boolean isDecided(){
+        boolean allReached = true; 
+        for(int q = 0; q < this.okCounters.length; q++){
+            if(this.memberCounts[q] - this.failedCounters[q] < this.majorities[q]){
+                return true; 
+            }
+            allReached = allReached && this.okCounters[q] >= this.majorities[q]; 
+        }
+        return allReached; 
+    }
+
+    // check if every configuration has its majority, the caller must hold roundLock
+    // input: no
+    // output: boolean
+    private boolean hasQuorum(){
+        for(int q = 0; q < this.okCounters.length; q++){
+            if(this.okCounters[q] < this.majorities[q]){
+                return false; 
+            }
+        }
+        return true; 
+    }
+
+    // close the round with the votes counted so far, later responses are dropped
+    // called by the vote that decides the round, or when the time of the round is up
+    // input: no
+    // output: boolean (true if the majority answered OK)
+    public boolean close(){
+        this.roundLock.lock(); 
+        try{
+            this.completed = true; 
+        }
+        finally{
+            this.roundLock.unlock(); 
+        }
+        boolean succeeded = this.isSucceeded(); 
+        // the first close completes the outcome, the callers waiting on it run from here
+        this.outcome.complete(succeeded); 
+        return succeeded; 
+    }
+
+    // future of the outcome, completed once the round is closed
+    // input: no
+    // output: CompletableFuture<Boolean> (true if the majority answered OK)
+    public CompletableFuture<Boolean> getOutcome(){
+        return this.outcome; 
+    }
+
+    // check if the majority answered OK
+    // input: no
+    // output: boolean
+    public boolean isSucceeded(){
+        this.roundLock.lock(); 
+        try{
+            return this.hasQuorum(); 
+        }
+        finally{
+            this.roundLock.unlock(); 
+        }
+    }
+
+    // the Promise/Accepted responses of this round, only complete once the round is closed
+    // input: no
+    // output: ArrayList<Message> (copy)
+    public ArrayList<Message> getOkResponses(){
+        this.roundLock.lock(); 
+        try{
+            return new ArrayList<Message>(this.okResponses); 
+        }
+        finally{
+            this.roundLock.unlock(); 
+        }
+    }
+
+    // members the request of this round is sent to
+    // input: no
+    // output: ArrayList<String> (server socket info, null for a round whose caller sends the requests)
+    public ArrayList<String> getTargets(){
+        return this.targets; 
+    }
+
+    // ballot getter
+    // input: no
+    // output: long
+    public long getBallot(){
+        return this.ballot; 
+    }
+
+    // ballot a Promise/Accepted answers
+    // input: Message
+    // output: long
+    private static long ballotOf(Message responseObject){
+        switch(responseObject.getType()){
+            case Message.PROMISE: 
+                return ((PromiseMessage)responseObject).getProposalId(); 
+            case Message.ACCEPTED: 
+                return ((AcceptedMessage)responseObject).getProposal().getID(); 
+            default: 
+                return Ballot.NONE; 
+        }
+    }
+}
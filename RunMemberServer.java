@@ -1,40 +1,207 @@
 import java.util.*; 
 import java.net.*; 
 import java.io.*; 
-import java.util.concurrent.locks.*; 
+import java.nio.*; 
+import java.nio.channels.*; 
+import java.util.concurrent.*; 
 
-// this thread is responsible for starting the member server and get requests
-public class RunMemberServer implements Runnable{
+// this class is responsible for running the member server and getting requests
+// a fixed number of I/O threads run Selector loops over non-blocking channels: 
+// the first loop also accepts new connections and hands them out round robin
+// decoded requests are dispatched to a fixed pool of threads running AcceptorResponseToRequest
+// (or to virtual threads, see ExecutionMode), slow members schedule their responses on a timer
+// so the number of platform threads of a member does not grow with the number of Proposers or requests
+public class RunMemberServer implements MemberServer{
+    private static final int IO_THREADS = 2; // number of Selector loops
+    private static final int REQUEST_THREADS = 4; // number of threads running the acceptor logic, slow responses wait on the timer instead
     private CouncilMember member; 
+    private ServerSocketChannel serverChannel; 
+    private IoLoop[] ioLoopList; 
+    private Thread[] ioThreadList; // threads running the Selector loops, null until the server is started
+    private ExecutorService requestExecutor; 
+    private int nextLoop; // the loop which gets the next accepted connection
+    private volatile boolean running; 
 
-    // Thread constructor
-    // input: CouncilMember 
+    // RunMemberServer constructor, bind the server channel to the port
+    // input: CouncilMember, int (port to listen on)
     // output: no 
-    public RunMemberServer(CouncilMember member){
+    public RunMemberServer(CouncilMember member, int port) throws IOException{
         this.member = member; 
+        this.serverChannel = ServerSocketChannel.open(); 
+        this.serverChannel.bind(new InetSocketAddress(port)); 
+        this.serverChannel.configureBlocking(false); 
+        this.requestExecutor = ExecutionMode.newRequestExecutor(REQUEST_THREADS); 
+        this.ioLoopList = new IoLoop[IO_THREADS]; 
+        for(int i = 0; i < IO_THREADS; i++){
+            this.ioLoopList[i] = new IoLoop(Selector.open()); 
+        }
+        this.serverChannel.register(this.ioLoopList[0].selector, SelectionKey.OP_ACCEPT); 
+        this.nextLoop = 0; 
+        this.running = false; 
     }
 
-    // run the server to get requests 
+    // start the I/O threads
     // input: no 
     // output: no 
     @Override
-    public void run(){
-        while(true){
+    public void start(){
+        this.running = true; 
+        this.ioThreadList = new Thread[IO_THREADS]; 
+        for(int i = 0; i < IO_THREADS; i++){
+            this.ioThreadList[i] = new Thread(this.ioLoopList[i], "member-" + this.member.getMemberId() + "-io-" + i); 
+            this.ioThreadList[i].start(); 
+        }
+    }
+
+    // shut down the server: stop accepting, close every open connection and stop all threads
+    // a closed channel keeps its port until its Selector deregisters it, so this waits for the I/O threads to finish
+    // then a new server (e.g. the next cluster of a benchmark) can bind the port straight away
+    // input: no
+    // output: no
+    @Override
+    public void shutDown(){
+        this.running = false; 
+        try{
+            this.serverChannel.close(); 
+        }
+        catch(IOException e){
+
+        }
+        for(int i = 0; i < IO_THREADS; i++){
+            this.ioLoopList[i].selector.wakeup(); 
+        }
+        this.requestExecutor.shutdownNow(); 
+        if(this.ioThreadList != null){
             try{
-                Socket socket = this.member.getMemberServerSocket().accept(); 
-                // when receive a request
-                // create a new thread to respond
-                AcceptorResponseToRequest respondToRequest = new AcceptorResponseToRequest(this.member, socket); 
-                Thread executingRequest = new Thread(respondToRequest); 
-                executingRequest.start(); 
+                for(int i = 0; i < IO_THREADS; i++){
+                    if(this.ioThreadList[i] != Thread.currentThread()){
+                        this.ioThreadList[i].join(); 
+                    }
+                }
             }
-            // if the server socket has been closed, shutdown this thread
-            catch(SocketException se){
-                break; 
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt(); 
+            }
+        }
+    }
+
+    // hand a decoded request to the acceptor logic
+    // input: AcceptorConnection (connection the request came from), Message (request)
+    // output: no
+    public void dispatch(AcceptorConnection connection, Message requestObject){
+        try{
+            this.requestExecutor.execute(new AcceptorResponseToRequest(this.member, connection, requestObject)); 
+        }
+        // the server has been shut down
+        catch(RejectedExecutionException e){
+
+        }
+    }
+
+    // accept all pending connections and register them to the I/O loops round robin
+    // input: no
+    // output: no
+    private void acceptConnections() throws IOException{
+        SocketChannel channel; 
+        while((channel = this.serverChannel.accept()) != null){
+            channel.configureBlocking(false); 
+            channel.socket().setTcpNoDelay(true); 
+            IoLoop loop = this.ioLoopList[this.nextLoop]; 
+            this.nextLoop = (this.nextLoop + 1) % IO_THREADS; 
+            loop.register(new AcceptorConnection(this, loop, channel)); 
+        }
+    }
+
+    // one Selector loop, reads and writes every connection registered to it
+    public class IoLoop implements Runnable{
+        private Selector selector; 
+        private ConcurrentLinkedQueue<Runnable> taskQueue; // work from other threads, run by the loop thread
+
+        // IoLoop constructor
+        // input: Selector
+        // output: no
+        public IoLoop(Selector selector){
+            this.selector = selector; 
+            this.taskQueue = new ConcurrentLinkedQueue<Runnable>(); 
+        }
+
+        // run a task on the loop thread (channels and keys are only touched by the loop thread)
+        // input: Runnable
+        // output: no
+        public void execute(Runnable task){
+            this.taskQueue.add(task); 
+            this.selector.wakeup(); 
+        }
+
+        // register a new connection to this loop
+        // input: AcceptorConnection
+        // output: no
+        public void register(final AcceptorConnection connection){
+            this.execute(new Runnable(){
+                @Override
+                public void run(){
+                    try{
+                        connection.setKey(connection.getChannel().register(selector, SelectionKey.OP_READ, connection)); 
+                    }
+                    catch(IOException e){
+                        connection.close(); 
+                    }
+                }
+            }); 
+        }
+
+        // select and handle ready channels until the server is shut down
+        // input: no
+        // output: no
+        @Override
+        public void run(){
+            try{
+                while(running){
+                    this.selector.select(); 
+                    Runnable task; 
+                    while((task = this.taskQueue.poll()) != null){
+                        task.run(); 
+                    }
+                    Iterator<SelectionKey> readyKeys = this.selector.selectedKeys().iterator(); 
+                    while(readyKeys.hasNext()){
+                        SelectionKey key = readyKeys.next(); 
+                        readyKeys.remove(); 
+                        if(key.isValid() == false){
+                            continue; 
+                        }
+                        if(key.isAcceptable()){
+                            acceptConnections(); 
+                            continue; 
+                        }
+                        AcceptorConnection connection = (AcceptorConnection)key.attachment(); 
+                        if(key.isReadable()){
+                            connection.handleRead(); 
+                        }
+                        if(key.isValid() && key.isWritable()){
+                            connection.handleWrite(); 
+                        }
+                    }
+                }
+            }
+            catch(ClosedSelectorException cse){
+
             }
             catch(Exception e){
-                System.out.println("Error happened while runinng the member server."); 
-                e.printStackTrace(); 
+                EventLog.error(member.getMemberId(), "Error happened while runinng the member server.", e); 
+            }
+            finally{
+                // the member goes offline: close the connections Proposers have opened
+                for(SelectionKey key : this.selector.keys()){
+                    if(key.attachment() instanceof AcceptorConnection){
+                        ((AcceptorConnection)key.attachment()).close(); 
+                    }
+                }
+                try{
+                    this.selector.close(); 
+                }
+                catch(IOException e){
+
+                }
             }
         }
     }
@@ -0,0 +1,521 @@
+import java.io.*; 
+import java.net.*; 
+import java.util.*; 
+import java.util.concurrent.*; 
+import java.util.concurrent.atomic.*; 
+import java.util.concurrent.locks.*; 
+import java.util.function.*; 
+
+// every member lives in this JVM: a message is an event of a seeded scheduler, delivered after a random network delay
+// time is virtual: the clock jumps to the next event, so a Medium (5 s) or Late (15 s) member costs nothing
+// the scheduler runs the events one at a time on its own thread, in (time, order of scheduling) order
+// proposers and scenarios block (await, sleep, join), so they run on simulated threads: real threads of which
+// only one runs at a time, either a simulated thread or the scheduler; a simulated thread runs until it blocks,
+// then the scheduler continues with the next event, and a thread that can go on again is resumed by an event
+// so the same seed gives the same messages in the same order, and the same result
+// threads which are not simulated threads (e.g. the threads of AcceptPipeline and SubmissionQueue) still work
+// but are not deterministic: they add events whenever they run, and wait in real time
+// messages are handed over as objects, they are immutable so they do not need to be encoded
+public class SimulatedTransport implements Transport{
+    public static final long DEFAULT_MIN_DELAY_MICROS = 100; // one-way network delay of a message
+    public static final long DEFAULT_MAX_DELAY_MICROS = 1000; 
+    private final long seed; 
+    private final Random random; // only used by the thread holding the turn
+    private final long minDelayNanos; 
+    private final long maxDelayNanos; 
+    private final ReentrantLock eventLock; // guard events and nextSequence, threads outside the simulation may add events
+    private final Condition eventAdded; 
+    private final PriorityQueue<Event> events; 
+    private long nextSequence; // orders the events of the same time by the order they were scheduled
+    private volatile long nowNanos; // virtual clock
+    private final Semaphore schedulerTurn; // released when the scheduler may run again
+    private final ConcurrentHashMap<Thread, SimulatedThread> threads; // running simulated threads by their real thread
+    private final ConcurrentHashMap<Thread, CompletableFuture<Void>> finishedThreads; // completes when a simulated thread has finished, until it is joined
+    private final HashMap<Integer, SimulatedServer> servers; // online member servers by port, only used by the thread holding the turn
+    private final Thread schedulerThread; 
+    private final AtomicLong messageCount; // requests, one-way messages and responses delivered
+    private final AtomicLong eventCount; 
+
+    // an event of the scheduler
+    private static final class Event implements Comparable<Event>{
+        private final long timeNanos; 
+        private final long sequence; 
+        private final Runnable task; 
+        private final SimulatedThread resumedThread; // the thread to resume, null for a task
+
+        private Event(long timeNanos, long sequence, Runnable task, SimulatedThread resumedThread){
+            this.timeNanos = timeNanos; 
+            this.sequence = sequence; 
+            this.task = task; 
+            this.resumedThread = resumedThread; 
+        }
+
+        @Override
+        public int compareTo(Event other){
+            if(this.timeNanos != other.timeNanos){
+                return Long.compare(this.timeNanos, other.timeNanos); 
+            }
+            return Long.compare(this.sequence, other.sequence); 
+        }
+    }
+
+    // a thread which only runs while it holds the turn
+    private static final class SimulatedThread{
+        private final Semaphore turn = new Semaphore(0); // released by the scheduler when the thread is resumed
+        private final CompletableFuture<Void> finished = new CompletableFuture<Void>(); 
+    }
+
+    // SimulatedTransport constructor with the default network delay
+    // input: long (seed)
+    // output: no
+    public SimulatedTransport(long seed){
+        this(seed, DEFAULT_MIN_DELAY_MICROS, DEFAULT_MAX_DELAY_MICROS); 
+    }
+
+    // SimulatedTransport constructor, the calling thread becomes the first simulated thread and holds the turn
+    // input: long (seed), long (minimum network delay in microseconds), long (maximum network delay in microseconds)
+    // output: no
+    public SimulatedTransport(long seed, long minDelayMicros, long maxDelayMicros){
+        if(minDelayMicros < 0 || maxDelayMicros < minDelayMicros){
+            throw new IllegalArgumentException("Simulated network delay needs 0 <= min <= max"); 
+        }
+        this.seed = seed; 
+        this.random = new Random(seed); 
+        this.minDelayNanos = minDelayMicros * 1000; 
+        this.maxDelayNanos = maxDelayMicros * 1000; 
+        this.eventLock = new ReentrantLock(); 
+        this.eventAdded = this.eventLock.newCondition(); 
+        this.events = new PriorityQueue<Event>(); 
+        this.nextSequence = 0; 
+        this.nowNanos = 0; 
+        this.schedulerTurn = new Semaphore(0); 
+        this.threads = new ConcurrentHashMap<Thread, SimulatedThread>(); 
+        this.finishedThreads = new ConcurrentHashMap<Thread, CompletableFuture<Void>>(); 
+        this.servers = new HashMap<Integer, SimulatedServer>(); 
+        this.messageCount = new AtomicLong(0); 
+        this.eventCount = new AtomicLong(0); 
+        this.threads.put(Thread.currentThread(), new SimulatedThread()); 
+        this.schedulerThread = new Thread(new Runnable(){
+            @Override
+            public void run(){
+                schedulerLoop(); 
+            }
+        }, "simulation-" + seed); 
+        this.schedulerThread.setDaemon(true); 
+        this.schedulerThread.start(); 
+    }
+
+    // run the events in order, hand the turn to a simulated thread when an event resumes it
+    // input: no
+    // output: no
+    private void schedulerLoop(){
+        while(true){
+            this.schedulerTurn.acquireUninterruptibly(); 
+            while(true){
+                Event event = this.takeEvent(); 
+                if(event.timeNanos > this.nowNanos){
+                    this.nowNanos = event.timeNanos; 
+                }
+                this.eventCount.incrementAndGet(); 
+                if(event.resumedThread != null){
+                    // the scheduler waits until the thread blocks or finishes
+                    event.resumedThread.turn.release(); 
+                    break; 
+                }
+                try{
+                    event.task.run(); 
+                }
+                catch(Exception e){
+                    System.out.println("Error in a simulated event."); 
+                    e.printStackTrace(); 
+                }
+            }
+        }
+    }
+
+    // take the next event, waiting for a thread outside the simulation if there is none
+    // input: no
+    // output: Event
+    private Event takeEvent(){
+        this.eventLock.lock(); 
+        try{
+            while(this.events.isEmpty()){
+                this.eventAdded.awaitUninterruptibly(); 
+            }
+            return this.events.poll(); 
+        }
+        finally{
+            this.eventLock.unlock(); 
+        }
+    }
+
+    // add an event
+    // input: long (delay in nanoseconds), Runnable (task, null to resume a thread), SimulatedThread (thread to resume, null for a task)
+    // output: no
+    private void addEvent(long delayNanos, Runnable task, SimulatedThread resumedThread){
+        this.eventLock.lock(); 
+        try{
+            this.events.add(new Event(this.nowNanos + Math.max(0, delayNanos), this.nextSequence++, task, resumedThread)); 
+            this.eventAdded.signal(); 
+        }
+        finally{
+            this.eventLock.unlock(); 
+        }
+    }
+
+    // give the turn back to the scheduler and wait until an event resumes the calling thread
+    // input: SimulatedThread (the calling thread)
+    // output: no
+    private void yieldTurn(SimulatedThread current){
+        this.schedulerTurn.release(); 
+        current.turn.acquireUninterruptibly(); 
+    }
+
+    // draw the network delay of one message
+    // input: no
+    // output: long (nanoseconds)
+    private long networkDelayNanos(){
+        return this.minDelayNanos + (long)(this.random.nextDouble() * (this.maxDelayNanos - this.minDelayNanos)); 
+    }
+
+    @Override
+    public MemberServer bind(CouncilMember member, int port) throws IOException{
+        return new SimulatedServer(member, port); 
+    }
+
+    // every member is in this JVM, the hostname is not used
+    @Override
+    public PeerLink connect(String serverSocketInfo){
+        return new SimulatedLink(Integer.parseInt(serverSocketInfo.substring(serverSocketInfo.indexOf(':') + 1))); 
+    }
+
+    @Override
+    public long nanoTime(){
+        return this.nowNanos; 
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException{
+        SimulatedThread current = this.threads.get(Thread.currentThread()); 
+        if(current == null){
+            Thread.sleep(millis); 
+            return; 
+        }
+        this.addEvent(TimeUnit.MILLISECONDS.toNanos(millis), null, current); 
+        this.yieldTurn(current); 
+    }
+
+    @Override
+    public <T> T await(CompletableFuture<T> future){
+        SimulatedThread current = this.threads.get(Thread.currentThread()); 
+        if(future.isDone() || current == null){
+            if(Thread.currentThread() == this.schedulerThread && future.isDone() == false){
+                throw new IllegalStateException("A simulated event must not wait"); 
+            }
+            return future.join(); 
+        }
+        final SimulatedThread waiting = current; 
+        future.whenComplete(new BiConsumer<T, Throwable>(){
+            @Override
+            public void accept(T result, Throwable error){
+                addEvent(0, null, waiting); 
+            }
+        }); 
+        this.yieldTurn(current); 
+        return future.join(); 
+    }
+
+    @Override
+    public void execute(Runnable task){
+        this.addEvent(0, task, null); 
+    }
+
+    @Override
+    public Future<?> schedule(Runnable task, long delayMillis){
+        // a cancelled task lets go of its Runnable, its event stays in the queue and does nothing
+        FutureTask<Void> scheduledTask = new FutureTask<Void>(task, null){
+            @Override
+            protected void setException(Throwable error){
+                super.setException(error); 
+                System.out.println("Error in a simulated event."); 
+                error.printStackTrace(); 
+            }
+        }; 
+        this.addEvent(TimeUnit.MILLISECONDS.toNanos(delayMillis), scheduledTask, null); 
+        return scheduledTask; 
+    }
+
+    @Override
+    public Thread startThread(final Runnable task){
+        final SimulatedThread simulatedThread = new SimulatedThread(); 
+        Thread thread = new Thread(new Runnable(){
+            @Override
+            public void run(){
+                simulatedThread.turn.acquireUninterruptibly(); 
+                try{
+                    task.run(); 
+                }
+                catch(Exception e){
+                    e.printStackTrace(); 
+                }
+                finally{
+                    threads.remove(Thread.currentThread()); 
+                    simulatedThread.finished.complete(null); 
+                    schedulerTurn.release(); 
+                }
+            }
+        }, "simulated-" + this.seed + "-" + this.threads.size()); 
+        thread.setDaemon(true); 
+        this.threads.put(thread, simulatedThread); 
+        this.finishedThreads.put(thread, simulatedThread.finished); 
+        thread.start(); 
+        // the new thread runs once the event is reached, after the caller has blocked
+        this.addEvent(0, null, simulatedThread); 
+        return thread; 
+    }
+
+    @Override
+    public void join(Thread thread) throws InterruptedException{
+        CompletableFuture<Void> finished = this.finishedThreads.remove(thread); 
+        if(finished == null){
+            thread.join(); 
+            return; 
+        }
+        this.await(finished); 
+    }
+
+    @Override
+    public Random getRandom(){
+        return this.random; 
+    }
+
+    // seed getter
+    // input: no
+    // output: long
+    public long getSeed(){
+        return this.seed; 
+    }
+
+    // number of messages delivered so far
+    // input: no
+    // output: long
+    public long getMessageCount(){
+        return this.messageCount.get(); 
+    }
+
+    // number of events run so far
+    // input: no
+    // output: long
+    public long getEventCount(){
+        return this.eventCount.get(); 
+    }
+
+    @Override
+    public String toString(){
+        return "simulated (seed " + this.seed + ")"; 
+    }
+
+    // a member server, online between start and shutDown
+    private class SimulatedServer implements MemberServer{
+        private final CouncilMember member; 
+        private final int port; 
+        private final ArrayList<SimulatedChannel> channelList; // connections Proposers have opened
+
+        private SimulatedServer(CouncilMember member, int port) throws IOException{
+            this.member = member; 
+            this.port = port; 
+            this.channelList = new ArrayList<SimulatedChannel>(); 
+            SimulatedServer current = servers.get(port); 
+            if(current != null){
+                throw new BindException("Port " + port + " is already in use in the simulation"); 
+            }
+        }
+
+        @Override
+        public void start(){
+            servers.put(this.port, this); 
+        }
+
+        @Override
+        public void shutDown(){
+            if(servers.get(this.port) == this){
+                servers.remove(this.port); 
+            }
+            // the requests waiting on the open connections fail, like a closed socket
+            for(int i = 0; i < this.channelList.size(); i++){
+                this.channelList.get(i).close(); 
+            }
+            this.channelList.clear(); 
+        }
+
+        // handle a request on the scheduler, like RunMemberServer hands it to the acceptor logic
+        // input: SimulatedChannel (connection the request came from), Message (request)
+        // output: no
+        private void dispatch(SimulatedChannel channel, Message requestObject){
+            new AcceptorResponseToRequest(this.member, channel, requestObject).run(); 
+        }
+    }
+
+    // one connection between a Proposer (SimulatedLink) and a member server
+    private class SimulatedChannel implements ResponseChannel{
+        private final SimulatedLink link; 
+        private final SimulatedServer server; 
+        private volatile boolean open; 
+
+        private SimulatedChannel(SimulatedLink link, SimulatedServer server){
+            this.link = link; 
+            this.server = server; 
+            this.open = true; 
+        }
+
+        @Override
+        public void sendResponse(final Message responseObject, final CompletableFuture<Void> durable) throws IOException{
+            if(this.open == false){
+                throw new SocketException("Connection closed"); 
+            }
+            final SimulatedChannel channel = this; 
+            addEvent(networkDelayNanos(), new Runnable(){
+                @Override
+                public void run(){
+                    // the record of the response is written while the other events run, the clock does not move while waiting for it
+                    if(durable != null){
+                        try{
+                            durable.join(); 
+                        }
+                        catch(Exception e){
+                            EventLog.error(channel.server.member.getMemberId(), "Error when Acceptor writing to the write-ahead log.", e); 
+                            return; 
+                        }
+                    }
+                    // a response on a closed connection is lost
+                    if(channel.open){
+                        messageCount.incrementAndGet(); 
+                        link.deliverResponse(responseObject); 
+                    }
+                }
+            }, null); 
+        }
+
+        // the scheduler must not wait for the write-ahead log while it handles a request
+        @Override
+        public boolean answersInline(){
+            return true; 
+        }
+
+        // close the connection and fail the requests waiting on it
+        // input: no
+        // output: no
+        private void close(){
+            if(this.open){
+                this.open = false; 
+                this.link.connectionClosed(this); 
+            }
+        }
+    }
+
+    // the connection from a member to the member server on a port, reconnected after the server went offline
+    private class SimulatedLink implements PeerLink{
+        private final int port; 
+        private SimulatedChannel channel; // null until the first request, or after the connection was closed
+        private final ConcurrentHashMap<Long, CompletableFuture<Message>> pendingRequests; // requests waiting for a response, by Correlation-Id
+
+        private SimulatedLink(int port){
+            this.port = port; 
+            this.channel = null; 
+            this.pendingRequests = new ConcurrentHashMap<Long, CompletableFuture<Message>>(); 
+        }
+
+        // the open connection, connecting first if needed
+        // input: no
+        // output: SimulatedChannel
+        private SimulatedChannel connection() throws IOException{
+            if(this.channel == null || this.channel.open == false){
+                SimulatedServer server = servers.get(this.port); 
+                if(server == null){
+                    throw new ConnectException("Connection refused: port " + this.port); 
+                }
+                this.channel = new SimulatedChannel(this, server); 
+                server.channelList.add(this.channel); 
+            }
+            return this.channel; 
+        }
+
+        // send a message to the member server after the network delay
+        // input: Message
+        // output: no
+        private void send(final Message message) throws IOException{
+            final SimulatedChannel sendChannel = this.connection(); 
+            addEvent(networkDelayNanos(), new Runnable(){
+                @Override
+                public void run(){
+                    if(sendChannel.open){
+                        messageCount.incrementAndGet(); 
+                        sendChannel.server.dispatch(sendChannel, message); 
+                    }
+                }
+            }, null); 
+        }
+
+        @Override
+        public CompletableFuture<Message> sendRequest(Message requestObject){
+            long correlationId = requestObject.getCorrelationId(); 
+            CompletableFuture<Message> response = new CompletableFuture<Message>(); 
+            this.pendingRequests.put(correlationId, response); 
+            try{
+                this.send(requestObject); 
+            }
+            catch(IOException e){
+                this.pendingRequests.remove(correlationId); 
+                response.completeExceptionally(e); 
+            }
+            return response; 
+        }
+
+        @Override
+        public void sendOneWay(Message message) throws IOException{
+            this.send(message); 
+        }
+
+        @Override
+        public void cancelRequest(long correlationId){
+            CompletableFuture<Message> response = this.pendingRequests.remove(correlationId); 
+            if(response != null){
+                response.cancel(false); 
+            }
+        }
+
+        @Override
+        public void close(){
+            if(this.channel != null){
+                this.channel.close(); 
+            }
+        }
+
+        // complete the request a response answers
+        // input: Message (response)
+        // output: no
+        private void deliverResponse(Message responseObject){
+            CompletableFuture<Message> response = this.pendingRequests.remove(responseObject.getCorrelationId()); 
+            // the request may have been cancelled already
+            if(response != null){
+                response.complete(responseObject); 
+            }
+        }
+
+        // fail every request waiting on a connection which has been closed
+        // input: SimulatedChannel (the closed connection)
+        // output: no
+        private void connectionClosed(SimulatedChannel closedChannel){
+            if(this.channel == closedChannel){
+                this.channel = null; 
+            }
+            // requests are failed in the order they were sent, so the result does not depend on the hash table
+            TreeMap<Long, CompletableFuture<Message>> failedRequests = new TreeMap<Long, CompletableFuture<Message>>(this.pendingRequests); 
+            for(Map.Entry<Long, CompletableFuture<Message>> entry : failedRequests.entrySet()){
+                if(this.pendingRequests.remove(entry.getKey(), entry.getValue())){
+                    entry.getValue().completeExceptionally(new SocketException("Connection closed")); 
+                }
+            }
+        }
+    }
+}
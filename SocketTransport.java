@@ -0,0 +1,70 @@
+import java.io.*; 
+import java.net.*; 
+import java.util.*; 
+import java.util.concurrent.*; 
+
+// members talk over real sockets (RunMemberServer, PeerConnection), in real time, on real threads (see ExecutionMode)
+public class SocketTransport implements Transport{
+
+    @Override
+    public MemberServer bind(CouncilMember member, int port) throws IOException{
+        return new RunMemberServer(member, port); 
+    }
+
+    // the address is parsed and resolved once, when the member is created
+    @Override
+    public PeerLink connect(String serverSocketInfo){
+        // hostname is from the start of the string to the ':' character
+        String hostname = serverSocketInfo.substring(0, serverSocketInfo.indexOf(':')); 
+        // port is from character ':' + 1 to the end of the string
+        int port = Integer.parseInt(serverSocketInfo.substring(serverSocketInfo.indexOf(':') + 1)); 
+        return new PeerConnection(new InetSocketAddress(hostname, port)); 
+    }
+
+    @Override
+    public long nanoTime(){
+        return System.nanoTime(); 
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException{
+        Thread.sleep(millis); 
+    }
+
+    @Override
+    public <T> T await(CompletableFuture<T> future){
+        return future.join(); 
+    }
+
+    @Override
+    public void execute(Runnable task){
+        ExecutionMode.execute(task); 
+    }
+
+    @Override
+    public Future<?> schedule(Runnable task, long delayMillis){
+        return ExecutionMode.schedule(task, delayMillis); 
+    }
+
+    @Override
+    public Thread startThread(Runnable task){
+        Thread thread = new Thread(task); 
+        thread.start(); 
+        return thread; 
+    }
+
+    @Override
+    public void join(Thread thread) throws InterruptedException{
+        thread.join(); 
+    }
+
+    @Override
+    public Random getRandom(){
+        return ThreadLocalRandom.current(); 
+    }
+
+    @Override
+    public String toString(){
+        return "socket"; 
+    }
+}
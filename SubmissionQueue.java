@@ -0,0 +1,297 @@
+import java.util.*; 
+import java.util.concurrent.*; 
+import java.util.concurrent.locks.*; 
+import java.util.function.*; 
+
+// queue of values submitted by clients of a member
+// instead of one Paxos round per value, a batcher thread packs the queued values into one proposal value
+// and proposes it in a single log instance
+// a batch is flushed when it reaches maxBatchValues/maxBatchBytes (UTF-8 bytes, as the batch is sent and stored), or when its oldest value has waited maxDelayMillis
+// batches are proposed through the AcceptPipeline of the member, so several batches can be in the Accept phase at once; 
+// while the pipeline is full the next batch fills up, so the batches grow with the load
+// batch value format: BATCH_MARKER | count x [value length (decimal) ':' value]
+// a submitted value may not start with BATCH_MARKER (CouncilMember.checkClientValue), so only a batch does
+public class SubmissionQueue{
+    public static final char BATCH_MARKER = '\u0001'; // a decided value starting with this is a batch
+    public static final int DEFAULT_MAX_BATCH_VALUES = 4096; 
+    public static final int DEFAULT_MAX_BATCH_BYTES = 256 * 1024; 
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 5; 
+    private AcceptPipeline pipeline; // the pipeline of the member when the queue was created, closed together with the queue
+    private int maxBatchValues; 
+    private int maxBatchBytes; 
+    private long maxDelayMillis; 
+    private ReentrantLock queueLock; 
+    private Condition valuesQueued; 
+    private ArrayList<Submission> queue; // values waiting for the next batch
+    private int queuedBytes; // size of the queued values in a batch (UTF-8 bytes + 12 per value for the length prefix)
+    private boolean closed; 
+    // batching statistics
+    private volatile long batchCount; 
+    private volatile long valueCount; 
+    private volatile int largestBatch; 
+
+    // a value waiting to be decided, the future completes with the log instance of its batch
+    private static class Submission{
+        private String value; 
+        private int batchBytes; // UTF-8 size of the value + 12 for its length prefix, the space it takes in a batch
+        private long submittedNanos; 
+        private CompletableFuture<Integer> decided; 
+
+        public Submission(String value){
+            this.value = value; 
+            this.batchBytes = utf8Length(value) + 12; 
+            this.submittedNanos = System.nanoTime(); 
+            this.decided = new CompletableFuture<Integer>(); 
+        }
+    }
+
+    // create the queue of a member and start the batcher thread
+    // the member must not propose from other threads while the queue is open
+    // input: CouncilMember, int (max values per batch), int (max bytes per batch), long (max wait of a value before its batch is flushed, ms)
+    // output: no
+    public SubmissionQueue(CouncilMember member, int maxBatchValues, int maxBatchBytes, long maxDelayMillis){
+        if(maxBatchValues <= 0 || maxBatchBytes <= 0 || maxDelayMillis < 0){
+            throw new IllegalArgumentException("Invalid batch limits"); 
+        }
+        this.pipeline = member.getAcceptPipeline(); 
+        this.maxBatchValues = maxBatchValues; 
+        this.maxBatchBytes = maxBatchBytes; 
+        this.maxDelayMillis = maxDelayMillis; 
+        this.queueLock = new ReentrantLock(); 
+        this.valuesQueued = this.queueLock.newCondition(); 
+        this.queue = new ArrayList<Submission>(); 
+        this.queuedBytes = 0; 
+        this.closed = false; 
+        Thread batcher = new Thread(new Runnable(){
+            @Override
+            public void run(){
+                batchLoop(); 
+            }
+        }, "paxos-batcher-" + member.getMemberId()); 
+        batcher.setDaemon(true); 
+        batcher.start(); 
+    }
+
+    // submit a value
+    // throws IllegalArgumentException if the value starts with a reserved marker, see CouncilMember.checkClientValue
+    // input: String
+    // output: CompletableFuture<Integer> (completes with the log instance the value was decided in,
+    //         or exceptionally if the member gave up proposing or the queue is closed)
+    public CompletableFuture<Integer> submit(String value){
+        CouncilMember.checkClientValue(value); 
+        Submission submission = new Submission(value); 
+        this.queueLock.lock(); 
+        try{
+            if(this.closed){
+                submission.decided.completeExceptionally(new IllegalStateException("Submission queue closed")); 
+            }
+            else{
+                this.queue.add(submission); 
+                this.queuedBytes += submission.batchBytes; 
+                // wake the batcher when the first value arrives (the delay starts) or when the batch is full
+                if(this.queue.size() == 1 || this.queue.size() >= this.maxBatchValues || this.queuedBytes >= this.maxBatchBytes){
+                    this.valuesQueued.signal(); 
+                }
+            }
+        }
+        finally{
+            this.queueLock.unlock(); 
+        }
+        return submission.decided; 
+    }
+
+    // the batcher thread: wait for a full batch or for the delay of the oldest value, then propose the batch
+    // input: no
+    // output: no
+    private void batchLoop(){
+        while(true){
+            ArrayList<Submission> batch = new ArrayList<Submission>(); 
+            this.queueLock.lock(); 
+            try{
+                while(this.queue.isEmpty() && this.closed == false){
+                    this.valuesQueued.awaitUninterruptibly(); 
+                }
+                if(this.queue.isEmpty()){
+                    return; 
+                }
+                // wait until the batch is full or the oldest value has waited long enough
+                long deadline = this.queue.get(0).submittedNanos + TimeUnit.MILLISECONDS.toNanos(this.maxDelayMillis); 
+                while(this.closed == false && this.queue.size() < this.maxBatchValues && this.queuedBytes < this.maxBatchBytes){
+                    long remaining = deadline - System.nanoTime(); 
+                    if(remaining <= 0){
+                        break; 
+                    }
+                    try{
+                        this.valuesQueued.awaitNanos(remaining); 
+                    }
+                    catch(InterruptedException e){
+                        break; 
+                    }
+                }
+                // take the values of one batch, the rest stays for the next batch
+                int bytes = 0; 
+                int taken = 0; 
+                while(taken < this.queue.size() && taken < this.maxBatchValues && (taken == 0 || bytes + this.queue.get(taken).batchBytes <= this.maxBatchBytes)){
+                    bytes += this.queue.get(taken).batchBytes; 
+                    taken++; 
+                }
+                List<Submission> head = this.queue.subList(0, taken); 
+                batch.addAll(head); 
+                head.clear(); 
+                this.queuedBytes -= bytes; 
+            }
+            finally{
+                this.queueLock.unlock(); 
+            }
+            ArrayList<String> values = new ArrayList<String>(); 
+            for(int i = 0; i < batch.size(); i++){
+                values.add(batch.get(i).value); 
+            }
+            // blocks while the pipeline window is full
+            final ArrayList<Submission> proposedBatch = batch; 
+            try{
+                this.pipeline.proposeInternal(encodeBatch(values)).whenComplete(new BiConsumer<Integer, Throwable>(){
+                    @Override
+                    public void accept(Integer instance, Throwable error){
+                        batchDecided(proposedBatch, instance, error); 
+                    }
+                }); 
+            }
+            catch(RuntimeException e){
+                // the batch fails, the batcher keeps going with the next one
+                this.batchDecided(proposedBatch, null, e); 
+            }
+        }
+    }
+
+    // complete the futures of a batch once the pipeline has delivered it
+    // input: ArrayList<Submission> (the batch), Integer (log instance), Throwable (null if the batch was decided)
+    // output: no
+    private void batchDecided(ArrayList<Submission> batch, Integer instance, Throwable error){
+        if(error != null){
+            for(int i = 0; i < batch.size(); i++){
+                batch.get(i).decided.completeExceptionally(error); 
+            }
+            return; 
+        }
+        // batches are delivered one at a time in instance order, so the statistics have a single writer
+        this.batchCount++; 
+        this.valueCount += batch.size(); 
+        if(batch.size() > this.largestBatch){
+            this.largestBatch = batch.size(); 
+        }
+        for(int i = 0; i < batch.size(); i++){
+            batch.get(i).decided.complete(instance); 
+        }
+    }
+
+    // pack values into one proposal value
+    // input: List<String>
+    // output: String
+    public static String encodeBatch(List<String> values){
+        StringBuilder batch = new StringBuilder(); 
+        batch.append(BATCH_MARKER); 
+        for(int i = 0; i < values.size(); i++){
+            batch.append(values.get(i).length()).append(':').append(values.get(i)); 
+        }
+        return batch.toString(); 
+    }
+
+    // size of a value in UTF-8, the encoding of the batch on the wire and in the decided value store
+    // input: String
+    // output: int (bytes)
+    private static int utf8Length(String value){
+        int bytes = 0; 
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i); 
+            if(c < 0x80){
+                bytes += 1; 
+            }
+            else if(c < 0x800){
+                bytes += 2; 
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))){
+                // a supplementary character takes 4 bytes for its two chars
+                bytes += 4; 
+                i++; 
+            }
+            else{
+                bytes += 3; 
+            }
+        }
+        return bytes; 
+    }
+
+    // check if a decided value is a batch
+    // input: String (decided value)
+    // output: boolean
+    public static boolean isBatch(String value){
+        return value != null && value.length() > 0 && value.charAt(0) == BATCH_MARKER; 
+    }
+
+    // unpack a decided value, a value which is not a batch is a batch of one
+    // throws IllegalArgumentException if the batch is malformed
+    // input: String (decided value)
+    // output: ArrayList<String>
+    public static ArrayList<String> decodeBatch(String decidedValue){
+        ArrayList<String> values = new ArrayList<String>(); 
+        if(isBatch(decidedValue) == false){
+            values.add(decidedValue); 
+            return values; 
+        }
+        int position = 1; 
+        while(position < decidedValue.length()){
+            int separator = decidedValue.indexOf(':', position); 
+            int length = -1; 
+            if(separator > position){
+                try{
+                    length = Integer.parseInt(decidedValue.substring(position, separator)); 
+                }
+                catch(NumberFormatException e){
+
+                }
+            }
+            if(length < 0 || length > decidedValue.length() - separator - 1){
+                throw new IllegalArgumentException("Malformed batch at position " + position); 
+            }
+            values.add(decidedValue.substring(separator + 1, separator + 1 + length)); 
+            position = separator + 1 + length; 
+        }
+        return values; 
+    }
+
+    // stop accepting values, the batcher proposes what is queued and then stops
+    // input: no
+    // output: no
+    public void close(){
+        this.queueLock.lock(); 
+        try{
+            this.closed = true; 
+            this.valuesQueued.signal(); 
+        }
+        finally{
+            this.queueLock.unlock(); 
+        }
+    }
+
+    // number of batches decided
+    // input: no
+    // output: long
+    public long getBatchCount(){
+        return this.batchCount; 
+    }
+
+    // number of values decided
+    // input: no
+    // output: long
+    public long getValueCount(){
+        return this.valueCount; 
+    }
+
+    // largest batch decided
+    // input: no
+    // output: int
+    public int getLargestBatch(){
+        return this.largestBatch; 
+    }
+}
@@ -0,0 +1,61 @@
+import java.io.*; 
+import java.util.*; 
+import java.util.concurrent.*; 
+
+// how members reach each other, and the clock and threads the protocol runs on
+// SocketTransport (the default) uses real sockets, real time and real threads
+// SimulatedTransport keeps every member in this JVM: messages are delivered by a seeded scheduler in virtual time, 
+// so a scenario gives the same result for the same seed and a 15 s latency costs nothing
+// the protocol must only wait, sleep, read the clock and draw random numbers through the transport of its member
+// choose the transport with -Dpaxos.transport=socket|simulated|simulated:<seed> (see CouncilMember.getDefaultTransport)
+public interface Transport{
+    // start receiving the requests sent to a member
+    // input: CouncilMember, int (port the member listens on, other members address it as "hostname:port")
+    // output: MemberServer (not started yet)
+    MemberServer bind(CouncilMember member, int port) throws IOException; 
+
+    // connection to a member
+    // input: String (server socket info, format "hostname:port")
+    // output: PeerLink
+    PeerLink connect(String serverSocketInfo); 
+
+    // current time of this transport
+    // input: no
+    // output: long (nanoseconds, only differences are meaningful, like System.nanoTime)
+    long nanoTime(); 
+
+    // wait on the calling thread
+    // input: long (milliseconds)
+    // output: no
+    void sleep(long millis) throws InterruptedException; 
+
+    // wait until a future completes
+    // input: CompletableFuture<T>
+    // output: T (the result of the future)
+    <T> T await(CompletableFuture<T> future); 
+
+    // run a short task which does not block (a fan-out, a response)
+    // input: Runnable
+    // output: no
+    void execute(Runnable task); 
+
+    // run a short task which does not block after a delay
+    // input: Runnable, long (delay in milliseconds)
+    // output: Future<?> (cancel it to drop the task and the references it holds)
+    Future<?> schedule(Runnable task, long delayMillis); 
+
+    // run a task which may wait (a proposer) on its own thread
+    // input: Runnable
+    // output: Thread (pass it to join)
+    Thread startThread(Runnable task); 
+
+    // wait until a thread started with startThread has finished
+    // input: Thread
+    // output: no
+    void join(Thread thread) throws InterruptedException; 
+
+    // random numbers of the protocol (latency profiles, backoff)
+    // input: no
+    // output: Random (a thread may only use it while it runs protocol code)
+    Random getRandom(); 
+}